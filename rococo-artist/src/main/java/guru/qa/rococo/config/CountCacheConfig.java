@@ -0,0 +1,34 @@
+package guru.qa.rococo.config;
+
+import guru.qa.rococo.data.repository.ArtistRepository;
+import guru.qa.rococo.grpc.CountCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class CountCacheConfig {
+
+    @Bean
+    public CountCache artistCountCache(ArtistRepository artistRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       @Value("${rococo-artist.count-cache.ttl}") Duration ttl,
+                                       @Value("${rococo-artist.count-cache.max-size}") long maxSize,
+                                       @Value("${rococo-artist.count-cache.estimate-threshold}") long estimateThreshold) {
+        return new CountCache(ttl, maxSize, estimateThreshold,
+                () -> tableRows(jdbcTemplate),
+                artistRepository::count,
+                artistRepository::countByNameMatching);
+    }
+
+    private static long tableRows(JdbcTemplate jdbcTemplate) {
+        Long rows = jdbcTemplate.queryForObject(
+                "select table_rows from information_schema.tables where table_schema = database() and table_name = 'artist'",
+                Long.class
+        );
+        return rows == null ? 0 : rows;
+    }
+}
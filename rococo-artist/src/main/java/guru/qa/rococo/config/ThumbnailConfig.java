@@ -0,0 +1,31 @@
+package guru.qa.rococo.config;
+
+import guru.qa.rococo.grpc.ThumbnailBackfill;
+import guru.qa.rococo.grpc.ThumbnailGenerator;
+import guru.qa.rococo.service.ArtistThumbnailStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.UUID;
+
+@Configuration
+public class ThumbnailConfig {
+
+    @Bean(destroyMethod = "close")
+    public ThumbnailGenerator thumbnailGenerator(@Value("${rococo-artist.thumbnails.pool-size}") int poolSize,
+                                                 @Value("${rococo-artist.thumbnails.queue-capacity}") int queueCapacity) {
+        return new ThumbnailGenerator(poolSize, queueCapacity);
+    }
+
+    /**
+     * Catches up on the photos stored without variants, see {@link ThumbnailBackfill}.
+     */
+    @Bean(destroyMethod = "close")
+    public ThumbnailBackfill thumbnailBackfill(ArtistThumbnailStore artistThumbnailStore,
+                                               @Value("${rococo-artist.thumbnails.backfill-batch-size}") int batchSize) {
+        return ThumbnailBackfill.start("artist photos", new UUID(0, 0),
+                after -> artistThumbnailStore.withoutVariants(after, batchSize),
+                artistThumbnailStore::generateNow);
+    }
+}
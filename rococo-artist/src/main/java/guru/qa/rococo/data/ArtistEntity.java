@@ -1,9 +1,12 @@
 package guru.qa.rococo.data;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.AddArtistRequest;
 import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.Image;
 import guru.qa.grpc.rococo.grpc.UpdateArtistRequest;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.Uuids;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,14 +15,14 @@ import org.hibernate.proxy.HibernateProxy;
 import java.util.Objects;
 import java.util.UUID;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Getter
 @Setter
 @Entity
 @Table(name = "artist")
 public class ArtistEntity {
 
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     @Column(name = "id", nullable = false, length = 36)
@@ -34,26 +37,44 @@ public class ArtistEntity {
     @Column(name = "photo", columnDefinition = "bytea", nullable = false)
     private byte[] photo;
 
+    @Column(name = "photo_mime_type", nullable = false, length = 127)
+    private String photoMimeType = DEFAULT_MIME_TYPE;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     public static ArtistEntity fromAddArtistGrpcMessage(AddArtistRequest request) {
         ArtistEntity entity = new ArtistEntity();
         entity.setName(request.getName());
         entity.setBiography(request.getBiography());
-        entity.setPhoto(request.getPhoto().toByteArray());
+        entity.setPhoto(ByteStrings.unwrap(request.getPhoto().getData()));
+        entity.setPhotoMimeType(request.getPhoto().getMimeType().isEmpty()
+                ? DEFAULT_MIME_TYPE
+                : request.getPhoto().getMimeType());
         return entity;
     }
 
     public static ArtistEntity fromUpdateArtistGrpcMessage(UpdateArtistRequest request) {
         ArtistEntity entity = fromAddArtistGrpcMessage(request.getArtistData());
-        entity.setId(UUID.fromString(request.getId().toStringUtf8()));
+        entity.setId(Uuids.read(request.getUuid(), request.getId()));
         return entity;
     }
 
     public static ArtistResponse toGrpcMessage(ArtistEntity entity) {
-        return ArtistResponse.newBuilder()
-                .setId(copyFromUtf8(entity.getId().toString()))
+        ArtistResponse.Builder builder = ArtistResponse.newBuilder()
                 .setName(entity.getName())
                 .setBiography(entity.getBiography())
-                .setPhoto(ByteString.copyFrom(entity.getPhoto()))
+                .setPhoto(toImage(entity))
+                .setVersion(entity.getVersion());
+        IdEncoding.write(entity.getId(), builder::setUuid, builder::setId);
+        return builder.build();
+    }
+
+    public static Image toImage(ArtistEntity entity) {
+        return Image.newBuilder()
+                .setMimeType(entity.getPhotoMimeType())
+                .setData(ByteStrings.wrap(entity.getPhoto()))
                 .build();
     }
 
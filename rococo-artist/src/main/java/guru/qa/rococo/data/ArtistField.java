@@ -0,0 +1,74 @@
+package guru.qa.rococo.data;
+
+import com.google.protobuf.FieldMask;
+import guru.qa.grpc.rococo.grpc.ArtistResponse;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@link ArtistResponse} fields a read mask can select, with the columns behind each of them, and equally the
+ * {@code AddArtistRequest} fields an update mask can name. The id and version are not among them: they are always
+ * returned, and never patched.
+ */
+public enum ArtistField {
+
+    NAME("name", "name"),
+    BIOGRAPHY("biography", "biography"),
+    PHOTO("photo", "photo, photo_mime_type");
+
+    private final String path;
+    private final String columns;
+
+    ArtistField(String path, String columns) {
+        this.path = path;
+        this.columns = columns;
+    }
+
+    public String columns() {
+        return columns;
+    }
+
+    /**
+     * @return the fields {@code mask} selects, every field for an empty mask
+     * @throws IllegalArgumentException if a path is not a field of {@link ArtistResponse}
+     */
+    public static Set<ArtistField> fromMask(FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            return EnumSet.allOf(ArtistField.class);
+        }
+        Set<ArtistField> fields = EnumSet.noneOf(ArtistField.class);
+        for (String path : mask.getPathsList()) {
+            if (path.equals("id") || path.equals("uuid") || path.equals("version")) {
+                continue;
+            }
+            fields.add(fromPath(path));
+        }
+        return fields;
+    }
+
+    /**
+     * Clears what {@code fields} leaves out of a response built from a whole row.
+     */
+    public static ArtistResponse.Builder retain(ArtistResponse.Builder builder, Set<ArtistField> fields) {
+        if (!fields.contains(NAME)) {
+            builder.clearName();
+        }
+        if (!fields.contains(BIOGRAPHY)) {
+            builder.clearBiography();
+        }
+        if (!fields.contains(PHOTO)) {
+            builder.clearPhoto();
+        }
+        return builder;
+    }
+
+    private static ArtistField fromPath(String path) {
+        for (ArtistField field : values()) {
+            if (field.path.equals(path)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field in mask: " + path);
+    }
+}
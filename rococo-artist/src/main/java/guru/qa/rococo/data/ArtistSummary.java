@@ -0,0 +1,33 @@
+package guru.qa.rococo.data;
+
+import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.rococo.grpc.IdEncoding;
+
+import java.util.UUID;
+
+/**
+ * Scalar columns of an artist: listings read these instead of whole {@link ArtistEntity} rows,
+ * so the photo longblob is never loaded for a page.
+ */
+public interface ArtistSummary {
+
+    UUID getId();
+
+    String getName();
+
+    String getBiography();
+
+    long getVersion();
+
+    /**
+     * @return the artist without a photo
+     */
+    static ArtistResponse.Builder toGrpcMessage(ArtistSummary summary) {
+        ArtistResponse.Builder builder = ArtistResponse.newBuilder()
+                .setName(summary.getName())
+                .setBiography(summary.getBiography())
+                .setVersion(summary.getVersion());
+        IdEncoding.write(summary.getId(), builder::setUuid, builder::setId);
+        return builder;
+    }
+}
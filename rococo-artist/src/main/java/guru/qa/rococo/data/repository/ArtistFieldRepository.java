@@ -0,0 +1,168 @@
+package guru.qa.rococo.data.repository;
+
+import guru.qa.grpc.rococo.grpc.AddArtistRequest;
+import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.grpc.rococo.grpc.ImportArtistRequest;
+import guru.qa.rococo.data.ArtistEntity;
+import guru.qa.rococo.data.ArtistField;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes of artists by id that touch the columns of the requested {@link ArtistField}s only, so a caller
+ * that leaves the photo out of its mask never has the longblob read, sent or rewritten.
+ */
+@Repository
+public class ArtistFieldRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ArtistFieldRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public @Nonnull Optional<ArtistResponse> findById(@Nonnull UUID id, @Nonnull Set<ArtistField> fields) {
+        return findAllByIdIn(List.of(id), fields).stream().findFirst();
+    }
+
+    public @Nonnull List<ArtistResponse> findAllByIdIn(@Nonnull Collection<UUID> ids, @Nonnull Set<ArtistField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = "select " + selectList(fields) + " from artist where id in ("
+                + String.join(", ", Collections.nCopies(ids.size(), "UUID_TO_BIN(?)")) + ")";
+        return jdbcTemplate.query(
+                sql,
+                (rs, rowNum) -> toGrpcMessage(rs, fields),
+                ids.stream().map(UUID::toString).toArray()
+        );
+    }
+
+    /**
+     * Writes the columns of {@code fields}, taking their values from {@code values}, and bumps the version.
+     *
+     * @param expectedVersion the version the artist must still be at, {@code null} to patch whatever it is
+     * @return 0 when the artist is missing or at another version, 1 otherwise
+     */
+    public int patch(@Nonnull UUID id,
+                     @Nonnull ArtistEntity values,
+                     @Nonnull Set<ArtistField> fields,
+                     @Nullable Long expectedVersion) {
+        StringBuilder sql = new StringBuilder("update artist set ");
+        List<Object> args = new ArrayList<>();
+        if (fields.contains(ArtistField.NAME)) {
+            sql.append("name = ?, ");
+            args.add(values.getName());
+        }
+        if (fields.contains(ArtistField.BIOGRAPHY)) {
+            sql.append("biography = ?, ");
+            args.add(values.getBiography());
+        }
+        if (fields.contains(ArtistField.PHOTO)) {
+            sql.append("photo = ?, photo_mime_type = ?, ");
+            args.add(values.getPhoto());
+            args.add(values.getPhotoMimeType());
+        }
+        sql.append("version = version + 1 where id = UUID_TO_BIN(?)");
+        args.add(id.toString());
+        if (expectedVersion != null) {
+            sql.append(" and version = ?");
+            args.add(expectedVersion);
+        }
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Inserts new artists under the ids they carry with one batched statement, all of them or none.
+     */
+    @Transactional
+    public void insertAll(@Nonnull List<ArtistEntity> artists) {
+        jdbcTemplate.batchUpdate(
+                "insert into artist (id, name, biography, photo, photo_mime_type, version) values (UUID_TO_BIN(?), ?, ?, ?, ?, 0)",
+                artists,
+                artists.size(),
+                (ps, artist) -> {
+                    ps.setString(1, artist.getId().toString());
+                    ps.setString(2, artist.getName());
+                    ps.setString(3, artist.getBiography());
+                    ps.setBytes(4, artist.getPhoto());
+                    ps.setString(5, artist.getPhotoMimeType());
+                }
+        );
+    }
+
+    /**
+     * Hands every artist to {@code consumer} as the request that imports it again. The table is read as one streamed
+     * result, so only the current row is in memory however many artists there are.
+     */
+    public void exportAll(@Nonnull Consumer<ImportArtistRequest> consumer) {
+        jdbcTemplate.query(
+                streamed("select BIN_TO_UUID(id) as id, name, biography, photo, photo_mime_type from artist order by id"),
+                (RowCallbackHandler) rs -> consumer.accept(ImportArtistRequest.newBuilder()
+                        .setUuid(Uuids.toGrpc(UUID.fromString(rs.getString("id"))))
+                        .setArtistData(AddArtistRequest.newBuilder()
+                                .setName(rs.getString("name"))
+                                .setBiography(rs.getString("biography"))
+                                .setPhoto(Image.newBuilder()
+                                        .setMimeType(rs.getString("photo_mime_type"))
+                                        .setData(ByteStrings.wrap(rs.getBytes("photo")))))
+                        .build())
+        );
+    }
+
+    private static PreparedStatementCreator streamed(String sql) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // the one fetch size Connector/J streams rows with; any other has it read the whole result first
+            ps.setFetchSize(Integer.MIN_VALUE);
+            return ps;
+        };
+    }
+
+    private static String selectList(Set<ArtistField> fields) {
+        StringBuilder select = new StringBuilder("BIN_TO_UUID(id) as id, version");
+        fields.forEach(field -> select.append(", ").append(field.columns()));
+        return select.toString();
+    }
+
+    private static ArtistResponse toGrpcMessage(ResultSet rs, Set<ArtistField> fields) throws SQLException {
+        ArtistResponse.Builder builder = ArtistResponse.newBuilder();
+        IdEncoding.write(UUID.fromString(rs.getString("id")), builder::setUuid, builder::setId);
+        builder.setVersion(rs.getLong("version"));
+        if (fields.contains(ArtistField.NAME)) {
+            builder.setName(rs.getString("name"));
+        }
+        if (fields.contains(ArtistField.BIOGRAPHY)) {
+            builder.setBiography(rs.getString("biography"));
+        }
+        if (fields.contains(ArtistField.PHOTO)) {
+            builder.setPhoto(Image.newBuilder()
+                    .setMimeType(rs.getString("photo_mime_type"))
+                    .setData(ByteStrings.wrap(rs.getBytes("photo"))));
+        }
+        return builder.build();
+    }
+}
@@ -1,25 +1,113 @@
 package guru.qa.rococo.data.repository;
 
 import guru.qa.rococo.data.ArtistEntity;
+import guru.qa.rococo.data.ArtistSummary;
+import guru.qa.rococo.grpc.FullTextQuery;
 import jakarta.annotation.Nonnull;
-import org.springframework.data.domain.Page;
+import jakarta.annotation.Nullable;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
 
 public interface ArtistRepository extends JpaRepository<ArtistEntity, UUID> {
 
+    /**
+     * Listings select {@link ArtistSummary} columns only, never the photo.
+     */
+    String SELECT_SUMMARY = "select BIN_TO_UUID(id) as id, name, biography, version from artist";
+
+    /**
+     * All rows page by page, without the count query of a {@code Page}: totals come from the {@code CountCache}.
+     */
+    @Nonnull
+    Slice<ArtistSummary> findAllBy(@Nonnull Pageable pageable);
+
+    /**
+     * Best matches first, without a total, see {@link #findAllBy}.
+     *
+     * @param query boolean mode query built by {@link FullTextQuery}
+     */
     @Nonnull
-    Page<ArtistEntity> findAllByNameContainsIgnoreCase(
-            @Nonnull String name,
+    @Query(value = SELECT_SUMMARY + " where match(name) against (:query in boolean mode) "
+            + "order by match(name) against (:query in boolean mode) desc, name",
+            nativeQuery = true)
+    Slice<ArtistSummary> searchByName(
+            @Nonnull @Param("query") String query,
             @Nonnull Pageable pageable
     );
 
-    List<ArtistEntity> findAllByIdIn(@Nonnull Set<UUID> ids);
+    /**
+     * First {@code limit} rows in id order, starting right after {@code after} ({@code null} for the first page).
+     */
+    @Nonnull
+    @Query(value = SELECT_SUMMARY + " where (:after is null or id > UUID_TO_BIN(:after)) order by id limit :limit",
+            nativeQuery = true)
+    List<ArtistSummary> findPageAfter(
+            @Nullable @Param("after") String after,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Keyset counterpart of {@link #searchByName}, ordered by id instead of relevance.
+     */
+    @Nonnull
+    @Query(value = SELECT_SUMMARY + " where match(name) against (:query in boolean mode) "
+            + "and (:after is null or id > UUID_TO_BIN(:after)) order by id limit :limit",
+            nativeQuery = true)
+    List<ArtistSummary> searchByNameAfter(
+            @Nonnull @Param("query") String query,
+            @Nullable @Param("after") String after,
+            @Param("limit") int limit
+    );
+
+    @Query(value = "select count(*) from artist where match(name) against (:query in boolean mode)", nativeQuery = true)
+    long countByNameMatching(@Nonnull @Param("query") String query);
 
     Optional<ArtistEntity> findByName(@Nonnull String name);
+
+    @Query("select a.version from ArtistEntity a where a.id = :id")
+    Optional<Long> findVersionById(@Nonnull @Param("id") UUID id);
+
+    /**
+     * Rewrites the name and biography and bumps the version in a single statement, leaving the photo columns as they
+     * are, without the row being read first.
+     *
+     * @param expectedVersion the version the artist must still be at, {@code null} to update whatever it is
+     * @return 0 when the artist is missing or at another version, 1 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update ArtistEntity a set a.name = :name, a.biography = :biography, a.version = a.version + 1 "
+            + "where a.id = :id and (:expectedVersion is null or a.version = :expectedVersion)")
+    int updateDetails(
+            @Nonnull @Param("id") UUID id,
+            @Nonnull @Param("name") String name,
+            @Nonnull @Param("biography") String biography,
+            @Nullable @Param("expectedVersion") Long expectedVersion
+    );
+
+    /**
+     * {@link #updateDetails} with a new photo.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ArtistEntity a set a.name = :name, a.biography = :biography, "
+            + "a.photo = :photo, a.photoMimeType = :photoMimeType, a.version = a.version + 1 "
+            + "where a.id = :id and (:expectedVersion is null or a.version = :expectedVersion)")
+    int updateWithPhoto(
+            @Nonnull @Param("id") UUID id,
+            @Nonnull @Param("name") String name,
+            @Nonnull @Param("biography") String biography,
+            @Nonnull @Param("photo") byte[] photo,
+            @Nonnull @Param("photoMimeType") String photoMimeType,
+            @Nullable @Param("expectedVersion") Long expectedVersion
+    );
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package guru.qa.rococo.service;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.rococo.data.ArtistEntity;
+import guru.qa.rococo.data.repository.ArtistRepository;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.ThumbnailBackfill;
+import guru.qa.rococo.grpc.ThumbnailGenerator;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.support.SqlBinaryValue;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * {@link ImageVariant}s of artist photos, stored next to the original in {@code artist_photo_variant}.
+ */
+@Component
+public class ArtistThumbnailStore {
+
+    private final ArtistRepository artistRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThumbnailGenerator thumbnailGenerator;
+
+    @Autowired
+    public ArtistThumbnailStore(ArtistRepository artistRepository,
+                                JdbcTemplate jdbcTemplate,
+                                ThumbnailGenerator thumbnailGenerator) {
+        this.artistRepository = artistRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.thumbnailGenerator = thumbnailGenerator;
+    }
+
+    /**
+     * Drops the variants of the previous photo right away and regenerates them in the background
+     * from whatever photo the artist has by the time the task runs.
+     */
+    public void refresh(@Nonnull UUID artistId) {
+        jdbcTemplate.update("delete from artist_photo_variant where artist_id = UUID_TO_BIN(?)", artistId.toString());
+        generate(artistId);
+    }
+
+    /**
+     * Generates the variants of a new artist, which has none to drop yet.
+     */
+    public void generate(@Nonnull UUID artistId) {
+        thumbnailGenerator.submit("artist photo " + artistId, () -> store(artistId));
+    }
+
+    /**
+     * Generates the variants on the calling thread, see {@link ThumbnailBackfill}.
+     */
+    public void generateNow(@Nonnull UUID artistId) {
+        thumbnailGenerator.run("artist photo " + artistId, () -> store(artistId));
+    }
+
+    /**
+     * @return at most {@code limit} ids after {@code after}, in id order, of artists with a photo but no variants
+     */
+    public @Nonnull List<UUID> withoutVariants(@Nonnull UUID after, int limit) {
+        return jdbcTemplate.query(
+                "select BIN_TO_UUID(id) as id from artist a where id > UUID_TO_BIN(?) and length(photo) > 0 "
+                        + "and not exists (select 1 from artist_photo_variant v where v.artist_id = a.id) order by id limit ?",
+                (rs, rowNum) -> UUID.fromString(rs.getString("id")),
+                after.toString(), limit
+        );
+    }
+
+    /**
+     * @return generated variants by artist id; artists without the variant are absent from the map
+     */
+    public @Nonnull Map<UUID, Image> load(@Nonnull Collection<UUID> artistIds, @Nonnull ImageVariant variant) {
+        if (artistIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, Image> result = new HashMap<>();
+        jdbcTemplate.query(
+                "select BIN_TO_UUID(artist_id) as artist_id, photo, photo_mime_type from artist_photo_variant where variant = ? and artist_id in ("
+                        + String.join(", ", Collections.nCopies(artistIds.size(), "UUID_TO_BIN(?)")) + ")",
+                rs -> {
+                    result.put(UUID.fromString(rs.getString("artist_id")), Image.newBuilder()
+                            .setMimeType(rs.getString("photo_mime_type"))
+                            .setData(ByteStrings.wrap(rs.getBytes("photo")))
+                            .build());
+                },
+                Stream.concat(Stream.of(variant.name()), artistIds.stream().map(UUID::toString)).toArray()
+        );
+        return result;
+    }
+
+    private void store(@Nonnull UUID artistId) {
+        artistRepository.findById(artistId).ifPresent(artist ->
+                thumbnailGenerator.resize(ArtistEntity.toImage(artist)).forEach((variant, thumbnail) ->
+                        jdbcTemplate.update(
+                                "insert into artist_photo_variant (artist_id, variant, photo, photo_mime_type) values (UUID_TO_BIN(?), ?, ?, ?) "
+                                        + "on duplicate key update photo = values(photo), photo_mime_type = values(photo_mime_type)",
+                                artistId.toString(), variant.name(), streamed(thumbnail.getData()), thumbnail.getMimeType()
+                        )
+                )
+        );
+    }
+
+    /**
+     * Binds the thumbnail as a stream over its bytes rather than a copy of them.
+     */
+    private static SqlBinaryValue streamed(ByteString data) {
+        return new SqlBinaryValue(data.newInput(), data.size());
+    }
+}
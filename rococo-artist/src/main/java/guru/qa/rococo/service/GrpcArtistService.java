@@ -1,53 +1,96 @@
 package guru.qa.rococo.service;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.data.ArtistEntity;
+import guru.qa.rococo.data.ArtistField;
+import guru.qa.rococo.data.ArtistSummary;
+import guru.qa.rococo.data.repository.ArtistFieldRepository;
 import guru.qa.rococo.data.repository.ArtistRepository;
+import guru.qa.rococo.grpc.BulkImport;
+import guru.qa.rococo.grpc.CountCache;
+import guru.qa.rococo.grpc.FlowControlledStream;
+import guru.qa.rococo.grpc.FullTextQuery;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.PageToken;
+import guru.qa.rococo.grpc.Uuids;
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
 
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
+import static io.grpc.Status.ABORTED;
 import static io.grpc.Status.NOT_FOUND;
-import static java.util.UUID.fromString;
 
 @GrpcService
 public class GrpcArtistService extends RococoArtistServiceGrpc.RococoArtistServiceImplBase {
 
     private final ArtistRepository artistRepository;
+    private final ArtistFieldRepository artistFieldRepository;
+    private final ArtistThumbnailStore artistThumbnailStore;
+    private final CountCache artistCountCache;
+    private final TransactionOperations transactionOperations;
+    private final long maxPhotoSize;
+    private final int importBatchSize;
 
-    public GrpcArtistService(ArtistRepository artistRepository) {
+    public GrpcArtistService(ArtistRepository artistRepository,
+                             ArtistFieldRepository artistFieldRepository,
+                             ArtistThumbnailStore artistThumbnailStore,
+                             CountCache artistCountCache,
+                             TransactionOperations transactionOperations,
+                             @Value("${rococo-artist.upload.max-photo-size}") DataSize maxPhotoSize,
+                             @Value("${rococo-artist.import.batch-size}") int importBatchSize) {
         this.artistRepository = artistRepository;
+        this.artistFieldRepository = artistFieldRepository;
+        this.artistThumbnailStore = artistThumbnailStore;
+        this.artistCountCache = artistCountCache;
+        this.transactionOperations = transactionOperations;
+        this.maxPhotoSize = maxPhotoSize.toBytes();
+        this.importBatchSize = importBatchSize;
     }
 
     @Override
     public void getArtistByName(GetArtistRequest request,
                                 StreamObserver<AllArtistResponse> responseObserver) {
+        Set<ArtistField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
         try {
-            if (request.getName().isBlank()) {
+            String query = FullTextQuery.prefix(request.getName());
+            if (query.isEmpty()) {
                 responseObserver.onError(Status.INVALID_ARGUMENT
                         .withDescription("Artist name cannot be empty")
                         .asRuntimeException());
                 return;
             }
-            Page<ArtistEntity> artistPage = artistRepository.findAllByNameContainsIgnoreCase(
-                    request.getName(),
+            Slice<ArtistSummary> artistSlice = artistRepository.searchByName(
+                    query,
                     PageRequest.of(0, 10)
             );
 
-            AllArtistResponse.Builder responseBuilder = AllArtistResponse.newBuilder()
-                    .setTotalCount((int) artistPage.getTotalElements());
-
-            artistPage.getContent().forEach(artist ->
-                    responseBuilder.addArtists(convertToArtistResponse(artist))
+            AllArtistResponse.Builder responseBuilder = getAllArtistResponseFromSummaries(
+                    artistSlice.getContent(),
+                    ListView.LIST_VIEW_DEFAULT,
+                    fields
             );
+            withTotalCount(responseBuilder, artistCountCache.count(query));
             responseObserver.onNext(responseBuilder.build());
             responseObserver.onCompleted();
 
@@ -58,24 +101,17 @@ public class GrpcArtistService extends RococoArtistServiceGrpc.RococoArtistServi
         }
     }
 
-    private ArtistResponse convertToArtistResponse(ArtistEntity entity) {
-        return ArtistResponse.newBuilder()
-                .setId(ByteString.copyFrom(entity.getId().toString().getBytes()))
-                .setName(entity.getName())
-                .setBiography(entity.getBiography())
-                .setPhoto(ByteString.copyFrom(entity.getPhoto()))
-                .build();
-    }
-
-
     @Override
     public void getArtist(ArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
-        UUID artistId = fromString(request.getId().toStringUtf8());
+        UUID artistId = Uuids.read(request.getUuid(), request.getId());
+        Set<ArtistField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
 
-        artistRepository.findById(artistId)
+        artistFieldRepository.findById(artistId, fields)
                 .ifPresentOrElse(
-                        artistEntity -> {
-                            ArtistResponse artistResponse = ArtistEntity.toGrpcMessage(artistEntity);
+                        artistResponse -> {
                             responseObserver.onNext(artistResponse);
                             responseObserver.onCompleted();
                         },
@@ -88,65 +124,341 @@ public class GrpcArtistService extends RococoArtistServiceGrpc.RococoArtistServi
 
     @Override
     public void getAllArtist(AllArtistRequest request, StreamObserver<AllArtistResponse> responseObserver) {
-        String name = request.getName();
+        if (request.hasPageToken()) {
+            getArtistsAfter(request, responseObserver);
+            return;
+        }
+        Set<ArtistField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+        String query = FullTextQuery.prefix(request.getName());
         int page = request.getPage();
         int size = request.getSize();
         PageRequest pageable = PageRequest.of(page, size);
 
-        Page<ArtistEntity> artistPage = artistRepository.findAllByNameContainsIgnoreCase(name, pageable);
+        Slice<ArtistSummary> artistSlice = query.isEmpty()
+                ? artistRepository.findAllBy(pageable)
+                : artistRepository.searchByName(query, pageable);
+        AllArtistResponse.Builder responseBuilder = getAllArtistResponseFromSummaries(artistSlice.getContent(), request.getView(), fields);
+        withTotalCount(responseBuilder, artistCountCache.count(query));
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Keyset listing ordered by id: a page costs the same however deep it is, and the total is only counted on request.
+     */
+    private void getArtistsAfter(AllArtistRequest request, StreamObserver<AllArtistResponse> responseObserver) {
+        UUID after;
+        try {
+            after = PageToken.decode(request.getPageToken());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Malformed page token").asRuntimeException());
+            return;
+        }
+        int size = request.getSize();
+        if (size <= 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Page size must be positive").asRuntimeException());
+            return;
+        }
+        Set<ArtistField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+        String query = FullTextQuery.prefix(request.getName());
+        String afterId = after == null ? null : after.toString();
+
+        // one row past the page tells whether there is a next one
+        List<ArtistSummary> found = query.isEmpty()
+                ? artistRepository.findPageAfter(afterId, size + 1)
+                : artistRepository.searchByNameAfter(query, afterId, size + 1);
+        List<ArtistSummary> artists = found.size() > size ? found.subList(0, size) : found;
+
+        AllArtistResponse.Builder responseBuilder = getAllArtistResponseFromSummaries(artists, request.getView(), fields);
+        if (found.size() > size) {
+            responseBuilder.setNextPageToken(PageToken.encode(artists.get(size - 1).getId()));
+        }
+        if (request.getWithTotalCount()) {
+            withTotalCount(responseBuilder, artistCountCache.count(query));
+        }
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
+    private AllArtistResponse.Builder getAllArtistResponseFromSummaries(List<ArtistSummary> artists,
+                                                                        ListView view,
+                                                                        Set<ArtistField> fields) {
+        Map<UUID, Image> photos = view == ListView.LIST_VIEW_SUMMARY || !fields.contains(ArtistField.PHOTO)
+                ? Map.of()
+                : listPhotos(artists.stream().map(ArtistSummary::getId).toList());
 
         AllArtistResponse.Builder responseBuilder = AllArtistResponse.newBuilder();
-        artistPage.forEach(artistEntity -> {
-            ArtistResponse artistResponse = ArtistEntity.toGrpcMessage(artistEntity);
+        artists.forEach(artist -> {
+            ArtistResponse.Builder artistResponse = ArtistField.retain(ArtistSummary.toGrpcMessage(artist), fields);
+            Image photo = photos.get(artist.getId());
+            if (photo != null) {
+                artistResponse.setPhoto(photo);
+            }
             responseBuilder.addArtists(artistResponse);
         });
-        responseBuilder.setTotalCount((int) artistPage.getTotalElements());
+        return responseBuilder;
+    }
 
-        responseObserver.onNext(responseBuilder.build());
-        responseObserver.onCompleted();
+    /**
+     * Small variants only: a artist whose variant is missing, still being generated or dropped by a full queue, is
+     * listed without a photo rather than with the whole original, and its variants are queued again.
+     */
+    private Map<UUID, Image> listPhotos(List<UUID> artistIds) {
+        Map<UUID, Image> photos = artistThumbnailStore.load(artistIds, ImageVariant.SMALL);
+        artistIds.stream()
+                .filter(id -> !photos.containsKey(id))
+                .forEach(artistThumbnailStore::generate);
+        return photos;
+    }
+
+    private static void withTotalCount(AllArtistResponse.Builder responseBuilder, CountCache.Total total) {
+        responseBuilder
+                .setTotalCount((int) total.value())
+                .setTotalCountEstimated(total.estimated());
     }
 
     @Override
     public void addArtist(AddArtistRequest addArtistRequest, StreamObserver<ArtistResponse> responseObserver) {
         ArtistEntity entity = artistRepository.save(ArtistEntity.fromAddArtistGrpcMessage(addArtistRequest));
+        artistCountCache.invalidate();
+        artistThumbnailStore.refresh(entity.getId());
         responseObserver.onNext(ArtistEntity.toGrpcMessage(entity));
         responseObserver.onCompleted();
     }
 
     @Override
     public void updateArtist(UpdateArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
-        UUID artistId = fromString(request.getId().toStringUtf8());
+        UUID artistId = Uuids.read(request.getUuid(), request.getId());
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        ArtistEntity artistEntity = ArtistEntity.fromUpdateArtistGrpcMessage(request);
+        boolean photoChanged = !request.getArtistData().getPhoto().getData().isEmpty();
 
-        artistRepository.findById(artistId)
-                .ifPresentOrElse(
-                        artistEntity -> {
-                            artistEntity = ArtistEntity.fromUpdateArtistGrpcMessage(request);
-                            artistRepository.save(artistEntity);
-                            responseObserver.onNext(ArtistEntity.toGrpcMessage(artistEntity));
-                            responseObserver.onCompleted();
-                        }, () -> responseObserver.onError(
-                                NOT_FOUND.withDescription("Artist not found by id: " + artistId)
-                                        .asRuntimeException()
-                        )
-                );
+        // the new version is read back in the transaction of the update, so it is the one the update wrote, and so is
+        // the photo when the update kept it
+        Set<ArtistField> storedFields = photoChanged ? EnumSet.noneOf(ArtistField.class) : EnumSet.of(ArtistField.PHOTO);
+        Optional<ArtistResponse> stored = transactionOperations.execute(status -> {
+            int updated = photoChanged
+                    ? artistRepository.updateWithPhoto(artistId, artistEntity.getName(), artistEntity.getBiography(),
+                    artistEntity.getPhoto(), artistEntity.getPhotoMimeType(), expectedVersion)
+                    : artistRepository.updateDetails(artistId, artistEntity.getName(), artistEntity.getBiography(),
+                    expectedVersion);
+            return updated == 0 ? Optional.empty() : artistFieldRepository.findById(artistId, storedFields);
+        });
+        if (stored.isEmpty()) {
+            responseObserver.onError(updateFailure(artistId, expectedVersion));
+            return;
+        }
+        artistCountCache.invalidate();
+        if (photoChanged) {
+            artistThumbnailStore.refresh(artistId);
+        }
+
+        ArtistResponse.Builder response = ArtistEntity.toGrpcMessage(artistEntity).toBuilder()
+                .setVersion(stored.get().getVersion());
+        if (!photoChanged) {
+            response.setPhoto(stored.get().getPhoto());
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
     }
 
+    /**
+     * Tells a missing artist from one another update got to first, once a conditional update matched no row.
+     */
+    private StatusRuntimeException updateFailure(UUID artistId, Long expectedVersion) {
+        return artistRepository.findVersionById(artistId)
+                .map(version -> ABORTED.withDescription(
+                        "Artist " + artistId + " is at version " + version + ", not " + expectedVersion))
+                .orElseGet(() -> NOT_FOUND.withDescription("Artist not found by id: " + artistId))
+                .asRuntimeException();
+    }
 
+    /**
+     * The first message carries the artist data (an empty id means a new artist), the rest carry the photo.
+     * Chunks are only linked together, the photo is copied once when the entity is built. A photo larger than
+     * {@code rococo-artist.upload.max-photo-size} fails the call with {@code RESOURCE_EXHAUSTED} as soon as it gets there.
+     */
     @Override
-    public void getArtistByIds(ArtistIdsRequest request, StreamObserver<AllArtistByIdsResponse> responseObserver) {
-        Set<UUID> artistIds = request.getIdList().stream()
-                .map(byteString -> fromString(byteString.toStringUtf8()))
-                .collect(Collectors.toSet());
+    public StreamObserver<UploadArtistRequest> uploadArtist(StreamObserver<ArtistResponse> responseObserver) {
+        return new StreamObserver<>() {
+            private UpdateArtistRequest artist;
+            private ByteString photo = ByteString.EMPTY;
+            private boolean failed;
 
-        List<ArtistEntity> artists = artistRepository.findAllByIdIn(artistIds);
+            @Override
+            public void onNext(UploadArtistRequest request) {
+                if (failed) {
+                    return;
+                }
+                switch (request.getPayloadCase()) {
+                    case ARTIST -> artist = request.getArtist();
+                    case PHOTO_CHUNK -> {
+                        if (photo.size() + (long) request.getPhotoChunk().size() > maxPhotoSize) {
+                            failed = true;
+                            photo = ByteString.EMPTY;
+                            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                                    .withDescription("Artist photo exceeds " + maxPhotoSize + " bytes")
+                                    .asRuntimeException());
+                            return;
+                        }
+                        photo = photo.concat(request.getPhotoChunk());
+                    }
+                    default -> {
+                    }
+                }
+            }
 
-        AllArtistByIdsResponse.Builder responseBuilder = AllArtistByIdsResponse.newBuilder();
-        artists.forEach(artistEntity -> {
-            ArtistResponse artistResponse = ArtistEntity.toGrpcMessage(artistEntity);
-            responseBuilder.addArtist(artistResponse);
-        });
+            @Override
+            public void onError(Throwable t) {
+                photo = ByteString.EMPTY;
+            }
 
-        responseObserver.onNext(responseBuilder.build());
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                if (artist == null) {
+                    responseObserver.onError(Status.INVALID_ARGUMENT
+                            .withDescription("Artist data is missing in upload")
+                            .asRuntimeException());
+                    return;
+                }
+                AddArtistRequest artistData = artist.getArtistData().toBuilder()
+                        .setPhoto(artist.getArtistData().getPhoto().toBuilder().setData(photo))
+                        .build();
+                if (!artist.hasUuid() && artist.getId().isEmpty()) {
+                    addArtist(artistData, responseObserver);
+                } else {
+                    updateArtist(artist.toBuilder().setArtistData(artistData).build(), responseObserver);
+                }
+            }
+        };
+    }
+
+    @Override
+    public StreamObserver<ImportArtistRequest> importArtists(StreamObserver<ImportResponse> responseObserver) {
+        return new BulkImport<>(importBatchSize, responseObserver) {
+            @Override
+            protected ArtistEntity read(ImportArtistRequest request) {
+                if (request.getArtistData().getName().isBlank()) {
+                    throw new IllegalArgumentException("Artist name cannot be empty");
+                }
+                ArtistEntity artist = ArtistEntity.fromAddArtistGrpcMessage(request.getArtistData());
+                artist.setId(request.hasUuid() ? Uuids.fromGrpc(request.getUuid()) : Uuids.timeOrdered());
+                return artist;
+            }
+
+            @Override
+            protected UUID id(ArtistEntity artist) {
+                return artist.getId();
+            }
+
+            @Override
+            protected void insertAll(List<ArtistEntity> artists) {
+                artistFieldRepository.insertAll(artists);
+            }
+
+            @Override
+            protected void imported(List<UUID> ids) {
+                artistCountCache.invalidate();
+                ids.forEach(artistThumbnailStore::generate);
+            }
+        };
+    }
+
+    @Override
+    public void exportArtists(Empty request, StreamObserver<ImportArtistRequest> responseObserver) {
+        FlowControlledStream.send(responseObserver, artistFieldRepository::exportAll);
+    }
+
+    @Override
+    public void patchArtist(PatchArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
+        UUID artistId = Uuids.fromGrpc(request.getUuid());
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        if (request.getUpdateMask().getPathsCount() == 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Update mask cannot be empty")
+                    .asRuntimeException());
+            return;
+        }
+        Set<ArtistField> fields = readFields(request.getUpdateMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+        if (fields.contains(ArtistField.PHOTO) && request.getArtistData().getPhoto().getData().isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Artist photo is missing in patch")
+                    .asRuntimeException());
+            return;
+        }
+
+        ArtistEntity values = ArtistEntity.fromAddArtistGrpcMessage(request.getArtistData());
+        // the fields the patch left alone are read back with the new version, in the transaction of the patch
+        Set<ArtistField> kept = EnumSet.allOf(ArtistField.class);
+        kept.removeAll(fields);
+        Optional<ArtistResponse> stored = transactionOperations.execute(status ->
+                artistFieldRepository.patch(artistId, values, fields, expectedVersion) == 0
+                        ? Optional.empty()
+                        : artistFieldRepository.findById(artistId, kept));
+        if (stored.isEmpty()) {
+            responseObserver.onError(updateFailure(artistId, expectedVersion));
+            return;
+        }
+        if (fields.contains(ArtistField.NAME)) {
+            artistCountCache.invalidate();
+        }
+        if (fields.contains(ArtistField.PHOTO)) {
+            artistThumbnailStore.refresh(artistId);
+        }
+
+        ArtistResponse.Builder response = stored.get().toBuilder();
+        if (fields.contains(ArtistField.NAME)) {
+            response.setName(values.getName());
+        }
+        if (fields.contains(ArtistField.BIOGRAPHY)) {
+            response.setBiography(values.getBiography());
+        }
+        if (fields.contains(ArtistField.PHOTO)) {
+            response.setPhoto(ArtistEntity.toImage(values));
+        }
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void getArtistByIds(ArtistIdsRequest request, StreamObserver<AllArtistByIdsResponse> responseObserver) {
+        Set<UUID> artistIds = new HashSet<>(Uuids.readAll(request.getUuidList(), request.getIdList()));
+        Set<ArtistField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+
+        AllArtistByIdsResponse response = AllArtistByIdsResponse.newBuilder()
+                .addAllArtist(artistFieldRepository.findAllByIdIn(artistIds, fields))
+                .build();
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * @return the fields {@code mask} selects, or {@code null} once the call has been failed for an unknown path
+     */
+    private static Set<ArtistField> readFields(FieldMask mask, StreamObserver<?> responseObserver) {
+        try {
+            return ArtistField.fromMask(mask);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return null;
+        }
+    }
 }
\ No newline at end of file
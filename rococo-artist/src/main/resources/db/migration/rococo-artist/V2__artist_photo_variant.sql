@@ -0,0 +1,7 @@
+create table if not exists artist_photo_variant
+(
+    artist_id              binary(16)    not null,
+    variant                varchar(16)   not null,
+    photo                  longblob      not null,
+    primary key (artist_id, variant)
+);
@@ -0,0 +1,4 @@
+-- backs name search; stopwords stay indexed so every word of "Leonardo da Vinci" can be searched by
+set session innodb_ft_enable_stopword = 0;
+
+alter table artist add fulltext index artist_name_ft (name);
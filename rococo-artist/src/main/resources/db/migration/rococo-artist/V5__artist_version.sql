@@ -0,0 +1,2 @@
+-- bumped on every update; the gateway answers conditional GETs with it
+alter table artist add column version bigint not null default 0;
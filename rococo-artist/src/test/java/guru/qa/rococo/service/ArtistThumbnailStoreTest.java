@@ -0,0 +1,77 @@
+package guru.qa.rococo.service;
+
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.rococo.data.ArtistEntity;
+import guru.qa.rococo.data.repository.ArtistRepository;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.ThumbnailGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+class ArtistThumbnailStoreTest {
+
+    private static final byte[] SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"1\" height=\"1\"/>"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private ArtistRepository artistRepository;
+    private JdbcTemplate jdbcTemplate;
+    private ThumbnailGenerator thumbnailGenerator;
+    private ArtistThumbnailStore artistThumbnailStore;
+
+    @BeforeEach
+    void setup() {
+        artistRepository = mock(ArtistRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        thumbnailGenerator = new ThumbnailGenerator(1, 1);
+        artistThumbnailStore = new ArtistThumbnailStore(artistRepository, jdbcTemplate, thumbnailGenerator);
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailGenerator.close();
+    }
+
+    @Test
+    void shouldUseOriginalAsEveryVariantWhenImageCannotBeDecoded() {
+        Image svg = ArtistEntity.toImage(artist(UUID.randomUUID()));
+
+        Map<ImageVariant, Image> variants = thumbnailGenerator.resize(svg);
+
+        assertEquals(ImageVariant.values().length, variants.size());
+        variants.values().forEach(variant -> assertSame(svg, variant));
+    }
+
+    @Test
+    void shouldStoreOriginalAsVariantsSoUndecodablePhotoIsNotRequeued() {
+        UUID id = UUID.randomUUID();
+        when(artistRepository.findById(id)).thenReturn(Optional.of(artist(id)));
+
+        artistThumbnailStore.generateNow(id);
+
+        for (ImageVariant variant : ImageVariant.values()) {
+            verify(jdbcTemplate).update(startsWith("insert into artist_photo_variant"),
+                    eq(id.toString()), eq(variant.name()), any(), eq("image/svg+xml"));
+        }
+    }
+
+    private static ArtistEntity artist(UUID id) {
+        ArtistEntity entity = new ArtistEntity();
+        entity.setId(id);
+        entity.setName("John");
+        entity.setBiography("Famous artist");
+        entity.setPhoto(SVG);
+        entity.setPhotoMimeType("image/svg+xml");
+        return entity;
+    }
+}
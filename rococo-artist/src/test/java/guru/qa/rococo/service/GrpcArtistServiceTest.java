@@ -2,41 +2,78 @@ package guru.qa.rococo.service;
 
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.data.ArtistEntity;
+import guru.qa.rococo.data.ArtistField;
+import guru.qa.rococo.data.ArtistSummary;
+import guru.qa.rococo.data.repository.ArtistFieldRepository;
 import guru.qa.rococo.data.repository.ArtistRepository;
+import guru.qa.rococo.grpc.CountCache;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.PageToken;
+import guru.qa.rococo.grpc.Uuids;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.*;
 
 class GrpcArtistServiceTest {
 
+    private static final int PHOTO_SIZE = 8 * 1024 * 1024;
+
     private ArtistRepository artistRepository;
+    private ArtistFieldRepository artistFieldRepository;
+    private ArtistThumbnailStore artistThumbnailStore;
+    private CountCache artistCountCache;
     private GrpcArtistService grpcArtistService;
 
     @BeforeEach
     void setup() {
         artistRepository = mock(ArtistRepository.class);
-        grpcArtistService = new GrpcArtistService(artistRepository);
+        artistFieldRepository = mock(ArtistFieldRepository.class);
+        artistThumbnailStore = mock(ArtistThumbnailStore.class);
+        artistCountCache = mock(CountCache.class);
+        when(artistCountCache.count(anyString())).thenReturn(new CountCache.Total(0, false));
+        grpcArtistService = new GrpcArtistService(artistRepository, artistFieldRepository, artistThumbnailStore, artistCountCache,
+                TransactionOperations.withoutTransaction(), DataSize.ofMegabytes(20), 2);
     }
 
     @Test
     void shouldReturnArtistById() {
         UUID id = UUID.randomUUID();
-        ArtistEntity entity = new ArtistEntity();
-        entity.setId(id);
-        entity.setName("John");
-        entity.setBiography("Famous artist");
-        entity.setPhoto(new byte[]{1, 2, 3});
+        ArtistResponse artist = ArtistResponse.newBuilder()
+                .setId(ByteString.copyFromUtf8(id.toString()))
+                .setName("John")
+                .setBiography("Famous artist")
+                .build();
 
-        when(artistRepository.findById(id)).thenReturn(Optional.of(entity));
+        when(artistFieldRepository.findById(id, EnumSet.allOf(ArtistField.class))).thenReturn(Optional.of(artist));
 
         StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
         ArtistRequest request = ArtistRequest.newBuilder()
@@ -45,14 +82,49 @@ class GrpcArtistServiceTest {
 
         grpcArtistService.getArtist(request, observer);
 
-        verify(observer).onNext(any(ArtistResponse.class));
+        verify(observer).onNext(artist);
         verify(observer).onCompleted();
     }
 
+    @Test
+    void shouldReadOnlyMaskedArtistFields() {
+        UUID id = UUID.randomUUID();
+        when(artistFieldRepository.findById(id, EnumSet.of(ArtistField.NAME)))
+                .thenReturn(Optional.of(ArtistResponse.newBuilder().setName("John").build()));
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        ArtistRequest request = ArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .setReadMask(FieldMask.newBuilder().addPaths("id").addPaths("name"))
+                .build();
+
+        grpcArtistService.getArtist(request, observer);
+
+        verify(observer).onNext(argThat(resp -> resp.getName().equals("John")));
+        verify(artistFieldRepository).findById(id, EnumSet.of(ArtistField.NAME));
+    }
+
+    @Test
+    void shouldRejectUnknownReadMaskPath() {
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        ArtistRequest request = ArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(UUID.randomUUID()))
+                .setReadMask(FieldMask.newBuilder().addPaths("portrait"))
+                .build();
+
+        grpcArtistService.getArtist(request, observer);
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.INVALID_ARGUMENT
+        ));
+        verifyNoInteractions(artistFieldRepository);
+    }
+
     @Test
     void shouldReturnNotFoundIfArtistNotExist() {
         UUID id = UUID.randomUUID();
-        when(artistRepository.findById(id)).thenReturn(Optional.empty());
+        when(artistFieldRepository.findById(eq(id), any())).thenReturn(Optional.empty());
 
         StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
         ArtistRequest request = ArtistRequest.newBuilder()
@@ -78,8 +150,9 @@ class GrpcArtistServiceTest {
         entity2.setBiography("Bio2");
         entity2.setPhoto(new byte[]{2});
 
-        when(artistRepository.findAllByNameContainsIgnoreCase(eq(""), any()))
-                .thenReturn(new org.springframework.data.domain.PageImpl<>(List.of(entity1, entity2)));
+        when(artistRepository.findAllBy(any(Pageable.class)))
+                .thenReturn(new org.springframework.data.domain.PageImpl<>(List.of(summaryOf(entity1), summaryOf(entity2))));
+        when(artistCountCache.count("")).thenReturn(new CountCache.Total(2, false));
 
         StreamObserver<AllArtistResponse> observer = mock(StreamObserver.class);
         AllArtistRequest request = AllArtistRequest.newBuilder()
@@ -97,12 +170,121 @@ class GrpcArtistServiceTest {
         verify(observer).onCompleted();
     }
 
+    @Test
+    void shouldSearchArtistsByEveryWordPrefix() {
+        ArtistEntity entity = new ArtistEntity();
+        entity.setId(UUID.randomUUID());
+        entity.setName("Leonardo da Vinci");
+        entity.setBiography("Bio");
+        entity.setPhoto(new byte[]{1});
+
+        when(artistRepository.searchByName(eq("+leo* +da*"), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(summaryOf(entity))));
+
+        StreamObserver<AllArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.getAllArtist(AllArtistRequest.newBuilder().setName(" leo, da+").setSize(10).build(), observer);
+
+        verify(observer).onNext(argThat(resp ->
+                resp.getArtistsCount() == 1 &&
+                        resp.getArtists(0).getName().equals("Leonardo da Vinci")
+        ));
+        verify(artistRepository, never()).findAllBy(any(Pageable.class));
+    }
+
+    @Test
+    void shouldListArtistsByKeysetWithNextPageToken() {
+        ArtistEntity first = new ArtistEntity();
+        first.setId(UUID.randomUUID());
+        first.setName("Artist1");
+        first.setBiography("Bio1");
+        first.setPhoto(new byte[]{1});
+
+        ArtistEntity second = new ArtistEntity();
+        second.setId(UUID.randomUUID());
+        second.setName("Artist2");
+        second.setBiography("Bio2");
+        second.setPhoto(new byte[]{2});
+
+        when(artistRepository.findPageAfter(null, 2)).thenReturn(List.of(summaryOf(first), summaryOf(second)));
+
+        StreamObserver<AllArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.getAllArtist(AllArtistRequest.newBuilder().setSize(1).setPageToken("").build(), observer);
+
+        verify(observer).onNext(argThat(resp ->
+                resp.getArtistsCount() == 1 &&
+                        resp.getArtists(0).getName().equals("Artist1") &&
+                        first.getId().equals(PageToken.decode(resp.getNextPageToken()))
+        ));
+        verify(artistRepository, never()).findAllBy(any(Pageable.class));
+        verify(artistCountCache, never()).count(any());
+    }
+
+    @Test
+    void shouldReturnSmallPhotoVariantInArtistList() {
+        ArtistEntity withThumbnail = new ArtistEntity();
+        withThumbnail.setId(UUID.randomUUID());
+        withThumbnail.setName("Artist1");
+        withThumbnail.setBiography("Bio1");
+        withThumbnail.setPhoto(new byte[]{1});
+
+        ArtistEntity withoutThumbnail = new ArtistEntity();
+        withoutThumbnail.setId(UUID.randomUUID());
+        withoutThumbnail.setName("Artist2");
+        withoutThumbnail.setBiography("Bio2");
+        withoutThumbnail.setPhoto(new byte[]{2});
+
+        when(artistRepository.findAllBy(any(Pageable.class)))
+                .thenReturn(new org.springframework.data.domain.PageImpl<>(List.of(summaryOf(withThumbnail), summaryOf(withoutThumbnail))));
+        when(artistThumbnailStore.load(List.of(withThumbnail.getId(), withoutThumbnail.getId()), ImageVariant.SMALL))
+                .thenReturn(Map.of(withThumbnail.getId(), Image.newBuilder()
+                        .setMimeType("image/jpeg")
+                        .setData(ByteString.copyFrom(new byte[]{9}))
+                        .build()));
+
+        StreamObserver<AllArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.getAllArtist(AllArtistRequest.newBuilder().setName("").setSize(10).build(), observer);
+
+        verify(observer).onNext(argThat(resp ->
+                resp.getArtists(0).getPhoto().getData().equals(ByteString.copyFrom(new byte[]{9})) &&
+                        resp.getArtists(0).getPhoto().getMimeType().equals("image/jpeg") &&
+                        !resp.getArtists(1).hasPhoto()
+        ));
+        verify(artistThumbnailStore).generate(withoutThumbnail.getId());
+        verify(artistThumbnailStore, never()).generate(withThumbnail.getId());
+        verify(artistRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void shouldReadNoPhotoForSummaryView() {
+        ArtistEntity entity = new ArtistEntity();
+        entity.setId(UUID.randomUUID());
+        entity.setName("Artist1");
+        entity.setBiography("Bio1");
+
+        when(artistRepository.findAllBy(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(summaryOf(entity))));
+
+        StreamObserver<AllArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.getAllArtist(AllArtistRequest.newBuilder()
+                .setSize(10)
+                .setView(ListView.LIST_VIEW_SUMMARY)
+                .build(), observer);
+
+        verify(observer).onNext(argThat(resp ->
+                resp.getArtistsCount() == 1 &&
+                        resp.getArtists(0).getName().equals("Artist1") &&
+                        !resp.getArtists(0).hasPhoto()
+        ));
+        verifyNoInteractions(artistThumbnailStore);
+        verify(artistRepository, never()).findAllById(any());
+    }
+
     @Test
     void shouldAddArtist() {
         AddArtistRequest addRequest = AddArtistRequest.newBuilder()
                 .setName("New Artist")
                 .setBiography("New Bio")
-                .setPhoto(ByteString.copyFrom(new byte[]{10}))
+                .setPhoto(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[]{10})))
                 .build();
 
         ArtistEntity savedEntity = new ArtistEntity();
@@ -118,23 +300,23 @@ class GrpcArtistServiceTest {
 
         verify(observer).onNext(any(ArtistResponse.class));
         verify(observer).onCompleted();
+        verify(artistThumbnailStore).refresh(savedEntity.getId());
+        verify(artistCountCache).invalidate();
     }
 
     @Test
     void shouldUpdateArtist() {
         UUID id = UUID.randomUUID();
 
-        ArtistEntity existingEntity = new ArtistEntity();
-        existingEntity.setId(id);
-        existingEntity.setName("Old Name");
-
-        when(artistRepository.findById(id)).thenReturn(Optional.of(existingEntity));
-        when(artistRepository.save(any())).thenReturn(existingEntity);
+        when(artistRepository.updateWithPhoto(eq(id), eq("Updated Name"), eq("Updated Bio"), any(), eq("image/png"), isNull()))
+                .thenReturn(1);
+        when(artistFieldRepository.findById(id, EnumSet.noneOf(ArtistField.class)))
+                .thenReturn(Optional.of(ArtistResponse.newBuilder().setUuid(Uuids.toGrpc(id)).setVersion(1).build()));
 
         AddArtistRequest artistData = AddArtistRequest.newBuilder()
                 .setName("Updated Name")
                 .setBiography("Updated Bio")
-                .setPhoto(ByteString.copyFrom(new byte[]{1}))
+                .setPhoto(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[]{1})))
                 .build();
 
         UpdateArtistRequest request = UpdateArtistRequest.newBuilder()
@@ -145,29 +327,244 @@ class GrpcArtistServiceTest {
         StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
         grpcArtistService.updateArtist(request, observer);
 
-        verify(observer).onNext(any(ArtistResponse.class));
+        verify(observer).onNext(argThat(response -> response.getName().equals("Updated Name")
+                && response.getPhoto().getData().size() == 1
+                && response.getVersion() == 1));
         verify(observer).onCompleted();
+        verify(artistRepository, never()).findById(any());
+        verify(artistRepository, never()).save(any());
+        verify(artistThumbnailStore).refresh(id);
+    }
+
+    @Test
+    void shouldKeepPhotoOnConditionalUpdate() {
+        UUID id = UUID.randomUUID();
+        Image photo = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[]{7})).build();
+
+        when(artistRepository.updateDetails(id, "Updated Name", "Updated Bio", 3L)).thenReturn(1);
+        when(artistFieldRepository.findById(id, EnumSet.of(ArtistField.PHOTO)))
+                .thenReturn(Optional.of(ArtistResponse.newBuilder().setUuid(Uuids.toGrpc(id)).setPhoto(photo).setVersion(4).build()));
+
+        UpdateArtistRequest request = UpdateArtistRequest.newBuilder()
+                .setId(ByteString.copyFromUtf8(id.toString()))
+                .setArtistData(AddArtistRequest.newBuilder()
+                        .setName("Updated Name")
+                        .setBiography("Updated Bio")
+                        .build())
+                .setExpectedVersion(3)
+                .build();
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.updateArtist(request, observer);
+
+        verify(observer).onNext(argThat(response -> response.getVersion() == 4 && response.getPhoto().equals(photo)));
+        verify(artistRepository, never()).updateWithPhoto(any(), any(), any(), any(), any(), any());
+        verify(artistThumbnailStore, never()).refresh(any());
+    }
+
+    @Test
+    void shouldAbortUpdateOnVersionMismatch() {
+        UUID id = UUID.randomUUID();
+
+        when(artistRepository.updateDetails(id, "Updated", "Bio", 3L)).thenReturn(0);
+        when(artistRepository.findVersionById(id)).thenReturn(Optional.of(5L));
+
+        UpdateArtistRequest request = UpdateArtistRequest.newBuilder()
+                .setId(ByteString.copyFromUtf8(id.toString()))
+                .setArtistData(AddArtistRequest.newBuilder()
+                        .setName("Updated")
+                        .setBiography("Bio")
+                        .build())
+                .setExpectedVersion(3)
+                .build();
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.updateArtist(request, observer);
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.ABORTED
+        ));
+        verify(artistCountCache, never()).invalidate();
     }
 
     @Test
     void shouldReturnNotFoundOnUpdateIfIdMissing() {
         UUID id = UUID.randomUUID();
 
-        when(artistRepository.findById(id)).thenReturn(Optional.empty());
+        when(artistRepository.findVersionById(id)).thenReturn(Optional.empty());
 
         UpdateArtistRequest request = UpdateArtistRequest.newBuilder()
                 .setId(ByteString.copyFromUtf8(id.toString()))
                 .setArtistData(AddArtistRequest.newBuilder()
                         .setName("Updated")
                         .setBiography("Bio")
-                        .setPhoto(ByteString.copyFrom(new byte[]{1}))
+                        .setPhoto(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[]{1})))
                         .build())
                 .build();
 
         StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
         grpcArtistService.updateArtist(request, observer);
 
-        verify(observer).onError(any());
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.NOT_FOUND
+        ));
+        verify(artistThumbnailStore, never()).refresh(any());
+    }
+
+    @Test
+    void shouldPatchOnlyMaskedFields() {
+        UUID id = UUID.randomUUID();
+        Image photo = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[]{7})).build();
+
+        when(artistFieldRepository.patch(eq(id), argThat(values -> values.getName().equals("Patched Name")),
+                eq(EnumSet.of(ArtistField.NAME)), isNull()))
+                .thenReturn(1);
+        when(artistFieldRepository.findById(id, EnumSet.of(ArtistField.BIOGRAPHY, ArtistField.PHOTO)))
+                .thenReturn(Optional.of(ArtistResponse.newBuilder()
+                        .setUuid(Uuids.toGrpc(id))
+                        .setBiography("Old Bio")
+                        .setPhoto(photo)
+                        .setVersion(2)
+                        .build()));
+
+        PatchArtistRequest request = PatchArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .setArtistData(AddArtistRequest.newBuilder().setName("Patched Name"))
+                .setUpdateMask(FieldMask.newBuilder().addPaths("name"))
+                .build();
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.patchArtist(request, observer);
+
+        verify(observer).onNext(argThat(response -> response.getName().equals("Patched Name")
+                && response.getBiography().equals("Old Bio")
+                && response.getPhoto().equals(photo)
+                && response.getVersion() == 2));
+        verify(observer).onCompleted();
+        verify(artistThumbnailStore, never()).refresh(any());
+        verify(artistCountCache).invalidate();
+    }
+
+    @Test
+    void shouldRejectPatchWithoutUpdateMask() {
+        PatchArtistRequest request = PatchArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(UUID.randomUUID()))
+                .setArtistData(AddArtistRequest.newBuilder().setName("Patched Name"))
+                .build();
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.patchArtist(request, observer);
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.INVALID_ARGUMENT
+        ));
+        verifyNoInteractions(artistFieldRepository);
+    }
+
+    @Test
+    void shouldNotCopyPhotoBetweenMessageAndEntity() {
+        when(artistRepository.save(any())).thenAnswer(invocation -> {
+            ArtistEntity entity = invocation.getArgument(0);
+            entity.setId(UUID.randomUUID());
+            return entity;
+        });
+        // bytes parsed off the wire are backed by one array of their own, as this copy is
+        AddArtistRequest request = AddArtistRequest.newBuilder()
+                .setName("New Artist")
+                .setBiography("New Bio")
+                .setPhoto(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[PHOTO_SIZE])))
+                .build();
+        grpcArtistService.addArtist(request, mock(StreamObserver.class));
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        long allocated = allocatedBytes(() -> grpcArtistService.addArtist(request, observer));
+
+        assertTrue(allocated < PHOTO_SIZE / 2, "expected no copy of the photo, allocated " + allocated + " bytes");
+        verify(observer).onNext(argThat(resp -> resp.getPhoto().getData().size() == PHOTO_SIZE));
+    }
+
+    @Test
+    void shouldCopyUploadedPhotoChunksOnce() {
+        when(artistRepository.save(any())).thenAnswer(invocation -> {
+            ArtistEntity entity = invocation.getArgument(0);
+            entity.setId(UUID.randomUUID());
+            return entity;
+        });
+        UploadArtistRequest artist = UploadArtistRequest.newBuilder()
+                .setArtist(UpdateArtistRequest.newBuilder()
+                        .setArtistData(AddArtistRequest.newBuilder()
+                                .setName("New Artist")
+                                .setBiography("New Bio")
+                                .setPhoto(Image.newBuilder().setMimeType("image/png"))))
+                .build();
+        List<UploadArtistRequest> chunks = List.of(
+                UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[PHOTO_SIZE / 2])).build(),
+                UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[PHOTO_SIZE / 2])).build()
+        );
+        upload(artist, chunks, mock(StreamObserver.class));
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        long allocated = allocatedBytes(() -> upload(artist, chunks, observer));
+
+        assertTrue(allocated >= PHOTO_SIZE && allocated < 2L * PHOTO_SIZE,
+                "expected exactly one copy of the photo, allocated " + allocated + " bytes");
+        verify(observer).onNext(argThat(resp -> resp.getPhoto().getData().size() == PHOTO_SIZE));
+    }
+
+    @Test
+    void shouldJoinUploadedPhotoChunksIntoNewArtist() {
+        ArgumentCaptor<ArtistEntity> captor = ArgumentCaptor.forClass(ArtistEntity.class);
+        when(artistRepository.save(captor.capture())).thenAnswer(invocation -> {
+            ArtistEntity entity = invocation.getArgument(0);
+            entity.setId(UUID.randomUUID());
+            return entity;
+        });
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        StreamObserver<UploadArtistRequest> requestObserver = grpcArtistService.uploadArtist(observer);
+        requestObserver.onNext(UploadArtistRequest.newBuilder()
+                .setArtist(UpdateArtistRequest.newBuilder()
+                        .setArtistData(AddArtistRequest.newBuilder()
+                                .setName("New Artist")
+                                .setBiography("New Bio")
+                                .setPhoto(Image.newBuilder().setMimeType("image/png"))))
+                .build());
+        requestObserver.onNext(UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[]{1, 2})).build());
+        requestObserver.onNext(UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[]{3})).build());
+        requestObserver.onCompleted();
+
+        assertArrayEquals(new byte[]{1, 2, 3}, captor.getValue().getPhoto());
+        assertEquals("image/png", captor.getValue().getPhotoMimeType());
+        verify(observer).onNext(any(ArtistResponse.class));
+        verify(observer).onCompleted();
+    }
+
+    @Test
+    void shouldRejectUploadedPhotoOverMaxSize() {
+        GrpcArtistService service = new GrpcArtistService(artistRepository, artistFieldRepository, artistThumbnailStore,
+                artistCountCache, TransactionOperations.withoutTransaction(), DataSize.ofBytes(4), 2);
+
+        StreamObserver<ArtistResponse> observer = mock(StreamObserver.class);
+        StreamObserver<UploadArtistRequest> requestObserver = service.uploadArtist(observer);
+        requestObserver.onNext(UploadArtistRequest.newBuilder()
+                .setArtist(UpdateArtistRequest.newBuilder()
+                        .setArtistData(AddArtistRequest.newBuilder().setName("New Artist")))
+                .build());
+        requestObserver.onNext(UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[3])).build());
+        requestObserver.onNext(UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[2])).build());
+        requestObserver.onNext(UploadArtistRequest.newBuilder().setPhotoChunk(ByteString.copyFrom(new byte[2])).build());
+        requestObserver.onCompleted();
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.RESOURCE_EXHAUSTED
+        ));
+        verify(observer, never()).onNext(any());
+        verify(observer, never()).onCompleted();
+        verify(artistRepository, never()).save(any());
     }
 
     @Test
@@ -175,23 +572,16 @@ class GrpcArtistServiceTest {
         UUID id1 = UUID.randomUUID();
         UUID id2 = UUID.randomUUID();
 
-        ArtistEntity a1 = new ArtistEntity();
-        a1.setId(id1);
-        a1.setName("A1");
-        a1.setBiography("Bio1");
-        a1.setPhoto(new byte[]{1});
-
-        ArtistEntity a2 = new ArtistEntity();
-        a2.setId(id2);
-        a2.setName("A2");
-        a2.setBiography("Bio2");
-        a2.setPhoto(new byte[]{2});
+        ArtistResponse a1 = ArtistResponse.newBuilder().setUuid(Uuids.toGrpc(id1)).setName("A1").build();
+        ArtistResponse a2 = ArtistResponse.newBuilder().setUuid(Uuids.toGrpc(id2)).setName("A2").build();
 
-        when(artistRepository.findAllByIdIn(Set.of(id1, id2))).thenReturn(List.of(a1, a2));
+        when(artistFieldRepository.findAllByIdIn(Set.of(id1, id2), EnumSet.allOf(ArtistField.class)))
+                .thenReturn(List.of(a1, a2));
 
+        // a client midway through the rollout may send both forms in one request
         ArtistIdsRequest request = ArtistIdsRequest.newBuilder()
                 .addId(ByteString.copyFromUtf8(id1.toString()))
-                .addId(ByteString.copyFromUtf8(id2.toString()))
+                .addUuid(Uuids.toGrpc(id2))
                 .build();
 
         StreamObserver<AllArtistByIdsResponse> observer = mock(StreamObserver.class);
@@ -200,4 +590,169 @@ class GrpcArtistServiceTest {
         verify(observer).onNext(argThat(resp -> resp.getArtistCount() == 2));
         verify(observer).onCompleted();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldListMaskedFieldsWithoutReadingPhotos() {
+        ArtistEntity entity = new ArtistEntity();
+        entity.setId(UUID.randomUUID());
+        entity.setName("Artist1");
+        entity.setBiography("Bio1");
+
+        when(artistRepository.findAllBy(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(summaryOf(entity))));
+
+        StreamObserver<AllArtistResponse> observer = mock(StreamObserver.class);
+        grpcArtistService.getAllArtist(AllArtistRequest.newBuilder()
+                .setSize(10)
+                .setReadMask(FieldMask.newBuilder().addPaths("name"))
+                .build(), observer);
+
+        verify(observer).onNext(argThat(resp ->
+                resp.getArtists(0).getName().equals("Artist1") &&
+                        resp.getArtists(0).getBiography().isEmpty() &&
+                        !resp.getArtists(0).hasPhoto()
+        ));
+        verifyNoInteractions(artistThumbnailStore);
+    }
+
+    private static ArtistSummary summaryOf(ArtistEntity entity) {
+        return new ArtistSummary() {
+            @Override
+            public UUID getId() {
+                return entity.getId();
+            }
+
+            @Override
+            public String getName() {
+                return entity.getName();
+            }
+
+            @Override
+            public String getBiography() {
+                return entity.getBiography();
+            }
+
+            @Override
+            public long getVersion() {
+                return entity.getVersion();
+            }
+        };
+    }
+
+    @Test
+    void shouldImportArtistsInBatchesAndRejectItemsWithoutName() {
+        UUID keptId = UUID.randomUUID();
+        StreamObserver<ImportResponse> observer = mock(StreamObserver.class);
+
+        StreamObserver<ImportArtistRequest> requestObserver = grpcArtistService.importArtists(observer);
+        requestObserver.onNext(importRequest("Monet").setUuid(Uuids.toGrpc(keptId)).build());
+        requestObserver.onNext(importRequest(" ").build());
+        requestObserver.onNext(importRequest("Manet").build());
+        requestObserver.onNext(importRequest("Degas").build());
+        requestObserver.onCompleted();
+
+        ArgumentCaptor<List<ArtistEntity>> batches = ArgumentCaptor.forClass(List.class);
+        verify(artistFieldRepository, times(2)).insertAll(batches.capture());
+        assertEquals(List.of(2, 1), batches.getAllValues().stream().map(List::size).toList());
+        assertEquals(keptId, batches.getAllValues().getFirst().getFirst().getId());
+
+        ArgumentCaptor<ImportResponse> response = ArgumentCaptor.forClass(ImportResponse.class);
+        verify(observer).onNext(response.capture());
+        verify(observer).onCompleted();
+        assertEquals(3, response.getValue().getImported());
+        assertEquals(List.of(0, 1, 2, 3), response.getValue().getResultsList().stream().map(ImportResult::getIndex).toList());
+        assertEquals("Artist name cannot be empty", response.getValue().getResults(1).getError());
+        assertEquals(keptId, Uuids.fromGrpc(response.getValue().getResults(0).getUuid()));
+        verify(artistThumbnailStore, times(3)).generate(any());
+    }
+
+    @Test
+    void shouldRetryFailedImportBatchItemByItem() {
+        doThrow(new IllegalStateException("Duplicate entry")).when(artistFieldRepository)
+                .insertAll(argThat(artists -> artists.size() == 2 || artists.getFirst().getName().equals("Manet")));
+        StreamObserver<ImportResponse> observer = mock(StreamObserver.class);
+
+        StreamObserver<ImportArtistRequest> requestObserver = grpcArtistService.importArtists(observer);
+        requestObserver.onNext(importRequest("Monet").build());
+        requestObserver.onNext(importRequest("Manet").build());
+        requestObserver.onCompleted();
+
+        ArgumentCaptor<ImportResponse> response = ArgumentCaptor.forClass(ImportResponse.class);
+        verify(observer).onNext(response.capture());
+        assertEquals(1, response.getValue().getImported());
+        assertTrue(response.getValue().getResults(0).getError().isEmpty());
+        assertEquals("Duplicate entry", response.getValue().getResults(1).getError());
+    }
+
+    @Test
+    void shouldStreamExportedArtistsOnceClientIsReady() {
+        List<ImportArtistRequest> artists = List.of(importRequest("Monet").build(), importRequest("Manet").build());
+        doAnswer(invocation -> {
+            Consumer<ImportArtistRequest> consumer = invocation.getArgument(0);
+            artists.forEach(consumer);
+            return null;
+        }).when(artistFieldRepository).exportAll(any());
+        AtomicBoolean ready = new AtomicBoolean();
+        ServerCallStreamObserver<ImportArtistRequest> observer = mock(ServerCallStreamObserver.class);
+        when(observer.isReady()).thenAnswer(invocation -> ready.get());
+
+        grpcArtistService.exportArtists(Empty.getDefaultInstance(), observer);
+
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(observer).setOnReadyHandler(onReady.capture());
+        verify(observer, timeout(1000).atLeastOnce()).isReady();
+        verify(observer, never()).onNext(any());
+
+        ready.set(true);
+        onReady.getValue().run();
+
+        InOrder inOrder = inOrder(observer);
+        inOrder.verify(observer, timeout(1000)).onNext(artists.get(0));
+        inOrder.verify(observer, timeout(1000)).onNext(artists.get(1));
+        inOrder.verify(observer, timeout(1000)).onCompleted();
+    }
+
+    @Test
+    void shouldStopExportOnceClientCancels() {
+        doAnswer(invocation -> {
+            Consumer<ImportArtistRequest> consumer = invocation.getArgument(0);
+            consumer.accept(importRequest("Monet").build());
+            return null;
+        }).when(artistFieldRepository).exportAll(any());
+        ServerCallStreamObserver<ImportArtistRequest> observer = mock(ServerCallStreamObserver.class);
+        when(observer.isReady()).thenReturn(false);
+        when(observer.isCancelled()).thenReturn(true);
+
+        grpcArtistService.exportArtists(Empty.getDefaultInstance(), observer);
+
+        verify(observer, timeout(1000)).isCancelled();
+        verify(observer, after(100).never()).onNext(any());
+        verify(observer, never()).onCompleted();
+        verify(observer, never()).onError(any());
+    }
+
+    private static ImportArtistRequest.Builder importRequest(String name) {
+        return ImportArtistRequest.newBuilder()
+                .setArtistData(AddArtistRequest.newBuilder()
+                        .setName(name)
+                        .setBiography("Impressionist")
+                        .setPhoto(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("photo"))));
+    }
+
+    private void upload(UploadArtistRequest artist,
+                        List<UploadArtistRequest> chunks,
+                        StreamObserver<ArtistResponse> observer) {
+        StreamObserver<UploadArtistRequest> requestObserver = grpcArtistService.uploadArtist(observer);
+        requestObserver.onNext(artist);
+        chunks.forEach(requestObserver::onNext);
+        requestObserver.onCompleted();
+    }
+
+    private static long allocatedBytes(Runnable action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long before = threads.getCurrentThreadAllocatedBytes();
+        action.run();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+}
@@ -29,11 +29,14 @@ public class ArtistEntity {
     @Column(name = "photo", columnDefinition = "bytea", nullable = false)
     private byte[] photo;
 
+    @Column(name = "photo_mime_type", nullable = false, length = 127)
+    private String photoMimeType;
+
     public static ArtistEntity fromAddArtistGrpcMessage(AddArtistRequest request) {
         ArtistEntity entity = new ArtistEntity();
         entity.setName(request.getName());
         entity.setBiography(request.getBiography());
-        entity.setPhoto(request.getPhoto().toByteArray());
+        entity.setPhoto(request.getPhoto().getData().toByteArray());
         return entity;
     }
 
@@ -31,6 +31,9 @@ public class MuseumEntity {
     @Column(name = "photo", columnDefinition = "bytea", nullable = false)
     private byte[] photo;
 
+    @Column(name = "photo_mime_type", nullable = false, length = 127)
+    private String photoMimeType;
+
     @Column(name = "geo_id", nullable = false)
     private UUID geoId;
 
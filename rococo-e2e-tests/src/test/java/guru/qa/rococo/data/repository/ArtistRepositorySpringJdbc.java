@@ -19,11 +19,12 @@ public class ArtistRepositorySpringJdbc implements ArtistRepository {
             artist.setId(UUID.randomUUID());
         }
         jdbcTemplate.update(
-                "INSERT INTO artist (id, name, biography, photo) VALUES (UUID_TO_BIN(?), ?, ?, ?)",
+                "INSERT INTO artist (id, name, biography, photo, photo_mime_type) VALUES (UUID_TO_BIN(?), ?, ?, ?, ?)",
                 artist.getId().toString(),
                 artist.getName(),
                 artist.getBiography(),
-                artist.getPhoto()
+                artist.getPhoto(),
+                artist.getPhotoMimeType()
         );
     }
 
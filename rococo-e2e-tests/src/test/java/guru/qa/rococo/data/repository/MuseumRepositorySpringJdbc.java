@@ -19,14 +19,15 @@ public class MuseumRepositorySpringJdbc implements MuseumRepository {
         }
 
         jdbcTemplate.update(
-                "INSERT INTO museum (id, title, description, city, geo_id, photo) " +
-                        "VALUES (UUID_TO_BIN(?), ?, ?, ?, UUID_TO_BIN(?), ?)",
+                "INSERT INTO museum (id, title, description, city, geo_id, photo, photo_mime_type) " +
+                        "VALUES (UUID_TO_BIN(?), ?, ?, ?, UUID_TO_BIN(?), ?, ?)",
                 museum.getId().toString(),
                 museum.getTitle(),
                 museum.getDescription(),
                 museum.getCity(),
                 museum.getGeoId().toString(),
-                museum.getPhoto());
+                museum.getPhoto(),
+                museum.getPhotoMimeType());
 
     }
 
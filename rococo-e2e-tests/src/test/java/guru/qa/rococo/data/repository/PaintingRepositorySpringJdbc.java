@@ -17,15 +17,21 @@ public class PaintingRepositorySpringJdbc implements PaintingRepository {
             painting.setId(UUID.randomUUID()); // Генерируем ID заранее
         }
 
+        jdbcTemplate.update(
+                "INSERT IGNORE INTO painting_image (hash, content) VALUES (SHA2(?, 256), ?)",
+                painting.getContent(),
+                painting.getContent()
+        );
+
         final String sql = """
                 INSERT INTO painting (
                     id,
                     title,
                     description,
-                    content,
+                    content_hash,
                     museum_id,
                     artist_id
-                ) VALUES (UUID_TO_BIN(?), ?, ?, ?, UUID_TO_BIN(?), UUID_TO_BIN(?))
+                ) VALUES (UUID_TO_BIN(?), ?, ?, SHA2(?, 256), UUID_TO_BIN(?), UUID_TO_BIN(?))
                 """;
 
         jdbcTemplate.update(sql,
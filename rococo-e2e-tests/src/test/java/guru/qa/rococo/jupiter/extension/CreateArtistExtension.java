@@ -58,12 +58,12 @@ public class CreateArtistExtension implements BeforeEachCallback, ParameterResol
 
         String name = annotation.name().isEmpty() ? RandomDataUtils.randomUsername() : annotation.name();
         String biography = annotation.biography().isEmpty() ? RandomDataUtils.randomSentence(15) : annotation.biography();
-        String photoBase64 = ImageUtils.convertImageToBase64(IMAGE_PATH);
 
         ArtistEntity artist = new ArtistEntity();
         artist.setName(name);
         artist.setBiography(biography);
-        artist.setPhoto(photoBase64.getBytes());
+        artist.setPhoto(ImageUtils.readImageAsByteArray(IMAGE_PATH));
+        artist.setPhotoMimeType(ImageUtils.JPEG_MIME_TYPE);
 
         artistRepository.createArtistForTest(artist);
         return artist;
@@ -31,7 +31,7 @@ public class DBCreateMuseumExtension implements BeforeEachCallback, ParameterRes
 
     // Путь к тестовому изображению для музея
     private static final String IMAGE_PATH = "img/artist.jpg";
-    String photoBase64 = ImageUtils.convertImageToBase64(IMAGE_PATH);
+    byte[] photo = ImageUtils.readImageAsByteArray(IMAGE_PATH);
 
     @Override
     public void beforeEach(ExtensionContext context) {
@@ -82,7 +82,8 @@ public class DBCreateMuseumExtension implements BeforeEachCallback, ParameterRes
         museum.setDescription(getDescription(annotation));
         museum.setCity(getCity(annotation));
         museum.setGeoId(getCountryId(annotation, geoRepository));
-        museum.setPhoto(photoBase64.getBytes());
+        museum.setPhoto(photo);
+        museum.setPhotoMimeType(ImageUtils.JPEG_MIME_TYPE);
 
         repository.createMuseumForTest(museum);
         return museum;
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.AddArtistRequest;
 import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.Image;
 import guru.qa.rococo.data.entity.ArtistEntity;
 
 import java.util.Arrays;
@@ -25,14 +26,14 @@ public record ArtistJson(
                fromString(response.getId().toStringUtf8()),
         response.getName(),
         response.getBiography(),
-               response.getPhoto().toByteArray());
+               response.getPhoto().getData().toByteArray());
     }
 
     public static AddArtistRequest toGrpcMessage(ArtistJson artist) {
         return AddArtistRequest.newBuilder()
                 .setName(artist.name())
                 .setBiography(artist.biography())
-                .setPhoto(ByteString.copyFrom(artist.photo()))
+                .setPhoto(Image.newBuilder().setData(ByteString.copyFrom(artist.photo())))
                 .build();
     }
 
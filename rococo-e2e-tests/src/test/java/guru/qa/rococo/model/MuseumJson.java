@@ -1,9 +1,9 @@
 package guru.qa.rococo.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.MuseumResponse;
 import guru.qa.rococo.data.entity.MuseumEntity;
+import guru.qa.rococo.utils.ImageUtils;
 
 import java.util.UUID;
 
@@ -29,7 +29,7 @@ public record MuseumJson(
                 UUID.fromString(museumResponse.getId().toStringUtf8()),
                 museumResponse.getTitle(),
                 museumResponse.getDescription(),
-                museumResponse.getPhoto().toStringUtf8(),
+                ImageUtils.toDataUrl(museumResponse.getPhoto().getMimeType(), museumResponse.getPhoto().getData().toByteArray()),
                 geoJson);
     }
 
@@ -38,7 +38,7 @@ public record MuseumJson(
                 entity.getId(),
                 entity.getTitle(),
                 entity.getDescription(),
-                ByteString.copyFrom(entity.getPhoto()).toStringUtf8(),
+                ImageUtils.toDataUrl(entity.getPhotoMimeType(), entity.getPhoto()),
                 new GeoJson(entity.getCity(), new CountryJson(entity.getGeoId(), null))
         );
     }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.PaintingResponse;
 import guru.qa.rococo.data.entity.PaintingEntity;
+import guru.qa.rococo.utils.ImageUtils;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -44,7 +45,10 @@ public class PaintingJson {
         paintingJson.setId(UUID.fromString(paintingResponse.getId().toStringUtf8()));
         paintingJson.setTitle(paintingResponse.getTitle());
         paintingJson.setDescription(paintingResponse.getDescription());
-        paintingJson.setContent(paintingResponse.getContent().toStringUtf8());
+        paintingJson.setContent(ImageUtils.toDataUrl(
+                paintingResponse.getContent().getMimeType(),
+                paintingResponse.getContent().getData().toByteArray()
+        ));
         paintingJson.setArtist(artist);
         paintingJson.setMuseum(museum);
         return paintingJson;
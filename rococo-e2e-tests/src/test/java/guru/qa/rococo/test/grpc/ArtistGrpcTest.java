@@ -123,7 +123,7 @@ public class ArtistGrpcTest {
         AddArtistRequest request = AddArtistRequest.newBuilder()
                 .setName(newArtist.name())
                 .setBiography(newArtist.biography())
-                .setPhoto(ByteString.copyFrom(newArtist.photo())).build();
+                .setPhoto(Image.newBuilder().setData(ByteString.copyFrom(newArtist.photo()))).build();
 
         ArtistResponse response = artistStub.addArtist(request);
         ArtistJson createdArtist = fromGrpcMessage(response);
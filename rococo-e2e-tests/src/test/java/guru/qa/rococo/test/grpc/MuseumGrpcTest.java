@@ -61,7 +61,9 @@ public class MuseumGrpcTest {
                                 .setId(copyFromUtf8(UUID.randomUUID().toString()))
                                 .build())
                         .build())
-                .setPhoto(ByteString.copyFrom(new byte[]{1, 2, 3}))
+                .setPhoto(Image.newBuilder()
+                        .setMimeType("image/png")
+                        .setData(ByteString.copyFrom(new byte[]{1, 2, 3})))
                 .build();
 
         MuseumResponse response = museumStub.addMuseum(request);
@@ -88,7 +90,9 @@ public class MuseumGrpcTest {
                                         .setId(copyFromUtf8(UUID.randomUUID().toString()))
                                         .build())
                                 .build())
-                        .setPhoto(ByteString.copyFrom(new byte[]{4, 5, 6}))
+                        .setPhoto(Image.newBuilder()
+                                .setMimeType("image/png")
+                                .setData(ByteString.copyFrom(new byte[]{4, 5, 6})))
                         .build())
                 .build();
 
@@ -48,6 +48,7 @@ public class PaintingGrpcTest {
         String createdPaintingId = createdPainting.getId().toString();
         PaintingRequest request = PaintingRequest.newBuilder()
                 .setId(copyFromUtf8(createdPaintingId))
+                .setWithContent(true)
                 .build();
 
         final PaintingResponse paintingResponse = paintingStub.getPainting(request);
@@ -78,7 +79,9 @@ public class PaintingGrpcTest {
         AddPaintingRequest request = AddPaintingRequest.newBuilder()
                 .setTitle("Звездная ночь")
                 .setDescription("Знаменитая картина Ван Гога")
-                .setContent(ByteString.copyFrom(new byte[]{1, 2, 3}))
+                .setContent(Image.newBuilder()
+                        .setMimeType("image/png")
+                        .setData(ByteString.copyFrom(new byte[]{1, 2, 3})))
                 .setMuseumId(MuseumId.newBuilder()
                         .setId(copyFromUtf8(museum.id().toString()))
                         .build())
@@ -92,7 +95,12 @@ public class PaintingGrpcTest {
         assertNotNull(response.getId());
         assertEquals(request.getTitle(), response.getTitle());
         assertEquals(request.getDescription(), response.getDescription());
-        assertEquals(request.getContent(), response.getContent());
+        assertFalse(response.getContentHash().isEmpty());
+
+        PaintingContentResponse content = paintingStub.getPaintingContent(PaintingRequest.newBuilder()
+                .setId(response.getId())
+                .build());
+        assertEquals(request.getContent(), content.getContent());
     }
 
     @Test
@@ -106,7 +114,9 @@ public class PaintingGrpcTest {
                 .setPaintingData(AddPaintingRequest.newBuilder()
                         .setTitle("Обновленное название")
                         .setDescription("Новое описание")
-                        .setContent(ByteString.copyFrom(new byte[]{4, 5, 6}))
+                        .setContent(Image.newBuilder()
+                                .setMimeType("image/png")
+                                .setData(ByteString.copyFrom(new byte[]{4, 5, 6})))
                         .setMuseumId(MuseumId.newBuilder()
                                 .setId(copyFromUtf8(museum.id().toString()))
                                 .build())
@@ -7,12 +7,17 @@ import java.util.Objects;
 
 public class ImageUtils {
 
+    public static final String JPEG_MIME_TYPE = "image/jpeg";
+
     public static String convertImageToBase64(String filePath) {
-        byte[] fileContent = readImageAsByteArray(filePath);
-        return "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(fileContent);
+        return toDataUrl(JPEG_MIME_TYPE, readImageAsByteArray(filePath));
+    }
+
+    public static String toDataUrl(String mimeType, byte[] data) {
+        return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(data);
     }
 
-    private static byte[] readImageAsByteArray(String filePath) {
+    public static byte[] readImageAsByteArray(String filePath) {
         try (InputStream inputStream = Objects.requireNonNull(ImageUtils.class.getClassLoader().getResourceAsStream(filePath))) {
             return inputStream.readAllBytes();
         } catch (IOException e) {
@@ -0,0 +1,84 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.MuseumJson;
+import guru.qa.rococo.model.PaintingJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of attaching museums and artists to a page of paintings, every painting referencing its own museum and artist
+ * (the worst case for the join). {@code scan} is the former per-row linear search, {@code batchJoin} the map lookup.
+ * <p>
+ * Run with {@code ./gradlew :rococo-gateway:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchJoinBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int pageSize;
+
+    private List<PaintingJson> paintings;
+    private List<MuseumJson> museums;
+    private List<ArtistJson> artists;
+
+    @Setup
+    public void setUp() {
+        paintings = new ArrayList<>(pageSize);
+        museums = new ArrayList<>(pageSize);
+        artists = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            MuseumJson museum = new MuseumJson(UUID.randomUUID(), "Museum " + i, null, null, null, 0);
+            ArtistJson artist = new ArtistJson(UUID.randomUUID(), "Artist " + i, null, null, 0);
+            museums.add(museum);
+            artists.add(artist);
+
+            PaintingJson painting = new PaintingJson();
+            painting.setId(UUID.randomUUID());
+            painting.setMuseum(new MuseumJson(museum.id(), null, null, null, null, 0));
+            painting.setArtist(new ArtistJson(artist.id(), null, null, null, 0));
+            paintings.add(painting);
+        }
+        // the page arrives in a different order than the batch responses
+        Collections.reverse(museums);
+        Collections.reverse(artists);
+    }
+
+    @Benchmark
+    public List<PaintingJson> scan() {
+        for (PaintingJson painting : paintings) {
+            UUID museumId = painting.getMuseum().id();
+            museums.stream()
+                    .filter(museum -> museum.id().equals(museumId))
+                    .findFirst()
+                    .ifPresent(painting::setMuseum);
+            UUID artistId = painting.getArtist().id();
+            artists.stream()
+                    .filter(artist -> artist.id().equals(artistId))
+                    .findFirst()
+                    .ifPresent(painting::setArtist);
+        }
+        return paintings;
+    }
+
+    @Benchmark
+    public List<PaintingJson> batchJoin() {
+        BatchJoin.join(paintings, painting -> painting.getMuseum().id(), museums, MuseumJson::id, PaintingJson::setMuseum);
+        BatchJoin.join(paintings, painting -> painting.getArtist().id(), artists, ArtistJson::id, PaintingJson::setArtist);
+        return paintings;
+    }
+}
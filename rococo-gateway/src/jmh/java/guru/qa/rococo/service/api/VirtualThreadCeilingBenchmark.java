@@ -0,0 +1,132 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.grpc.rococo.grpc.ArtistRequest;
+import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.RococoArtistServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to serve a burst of concurrent gateway requests, each blocking on four sequential calls to a service that
+ * answers after {@value #SERVICE_LATENCY_MS} ms. {@code platform} is Tomcat's default pool of
+ * {@value #TOMCAT_MAX_THREADS} threads: past that many requests the burst should be served in waves. {@code virtual}
+ * is {@code spring.threads.virtual.enabled}: the burst should take about as long as one request until the services
+ * saturate.
+ * <p>
+ * {@code monitor} makes every call while holding a monitor of its own, as JDBC drivers with {@code synchronized}
+ * connections do: virtual threads then pin their carriers and the ceiling should fall to the number of cores.
+ * <p>
+ * Run with {@code ./gradlew :rococo-gateway:jmh}. The outcomes above are expectations, not measurements: no results
+ * are recorded yet, so note the hardware and JDK alongside any numbers added here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadCeilingBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int CALLS_PER_REQUEST = 4;
+    private static final long SERVICE_LATENCY_MS = 10;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"none", "monitor"})
+    private String lock;
+
+    @Param({"200", "1000", "5000"})
+    private int concurrentRequests;
+
+    private ScheduledExecutorService serviceLatency;
+    private Server server;
+    private ManagedChannel channel;
+    private RococoArtistServiceGrpc.RococoArtistServiceBlockingStub stub;
+    private ExecutorService requestThreads;
+    private volatile Object lastConnection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        serviceLatency = Executors.newSingleThreadScheduledExecutor();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new RococoArtistServiceGrpc.RococoArtistServiceImplBase() {
+                    @Override
+                    public void getArtist(ArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
+                        serviceLatency.schedule(() -> {
+                            responseObserver.onNext(ArtistResponse.getDefaultInstance());
+                            responseObserver.onCompleted();
+                        }, SERVICE_LATENCY_MS, TimeUnit.MILLISECONDS);
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        stub = RococoArtistServiceGrpc.newBlockingStub(channel);
+        requestThreads = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        requestThreads.shutdown();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        serviceLatency.shutdownNow();
+    }
+
+    @Benchmark
+    public int burst() throws InterruptedException, ExecutionException {
+        Callable<Integer> request = lock.equals("monitor") ? this::requestHoldingMonitor : this::request;
+        List<Future<Integer>> requests = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            requests.add(requestThreads.submit(request));
+        }
+        int served = 0;
+        for (Future<Integer> response : requests) {
+            served += response.get();
+        }
+        return served;
+    }
+
+    private int request() {
+        for (int i = 0; i < CALLS_PER_REQUEST; i++) {
+            stub.getArtist(ArtistRequest.getDefaultInstance());
+        }
+        return 1;
+    }
+
+    private int requestHoldingMonitor() {
+        Object connection = new Object();
+        // published, so the lock cannot be elided
+        lastConnection = connection;
+        synchronized (connection) {
+            return request();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package guru.qa.rococo.config;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the attempts gRPC makes per call as {@code grpc.client.attempts}, tagged with the method and whether the
+ * attempt is the first, a retry or hedge from the service config, or a transparent retry of a stream that never
+ * reached the service. The share of non-first attempts shows how much of the {@link GrpcServiceConfig} budget is
+ * being spent.
+ */
+final class CallAttemptsInterceptor implements ClientInterceptor {
+
+    static final String ATTEMPTS_METER = "grpc.client.attempts";
+
+    private final MeterRegistry meterRegistry;
+
+    CallAttemptsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions,
+                                                               Channel next) {
+        String methodName = method.getFullMethodName();
+        return next.newCall(method, callOptions.withStreamTracerFactory(new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                String attempt = info.isTransparentRetry()
+                        ? "transparent"
+                        : info.getPreviousAttempts() > 0 ? "retry" : "first";
+                Counter.builder(ATTEMPTS_METER)
+                        .description("gRPC call attempts, retries and hedges included")
+                        .tag("method", methodName)
+                        .tag("attempt", attempt)
+                        .register(meterRegistry)
+                        .increment();
+                return new ClientStreamTracer() {
+                };
+            }
+        }));
+    }
+}
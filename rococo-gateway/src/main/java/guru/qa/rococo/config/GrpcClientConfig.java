@@ -0,0 +1,116 @@
+package guru.qa.rococo.config;
+
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.PinningMonitor;
+import io.grpc.ClientInterceptor;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelConfigurer;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelFactory;
+import net.devh.boot.grpc.client.config.GrpcChannelsProperties;
+import net.devh.boot.grpc.client.interceptor.GlobalClientInterceptorRegistry;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class GrpcClientConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GrpcClientConfig.class);
+    private static final String POOL_PREFIX = "rococo-api.grpc-pool.";
+
+    /**
+     * Asks every service for compact ids, see {@link IdEncoding}. Requests always carry compact ids,
+     * so the services have to be rolled out with {@code rococo-uuid.proto} before the gateway.
+     */
+    @GrpcGlobalClientInterceptor
+    public ClientInterceptor idEncodingInterceptor() {
+        return IdEncoding.clientInterceptor();
+    }
+
+    @GrpcGlobalClientInterceptor
+    public ClientInterceptor callAttemptsInterceptor(MeterRegistry meterRegistry) {
+        return new CallAttemptsInterceptor(meterRegistry);
+    }
+
+    /**
+     * Deadlines, retries, hedging and their budget for every channel, see {@link GrpcServiceConfig}.
+     */
+    @Bean
+    public GrpcChannelConfigurer serviceConfigChannelConfigurer(Environment environment) {
+        Map<String, Object> serviceConfig = GrpcServiceConfig.create(Binder.get(environment));
+        LOG.info("### gRPC service config: {}", serviceConfig);
+        return (channelBuilder, name) -> channelBuilder
+                .defaultServiceConfig(serviceConfig)
+                .enableRetry();
+    }
+
+    /**
+     * With {@code spring.threads.virtual.enabled} Tomcat already handles each request on a virtual thread, on which
+     * blocking stubs park instead of holding a platform thread. This moves the async stubs' callbacks, and the
+     * {@link java.util.concurrent.CompletableFuture} stages chained on them, off gRPC's cached pool as well.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public GrpcChannelConfigurer virtualThreadChannelConfigurer() {
+        Executor executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-client-vt-", 0).factory());
+        return (channelBuilder, name) -> channelBuilder.executor(executor);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public PinningMonitor pinningMonitor(@Value("${rococo-api.pinning-threshold:20ms}") Duration threshold) {
+        return PinningMonitor.start(threshold, LOG::warn);
+    }
+
+    /**
+     * Gives every {@code @GrpcClient} {@code rococo-api.grpc-pool.size} connections, or
+     * {@code rococo-api.grpc-pool.clients.<name>.size} for that client, see {@link PooledChannel}.
+     * Takes the place of net.devh's own channel factory.
+     */
+    @Bean
+    public GrpcChannelFactory pooledGrpcChannelFactory(GrpcChannelsProperties properties,
+                                                       GlobalClientInterceptorRegistry globalClientInterceptorRegistry,
+                                                       List<GrpcChannelConfigurer> channelConfigurers,
+                                                       MeterRegistry meterRegistry,
+                                                       Environment environment,
+                                                       @Value("${rococo-api.grpc-pool.size:1}") int defaultPoolSize) {
+        return new PooledGrpcChannelFactory(
+                properties,
+                globalClientInterceptorRegistry,
+                channelConfigurers,
+                name -> environment.getProperty(POOL_PREFIX + "clients." + name + ".size", Integer.class, defaultPoolSize),
+                meterRegistry
+        );
+    }
+
+    /**
+     * HTTP/2 flow-control window of each connection, {@code rococo-api.grpc-pool.flow-control-window} or
+     * {@code rococo-api.grpc-pool.clients.<name>.flow-control-window}. Netty's 1MB keeps a single image response
+     * from being sent in one go; a larger window lets it through without waiting for window updates.
+     */
+    @Bean
+    public GrpcChannelConfigurer flowControlChannelConfigurer(Environment environment,
+                                                              @Value("${rococo-api.grpc-pool.flow-control-window:1MB}") DataSize defaultWindow) {
+        return (channelBuilder, name) -> {
+            if (channelBuilder instanceof NettyChannelBuilder netty) {
+                DataSize window = environment.getProperty(POOL_PREFIX + "clients." + name + ".flow-control-window", DataSize.class, defaultWindow);
+                netty.flowControlWindow(Math.toIntExact(window.toBytes()));
+            }
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package guru.qa.rococo.config;
+
+import guru.qa.grpc.rococo.grpc.RococoArtistServiceGrpc;
+import guru.qa.grpc.rococo.grpc.RococoGeoServiceGrpc;
+import guru.qa.grpc.rococo.grpc.RococoMuseumServiceGrpc;
+import guru.qa.grpc.rococo.grpc.RococoPaintingServiceGrpc;
+import guru.qa.grpc.rococo.grpc.RococoUserdataServiceGrpc;
+import io.grpc.MethodDescriptor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The gRPC service config every gateway channel starts with, built from {@code rococo-api.grpc-calls}:
+ * <ul>
+ *     <li>a deadline for every unary call, {@code deadline}, and for single methods, {@code deadlines};</li>
+ *     <li>retries with backoff for the reads in {@code retry.methods}, on {@code UNAVAILABLE} only;</li>
+ *     <li>hedging for the reads in {@code hedging.methods}: a second attempt goes out when the first has not answered
+ *     within {@code hedging.delay}, the first answer wins and the other attempt is cancelled;</li>
+ *     <li>retry throttling, {@code budget}: each failed attempt takes a token, each success returns
+ *     {@code token-ratio} of one, and below half of {@code max-tokens} no retries or hedges are sent.</li>
+ * </ul>
+ * Methods are named in full, {@code <package>.<service>/<method>}, e.g.
+ * {@code guru.qa.grpc.rococo.RococoArtistService/GetArtistByIds}; as {@code deadlines} keys they need brackets to keep
+ * their dots. Streaming methods have no deadline unless {@code deadlines} sets one: they last as long as the data
+ * takes to move, which the default does not bound. gRPC does not allow retry and hedging on the same method.
+ */
+final class GrpcServiceConfig {
+
+    private static final String PREFIX = "rococo-api.grpc-calls.";
+
+    private static final Map<String, MethodDescriptor<?, ?>> METHODS = Stream.of(
+                    RococoArtistServiceGrpc.getServiceDescriptor(),
+                    RococoMuseumServiceGrpc.getServiceDescriptor(),
+                    RococoPaintingServiceGrpc.getServiceDescriptor(),
+                    RococoGeoServiceGrpc.getServiceDescriptor(),
+                    RococoUserdataServiceGrpc.getServiceDescriptor()
+            )
+            .flatMap(service -> service.getMethods().stream())
+            .collect(Collectors.toMap(MethodDescriptor::getFullMethodName, Function.identity()));
+
+    private GrpcServiceConfig() {
+    }
+
+    static Map<String, Object> create(Binder binder) {
+        Duration deadline = binder.bind(PREFIX + "deadline", Duration.class).orElse(Duration.ofSeconds(5));
+        Map<String, Duration> deadlines = binder.bind(PREFIX + "deadlines", Bindable.mapOf(String.class, Duration.class))
+                .orElse(Map.of());
+        List<String> retried = binder.bind(PREFIX + "retry.methods", Bindable.listOf(String.class)).orElse(List.of());
+        List<String> hedged = binder.bind(PREFIX + "hedging.methods", Bindable.listOf(String.class)).orElse(List.of());
+
+        Map<String, Object> retryPolicy = Map.of(
+                "maxAttempts", (double) binder.bind(PREFIX + "retry.max-attempts", Integer.class).orElse(3),
+                "initialBackoff", duration(binder.bind(PREFIX + "retry.initial-backoff", Duration.class).orElse(Duration.ofMillis(50))),
+                "maxBackoff", duration(binder.bind(PREFIX + "retry.max-backoff", Duration.class).orElse(Duration.ofMillis(500))),
+                "backoffMultiplier", 2.0,
+                "retryableStatusCodes", List.of("UNAVAILABLE")
+        );
+        Map<String, Object> hedgingPolicy = Map.of(
+                "maxAttempts", (double) binder.bind(PREFIX + "hedging.max-attempts", Integer.class).orElse(2),
+                "hedgingDelay", duration(binder.bind(PREFIX + "hedging.delay", Duration.class).orElse(Duration.ofMillis(100))),
+                "nonFatalStatusCodes", List.of("UNAVAILABLE")
+        );
+
+        List<Map<String, Object>> methodConfig = new ArrayList<>();
+        // an empty name is the default for every method without a config of its own
+        methodConfig.add(Map.of(
+                "name", List.of(Map.of()),
+                "timeout", duration(deadline)
+        ));
+        for (String name : union(deadlines.keySet(), retried, hedged, streaming())) {
+            if (retried.contains(name) && hedged.contains(name)) {
+                throw new IllegalStateException("gRPC method " + name + " can't be both retried and hedged");
+            }
+            MethodDescriptor<?, ?> method = method(name);
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("name", List.of(Map.of("service", method.getServiceName(), "method", method.getBareMethodName())));
+            if (deadlines.containsKey(name)) {
+                config.put("timeout", duration(deadlines.get(name)));
+            } else if (method.getType() == MethodDescriptor.MethodType.UNARY) {
+                config.put("timeout", duration(deadline));
+            }
+            if (retried.contains(name)) {
+                config.put("retryPolicy", retryPolicy);
+            } else if (hedged.contains(name)) {
+                config.put("hedgingPolicy", hedgingPolicy);
+            }
+            methodConfig.add(config);
+        }
+
+        return Map.of(
+                "methodConfig", methodConfig,
+                "retryThrottling", Map.of(
+                        "maxTokens", (double) binder.bind(PREFIX + "budget.max-tokens", Integer.class).orElse(10),
+                        "tokenRatio", binder.bind(PREFIX + "budget.token-ratio", Double.class).orElse(0.1)
+                )
+        );
+    }
+
+    private static List<String> union(Iterable<String> deadlines,
+                                      List<String> retried,
+                                      List<String> hedged,
+                                      List<String> streaming) {
+        List<String> methods = new ArrayList<>();
+        deadlines.forEach(methods::add);
+        Stream.of(retried, hedged, streaming)
+                .flatMap(List::stream)
+                .filter(method -> !methods.contains(method))
+                .forEach(methods::add);
+        return methods;
+    }
+
+    /**
+     * @return every streaming method, sorted so the config is logged the same on each start
+     */
+    private static List<String> streaming() {
+        return METHODS.values().stream()
+                .filter(method -> method.getType() != MethodDescriptor.MethodType.UNARY)
+                .map(MethodDescriptor::getFullMethodName)
+                .sorted()
+                .toList();
+    }
+
+    private static MethodDescriptor<?, ?> method(String name) {
+        MethodDescriptor<?, ?> method = METHODS.get(name);
+        if (method == null) {
+            throw new IllegalStateException("Unknown gRPC method in " + PREFIX + "*: " + name);
+        }
+        return method;
+    }
+
+    /**
+     * Durations of a service config are decimal seconds, e.g. {@code "0.050000000s"}.
+     */
+    private static String duration(Duration duration) {
+        return String.format(Locale.ROOT, "%d.%09ds", duration.getSeconds(), duration.getNano());
+    }
+}
@@ -0,0 +1,93 @@
+package guru.qa.rococo.config;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nonnull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the calls of one {@code @GrpcClient} over several channels, each its own HTTP/2 connection, so a large
+ * image on one connection does not hold up the calls on the others and the services' stream limit applies per
+ * connection. Every call goes to the channel with the fewest calls in flight, ties taken in turn.
+ * <p>
+ * The in-flight count of each channel is published as {@code grpc.client.calls.in-flight}, tagged with the client
+ * name and the channel's index in the pool.
+ */
+final class PooledChannel extends Channel {
+
+    static final String IN_FLIGHT_METER = "grpc.client.calls.in-flight";
+
+    private final List<Channel> channels;
+    private final AtomicInteger[] inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+
+    PooledChannel(@Nonnull String name, @Nonnull List<Channel> channels, @Nonnull MeterRegistry meterRegistry) {
+        this.channels = List.copyOf(channels);
+        this.inFlight = new AtomicInteger[channels.size()];
+        for (int i = 0; i < inFlight.length; i++) {
+            inFlight[i] = new AtomicInteger();
+            Gauge.builder(IN_FLIGHT_METER, inFlight[i], AtomicInteger::get)
+                    .description("gRPC calls started and not yet closed")
+                    .tag("client", name)
+                    .tag("channel", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor,
+                                                         CallOptions callOptions) {
+        int index = pick();
+        AtomicInteger counter = inFlight[index];
+        ClientCall<ReqT, RespT> call = channels.get(index).newCall(methodDescriptor, callOptions);
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                counter.incrementAndGet();
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            counter.decrementAndGet();
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException e) {
+                    counter.decrementAndGet();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String authority() {
+        return channels.getFirst().authority();
+    }
+
+    private int pick() {
+        int size = channels.size();
+        if (size == 1) {
+            return 0;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        int best = start;
+        for (int i = 1; i < size; i++) {
+            int candidate = (start + i) % size;
+            if (inFlight[candidate].get() < inFlight[best].get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,99 @@
+package guru.qa.rococo.config;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ConnectivityState;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelConfigurer;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelFactory;
+import net.devh.boot.grpc.client.channelfactory.ShadedNettyChannelFactory;
+import net.devh.boot.grpc.client.config.GrpcChannelsProperties;
+import net.devh.boot.grpc.client.interceptor.GlobalClientInterceptorRegistry;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Replaces the single channel net.devh creates per {@code @GrpcClient} name with a {@link PooledChannel} of several.
+ * Every channel of a pool comes from its own {@link ShadedNettyChannelFactory}, since a factory keeps one channel per
+ * name, so they share the {@code grpc.client} properties, global interceptors and configurers of a plain channel,
+ * address, load balancing policy and keepalive included.
+ */
+final class PooledGrpcChannelFactory implements GrpcChannelFactory {
+
+    private final GrpcChannelsProperties properties;
+    private final GlobalClientInterceptorRegistry globalClientInterceptorRegistry;
+    private final List<GrpcChannelConfigurer> channelConfigurers;
+    private final ToIntFunction<String> poolSize;
+    private final MeterRegistry meterRegistry;
+
+    private final List<ShadedNettyChannelFactory> factories = new ArrayList<>();
+    private final Map<String, PooledChannel> pools = new ConcurrentHashMap<>();
+
+    PooledGrpcChannelFactory(GrpcChannelsProperties properties,
+                             GlobalClientInterceptorRegistry globalClientInterceptorRegistry,
+                             List<GrpcChannelConfigurer> channelConfigurers,
+                             ToIntFunction<String> poolSize,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.globalClientInterceptorRegistry = globalClientInterceptorRegistry;
+        this.channelConfigurers = channelConfigurers;
+        this.poolSize = poolSize;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Channel createChannel(String name, List<ClientInterceptor> interceptors, boolean sortInterceptors) {
+        Channel pool = pools.computeIfAbsent(name, this::createPool);
+        List<ClientInterceptor> ordered = new ArrayList<>(interceptors);
+        if (sortInterceptors) {
+            AnnotationAwareOrderComparator.sort(ordered);
+        }
+        return ClientInterceptors.interceptForward(pool, ordered);
+    }
+
+    @Override
+    public Map<String, ConnectivityState> getConnectivityState() {
+        Map<String, ConnectivityState> states = new HashMap<>();
+        synchronized (factories) {
+            for (int i = 0; i < factories.size(); i++) {
+                for (Map.Entry<String, ConnectivityState> state : factories.get(i).getConnectivityState().entrySet()) {
+                    states.put(state.getKey() + "#" + i, state.getValue());
+                }
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public void close() {
+        synchronized (factories) {
+            factories.forEach(ShadedNettyChannelFactory::close);
+            factories.clear();
+        }
+    }
+
+    private PooledChannel createPool(String name) {
+        int size = Math.max(1, poolSize.applyAsInt(name));
+        List<Channel> channels = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            channels.add(factory(i).createChannel(name));
+        }
+        return new PooledChannel(name, channels, meterRegistry);
+    }
+
+    private ShadedNettyChannelFactory factory(int index) {
+        synchronized (factories) {
+            while (factories.size() <= index) {
+                factories.add(new ShadedNettyChannelFactory(properties, globalClientInterceptorRegistry, channelConfigurers));
+            }
+            return factories.get(index);
+        }
+    }
+}
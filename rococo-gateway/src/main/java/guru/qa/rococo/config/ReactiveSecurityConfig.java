@@ -0,0 +1,47 @@
+package guru.qa.rococo.config;
+
+import guru.qa.rococo.service.cors.CorsCustomizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * {@link SecurityConfigMain} for the reactive gateway: the same public paths, everything else behind a JWT.
+ */
+@EnableWebFluxSecurity
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+
+    private final CorsCustomizer corsCustomizer;
+
+    @Autowired
+    public ReactiveSecurityConfig(CorsCustomizer corsCustomizer) {
+        this.corsCustomizer = corsCustomizer;
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        corsCustomizer.corsCustomizer(http);
+
+        http.authorizeExchange(customizer ->
+                customizer.pathMatchers("/actuator/health").permitAll()
+                        .pathMatchers(HttpMethod.GET,
+                                "/api/session",
+                                "/api/museum/**",
+                                "/api/artist/**",
+                                "/api/painting/**"
+                        ).permitAll()
+                        .anyExchange()
+                        .authenticated()
+        ).oauth2ResourceServer((oauth2) -> oauth2.jwt(Customizer.withDefaults()));
+
+        return http.build();
+    }
+}
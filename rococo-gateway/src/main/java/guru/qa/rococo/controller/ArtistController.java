@@ -1,35 +1,83 @@
 package guru.qa.rococo.controller;
 
 import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.DataUrl;
 import guru.qa.rococo.service.api.GrpcArtistClient;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.UUID;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/artist")
 public class ArtistController {
 
     private final GrpcArtistClient grpcArtistClient;
+    private final PhotoLinks photoLinks;
 
     @Autowired
-    public ArtistController(GrpcArtistClient grpcArtistClient) {
+    public ArtistController(GrpcArtistClient grpcArtistClient, PhotoLinks photoLinks) {
         this.grpcArtistClient = grpcArtistClient;
+        this.photoLinks = photoLinks;
     }
 
+    /**
+     * A client that sends the tag of the current version gets a 304 after a version-only read.
+     */
     @GetMapping("/{id}")
-    public ArtistJson getArtist(@PathVariable UUID id) {
-        return grpcArtistClient.getArtist(id);
+    public ResponseEntity<ArtistJson> getArtist(@PathVariable UUID id,
+                                                @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                                WebRequest request) {
+        long version = 0;
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            version = grpcArtistClient.getArtistVersion(id);
+            String tag = EntityTags.artist(version);
+            if (request.checkNotModified(tag)) {
+                return EntityTags.notModified(tag, EntityTags.REVALIDATE);
+            }
+        }
+        ArtistJson artist = photoLinks.artist(grpcArtistClient.getArtist(id, version), withPhoto);
+        return EntityTags.ok(EntityTags.artist(artist.version()), EntityTags.REVALIDATE, artist);
+    }
+
+    @GetMapping("/{id}/photo")
+    public ResponseEntity<byte[]> getArtistPhoto(@PathVariable UUID id) {
+        DataUrl photo = grpcArtistClient.getArtistPhoto(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(photo.mimeType()))
+                .body(photo.data());
     }
 
     @GetMapping
-    public Page<ArtistJson> getAll(@RequestParam(required = false) String name, @PageableDefault Pageable pageable) {
-        return grpcArtistClient.getAllArtist(name, pageable);
+    public Page<ArtistJson> getAll(@RequestParam(required = false) String name,
+                                   @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                   @PageableDefault Pageable pageable) {
+        return grpcArtistClient.getAllArtist(name, pageable)
+                .map(artist -> photoLinks.artist(artist, withPhoto));
+    }
+
+    @GetMapping(params = "pageToken")
+    public CursorPage<ArtistJson> getAll(@RequestParam(required = false) String name,
+                                         @RequestParam String pageToken,
+                                         @RequestParam(defaultValue = "10") int size,
+                                         @RequestParam(name = "totalCount", defaultValue = "false") boolean withTotalCount,
+                                         @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto) {
+        return grpcArtistClient.getAllArtist(name, pageToken, size, withTotalCount)
+                .map(artist -> photoLinks.artist(artist, withPhoto));
     }
 
     @PostMapping
@@ -38,8 +86,29 @@ public class ArtistController {
     }
 
     @PatchMapping
-    public ArtistJson updateArtist(@Valid @RequestBody ArtistJson artist) {
-        return grpcArtistClient.updateArtist(artist);
+    public ArtistJson updateArtist(@Valid @RequestBody ArtistJson artist,
+                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return grpcArtistClient.patchArtist(artist, EntityTags.artistVersion(ifMatch));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ArtistJson uploadArtist(@Valid @RequestPart("artist") ArtistJson artist,
+                                   @RequestPart("photo") MultipartFile photo) {
+        return grpcArtistClient.uploadArtist(
+                new ArtistJson(null, artist.name(), artist.biography(), null, 0),
+                photo,
+                null
+        );
+    }
+
+    @PatchMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ArtistJson updateArtistWithUpload(@Valid @RequestPart("artist") ArtistJson artist,
+                                             @RequestPart(name = "photo", required = false) MultipartFile photo,
+                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (artist.id() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id художника");
+        }
+        return grpcArtistClient.uploadArtist(artist, photo, EntityTags.artistVersion(ifMatch));
     }
 
 }
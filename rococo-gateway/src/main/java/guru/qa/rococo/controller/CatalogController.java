@@ -0,0 +1,54 @@
+package guru.qa.rococo.controller;
+
+import guru.qa.rococo.model.CatalogImportJson;
+import guru.qa.rococo.service.api.CatalogExporter;
+import guru.qa.rococo.service.api.CatalogImporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/catalog")
+public class CatalogController {
+
+    private final CatalogImporter catalogImporter;
+    private final CatalogExporter catalogExporter;
+
+    @Autowired
+    public CatalogController(CatalogImporter catalogImporter, CatalogExporter catalogExporter) {
+        this.catalogImporter = catalogImporter;
+        this.catalogExporter = catalogExporter;
+    }
+
+    /**
+     * Takes the archive as the raw request body, read as it arrives, e.g.
+     * {@code curl --data-binary @catalog.bin -H 'Content-Type: application/x-protobuf'}.
+     */
+    @PostMapping(path = "/import", consumes = {CatalogImporter.ARCHIVE_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public CatalogImportJson importCatalog(InputStream archive) {
+        return catalogImporter.importCatalog(archive);
+    }
+
+    /**
+     * Streams the archive as it is exported, in the format {@link #importCatalog} takes. A failure after the first
+     * bytes can only abort the response, so a truncated archive is the sign of a failed export.
+     */
+    @GetMapping(path = "/export", produces = CatalogImporter.ARCHIVE_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportCatalog() {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(CatalogExporter.ARCHIVE_FILENAME).build().toString())
+                .body(catalogExporter::exportCatalog);
+    }
+}
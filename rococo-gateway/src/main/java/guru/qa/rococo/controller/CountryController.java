@@ -3,26 +3,40 @@ package guru.qa.rococo.controller;
 import guru.qa.rococo.model.CountryJson;
 import guru.qa.rococo.service.api.GrpcCountryClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/country")
 public class CountryController {
 
     private final GrpcCountryClient grpcCountryClient;
+    private final CacheControl cacheControl;
 
     @Autowired
-    public CountryController(GrpcCountryClient grpcCountryClient) {
+    public CountryController(GrpcCountryClient grpcCountryClient,
+                             @Value("${rococo-api.http-cache.country-max-age}") Duration maxAge) {
         this.grpcCountryClient = grpcCountryClient;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
     }
 
+    /**
+     * Tagged with the dictionary version: the page is answered from memory, and a matching tag turns it into a 304.
+     */
     @GetMapping
-    public Page<CountryJson> getAll(@PageableDefault Pageable pageable) {
-        return grpcCountryClient.getAllCountry(pageable);
+    public ResponseEntity<Page<CountryJson>> getAll(@PageableDefault Pageable pageable) {
+        String tag = EntityTags.countries(grpcCountryClient.getDictionaryVersion());
+        return EntityTags.ok(tag, cacheControl, grpcCountryClient.getAllCountry(pageable));
     }
 }
\ No newline at end of file
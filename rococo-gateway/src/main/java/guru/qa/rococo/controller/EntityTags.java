@@ -0,0 +1,100 @@
+package guru.qa.rococo.controller;
+
+import guru.qa.rococo.model.PaintingJson;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Strong ETags of the read endpoints. An entity's tag is the version its service bumps on every update, so the
+ * controllers can answer {@code If-None-Match} with a 304 after a version-only read, before the entity and its image
+ * are fetched. Entities are served {@code no-cache}: clients keep them but revalidate on every view.
+ * <p>
+ * The same tags sent back in {@code If-Match} make an update conditional on the version they were read at.
+ */
+public final class EntityTags {
+
+    public static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private EntityTags() {
+    }
+
+    public static @Nonnull String artist(long version) {
+        return "\"a" + version + "\"";
+    }
+
+    public static @Nonnull String museum(long version) {
+        return "\"m" + version + "\"";
+    }
+
+    /**
+     * A painting is shown with its museum and artist, so a change to either is a change to the painting. The versions
+     * are those of the museum and artist the body was built with, so the tag always matches the body.
+     */
+    public static @Nonnull String painting(@Nonnull PaintingJson painting) {
+        return "\"p" + painting.getVersion()
+                + "-m" + painting.getMuseum().version()
+                + "-a" + painting.getArtist().version() + "\"";
+    }
+
+    public static @Nonnull String countries(@Nonnull String dictionaryVersion) {
+        return "\"c" + dictionaryVersion + "\"";
+    }
+
+    public static @Nonnull <T> ResponseEntity<T> ok(@Nonnull String tag, @Nonnull CacheControl cacheControl, T body) {
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(tag)
+                .body(body);
+    }
+
+    /**
+     * The 304 to answer with once {@code checkNotModified} matched, with the same {@code Cache-Control} as the full
+     * response so that Spring Security does not mark it {@code no-store}.
+     */
+    public static @Nonnull <T> ResponseEntity<T> notModified(@Nonnull String tag, @Nonnull CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(cacheControl)
+                .eTag(tag)
+                .build();
+    }
+
+    /**
+     * @return the version an {@code If-Match} header expects the artist at, {@code null} without one or for {@code *}
+     * @throws ResponseStatusException 412 for anything but a single artist tag, which no version can match
+     */
+    public static @Nullable Long artistVersion(@Nullable String ifMatch) {
+        return expectedVersion(ifMatch, 'a');
+    }
+
+    public static @Nullable Long museumVersion(@Nullable String ifMatch) {
+        return expectedVersion(ifMatch, 'm');
+    }
+
+    /**
+     * Only the painting's own version counts: its museum and artist are not part of the update.
+     */
+    public static @Nullable Long paintingVersion(@Nullable String ifMatch) {
+        return expectedVersion(ifMatch, 'p');
+    }
+
+    private static @Nullable Long expectedVersion(@Nullable String ifMatch, char kind) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 3 && tag.startsWith("\"" + kind) && tag.endsWith("\"")) {
+            String version = tag.substring(2, tag.length() - 1);
+            int end = version.indexOf('-');
+            try {
+                return Long.parseLong(end < 0 ? version : version.substring(0, end));
+            } catch (NumberFormatException e) {
+                // falls through to the 412 below
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Неизвестная версия в If-Match: " + ifMatch);
+    }
+}
@@ -1,35 +1,83 @@
 package guru.qa.rococo.controller;
 
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.DataUrl;
 import guru.qa.rococo.model.MuseumJson;
 import guru.qa.rococo.service.api.GrpcMuseumClient;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.UUID;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/museum")
 public class MuseumController {
 
     private final GrpcMuseumClient grpcMuseumClient;
+    private final PhotoLinks photoLinks;
 
     @Autowired
-    public MuseumController(GrpcMuseumClient grpcMuseumClient) {
+    public MuseumController(GrpcMuseumClient grpcMuseumClient, PhotoLinks photoLinks) {
         this.grpcMuseumClient = grpcMuseumClient;
+        this.photoLinks = photoLinks;
     }
 
+    /**
+     * A client that sends the tag of the current version gets a 304 after a version-only read.
+     */
     @GetMapping("/{id}")
-    public MuseumJson getMuseum(@PathVariable UUID id) {
-        return grpcMuseumClient.getMuseum(id);
+    public ResponseEntity<MuseumJson> getMuseum(@PathVariable UUID id,
+                                                @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                                WebRequest request) {
+        long version = 0;
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            version = grpcMuseumClient.getMuseumVersion(id);
+            String tag = EntityTags.museum(version);
+            if (request.checkNotModified(tag)) {
+                return EntityTags.notModified(tag, EntityTags.REVALIDATE);
+            }
+        }
+        MuseumJson museum = photoLinks.museum(grpcMuseumClient.getMuseum(id, version), withPhoto);
+        return EntityTags.ok(EntityTags.museum(museum.version()), EntityTags.REVALIDATE, museum);
+    }
+
+    @GetMapping("/{id}/photo")
+    public ResponseEntity<byte[]> getMuseumPhoto(@PathVariable UUID id) {
+        DataUrl photo = grpcMuseumClient.getMuseumPhoto(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(photo.mimeType()))
+                .body(photo.data());
     }
 
     @GetMapping
-    public Page<MuseumJson> getAllMuseum(@RequestParam(required = false) String title, @PageableDefault Pageable pageable) {
-        return grpcMuseumClient.getAllMuseum(title, pageable);
+    public Page<MuseumJson> getAllMuseum(@RequestParam(required = false) String title,
+                                         @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                         @PageableDefault Pageable pageable) {
+        return grpcMuseumClient.getAllMuseum(title, pageable)
+                .map(museum -> photoLinks.museum(museum, withPhoto));
+    }
+
+    @GetMapping(params = "pageToken")
+    public CursorPage<MuseumJson> getAllMuseum(@RequestParam(required = false) String title,
+                                               @RequestParam String pageToken,
+                                               @RequestParam(defaultValue = "10") int size,
+                                               @RequestParam(name = "totalCount", defaultValue = "false") boolean withTotalCount,
+                                               @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto) {
+        return grpcMuseumClient.getAllMuseum(title, pageToken, size, withTotalCount)
+                .map(museum -> photoLinks.museum(museum, withPhoto));
     }
 
     @PostMapping
@@ -38,7 +86,28 @@ public class MuseumController {
     }
 
     @PatchMapping
-    public MuseumJson updateMuseum(@Valid @RequestBody MuseumJson museum) {
-        return grpcMuseumClient.updateMuseum(museum);
+    public MuseumJson updateMuseum(@Valid @RequestBody MuseumJson museum,
+                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return grpcMuseumClient.patchMuseum(museum, EntityTags.museumVersion(ifMatch));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public MuseumJson uploadMuseum(@Valid @RequestPart("museum") MuseumJson museum,
+                                   @RequestPart("photo") MultipartFile photo) {
+        return grpcMuseumClient.uploadMuseum(
+                new MuseumJson(null, museum.title(), museum.description(), null, museum.geo(), 0),
+                photo,
+                null
+        );
+    }
+
+    @PatchMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public MuseumJson updateMuseumWithUpload(@Valid @RequestPart("museum") MuseumJson museum,
+                                             @RequestPart(name = "photo", required = false) MultipartFile photo,
+                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (museum.id() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id музея");
+        }
+        return grpcMuseumClient.uploadMuseum(museum, photo, EntityTags.museumVersion(ifMatch));
     }
 }
\ No newline at end of file
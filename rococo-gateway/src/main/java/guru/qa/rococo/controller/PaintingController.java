@@ -1,17 +1,30 @@
 package guru.qa.rococo.controller;
 
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.ImageStream;
 import guru.qa.rococo.model.PaintingJson;
 import guru.qa.rococo.service.api.GrpcPaintingClient;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.UUID;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/painting")
 public class PaintingController {
 
@@ -22,14 +35,50 @@ public class PaintingController {
         this.grpcPaintingClient = grpcPaintingClient;
     }
 
+    /**
+     * A client that sends a tag gets a 304 after version-only reads of the painting, its museum and its artist.
+     * Otherwise the museum and artist are attached at least at the versions just read, so a body never carries a tag
+     * older than its data.
+     */
     @GetMapping("/{id}")
-    public PaintingJson getPainting(@PathVariable UUID id) {
-        return grpcPaintingClient.getPainting(id);
+    public ResponseEntity<PaintingJson> getPainting(@PathVariable UUID id,
+                                                    @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                                    WebRequest request) {
+        PaintingJson versions = null;
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            versions = grpcPaintingClient.getPaintingVersions(id);
+            String tag = EntityTags.painting(versions);
+            if (request.checkNotModified(tag)) {
+                return EntityTags.notModified(tag, EntityTags.REVALIDATE);
+            }
+        }
+        PaintingJson painting = grpcPaintingClient.getPainting(id, withContent, versions);
+        return EntityTags.ok(EntityTags.painting(painting), EntityTags.REVALIDATE, painting);
+    }
+
+    @GetMapping("/{id}/content")
+    public ResponseEntity<StreamingResponseBody> getPaintingContent(@PathVariable UUID id,
+                                                                    @RequestParam(required = false) ImageVariant variant) {
+        ImageStream content = grpcPaintingClient.streamPaintingContent(id, variant);
+        return ResponseEntity.ok()
+                .contentType(content.contentType())
+                .body(content.body());
     }
 
     @GetMapping
-    public Page<PaintingJson> getAll(@RequestParam(required = false) String title, @PageableDefault Pageable pageable) {
-        return grpcPaintingClient.getAllPainting(title, pageable);
+    public Page<PaintingJson> getAll(@RequestParam(required = false) String title,
+                                     @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                     @PageableDefault Pageable pageable) {
+        return grpcPaintingClient.getAllPainting(title, pageable, withContent);
+    }
+
+    @GetMapping(params = "pageToken")
+    public CursorPage<PaintingJson> getAll(@RequestParam(required = false) String title,
+                                           @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                           @RequestParam String pageToken,
+                                           @RequestParam(defaultValue = "10") int size,
+                                           @RequestParam(name = "totalCount", defaultValue = "false") boolean withTotalCount) {
+        return grpcPaintingClient.getAllPainting(title, pageToken, size, withTotalCount, withContent);
     }
 
     @PostMapping
@@ -38,12 +87,32 @@ public class PaintingController {
     }
 
     @PatchMapping
-    public PaintingJson updatePainting(@Valid @RequestBody PaintingJson painting) {
-        return grpcPaintingClient.updatePainting(painting);
+    public PaintingJson updatePainting(@Valid @RequestBody PaintingJson painting,
+                                       @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return grpcPaintingClient.patchPainting(painting, EntityTags.paintingVersion(ifMatch));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public PaintingJson uploadPainting(@Valid @RequestPart("painting") PaintingJson painting,
+                                       @RequestPart("content") MultipartFile content) {
+        painting.setId(null);
+        return grpcPaintingClient.uploadPainting(painting, content, null);
+    }
+
+    @PatchMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public PaintingJson updatePaintingWithUpload(@Valid @RequestPart("painting") PaintingJson painting,
+                                                 @RequestPart(name = "content", required = false) MultipartFile content,
+                                                 @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (painting.getId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id картины");
+        }
+        return grpcPaintingClient.uploadPainting(painting, content, EntityTags.paintingVersion(ifMatch));
     }
 
     @GetMapping("/author/{id}")
-    public Page<PaintingJson> getPaintingByArtist(@PathVariable UUID id, @PageableDefault Pageable pageable) {
-        return grpcPaintingClient.getAllPaintingByArtist(id, pageable);
+    public Page<PaintingJson> getPaintingByArtist(@PathVariable UUID id,
+                                                  @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                                  @PageableDefault Pageable pageable) {
+        return grpcPaintingClient.getAllPaintingByArtist(id, pageable, withContent);
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package guru.qa.rococo.controller;
+
+import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.MuseumJson;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Artist and museum reads inline the photo as a data URL unless the client asks for {@code photo=false}, as paintings
+ * do with {@code content=false}. The photo is then a link to the binary {@code /photo} endpoint, so the JSON stays
+ * small and the image travels once, without base64, and is cached on its own. Absent photos stay absent.
+ */
+@Component
+public class PhotoLinks {
+
+    private final String rococoApiUri;
+
+    @Autowired
+    public PhotoLinks(@Value("${rococo-api.base-uri}") String rococoApiUri) {
+        this.rococoApiUri = rococoApiUri;
+    }
+
+    public @Nonnull ArtistJson artist(@Nonnull ArtistJson artist, boolean withPhoto) {
+        if (withPhoto || artist.photo() == null) {
+            return artist;
+        }
+        return new ArtistJson(artist.id(), artist.name(), artist.biography(),
+                rococoApiUri + "/api/artist/" + artist.id() + "/photo", artist.version());
+    }
+
+    public @Nonnull MuseumJson museum(@Nonnull MuseumJson museum, boolean withPhoto) {
+        if (withPhoto || museum.photo() == null) {
+            return museum;
+        }
+        return new MuseumJson(museum.id(), museum.title(), museum.description(),
+                rococoApiUri + "/api/museum/" + museum.id() + "/photo", museum.geo(), museum.version());
+    }
+}
@@ -0,0 +1,116 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.controller.EntityTags;
+import guru.qa.rococo.controller.PhotoLinks;
+import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.service.api.ReactiveArtistClient;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/artist")
+public class ReactiveArtistController {
+
+    private final ReactiveArtistClient reactiveArtistClient;
+    private final PhotoLinks photoLinks;
+
+    @Autowired
+    public ReactiveArtistController(ReactiveArtistClient reactiveArtistClient, PhotoLinks photoLinks) {
+        this.reactiveArtistClient = reactiveArtistClient;
+        this.photoLinks = photoLinks;
+    }
+
+    /**
+     * A client that sends the tag of the current version gets a 304 after a version-only read.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<ArtistJson>> getArtist(@PathVariable UUID id,
+                                                      @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                                      ServerWebExchange exchange) {
+        if (!exchange.getRequest().getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            return reactiveArtistClient.getArtist(id)
+                    .map(artist -> photoLinks.artist(artist, withPhoto))
+                    .map(artist -> EntityTags.ok(EntityTags.artist(artist.version()), EntityTags.REVALIDATE, artist));
+        }
+        return reactiveArtistClient.getArtistVersion(id)
+                .flatMap(version -> exchange.checkNotModified(EntityTags.artist(version))
+                        ? Mono.just(EntityTags.<ArtistJson>notModified(EntityTags.artist(version), EntityTags.REVALIDATE))
+                        : reactiveArtistClient.getArtist(id, version)
+                        .map(artist -> photoLinks.artist(artist, withPhoto))
+                        .map(artist -> EntityTags.ok(EntityTags.artist(artist.version()), EntityTags.REVALIDATE, artist)));
+    }
+
+    @GetMapping("/{id}/photo")
+    public Mono<ResponseEntity<byte[]>> getArtistPhoto(@PathVariable UUID id) {
+        return reactiveArtistClient.getArtistPhoto(id)
+                .map(photo -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(photo.mimeType()))
+                        .body(photo.data()));
+    }
+
+    @GetMapping
+    public Mono<Page<ArtistJson>> getAll(@RequestParam(required = false) String name,
+                                         @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                         @PageableDefault Pageable pageable) {
+        return reactiveArtistClient.getAllArtist(name, pageable)
+                .map(page -> page.map(artist -> photoLinks.artist(artist, withPhoto)));
+    }
+
+    @GetMapping(params = "pageToken")
+    public Mono<CursorPage<ArtistJson>> getAll(@RequestParam(required = false) String name,
+                                               @RequestParam String pageToken,
+                                               @RequestParam(defaultValue = "10") int size,
+                                               @RequestParam(name = "totalCount", defaultValue = "false") boolean withTotalCount,
+                                               @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto) {
+        return reactiveArtistClient.getAllArtist(name, pageToken, size, withTotalCount)
+                .map(page -> page.map(artist -> photoLinks.artist(artist, withPhoto)));
+    }
+
+    @PostMapping
+    public Mono<ArtistJson> addArtist(@Valid @RequestBody ArtistJson artist) {
+        return reactiveArtistClient.addArtist(artist);
+    }
+
+    @PatchMapping
+    public Mono<ArtistJson> updateArtist(@Valid @RequestBody ArtistJson artist,
+                                         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return reactiveArtistClient.patchArtist(artist, EntityTags.artistVersion(ifMatch));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ArtistJson> uploadArtist(@Valid @RequestPart("artist") ArtistJson artist,
+                                         @RequestPart("photo") FilePart photo) {
+        return reactiveArtistClient.uploadArtist(
+                new ArtistJson(null, artist.name(), artist.biography(), null, 0),
+                photo,
+                null
+        );
+    }
+
+    @PatchMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ArtistJson> updateArtistWithUpload(@Valid @RequestPart("artist") ArtistJson artist,
+                                                   @RequestPart(name = "photo", required = false) FilePart photo,
+                                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (artist.id() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id художника"));
+        }
+        return reactiveArtistClient.uploadArtist(artist, photo, EntityTags.artistVersion(ifMatch));
+    }
+}
@@ -0,0 +1,78 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.model.CatalogImportJson;
+import guru.qa.rococo.service.api.CatalogExporter;
+import guru.qa.rococo.service.api.CatalogImporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/catalog")
+public class ReactiveCatalogController {
+
+    /**
+     * Buffers of the request body requested ahead of the import.
+     */
+    private static final int PREFETCH = 16;
+
+    private final CatalogImporter catalogImporter;
+    private final CatalogExporter catalogExporter;
+
+    @Autowired
+    public ReactiveCatalogController(CatalogImporter catalogImporter, CatalogExporter catalogExporter) {
+        this.catalogImporter = catalogImporter;
+        this.catalogExporter = catalogExporter;
+    }
+
+    /**
+     * The import reads the archive blocking, off the event loop; the body is only requested as fast as it reads.
+     */
+    @PostMapping(path = "/import", consumes = {CatalogImporter.ARCHIVE_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public Mono<CatalogImportJson> importCatalog(@RequestBody Flux<DataBuffer> archive) {
+        return Mono.fromCallable(() -> {
+                    try (InputStream in = DataBufferUtils.subscriberInputStream(archive, PREFETCH)) {
+                        return catalogImporter.importCatalog(in);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * The export writes the archive blocking, off the event loop; each write waits until the response has demand for
+     * it, so only the buffers in flight are held.
+     */
+    @GetMapping(path = "/export", produces = CatalogImporter.ARCHIVE_MEDIA_TYPE)
+    public ResponseEntity<Flux<DataBuffer>> exportCatalog(ServerHttpResponse response) {
+        Flux<DataBuffer> archive = DataBufferUtils.outputStreamPublisher(out -> {
+            try {
+                catalogExporter.exportCatalog(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, response.bufferFactory(), Schedulers.boundedElastic()::schedule);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(CatalogExporter.ARCHIVE_FILENAME).build().toString())
+                .body(archive);
+    }
+}
@@ -0,0 +1,45 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.controller.EntityTags;
+import guru.qa.rococo.model.CountryJson;
+import guru.qa.rococo.service.api.ReactiveCountryClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/country")
+public class ReactiveCountryController {
+
+    private final ReactiveCountryClient reactiveCountryClient;
+    private final CacheControl cacheControl;
+
+    @Autowired
+    public ReactiveCountryController(ReactiveCountryClient reactiveCountryClient,
+                                     @Value("${rococo-api.http-cache.country-max-age}") Duration maxAge) {
+        this.reactiveCountryClient = reactiveCountryClient;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    /**
+     * See {@link guru.qa.rococo.controller.CountryController#getAll}.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Page<CountryJson>>> getAll(@PageableDefault Pageable pageable) {
+        return reactiveCountryClient.getDictionaryVersion()
+                .zipWith(reactiveCountryClient.getAllCountry(pageable),
+                        (version, page) -> EntityTags.ok(EntityTags.countries(version), cacheControl, page));
+    }
+}
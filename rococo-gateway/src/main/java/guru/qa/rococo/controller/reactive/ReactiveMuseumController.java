@@ -0,0 +1,116 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.controller.EntityTags;
+import guru.qa.rococo.controller.PhotoLinks;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.MuseumJson;
+import guru.qa.rococo.service.api.ReactiveMuseumClient;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/museum")
+public class ReactiveMuseumController {
+
+    private final ReactiveMuseumClient reactiveMuseumClient;
+    private final PhotoLinks photoLinks;
+
+    @Autowired
+    public ReactiveMuseumController(ReactiveMuseumClient reactiveMuseumClient, PhotoLinks photoLinks) {
+        this.reactiveMuseumClient = reactiveMuseumClient;
+        this.photoLinks = photoLinks;
+    }
+
+    /**
+     * A client that sends the tag of the current version gets a 304 after a version-only read.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<MuseumJson>> getMuseum(@PathVariable UUID id,
+                                                      @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                                      ServerWebExchange exchange) {
+        if (!exchange.getRequest().getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            return reactiveMuseumClient.getMuseum(id)
+                    .map(museum -> photoLinks.museum(museum, withPhoto))
+                    .map(museum -> EntityTags.ok(EntityTags.museum(museum.version()), EntityTags.REVALIDATE, museum));
+        }
+        return reactiveMuseumClient.getMuseumVersion(id)
+                .flatMap(version -> exchange.checkNotModified(EntityTags.museum(version))
+                        ? Mono.just(EntityTags.<MuseumJson>notModified(EntityTags.museum(version), EntityTags.REVALIDATE))
+                        : reactiveMuseumClient.getMuseum(id, version)
+                        .map(museum -> photoLinks.museum(museum, withPhoto))
+                        .map(museum -> EntityTags.ok(EntityTags.museum(museum.version()), EntityTags.REVALIDATE, museum)));
+    }
+
+    @GetMapping("/{id}/photo")
+    public Mono<ResponseEntity<byte[]>> getMuseumPhoto(@PathVariable UUID id) {
+        return reactiveMuseumClient.getMuseumPhoto(id)
+                .map(photo -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(photo.mimeType()))
+                        .body(photo.data()));
+    }
+
+    @GetMapping
+    public Mono<Page<MuseumJson>> getAllMuseum(@RequestParam(required = false) String title,
+                                               @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto,
+                                               @PageableDefault Pageable pageable) {
+        return reactiveMuseumClient.getAllMuseum(title, pageable)
+                .map(page -> page.map(museum -> photoLinks.museum(museum, withPhoto)));
+    }
+
+    @GetMapping(params = "pageToken")
+    public Mono<CursorPage<MuseumJson>> getAllMuseum(@RequestParam(required = false) String title,
+                                                     @RequestParam String pageToken,
+                                                     @RequestParam(defaultValue = "10") int size,
+                                                     @RequestParam(name = "totalCount", defaultValue = "false") boolean withTotalCount,
+                                                     @RequestParam(name = "photo", defaultValue = "true") boolean withPhoto) {
+        return reactiveMuseumClient.getAllMuseum(title, pageToken, size, withTotalCount)
+                .map(page -> page.map(museum -> photoLinks.museum(museum, withPhoto)));
+    }
+
+    @PostMapping
+    public Mono<MuseumJson> addMuseum(@Valid @RequestBody MuseumJson museum) {
+        return reactiveMuseumClient.addMuseum(museum);
+    }
+
+    @PatchMapping
+    public Mono<MuseumJson> updateMuseum(@Valid @RequestBody MuseumJson museum,
+                                         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return reactiveMuseumClient.patchMuseum(museum, EntityTags.museumVersion(ifMatch));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<MuseumJson> uploadMuseum(@Valid @RequestPart("museum") MuseumJson museum,
+                                         @RequestPart("photo") FilePart photo) {
+        return reactiveMuseumClient.uploadMuseum(
+                new MuseumJson(null, museum.title(), museum.description(), null, museum.geo(), 0),
+                photo,
+                null
+        );
+    }
+
+    @PatchMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<MuseumJson> updateMuseumWithUpload(@Valid @RequestPart("museum") MuseumJson museum,
+                                                   @RequestPart(name = "photo", required = false) FilePart photo,
+                                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (museum.id() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id музея"));
+        }
+        return reactiveMuseumClient.uploadMuseum(museum, photo, EntityTags.museumVersion(ifMatch));
+    }
+}
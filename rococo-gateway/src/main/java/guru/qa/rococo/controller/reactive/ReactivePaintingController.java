@@ -0,0 +1,136 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.controller.EntityTags;
+import guru.qa.grpc.rococo.grpc.PaintingContentChunk;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.PaintingJson;
+import guru.qa.rococo.service.api.ReactivePaintingClient;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/painting")
+public class ReactivePaintingController {
+
+    private final ReactivePaintingClient reactivePaintingClient;
+
+    @Autowired
+    public ReactivePaintingController(ReactivePaintingClient reactivePaintingClient) {
+        this.reactivePaintingClient = reactivePaintingClient;
+    }
+
+    /**
+     * See {@link guru.qa.rococo.controller.PaintingController#getPainting}.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<PaintingJson>> getPainting(@PathVariable UUID id,
+                                                          @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                                          ServerWebExchange exchange) {
+        if (!exchange.getRequest().getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            return reactivePaintingClient.getPainting(id, withContent, null)
+                    .map(found -> EntityTags.ok(EntityTags.painting(found), EntityTags.REVALIDATE, found));
+        }
+        return reactivePaintingClient.getPaintingVersions(id)
+                .flatMap(versions -> exchange.checkNotModified(EntityTags.painting(versions))
+                        ? Mono.just(EntityTags.<PaintingJson>notModified(EntityTags.painting(versions), EntityTags.REVALIDATE))
+                        : reactivePaintingClient.getPainting(id, withContent, versions)
+                        .map(found -> EntityTags.ok(EntityTags.painting(found), EntityTags.REVALIDATE, found)));
+    }
+
+    /**
+     * The first chunk carries the content type, so the response is only committed once it has arrived and a missing
+     * painting is still answered with a 404. The remaining chunks are written as the painting service sends them.
+     */
+    @GetMapping("/{id}/content")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getPaintingContent(@PathVariable UUID id,
+                                                                     @RequestParam(required = false) ImageVariant variant) {
+        return reactivePaintingClient.streamPaintingContent(id, variant)
+                .<ResponseEntity<Flux<DataBuffer>>>switchOnFirst((first, chunks) -> {
+                    if (first.isOnError()) {
+                        return Mono.error(first.getThrowable());
+                    }
+                    if (!first.hasValue()) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Изображение картины с id " + id + " не найдено"));
+                    }
+                    return Mono.just(ResponseEntity.ok()
+                            .contentType(MediaType.parseMediaType(first.get().getContentType()))
+                            .body(chunks.map(ReactivePaintingController::toDataBuffer)));
+                }, false)
+                .singleOrEmpty();
+    }
+
+    @GetMapping
+    public Mono<Page<PaintingJson>> getAll(@RequestParam(required = false) String title,
+                                           @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                           @PageableDefault Pageable pageable) {
+        return reactivePaintingClient.getAllPainting(title, pageable, withContent);
+    }
+
+    @GetMapping(params = "pageToken")
+    public Mono<CursorPage<PaintingJson>> getAll(@RequestParam(required = false) String title,
+                                                 @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                                 @RequestParam String pageToken,
+                                                 @RequestParam(defaultValue = "10") int size,
+                                                 @RequestParam(name = "totalCount", defaultValue = "false") boolean withTotalCount) {
+        return reactivePaintingClient.getAllPainting(title, pageToken, size, withTotalCount, withContent);
+    }
+
+    @PostMapping
+    public Mono<PaintingJson> addPainting(@Valid @RequestBody PaintingJson painting) {
+        return reactivePaintingClient.addPainting(painting);
+    }
+
+    @PatchMapping
+    public Mono<PaintingJson> updatePainting(@Valid @RequestBody PaintingJson painting,
+                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return reactivePaintingClient.patchPainting(painting, EntityTags.paintingVersion(ifMatch));
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<PaintingJson> uploadPainting(@Valid @RequestPart("painting") PaintingJson painting,
+                                             @RequestPart("content") FilePart content) {
+        painting.setId(null);
+        return reactivePaintingClient.uploadPainting(painting, content, null);
+    }
+
+    @PatchMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<PaintingJson> updatePaintingWithUpload(@Valid @RequestPart("painting") PaintingJson painting,
+                                                       @RequestPart(name = "content", required = false) FilePart content,
+                                                       @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (painting.getId() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id картины"));
+        }
+        return reactivePaintingClient.uploadPainting(painting, content, EntityTags.paintingVersion(ifMatch));
+    }
+
+    @GetMapping("/author/{id}")
+    public Mono<Page<PaintingJson>> getPaintingByArtist(@PathVariable UUID id,
+                                                        @RequestParam(name = "content", defaultValue = "false") boolean withContent,
+                                                        @PageableDefault Pageable pageable) {
+        return reactivePaintingClient.getAllPaintingByArtist(id, pageable, withContent);
+    }
+
+    private static DataBuffer toDataBuffer(PaintingContentChunk chunk) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(chunk.getData().asReadOnlyByteBuffer());
+    }
+}
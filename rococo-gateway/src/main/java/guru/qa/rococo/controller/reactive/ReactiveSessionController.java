@@ -0,0 +1,29 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.model.SessionJson;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/session")
+public class ReactiveSessionController {
+
+    @GetMapping
+    Mono<SessionJson> getSessionUser(@AuthenticationPrincipal Jwt principal) {
+        if (principal != null) {
+            return Mono.just(new SessionJson(
+                    principal.getClaim("sub"),
+                    principal.getIssuedAt(),
+                    principal.getExpiresAt()
+            ));
+        } else {
+            return Mono.just(SessionJson.emptySession());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package guru.qa.rococo.controller.reactive;
+
+import guru.qa.rococo.model.UserJson;
+import guru.qa.rococo.service.api.ReactiveUserdataClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/user")
+public class ReactiveUserController {
+
+    private final ReactiveUserdataClient reactiveUserdataClient;
+
+    @Autowired
+    public ReactiveUserController(ReactiveUserdataClient reactiveUserdataClient) {
+        this.reactiveUserdataClient = reactiveUserdataClient;
+    }
+
+    @PatchMapping
+    public Mono<UserJson> updateUserInfo(@Validated @RequestBody UserJson user) {
+        return reactiveUserdataClient.updateUser(user);
+    }
+
+    @GetMapping
+    public Mono<UserJson> getUserInfo(@AuthenticationPrincipal Jwt principal) {
+        String username = principal.getClaim("sub");
+        return reactiveUserdataClient.getUser(username);
+    }
+}
@@ -1,11 +1,15 @@
 package guru.qa.rococo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.AddArtistRequest;
 import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.grpc.rococo.grpc.PatchArtistRequest;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nullable;
 
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public record ArtistJson(
@@ -16,24 +20,71 @@ public record ArtistJson(
         @JsonProperty("biography")
         String biography,
         @JsonProperty("photo")
-        String photo
+        String photo,
+        // sent as the ETag, see EntityTags
+        @JsonIgnore
+        long version
 ) {
 
     public static ArtistJson fromGrpcMessage(ArtistResponse response) {
         return new ArtistJson(
-                UUID.fromString(response.getId().toStringUtf8()),
+                Uuids.read(response.getUuid(), response.getId()),
                 response.getName(),
                 response.getBiography(),
-                response.getPhoto().toStringUtf8()
+                DataUrl.toDataUrl(response.getPhoto()),
+                response.getVersion()
         );
     }
 
+    /**
+     * @return characters of the text this artist carries, the photo data URL included
+     */
+    public int payloadSize() {
+        return length(name) + length(biography) + length(photo);
+    }
+
     public static AddArtistRequest toGrpcMessage(ArtistJson artistJson) {
-        return AddArtistRequest.newBuilder()
+        AddArtistRequest.Builder builder = AddArtistRequest.newBuilder()
                 .setName(artistJson.name)
-                .setBiography(artistJson.biography)
-                .setPhoto(ByteString.copyFrom(artistJson.photo(), StandardCharsets.UTF_8))
-                .build();
+                .setBiography(artistJson.biography);
+        Image photo = DataUrl.toImage(artistJson.photo());
+        if (photo != null) {
+            builder.setPhoto(photo);
+        }
+        return builder.build();
     }
 
-}
\ No newline at end of file
+    /**
+     * Merge-patch semantics: fields left {@code null} keep their stored value and are not sent, and so is a photo
+     * that is not a data URL.
+     */
+    public static PatchArtistRequest toPatchMessage(ArtistJson artistJson, @Nullable Long expectedVersion) {
+        AddArtistRequest.Builder data = AddArtistRequest.newBuilder();
+        FieldMask.Builder mask = FieldMask.newBuilder();
+        if (artistJson.name() != null) {
+            data.setName(artistJson.name());
+            mask.addPaths("name");
+        }
+        if (artistJson.biography() != null) {
+            data.setBiography(artistJson.biography());
+            mask.addPaths("biography");
+        }
+        Image photo = DataUrl.toImage(artistJson.photo());
+        if (photo != null) {
+            data.setPhoto(photo);
+            mask.addPaths("photo");
+        }
+        PatchArtistRequest.Builder builder = PatchArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(artistJson.id()))
+                .setArtistData(data)
+                .setUpdateMask(mask);
+        if (expectedVersion != null) {
+            builder.setExpectedVersion(expectedVersion);
+        }
+        return builder.build();
+    }
+
+    private static int length(@Nullable String value) {
+        return value == null ? 0 : value.length();
+    }
+}
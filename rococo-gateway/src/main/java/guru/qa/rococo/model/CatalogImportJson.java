@@ -0,0 +1,25 @@
+package guru.qa.rococo.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Outcome of a catalog import: how many records were stored, and why the others were not. {@code record} is the
+ * position of the failed record in the archive, from 0.
+ */
+public record CatalogImportJson(
+        @JsonProperty("imported")
+        int imported,
+        @JsonProperty("failed")
+        List<Failure> failed
+) {
+
+    public record Failure(
+            @JsonProperty("record")
+            int record,
+            @JsonProperty("error")
+            String error
+    ) {
+    }
+}
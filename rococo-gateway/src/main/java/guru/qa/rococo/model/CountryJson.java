@@ -2,6 +2,7 @@ package guru.qa.rococo.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import guru.qa.grpc.rococo.grpc.CountryResponse;
+import guru.qa.rococo.grpc.Uuids;
 
 import java.util.UUID;
 
@@ -14,7 +15,7 @@ public record CountryJson(
 
     public static CountryJson fromGrpcMessage(CountryResponse response) {
         return new CountryJson(
-                UUID.fromString(response.getId().toStringUtf8()),
+                Uuids.read(response.getUuid(), response.getId()),
                 response.getName()
         );
     }
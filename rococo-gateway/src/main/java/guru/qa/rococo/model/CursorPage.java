@@ -0,0 +1,31 @@
+package guru.qa.rococo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page of a keyset listing. {@code nextPageToken} is absent on the last page,
+ * {@code totalCount} unless it was asked for with {@code totalCount=true}. {@code totalCountEstimated} is set
+ * when the total of a large unfiltered listing comes from table statistics rather than an exact count.
+ */
+public record CursorPage<T>(
+        @JsonProperty("content")
+        List<T> content,
+        @JsonProperty("nextPageToken")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String nextPageToken,
+        @JsonProperty("totalCount")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        Integer totalCount,
+        @JsonProperty("totalCountEstimated")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        Boolean totalCountEstimated
+) {
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextPageToken, totalCount, totalCountEstimated);
+    }
+}
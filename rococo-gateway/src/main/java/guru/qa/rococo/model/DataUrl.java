@@ -0,0 +1,71 @@
+package guru.qa.rococo.model;
+
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.rococo.grpc.ByteStrings;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Image carried as a {@code data:<mime>;base64,<payload>} string, the format the frontend uploads and renders.
+ * Services only exchange raw {@link Image} bytes, so the gateway is the single place that encodes and decodes it.
+ */
+public record DataUrl(
+        @Nonnull String mimeType,
+        @Nonnull byte[] data
+) {
+
+    private static final String PREFIX = "data:";
+    private static final String BASE64_MARKER = ";base64,";
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    public static boolean isDataUrl(@Nullable String value) {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    public static @Nonnull DataUrl parse(@Nonnull String value) {
+        int markerIndex = value.indexOf(BASE64_MARKER);
+        if (!isDataUrl(value) || markerIndex < 0) {
+            return new DataUrl(DEFAULT_MIME_TYPE, value.getBytes(StandardCharsets.UTF_8));
+        }
+        String mimeType = value.substring(PREFIX.length(), markerIndex);
+        byte[] data = Base64.getMimeDecoder().decode(value.substring(markerIndex + BASE64_MARKER.length()));
+        return new DataUrl(mimeType.isEmpty() ? DEFAULT_MIME_TYPE : mimeType, data);
+    }
+
+    public static @Nonnull DataUrl fromImage(@Nonnull Image image) {
+        return new DataUrl(
+                image.getMimeType().isEmpty() ? DEFAULT_MIME_TYPE : image.getMimeType(),
+                ByteStrings.unwrap(image.getData())
+        );
+    }
+
+    /**
+     * @return data URL of the image, or {@code null} if the service returned no image
+     */
+    public static @Nullable String toDataUrl(@Nonnull Image image) {
+        return image.getData().isEmpty() ? null : fromImage(image).toString();
+    }
+
+    /**
+     * @return raw image for the service, or {@code null} if {@code value} is not a data URL (e.g. a reference URL
+     * the client sent back unchanged), in which case the service keeps the stored image
+     */
+    public static @Nullable Image toImage(@Nullable String value) {
+        if (!isDataUrl(value)) {
+            return null;
+        }
+        DataUrl dataUrl = parse(value);
+        return Image.newBuilder()
+                .setMimeType(dataUrl.mimeType())
+                .setData(ByteStrings.wrap(dataUrl.data()))
+                .build();
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return PREFIX + mimeType + BASE64_MARKER + Base64.getEncoder().encodeToString(data);
+    }
+}
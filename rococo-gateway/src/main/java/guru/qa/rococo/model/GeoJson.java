@@ -3,14 +3,13 @@ package guru.qa.rococo.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import guru.qa.grpc.rococo.grpc.CountryId;
 import guru.qa.grpc.rococo.grpc.Geo;
+import guru.qa.rococo.grpc.Uuids;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.Objects;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Getter
 @Setter
 @AllArgsConstructor
@@ -23,7 +22,7 @@ public class GeoJson {
 
     public static Geo toGrpcMessage(GeoJson geo) {
         CountryId country = CountryId.newBuilder()
-                .setId(copyFromUtf8(geo.getCountry().id().toString()))
+                .setUuid(Uuids.toGrpc(geo.getCountry().id()))
                 .build();
         return Geo.newBuilder()
                 .setCity(geo.getCity())
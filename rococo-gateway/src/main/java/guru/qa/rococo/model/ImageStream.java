@@ -0,0 +1,11 @@
+package guru.qa.rococo.model;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public record ImageStream(
+        @Nonnull MediaType contentType,
+        @Nonnull StreamingResponseBody body
+) {
+}
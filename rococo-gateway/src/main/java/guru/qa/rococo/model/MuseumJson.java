@@ -1,11 +1,16 @@
 package guru.qa.rococo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.AddMuseumRequest;
+import guru.qa.grpc.rococo.grpc.CountryId;
+import guru.qa.grpc.rococo.grpc.Image;
 import guru.qa.grpc.rococo.grpc.MuseumResponse;
+import guru.qa.grpc.rococo.grpc.PatchMuseumRequest;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nullable;
 
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public record MuseumJson(
@@ -18,28 +23,88 @@ public record MuseumJson(
         @JsonProperty("photo")
         String photo,
         @JsonProperty("geo")
-        GeoJson geo
+        GeoJson geo,
+        // sent as the ETag, see EntityTags
+        @JsonIgnore
+        long version
 ) {
 
     public static MuseumJson fromGrpcMessage(MuseumResponse museumResponse) {
+        CountryId countryId = museumResponse.getGeo().getCountry();
         GeoJson geoJson = new GeoJson(
                 museumResponse.getGeo().getCity(),
-                new CountryJson(UUID.fromString(museumResponse.getGeo().getCountry().getId().toStringUtf8()), null)
+                new CountryJson(Uuids.read(countryId.getUuid(), countryId.getId()), null)
         );
         return new MuseumJson(
-                UUID.fromString(museumResponse.getId().toStringUtf8()),
+                Uuids.read(museumResponse.getUuid(), museumResponse.getId()),
                 museumResponse.getTitle(),
                 museumResponse.getDescription(),
-                museumResponse.getPhoto().toStringUtf8(),
-                geoJson);
+                DataUrl.toDataUrl(museumResponse.getPhoto()),
+                geoJson,
+                museumResponse.getVersion());
+    }
+
+    /**
+     * @return a copy located in {@code country}; this museum is left as it is
+     */
+    public MuseumJson withCountry(CountryJson country) {
+        return new MuseumJson(id, title, description, photo, new GeoJson(geo.getCity(), country), version);
+    }
+
+    /**
+     * @return characters of the text this museum carries, the photo data URL included
+     */
+    public int payloadSize() {
+        return length(title) + length(description) + length(photo) + (geo == null ? 0 : length(geo.getCity()));
     }
 
     public static AddMuseumRequest toGrpcMessage(MuseumJson museumJson) {
-        return AddMuseumRequest.newBuilder()
+        AddMuseumRequest.Builder builder = AddMuseumRequest.newBuilder()
                 .setTitle(museumJson.title())
                 .setDescription(museumJson.description())
-                .setPhoto(ByteString.copyFrom(museumJson.photo(), StandardCharsets.UTF_8))
-                .setGeo(GeoJson.toGrpcMessage(museumJson.geo()))
-                .build();
+                .setGeo(GeoJson.toGrpcMessage(museumJson.geo()));
+        Image photo = DataUrl.toImage(museumJson.photo());
+        if (photo != null) {
+            builder.setPhoto(photo);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Merge-patch semantics: fields left {@code null} keep their stored value and are not sent, and so is a photo
+     * that is not a data URL.
+     */
+    public static PatchMuseumRequest toPatchMessage(MuseumJson museumJson, @Nullable Long expectedVersion) {
+        AddMuseumRequest.Builder data = AddMuseumRequest.newBuilder();
+        FieldMask.Builder mask = FieldMask.newBuilder();
+        if (museumJson.title() != null) {
+            data.setTitle(museumJson.title());
+            mask.addPaths("title");
+        }
+        if (museumJson.description() != null) {
+            data.setDescription(museumJson.description());
+            mask.addPaths("description");
+        }
+        if (museumJson.geo() != null) {
+            data.setGeo(GeoJson.toGrpcMessage(museumJson.geo()));
+            mask.addPaths("geo");
+        }
+        Image photo = DataUrl.toImage(museumJson.photo());
+        if (photo != null) {
+            data.setPhoto(photo);
+            mask.addPaths("photo");
+        }
+        PatchMuseumRequest.Builder builder = PatchMuseumRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(museumJson.id()))
+                .setMuseumData(data)
+                .setUpdateMask(mask);
+        if (expectedVersion != null) {
+            builder.setExpectedVersion(expectedVersion);
+        }
+        return builder.build();
+    }
+
+    private static int length(@Nullable String value) {
+        return value == null ? 0 : value.length();
     }
-}
\ No newline at end of file
+}
@@ -1,20 +1,22 @@
 package guru.qa.rococo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.AddPaintingRequest;
 import guru.qa.grpc.rococo.grpc.ArtistId;
+import guru.qa.grpc.rococo.grpc.Image;
 import guru.qa.grpc.rococo.grpc.MuseumId;
 import guru.qa.grpc.rococo.grpc.PaintingResponse;
+import guru.qa.grpc.rococo.grpc.PatchPaintingRequest;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nullable;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.UUID;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Getter
 @Setter
 public class PaintingJson {
@@ -31,38 +33,86 @@ public class PaintingJson {
     private guru.qa.rococo.model.MuseumJson museum;
     @JsonProperty("artist")
     private ArtistJson artist;
+    // sent as the ETag, see EntityTags
+    @JsonIgnore
+    private long version;
 
     public static PaintingJson fromGrpcMessage(PaintingResponse paintingResponse) {
         ArtistJson artist = new ArtistJson(
-                UUID.fromString(paintingResponse.getArtistId().getId().toStringUtf8()),
+                Uuids.read(paintingResponse.getArtistId().getUuid(), paintingResponse.getArtistId().getId()),
+                null,
                 null,
                 null,
-                null);
+                0);
         MuseumJson museum = new MuseumJson(
-                UUID.fromString(paintingResponse.getMuseumId().getId().toStringUtf8()),
+                Uuids.read(paintingResponse.getMuseumId().getUuid(), paintingResponse.getMuseumId().getId()),
+                null,
                 null,
                 null,
                 null,
-                null);
+                0);
 
         PaintingJson paintingJson = new PaintingJson();
-        paintingJson.setId(UUID.fromString(paintingResponse.getId().toStringUtf8()));
+        paintingJson.setId(Uuids.read(paintingResponse.getUuid(), paintingResponse.getId()));
         paintingJson.setTitle(paintingResponse.getTitle());
         paintingJson.setDescription(paintingResponse.getDescription());
-        paintingJson.setContent(paintingResponse.getContent().toStringUtf8());
+        paintingJson.setContent(DataUrl.toDataUrl(paintingResponse.getContent()));
         paintingJson.setArtist(artist);
         paintingJson.setMuseum(museum);
+        paintingJson.setVersion(paintingResponse.getVersion());
         return paintingJson;
     }
 
     public static AddPaintingRequest toGrpcMessage(PaintingJson paintingJson) {
-        return AddPaintingRequest.newBuilder()
+        AddPaintingRequest.Builder builder = AddPaintingRequest.newBuilder()
                 .setTitle(paintingJson.getTitle())
                 .setDescription(paintingJson.getDescription())
-                .setContent(ByteString.copyFrom(paintingJson.getContent(), StandardCharsets.UTF_8))
-                .setMuseumId(MuseumId.newBuilder().setId(copyFromUtf8(paintingJson.getMuseum().id().toString())).build())
-                .setArtistId(ArtistId.newBuilder().setId(copyFromUtf8(paintingJson.getArtist().id().toString())).build())
-                .build();
+                .setMuseumId(MuseumId.newBuilder().setUuid(Uuids.toGrpc(paintingJson.getMuseum().id())).build())
+                .setArtistId(ArtistId.newBuilder().setUuid(Uuids.toGrpc(paintingJson.getArtist().id())).build());
+        // content holding a reference URL means the image was not changed by the client
+        Image content = DataUrl.toImage(paintingJson.getContent());
+        if (content != null) {
+            builder.setContent(content);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Merge-patch semantics: fields left {@code null} keep their stored value and are not sent, and so is content
+     * that is not a data URL, so a title change never carries the image.
+     */
+    public static PatchPaintingRequest toPatchMessage(PaintingJson paintingJson, @Nullable Long expectedVersion) {
+        AddPaintingRequest.Builder data = AddPaintingRequest.newBuilder();
+        FieldMask.Builder mask = FieldMask.newBuilder();
+        if (paintingJson.getTitle() != null) {
+            data.setTitle(paintingJson.getTitle());
+            mask.addPaths("title");
+        }
+        if (paintingJson.getDescription() != null) {
+            data.setDescription(paintingJson.getDescription());
+            mask.addPaths("description");
+        }
+        if (paintingJson.getMuseum() != null && paintingJson.getMuseum().id() != null) {
+            data.setMuseumId(MuseumId.newBuilder().setUuid(Uuids.toGrpc(paintingJson.getMuseum().id())));
+            mask.addPaths("museum_id");
+        }
+        if (paintingJson.getArtist() != null && paintingJson.getArtist().id() != null) {
+            data.setArtistId(ArtistId.newBuilder().setUuid(Uuids.toGrpc(paintingJson.getArtist().id())));
+            mask.addPaths("artist_id");
+        }
+        Image content = DataUrl.toImage(paintingJson.getContent());
+        if (content != null) {
+            data.setContent(content);
+            mask.addPaths("content");
+        }
+        PatchPaintingRequest.Builder builder = PatchPaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(paintingJson.getId()))
+                .setPaintingData(data)
+                .setUpdateMask(mask);
+        if (expectedVersion != null) {
+            builder.setExpectedVersion(expectedVersion);
+        }
+        return builder.build();
     }
 
     @Override
@@ -2,6 +2,7 @@ package guru.qa.rococo.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import guru.qa.grpc.rococo.grpc.UserResponse;
+import guru.qa.rococo.grpc.Uuids;
 import jakarta.validation.constraints.Size;
 
 import java.util.UUID;
@@ -22,7 +23,7 @@ public record UserJson(
 ) {
     public static UserJson fromGrpcMessage(UserResponse response) {
         return new UserJson(
-                UUID.fromString(response.getId().toStringUtf8()),
+                Uuids.read(response.getUuid(), response.getId()),
                 response.getUsername(),
                 response.getFirstname(),
                 response.getLastname(),
@@ -0,0 +1,59 @@
+package guru.qa.rococo.service.api;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Attaches entities fetched in one batch to the rows that reference them. The batch is indexed by id once,
+ * then every row is resolved with a single map lookup, so a page costs O(rows + related) instead of O(rows * related).
+ */
+final class BatchJoin {
+
+    private BatchJoin() {
+    }
+
+    /**
+     * @return distinct ids referenced by {@code rows}, to request the related entities with
+     */
+    static @Nonnull <R, K> Set<K> keys(@Nonnull Collection<R> rows, @Nonnull Function<R, K> foreignKey) {
+        Set<K> keys = new HashSet<>(capacity(rows.size()));
+        for (R row : rows) {
+            keys.add(foreignKey.apply(row));
+        }
+        return keys;
+    }
+
+    /**
+     * Rows whose key is missing from {@code related} are left untouched.
+     */
+    static <R, E, K> void join(@Nonnull Collection<R> rows,
+                               @Nonnull Function<R, K> foreignKey,
+                               @Nonnull Collection<E> related,
+                               @Nonnull Function<E, K> id,
+                               @Nonnull BiConsumer<R, E> attach) {
+        if (rows.isEmpty() || related.isEmpty()) {
+            return;
+        }
+        Map<K, E> index = new HashMap<>(capacity(related.size()));
+        for (E entity : related) {
+            index.putIfAbsent(id.apply(entity), entity);
+        }
+        for (R row : rows) {
+            E entity = index.get(foreignKey.apply(row));
+            if (entity != null) {
+                attach.accept(row, entity);
+            }
+        }
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+}
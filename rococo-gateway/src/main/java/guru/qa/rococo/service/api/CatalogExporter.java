@@ -0,0 +1,73 @@
+package guru.qa.rococo.service.api;
+
+import com.google.protobuf.Empty;
+import guru.qa.grpc.rococo.grpc.*;
+import io.grpc.Context;
+import jakarta.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Writes the whole catalog as an archive {@link CatalogImporter} reads back: artists, then museums, then paintings,
+ * each relayed from its service's export stream as it arrives. The blocking stubs request one message at a time, so
+ * a slow reader slows the services down and memory stays constant whatever the catalog size.
+ */
+@Component
+@Slf4j
+public class CatalogExporter {
+
+    public static final String ARCHIVE_FILENAME = "catalog.bin";
+
+    @GrpcClient("grpcArtistClient")
+    private RococoArtistServiceGrpc.RococoArtistServiceBlockingStub rococoArtistServiceStub;
+
+    @GrpcClient("grpcMuseumClient")
+    private RococoMuseumServiceGrpc.RococoMuseumServiceBlockingStub rococoMuseumServiceStub;
+
+    @GrpcClient("grpcPaintingClient")
+    private RococoPaintingServiceGrpc.RococoPaintingServiceBlockingStub rococoPaintingServiceStub;
+
+    /**
+     * @throws IOException once {@code out} can't be written, e.g. the client went away; the export streams still
+     *                     open are cancelled
+     */
+    public void exportCatalog(@Nonnull OutputStream out) throws IOException {
+        Empty request = Empty.getDefaultInstance();
+        export(() -> rococoArtistServiceStub.exportArtists(request),
+                artist -> CatalogRecord.newBuilder().setArtist(artist).build(), out);
+        export(() -> rococoMuseumServiceStub.exportMuseums(request),
+                museum -> CatalogRecord.newBuilder().setMuseum(museum).build(), out);
+        export(() -> rococoPaintingServiceStub.exportPaintings(request),
+                painting -> CatalogRecord.newBuilder().setPainting(painting).build(), out);
+        out.flush();
+    }
+
+    private static <T> void export(Callable<Iterator<T>> call,
+                                   Function<T, CatalogRecord> toRecord,
+                                   OutputStream out) throws IOException {
+        Context.CancellableContext context = Context.current().withCancellation();
+        try {
+            Iterator<T> items = context.call(call);
+            while (items.hasNext()) {
+                toRecord.apply(items.next()).writeDelimitedTo(out);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // a StatusRuntimeException of the stream, or whatever else context.call rethrows
+            log.error("### Error while exporting catalog ", e);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        } finally {
+            context.cancel(null);
+        }
+    }
+}
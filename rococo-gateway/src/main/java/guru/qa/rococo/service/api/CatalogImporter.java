@@ -0,0 +1,120 @@
+package guru.qa.rococo.service.api;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.model.CatalogImportJson;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Imports a catalog archive, see {@code CatalogRecord} in {@code rococo-catalog.proto}. Records are read one at a
+ * time and forwarded to the bulk import of their service, one client-streaming call per service, which only takes
+ * the next record once the transport is ready: the archive is never held in memory, and a slow service slows down
+ * the reading instead.
+ */
+@Component
+@Slf4j
+public class CatalogImporter {
+
+    public static final String ARCHIVE_MEDIA_TYPE = "application/x-protobuf";
+
+    @GrpcClient("grpcArtistClient")
+    private RococoArtistServiceGrpc.RococoArtistServiceStub rococoArtistServiceAsyncStub;
+
+    @GrpcClient("grpcMuseumClient")
+    private RococoMuseumServiceGrpc.RococoMuseumServiceStub rococoMuseumServiceAsyncStub;
+
+    @GrpcClient("grpcPaintingClient")
+    private RococoPaintingServiceGrpc.RococoPaintingServiceStub rococoPaintingServiceAsyncStub;
+
+    public @Nonnull CatalogImportJson importCatalog(@Nonnull InputStream archive) {
+        Import<ImportArtistRequest> artists = new Import<>(rococoArtistServiceAsyncStub::importArtists);
+        Import<ImportMuseumRequest> museums = new Import<>(rococoMuseumServiceAsyncStub::importMuseums);
+        Import<ImportPaintingRequest> paintings = new Import<>(rococoPaintingServiceAsyncStub::importPaintings);
+        List<Import<?>> imports = List.of(artists, museums, paintings);
+        List<CatalogImportJson.Failure> failed = new ArrayList<>();
+        try {
+            CatalogRecord record;
+            for (int index = 0; (record = CatalogRecord.parseDelimitedFrom(archive)) != null; index++) {
+                switch (record.getRecordCase()) {
+                    case ARTIST -> artists.send(index, record.getArtist());
+                    case MUSEUM -> museums.send(index, record.getMuseum());
+                    case PAINTING -> paintings.send(index, record.getPainting());
+                    default -> failed.add(new CatalogImportJson.Failure(index, "Unknown record"));
+                }
+            }
+            int imported = 0;
+            for (Import<?> serviceImport : imports) {
+                imported += serviceImport.finish(failed);
+            }
+            failed.sort(Comparator.comparingInt(CatalogImportJson.Failure::record));
+            return new CatalogImportJson(imported, failed);
+        } catch (InvalidProtocolBufferException e) {
+            imports.forEach(serviceImport -> serviceImport.abort(e));
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Архив каталога повреждён", e);
+        } catch (IOException e) {
+            imports.forEach(serviceImport -> serviceImport.abort(e));
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не удалось прочитать архив каталога", e);
+        } catch (StatusRuntimeException e) {
+            imports.forEach(serviceImport -> serviceImport.abort(e));
+            log.error("### Error while importing catalog ", e);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        }
+    }
+
+    /**
+     * The import call of one service, started with its first record. Keeps the archive position of every record it
+     * sent, to report the service's per-item results against the archive.
+     */
+    private static final class Import<ReqT> {
+
+        private final Function<StreamObserver<ImportResponse>, StreamObserver<ReqT>> method;
+        private final List<Integer> records = new ArrayList<>();
+        private GrpcUpload<ReqT, ImportResponse> upload;
+
+        private Import(Function<StreamObserver<ImportResponse>, StreamObserver<ReqT>> method) {
+            this.method = method;
+        }
+
+        void send(int record, ReqT message) {
+            if (upload == null) {
+                upload = new GrpcUpload<>();
+                method.apply(upload);
+            }
+            records.add(record);
+            upload.send(message);
+        }
+
+        int finish(List<CatalogImportJson.Failure> failed) {
+            if (upload == null) {
+                return 0;
+            }
+            ImportResponse response = upload.finish();
+            for (ImportResult result : response.getResultsList()) {
+                if (!result.getError().isEmpty()) {
+                    failed.add(new CatalogImportJson.Failure(records.get(result.getIndex()), result.getError()));
+                }
+            }
+            return response.getImported();
+        }
+
+        void abort(Throwable cause) {
+            if (upload != null) {
+                upload.abort(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.grpc.rococo.grpc.CountryDictionaryResponse;
+import guru.qa.rococo.model.CountryJson;
+import jakarta.annotation.Nonnull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of every country known to rococo-geo, ordered by name, with the version stamp it was served under.
+ */
+record CountryDictionary(@Nonnull String version,
+                         @Nonnull List<CountryJson> countries,
+                         @Nonnull Map<UUID, CountryJson> byId,
+                         @Nonnull Instant loadedAt) {
+
+    static @Nonnull CountryDictionary fromGrpcMessage(@Nonnull CountryDictionaryResponse response, @Nonnull Instant loadedAt) {
+        List<CountryJson> countries = response.getCountryList()
+                .stream()
+                .map(CountryJson::fromGrpcMessage)
+                .toList();
+        return new CountryDictionary(
+                response.getVersion(),
+                countries,
+                countries.stream().collect(Collectors.toUnmodifiableMap(CountryJson::id, Function.identity())),
+                loadedAt
+        );
+    }
+
+    /**
+     * The same content, confirmed current at {@code now}.
+     */
+    @Nonnull CountryDictionary confirmedAt(@Nonnull Instant now) {
+        return new CountryDictionary(version, countries, byId, now);
+    }
+
+    boolean isStale(@Nonnull Instant now, @Nonnull Duration refreshInterval) {
+        return loadedAt.plus(refreshInterval).isBefore(now);
+    }
+}
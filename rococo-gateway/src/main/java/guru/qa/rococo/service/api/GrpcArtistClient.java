@@ -1,47 +1,171 @@
 package guru.qa.rococo.service.api;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.Uuids;
 import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.DataUrl;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-
-import static com.google.protobuf.ByteString.copyFromUtf8;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class GrpcArtistClient {
 
+    /**
+     * What a painting shows of its artist: the service leaves the photo and biography columns unread.
+     */
+    private static final FieldMask SUMMARY_MASK = FieldMask.newBuilder()
+            .addPaths("name")
+            .build();
+
+    /**
+     * Id and version only, to revalidate a representation the client already has.
+     */
+    private static final FieldMask VERSION_MASK = FieldMask.newBuilder()
+            .addPaths("version")
+            .build();
+
     @GrpcClient("grpcArtistClient")
     private RococoArtistServiceGrpc.RococoArtistServiceBlockingStub rococoArtistServiceStub;
 
+    @GrpcClient("grpcArtistClient")
+    private RococoArtistServiceGrpc.RococoArtistServiceStub rococoArtistServiceAsyncStub;
+
+    private final NearCache<UUID, ArtistJson> artists;
+    private final NearCache<UUID, ArtistJson> artistSummaries;
+
+    @Autowired
+    public GrpcArtistClient(NearCacheFactory nearCacheFactory) {
+        this.artists = nearCacheFactory.create("artists", ArtistJson::payloadSize);
+        // painting enrichment reads artists through SUMMARY_MASK, so they are kept apart from the full artists
+        this.artistSummaries = nearCacheFactory.create("artist-summaries", ArtistJson::payloadSize);
+    }
+
     public @Nonnull ArtistJson getArtist(UUID id) {
+        return GrpcCall.await(getArtistAsync(id));
+    }
+
+    @Nonnull
+    CompletableFuture<ArtistJson> getArtistAsync(UUID id) {
+        return artists.get(id, this::loadArtist);
+    }
+
+    /**
+     * @return the artist at {@code minVersion} or later: a cached copy older than that is dropped and reloaded
+     */
+    public @Nonnull ArtistJson getArtist(UUID id, long minVersion) {
+        return GrpcCall.await(getArtistAsync(id, minVersion));
+    }
+
+    @Nonnull
+    CompletableFuture<ArtistJson> getArtistAsync(UUID id, long minVersion) {
+        return getArtistAsync(id).thenCompose(artist -> {
+            if (artist.version() >= minVersion) {
+                return CompletableFuture.completedFuture(artist);
+            }
+            evict(id);
+            return getArtistAsync(id);
+        });
+    }
+
+    /**
+     * @return the stored version, read without any other column
+     */
+    public long getArtistVersion(UUID id) {
+        return GrpcCall.await(getArtistVersionAsync(id));
+    }
+
+    @Nonnull
+    CompletableFuture<Long> getArtistVersionAsync(UUID id) {
+        ArtistRequest request = ArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .setReadMask(VERSION_MASK)
+                .build();
+        return GrpcCall.unary(request, rococoArtistServiceAsyncStub::getArtist, "Запрашиваемый художник с id " + id + " не найден")
+                .thenApply(ArtistResponse::getVersion);
+    }
+
+    /**
+     * @return the artist with the {@link #SUMMARY_MASK} fields only
+     */
+    @Nonnull
+    CompletableFuture<ArtistJson> getArtistSummaryAsync(UUID id) {
+        return artistSummaries.get(id, this::loadArtistSummary);
+    }
+
+    /**
+     * @return the summary at {@code minVersion} or later: a cached copy older than that is dropped and reloaded
+     */
+    @Nonnull
+    CompletableFuture<ArtistJson> getArtistSummaryAsync(UUID id, long minVersion) {
+        return getArtistSummaryAsync(id).thenCompose(artist -> {
+            if (artist.version() >= minVersion) {
+                return CompletableFuture.completedFuture(artist);
+            }
+            evict(id);
+            return getArtistSummaryAsync(id);
+        });
+    }
+
+    private CompletableFuture<ArtistJson> loadArtistSummary(UUID id) {
         ArtistRequest request = ArtistRequest.newBuilder()
-                .setId(copyFromUtf8(id.toString()))
+                .setUuid(Uuids.toGrpc(id))
+                .setReadMask(SUMMARY_MASK)
+                .build();
+        return GrpcCall.unary(request, rococoArtistServiceAsyncStub::getArtist, "Запрашиваемый художник с id " + id + " не найден")
+                .thenApply(ArtistJson::fromGrpcMessage);
+    }
+
+    private CompletableFuture<ArtistJson> loadArtist(UUID id) {
+        ArtistRequest request = ArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .build();
+        return GrpcCall.unary(request, rococoArtistServiceAsyncStub::getArtist, "Запрашиваемый художник с id " + id + " не найден")
+                .thenApply(ArtistJson::fromGrpcMessage);
+    }
+
+    /**
+     * @return the stored photo as is, for clients that fetch the binary instead of the inline data URL
+     */
+    public @Nonnull DataUrl getArtistPhoto(UUID id) {
+        ArtistRequest request = ArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
                 .build();
         try {
-            ArtistResponse response = rococoArtistServiceStub.getArtist(request);
-            return ArtistJson.fromGrpcMessage(response);
+            Image photo = rococoArtistServiceStub.getArtist(request).getPhoto();
+            if (photo.getData().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фото художника с id " + id + " не найдено");
+            }
+            return DataUrl.fromImage(photo);
         } catch (StatusRuntimeException e) {
             if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемый художник с id " + id + " не найден", e);
             } else {
-                log.error("### Error while calling gRPC server ", e);
+                log.error("### Error while calling gRPC server", e);
                 throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
             }
         }
@@ -69,39 +193,139 @@ public class GrpcArtistClient {
         }
     }
 
+    /**
+     * Keyset listing, see {@link CursorPage}. An empty {@code pageToken} starts from the first artist.
+     */
+    public @Nonnull CursorPage<ArtistJson> getAllArtist(@Nullable String name,
+                                                        String pageToken,
+                                                        int size,
+                                                        boolean withTotalCount) {
+        AllArtistRequest.Builder builder = AllArtistRequest.newBuilder()
+                .setPageToken(pageToken)
+                .setSize(size)
+                .setWithTotalCount(withTotalCount);
+        if (name != null) {
+            builder.setName(name);
+        }
+        AllArtistRequest request = builder.build();
+
+        try {
+            AllArtistResponse response = rococoArtistServiceStub.getAllArtist(request);
+            List<ArtistJson> artistJsonList = response.getArtistsList()
+                    .stream()
+                    .map(ArtistJson::fromGrpcMessage)
+                    .toList();
+            return new CursorPage<>(
+                    artistJsonList,
+                    response.getNextPageToken().isEmpty() ? null : response.getNextPageToken(),
+                    withTotalCount ? response.getTotalCount() : null,
+                    withTotalCount ? response.getTotalCountEstimated() : null
+            );
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            }
+            log.error("### Error while calling gRPC server ", e);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        }
+    }
+
     public @Nonnull ArtistJson addArtist(ArtistJson artist) {
         AddArtistRequest request = ArtistJson.toGrpcMessage(artist);
         ArtistResponse response = rococoArtistServiceStub.addArtist(request);
         return ArtistJson.fromGrpcMessage(response);
     }
 
-    public @Nonnull ArtistJson updateArtist(ArtistJson artist) {
-        AddArtistRequest artistData = ArtistJson.toGrpcMessage(artist);
-        UpdateArtistRequest request = UpdateArtistRequest.newBuilder()
-                .setId(ByteString.copyFromUtf8(artist.id().toString()))
-                .setArtistData(artistData)
-                .build();
-        ArtistResponse response = rococoArtistServiceStub.updateArtist(request);
-        return ArtistJson.fromGrpcMessage(response);
+    /**
+     * Writes only the fields {@code artist} carries, see {@link ArtistJson#toPatchMessage}.
+     */
+    public @Nonnull ArtistJson patchArtist(ArtistJson artist, @Nullable Long expectedVersion) {
+        try {
+            ArtistResponse response = rococoArtistServiceStub.patchArtist(ArtistJson.toPatchMessage(artist, expectedVersion));
+            return ArtistJson.fromGrpcMessage(response);
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            }
+            if (e.getStatus().getCode() == Status.Code.ABORTED) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Художник с id " + artist.id() + " уже изменён другим запросом", e);
+            }
+            throw e;
+        } finally {
+            evict(artist.id());
+        }
     }
 
-    @Nonnull
-    List<ArtistJson> getArtistByIds(Set<UUID> museumIds) {
-        ArtistIdsRequest.Builder requestBuilder = ArtistIdsRequest.newBuilder();
-        museumIds.forEach(museumId -> requestBuilder.addId(ByteString.copyFromUtf8(museumId.toString())));
-        ArtistIdsRequest request = requestBuilder.build();
+    /**
+     * Adds an artist, or updates it when {@code artist} has an id, streaming the photo to the artist service.
+     * Without a photo an existing artist keeps its current one.
+     */
+    public @Nonnull ArtistJson uploadArtist(ArtistJson artist, @Nullable MultipartFile photo, @Nullable Long expectedVersion) {
+        AddArtistRequest.Builder data = ArtistJson.toGrpcMessage(artist).toBuilder();
+        Image metadata = GrpcUpload.metadata(photo);
+        if (metadata != null) {
+            data.setPhoto(metadata);
+        }
+        UpdateArtistRequest.Builder artistData = UpdateArtistRequest.newBuilder()
+                .setArtistData(data);
+        if (artist.id() != null) {
+            artistData.setUuid(Uuids.toGrpc(artist.id()));
+        }
+        if (expectedVersion != null) {
+            artistData.setExpectedVersion(expectedVersion);
+        }
+        GrpcUpload<UploadArtistRequest, ArtistResponse> upload = new GrpcUpload<>();
+        rococoArtistServiceAsyncStub.uploadArtist(upload);
         try {
-            AllArtistByIdsResponse response = rococoArtistServiceStub.getArtistByIds(request);
-            return response.getArtistList()
-                    .stream()
-                    .map(ArtistJson::fromGrpcMessage)
-                    .toList();
+            upload.send(UploadArtistRequest.newBuilder().setArtist(artistData).build());
+            upload.sendImage(photo, chunk -> UploadArtistRequest.newBuilder().setPhotoChunk(chunk).build());
+            return ArtistJson.fromGrpcMessage(upload.finish());
+        } catch (IOException e) {
+            upload.abort(e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не удалось прочитать загружаемое изображение", e);
         } catch (StatusRuntimeException e) {
-            log.error("### Error while calling gRPC server", e);
-            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемый художник с id " + artist.id() + " не найден", e);
+            } else if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            } else if (e.getStatus().getCode() == Status.Code.ABORTED) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Художник с id " + artist.id() + " уже изменён другим запросом", e);
+            } else {
+                log.error("### Error while calling gRPC server", e);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+            }
+        } finally {
+            if (artist.id() != null) {
+                evict(artist.id());
+            }
         }
     }
 
+    /**
+     * @return the artists with the {@link #SUMMARY_MASK} fields only
+     */
+    @Nonnull
+    CompletableFuture<List<ArtistJson>> getArtistByIdsAsync(Set<UUID> artistIds) {
+        return artistSummaries.getAll(artistIds, this::loadArtists)
+                .thenApply(found -> List.copyOf(found.values()));
+    }
+
+    private CompletableFuture<Map<UUID, ArtistJson>> loadArtists(Set<UUID> artistIds) {
+        ArtistIdsRequest.Builder requestBuilder = ArtistIdsRequest.newBuilder()
+                .setReadMask(SUMMARY_MASK);
+        artistIds.forEach(artistId -> requestBuilder.addUuid(Uuids.toGrpc(artistId)));
+        return GrpcCall.unary(requestBuilder.build(), rococoArtistServiceAsyncStub::getArtistByIds, null)
+                .thenApply(response -> response.getArtistList()
+                        .stream()
+                        .map(ArtistJson::fromGrpcMessage)
+                        .collect(Collectors.toMap(ArtistJson::id, Function.identity(), (first, second) -> first)));
+    }
+
+    void evict(UUID id) {
+        artists.invalidate(id);
+        artistSummaries.invalidate(id);
+    }
+
     public @Nonnull Optional<ArtistJson> getArtistByName(@Nonnull String name) {
         try {
             GetArtistRequest request = GetArtistRequest.newBuilder()
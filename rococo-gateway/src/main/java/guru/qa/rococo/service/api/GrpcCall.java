@@ -0,0 +1,75 @@
+package guru.qa.rococo.service.api;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Unary calls on async stubs as {@link CompletableFuture}s, so independent lookups run side by side
+ * and dependent ones are chained on the gRPC callback threads instead of blocking the request thread.
+ * Failures are translated the same way the blocking clients translate them.
+ */
+@Slf4j
+final class GrpcCall {
+
+    private GrpcCall() {
+    }
+
+    /**
+     * @param notFoundMessage message of the 404 to answer with on {@code NOT_FOUND}; {@code null} turns it into a 503
+     */
+    static @Nonnull <ReqT, RespT> CompletableFuture<RespT> unary(@Nonnull ReqT request,
+                                                                @Nonnull BiConsumer<ReqT, StreamObserver<RespT>> method,
+                                                                @Nullable String notFoundMessage) {
+        CompletableFuture<RespT> response = new CompletableFuture<>();
+        method.accept(request, new StreamObserver<>() {
+            @Override
+            public void onNext(RespT value) {
+                response.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                StatusRuntimeException e = t instanceof StatusRuntimeException sre
+                        ? sre
+                        : Status.fromThrowable(t).asRuntimeException();
+                if (notFoundMessage != null && e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                    response.completeExceptionally(new ResponseStatusException(HttpStatus.NOT_FOUND, notFoundMessage, e));
+                } else {
+                    log.error("### Error while calling gRPC server", e);
+                    response.completeExceptionally(
+                            new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e)
+                    );
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Waits for the call on the request thread, rethrowing the {@link ResponseStatusException} it failed with.
+     */
+    static <T> T await(@Nonnull CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e.getCause());
+        }
+    }
+}
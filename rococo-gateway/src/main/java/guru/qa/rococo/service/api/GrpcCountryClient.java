@@ -1,13 +1,12 @@
 package guru.qa.rococo.service.api;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.model.CountryJson;
-import io.grpc.Status;
-import io.grpc.StatusRuntimeException;
 import jakarta.annotation.Nonnull;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -15,69 +14,142 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
+/**
+ * Countries never change while rococo-geo is running, so the whole dictionary is pulled once and every lookup
+ * is answered locally. After {@code rococo-api.country-dictionary.refresh-interval} the next lookup triggers a single
+ * background revalidation by version stamp and keeps being served from the stale copy until it completes.
+ */
 @Component
 @Slf4j
 public class GrpcCountryClient {
 
     @GrpcClient("grpcGeoClient")
-    private RococoGeoServiceGrpc.RococoGeoServiceBlockingStub rococoCountryServiceStub;
+    private RococoGeoServiceGrpc.RococoGeoServiceStub rococoCountryServiceAsyncStub;
+
+    private final Duration refreshInterval;
+    private final AtomicReference<CountryDictionary> dictionary = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<CountryDictionary>> refreshing = new AtomicReference<>();
+
+    @Autowired
+    public GrpcCountryClient(@Value("${rococo-api.country-dictionary.refresh-interval}") Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
 
     public @Nonnull Page<CountryJson> getAllCountry(Pageable pageable) {
-        AllCountryRequest request = AllCountryRequest.newBuilder()
-                .setPage(pageable.getPageNumber())
-                .setSize(pageable.getPageSize())
-                .build();
-        try {
-            AllCountryResponse response = rococoCountryServiceStub.getAllCountry(request);
-            List<CountryJson> countryJsonList = response.getCountryList()
-                    .stream()
-                    .map(CountryJson::fromGrpcMessage)
-                    .toList();
-            return new PageImpl<>(countryJsonList, pageable, response.getTotalCount());
-        } catch (StatusRuntimeException e) {
-            log.error("### Error while calling gRPC server ", e);
-            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
-        }
+        return GrpcCall.await(getAllCountryAsync(pageable));
+    }
+
+    @Nonnull
+    CompletableFuture<Page<CountryJson>> getAllCountryAsync(Pageable pageable) {
+        return dictionaryAsync().thenApply(found -> {
+            List<CountryJson> countries = found.countries();
+            int from = (int) Math.min(pageable.getOffset(), countries.size());
+            int to = Math.min(from + pageable.getPageSize(), countries.size());
+            return new PageImpl<>(countries.subList(from, to), pageable, countries.size());
+        });
+    }
+
+    /**
+     * @return the version stamp of the dictionary lookups are currently answered from
+     */
+    public @Nonnull String getDictionaryVersion() {
+        return GrpcCall.await(getDictionaryVersionAsync());
+    }
+
+    @Nonnull
+    CompletableFuture<String> getDictionaryVersionAsync() {
+        return dictionaryAsync().thenApply(CountryDictionary::version);
     }
 
     @Nonnull
     CountryJson getCountryById(UUID id) {
-        CountryId request = CountryId.newBuilder()
-                .setId(copyFromUtf8(id.toString()))
-                .build();
-        try {
-            CountryResponse response = rococoCountryServiceStub.getCountry(request);
-            return new CountryJson(UUID.fromString(response.getId().toStringUtf8()), response.getName());
-        } catch (StatusRuntimeException e) {
-            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемая страна с id " + id + " не найдена", e);
-            } else {
-                log.error("### Error while calling gRPC server", e);
-                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        return GrpcCall.await(getCountryByIdAsync(id));
+    }
+
+    @Nonnull
+    CompletableFuture<CountryJson> getCountryByIdAsync(UUID id) {
+        return dictionaryAsync().thenApply(found -> {
+            CountryJson country = found.byId().get(id);
+            if (country == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемая страна с id " + id + " не найдена");
             }
-        }
+            return country;
+        });
     }
 
     @Nonnull
     List<CountryJson> getCountryByIds(Set<UUID> countryIds) {
-        CountryIdsRequest.Builder requestBuilder = CountryIdsRequest.newBuilder();
-        countryIds.forEach(countryId -> requestBuilder.addId(ByteString.copyFromUtf8(countryId.toString())));
-        CountryIdsRequest request = requestBuilder.build();
-        try {
-            AllCountryByIdsResponse response = rococoCountryServiceStub.getCountriesByIds(request);
-            return response.getCountryList()
-                    .stream()
-                    .map(CountryJson::fromGrpcMessage)
-                    .toList();
-        } catch (StatusRuntimeException e) {
-            log.error("### Error while calling gRPC server", e);
-            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        return GrpcCall.await(getCountryByIdsAsync(countryIds));
+    }
+
+    @Nonnull
+    CompletableFuture<List<CountryJson>> getCountryByIdsAsync(Set<UUID> countryIds) {
+        return dictionaryAsync().thenApply(found -> countryIds.stream()
+                .map(found.byId()::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    private CompletableFuture<CountryDictionary> dictionaryAsync() {
+        CountryDictionary current = dictionary.get();
+        if (current == null) {
+            return refresh();
+        }
+        if (current.isStale(Instant.now(), refreshInterval)) {
+            refresh();
         }
+        return CompletableFuture.completedFuture(current);
+    }
+
+    /**
+     * Joins the revalidation already in flight, if any, so concurrent lookups issue one call between them.
+     */
+    private CompletableFuture<CountryDictionary> refresh() {
+        while (true) {
+            CompletableFuture<CountryDictionary> inFlight = refreshing.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<CountryDictionary> started = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, started)) {
+                loadDictionary().whenComplete((loaded, e) -> {
+                    if (loaded != null) {
+                        dictionary.set(loaded);
+                    }
+                    refreshing.set(null);
+                    if (e != null) {
+                        started.completeExceptionally(e);
+                    } else {
+                        started.complete(loaded);
+                    }
+                });
+                return started;
+            }
+        }
+    }
+
+    private CompletableFuture<CountryDictionary> loadDictionary() {
+        CountryDictionary current = dictionary.get();
+        CountryDictionaryRequest request = CountryDictionaryRequest.newBuilder()
+                .setKnownVersion(current != null ? current.version() : "")
+                .build();
+        return GrpcCall.unary(request, rococoCountryServiceAsyncStub::getCountryDictionary, null)
+                .thenApply(response -> {
+                    Instant now = Instant.now();
+                    if (response.getUnchanged() && current != null) {
+                        return current.confirmedAt(now);
+                    }
+                    log.info("### Loaded country dictionary {} with {} countries", response.getVersion(), response.getCountryCount());
+                    return CountryDictionary.fromGrpcMessage(response, now);
+                });
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,11 @@
 package guru.qa.rococo.service.api;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.Uuids;
 import guru.qa.rococo.model.CountryJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.DataUrl;
 import guru.qa.rococo.model.MuseumJson;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -16,39 +19,152 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Component
 @Slf4j
 public class GrpcMuseumClient {
 
+    /**
+     * What a painting shows of its museum: the service leaves the photo and description columns unread.
+     */
+    private static final FieldMask SUMMARY_MASK = FieldMask.newBuilder()
+            .addPaths("title")
+            .addPaths("geo")
+            .build();
+
+    /**
+     * Id and version only, to revalidate a representation the client already has.
+     */
+    private static final FieldMask VERSION_MASK = FieldMask.newBuilder()
+            .addPaths("version")
+            .build();
+
     @GrpcClient("grpcMuseumClient")
     private RococoMuseumServiceGrpc.RococoMuseumServiceBlockingStub rococoMuseumServiceStub;
 
+    @GrpcClient("grpcMuseumClient")
+    private RococoMuseumServiceGrpc.RococoMuseumServiceStub rococoMuseumServiceAsyncStub;
+
     private final GrpcCountryClient grpcCountryClient;
+    private final NearCache<UUID, MuseumJson> museums;
+    private final NearCache<UUID, MuseumJson> museumSummaries;
 
     @Autowired
-    public GrpcMuseumClient(GrpcCountryClient grpcCountryClient) {
+    public GrpcMuseumClient(GrpcCountryClient grpcCountryClient, NearCacheFactory nearCacheFactory) {
         this.grpcCountryClient = grpcCountryClient;
+        this.museums = nearCacheFactory.create("museums", MuseumJson::payloadSize);
+        // painting enrichment reads museums through SUMMARY_MASK, so they are kept apart from the full museums
+        this.museumSummaries = nearCacheFactory.create("museum-summaries", MuseumJson::payloadSize);
     }
 
     public @Nonnull MuseumJson getMuseum(UUID id) {
+        return GrpcCall.await(getMuseumAsync(id));
+    }
+
+    /**
+     * The country is looked up as soon as the museum arrives, without returning to the caller's thread.
+     */
+    @Nonnull
+    CompletableFuture<MuseumJson> getMuseumAsync(UUID id) {
+        return museums.get(id, this::loadMuseum);
+    }
+
+    /**
+     * @return the museum at {@code minVersion} or later: a cached copy older than that is dropped and reloaded
+     */
+    public @Nonnull MuseumJson getMuseum(UUID id, long minVersion) {
+        return GrpcCall.await(getMuseumAsync(id, minVersion));
+    }
+
+    @Nonnull
+    CompletableFuture<MuseumJson> getMuseumAsync(UUID id, long minVersion) {
+        return getMuseumAsync(id).thenCompose(museum -> {
+            if (museum.version() >= minVersion) {
+                return CompletableFuture.completedFuture(museum);
+            }
+            evict(id);
+            return getMuseumAsync(id);
+        });
+    }
+
+    /**
+     * @return the stored version, read without any other column
+     */
+    public long getMuseumVersion(UUID id) {
+        return GrpcCall.await(getMuseumVersionAsync(id));
+    }
+
+    @Nonnull
+    CompletableFuture<Long> getMuseumVersionAsync(UUID id) {
+        MuseumRequest request = MuseumRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .setReadMask(VERSION_MASK)
+                .build();
+        return GrpcCall.unary(request, rococoMuseumServiceAsyncStub::getMuseum, "Запрашиваемый музей с id " + id + " не найден")
+                .thenApply(MuseumResponse::getVersion);
+    }
+
+    private CompletableFuture<MuseumJson> loadMuseum(UUID id) {
+        return loadMuseum(id, FieldMask.getDefaultInstance());
+    }
+
+    /**
+     * @return the museum with the {@link #SUMMARY_MASK} fields and its country
+     */
+    @Nonnull
+    CompletableFuture<MuseumJson> getMuseumSummaryAsync(UUID id) {
+        return museumSummaries.get(id, museumId -> loadMuseum(museumId, SUMMARY_MASK));
+    }
+
+    /**
+     * @return the summary at {@code minVersion} or later: a cached copy older than that is dropped and reloaded
+     */
+    @Nonnull
+    CompletableFuture<MuseumJson> getMuseumSummaryAsync(UUID id, long minVersion) {
+        return getMuseumSummaryAsync(id).thenCompose(museum -> {
+            if (museum.version() >= minVersion) {
+                return CompletableFuture.completedFuture(museum);
+            }
+            evict(id);
+            return getMuseumSummaryAsync(id);
+        });
+    }
+
+    private CompletableFuture<MuseumJson> loadMuseum(UUID id, FieldMask readMask) {
+        MuseumRequest request = MuseumRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .setReadMask(readMask)
+                .build();
+        return GrpcCall.unary(request, rococoMuseumServiceAsyncStub::getMuseum, "Запрашиваемый музей с id " + id + " не найден")
+                .thenApply(MuseumJson::fromGrpcMessage)
+                .thenCompose(museum -> grpcCountryClient.getCountryByIdAsync(museum.geo().getCountry().id())
+                        .thenApply(museum::withCountry));
+    }
+
+    /**
+     * @return the stored photo as is, for clients that fetch the binary instead of the inline data URL
+     */
+    public @Nonnull DataUrl getMuseumPhoto(UUID id) {
         MuseumRequest request = MuseumRequest.newBuilder()
-                .setId(copyFromUtf8(id.toString()))
+                .setUuid(Uuids.toGrpc(id))
                 .build();
         try {
-            MuseumResponse response = rococoMuseumServiceStub.getMuseum(request);
-            MuseumJson museum = MuseumJson.fromGrpcMessage(response);
-            enrichMuseumWithCountry(museum);
-            return museum;
+            Image photo = rococoMuseumServiceStub.getMuseum(request).getPhoto();
+            if (photo.getData().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фото музея с id " + id + " не найдено");
+            }
+            return DataUrl.fromImage(photo);
         } catch (StatusRuntimeException e) {
             if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемый музей с id " + id + " не найден", e);
@@ -74,9 +190,45 @@ public class GrpcMuseumClient {
                     .stream()
                     .map(MuseumJson::fromGrpcMessage)
                     .toList();
-            enrichMuseumWithCountry(museumJsonList);
-            return new PageImpl<>(museumJsonList, pageable, response.getTotalCount());
+            return new PageImpl<>(enrichMuseumWithCountry(museumJsonList), pageable, response.getTotalCount());
+        } catch (StatusRuntimeException e) {
+            log.error("### Error while calling gRPC server ", e);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        }
+    }
+
+    /**
+     * Keyset listing, see {@link CursorPage}. An empty {@code pageToken} starts from the first museum.
+     */
+    public @Nonnull CursorPage<MuseumJson> getAllMuseum(@Nullable String title,
+                                                        String pageToken,
+                                                        int size,
+                                                        boolean withTotalCount) {
+        AllMuseumRequest.Builder builder = AllMuseumRequest.newBuilder()
+                .setPageToken(pageToken)
+                .setSize(size)
+                .setWithTotalCount(withTotalCount);
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        AllMuseumRequest request = builder.build();
+
+        try {
+            AllMuseumResponse response = rococoMuseumServiceStub.getAllMuseum(request);
+            List<MuseumJson> museumJsonList = response.getMuseumList()
+                    .stream()
+                    .map(MuseumJson::fromGrpcMessage)
+                    .toList();
+            return new CursorPage<>(
+                    enrichMuseumWithCountry(museumJsonList),
+                    response.getNextPageToken().isEmpty() ? null : response.getNextPageToken(),
+                    withTotalCount ? response.getTotalCount() : null,
+                    withTotalCount ? response.getTotalCountEstimated() : null
+            );
         } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            }
             log.error("### Error while calling gRPC server ", e);
             throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
         }
@@ -85,58 +237,133 @@ public class GrpcMuseumClient {
     public @Nonnull MuseumJson addMuseum(MuseumJson museum) {
         AddMuseumRequest request = MuseumJson.toGrpcMessage(museum);
         MuseumResponse response = rococoMuseumServiceStub.addMuseum(request);
-        MuseumJson addedMuseum = MuseumJson.fromGrpcMessage(response);
-        enrichMuseumWithCountry(addedMuseum);
-        return addedMuseum;
+        return enrichMuseumWithCountry(MuseumJson.fromGrpcMessage(response));
     }
 
-    public @Nonnull MuseumJson updateMuseum(MuseumJson museum) {
-        AddMuseumRequest museumData = MuseumJson.toGrpcMessage(museum);
-        UpdateMuseumRequest request = UpdateMuseumRequest.newBuilder()
-                .setId(ByteString.copyFromUtf8(museum.id().toString()))
-                .setMuseumData(museumData)
-                .build();
-        MuseumResponse response = rococoMuseumServiceStub.updateMuseum(request);
-        MuseumJson addedMuseum = MuseumJson.fromGrpcMessage(response);
-        enrichMuseumWithCountry(addedMuseum);
-        return addedMuseum;
+    /**
+     * Writes only the fields {@code museum} carries, see {@link MuseumJson#toPatchMessage}.
+     */
+    public @Nonnull MuseumJson patchMuseum(MuseumJson museum, @Nullable Long expectedVersion) {
+        try {
+            MuseumResponse response = rococoMuseumServiceStub.patchMuseum(MuseumJson.toPatchMessage(museum, expectedVersion));
+            return enrichMuseumWithCountry(MuseumJson.fromGrpcMessage(response));
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            }
+            if (e.getStatus().getCode() == Status.Code.ABORTED) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Музей с id " + museum.id() + " уже изменён другим запросом", e);
+            }
+            throw e;
+        } finally {
+            evict(museum.id());
+        }
     }
 
-    @Nonnull
-    List<MuseumJson> getMuseumByIds(Set<UUID> museumIds) {
-        MuseumIdsRequest.Builder requestBuilder = MuseumIdsRequest.newBuilder();
-        museumIds.forEach(museumId -> requestBuilder.addId(ByteString.copyFromUtf8(museumId.toString())));
-        MuseumIdsRequest request = requestBuilder.build();
+    /**
+     * Adds a museum, or updates it when {@code museum} has an id, streaming the photo to the museum service.
+     * Without a photo an existing museum keeps its current one.
+     */
+    public @Nonnull MuseumJson uploadMuseum(MuseumJson museum, @Nullable MultipartFile photo, @Nullable Long expectedVersion) {
+        AddMuseumRequest.Builder data = MuseumJson.toGrpcMessage(museum).toBuilder();
+        Image metadata = GrpcUpload.metadata(photo);
+        if (metadata != null) {
+            data.setPhoto(metadata);
+        }
+        UpdateMuseumRequest.Builder museumData = UpdateMuseumRequest.newBuilder()
+                .setMuseumData(data);
+        if (museum.id() != null) {
+            museumData.setUuid(Uuids.toGrpc(museum.id()));
+        }
+        if (expectedVersion != null) {
+            museumData.setExpectedVersion(expectedVersion);
+        }
+        GrpcUpload<UploadMuseumRequest, MuseumResponse> upload = new GrpcUpload<>();
+        rococoMuseumServiceAsyncStub.uploadMuseum(upload);
         try {
-            AllMuseumByIdsResponse response = rococoMuseumServiceStub.getMuseumByIds(request);
-            return response.getMuseumList()
-                    .stream()
-                    .map(MuseumJson::fromGrpcMessage)
-                    .toList();
+            upload.send(UploadMuseumRequest.newBuilder().setMuseum(museumData).build());
+            upload.sendImage(photo, chunk -> UploadMuseumRequest.newBuilder().setPhotoChunk(chunk).build());
+            return enrichMuseumWithCountry(MuseumJson.fromGrpcMessage(upload.finish()));
+        } catch (IOException e) {
+            upload.abort(e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не удалось прочитать загружаемое изображение", e);
         } catch (StatusRuntimeException e) {
-            log.error("### Error while calling gRPC server", e);
-            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемый музей с id " + museum.id() + " не найден", e);
+            } else if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            } else if (e.getStatus().getCode() == Status.Code.ABORTED) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Музей с id " + museum.id() + " уже изменён другим запросом", e);
+            } else {
+                log.error("### Error while calling gRPC server", e);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+            }
+        } finally {
+            if (museum.id() != null) {
+                evict(museum.id());
+            }
         }
     }
 
-    private void enrichMuseumWithCountry(MuseumJson museum) {
-        CountryJson country = grpcCountryClient.getCountryById(museum.geo().getCountry().id());
-        museum.geo().setCountry(country);
+    /**
+     * @return museums with the {@link #SUMMARY_MASK} fields and their countries, which are requested in one batch
+     * as soon as the museums arrive
+     */
+    @Nonnull
+    CompletableFuture<List<MuseumJson>> getMuseumByIdsAsync(Set<UUID> museumIds) {
+        return museumSummaries.getAll(museumIds, this::loadMuseums)
+                .thenApply(found -> List.copyOf(found.values()));
+    }
+
+    private CompletableFuture<Map<UUID, MuseumJson>> loadMuseums(Set<UUID> museumIds) {
+        MuseumIdsRequest.Builder requestBuilder = MuseumIdsRequest.newBuilder()
+                .setReadMask(SUMMARY_MASK);
+        museumIds.forEach(museumId -> requestBuilder.addUuid(Uuids.toGrpc(museumId)));
+        return GrpcCall.unary(requestBuilder.build(), rococoMuseumServiceAsyncStub::getMuseumByIds, null)
+                .thenApply(response -> response.getMuseumList()
+                        .stream()
+                        .map(MuseumJson::fromGrpcMessage)
+                        .toList())
+                .thenCompose(this::enrichMuseumWithCountryAsync)
+                .thenApply(found -> found.stream()
+                        .collect(Collectors.toMap(MuseumJson::id, Function.identity(), (first, second) -> first)));
     }
 
-    private void enrichMuseumWithCountry(List<MuseumJson> museumJsonList) {
-        Set<UUID> countryIds = museumJsonList.stream()
-                .map(museum -> museum.geo().getCountry().id())
-                .collect(Collectors.toSet());
+    void evict(UUID id) {
+        museums.invalidate(id);
+        museumSummaries.invalidate(id);
+    }
 
-        List<CountryJson> countries = grpcCountryClient.getCountryByIds(countryIds);
+    /**
+     * The museums come back as copies with their country, so an instance that is cached already, or about to be, is
+     * never modified.
+     */
+    private MuseumJson enrichMuseumWithCountry(MuseumJson museum) {
+        return museum.withCountry(grpcCountryClient.getCountryById(museum.geo().getCountry().id()));
+    }
 
-        museumJsonList.forEach(museum -> {
-            UUID countryId = museum.geo().getCountry().id();
-            Optional<CountryJson> matchingCountry = countries.stream()
-                    .filter(country -> country.id().equals(countryId))
-                    .findFirst();
-            matchingCountry.ifPresent(country -> museum.geo().setCountry(country));
+    private List<MuseumJson> enrichMuseumWithCountry(List<MuseumJson> museumJsonList) {
+        return GrpcCall.await(enrichMuseumWithCountryAsync(museumJsonList));
+    }
+
+    /**
+     * @return copies of the museums with their countries, see {@link #enrichMuseumWithCountry(MuseumJson)}
+     */
+    CompletableFuture<List<MuseumJson>> enrichMuseumWithCountryAsync(List<MuseumJson> museumJsonList) {
+        if (museumJsonList.isEmpty()) {
+            return CompletableFuture.completedFuture(museumJsonList);
+        }
+        Set<UUID> countryIds = BatchJoin.keys(museumJsonList, museum -> museum.geo().getCountry().id());
+
+        return grpcCountryClient.getCountryByIdsAsync(countryIds).thenApply(countries -> {
+            Map<UUID, CountryJson> countriesById = countries.stream()
+                    .collect(Collectors.toMap(CountryJson::id, Function.identity(), (first, second) -> first));
+            return museumJsonList.stream()
+                    .map(museum -> {
+                        CountryJson country = countriesById.get(museum.geo().getCountry().id());
+                        return country == null ? museum : museum.withCountry(country);
+                    })
+                    .toList();
         });
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,14 @@
 package guru.qa.rococo.service.api;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.Uuids;
 import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.ImageStream;
 import guru.qa.rococo.model.MuseumJson;
 import guru.qa.rococo.model.PaintingJson;
+import io.grpc.Context;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import jakarta.annotation.Nonnull;
@@ -12,45 +16,66 @@ import jakarta.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-
-import static com.google.protobuf.ByteString.copyFromUtf8;
-import static java.util.stream.Collectors.toSet;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @Slf4j
 public class GrpcPaintingClient {
 
+    /**
+     * Image linked from listings, which show paintings as thumbnails; a single painting links its original image.
+     */
+    static final ImageVariant LISTING_VARIANT = ImageVariant.SMALL;
+
     @GrpcClient("grpcPaintingClient")
     private RococoPaintingServiceGrpc.RococoPaintingServiceBlockingStub rococoPaintingServiceStub;
 
+    @GrpcClient("grpcPaintingClient")
+    private RococoPaintingServiceGrpc.RococoPaintingServiceStub rococoPaintingServiceAsyncStub;
+
     private final GrpcMuseumClient grpcMuseumClient;
     private final GrpcArtistClient grpcArtistClient;
+    private final String rococoApiUri;
 
     @Autowired
-    public GrpcPaintingClient(GrpcMuseumClient grpcMuseumClient, GrpcArtistClient grpcArtistClient) {
+    public GrpcPaintingClient(GrpcMuseumClient grpcMuseumClient,
+                              GrpcArtistClient grpcArtistClient,
+                              @Value("${rococo-api.base-uri}") String rococoApiUri) {
         this.grpcMuseumClient = grpcMuseumClient;
         this.grpcArtistClient = grpcArtistClient;
+        this.rococoApiUri = rococoApiUri;
     }
 
-    public @Nonnull PaintingJson getPainting(UUID id) {
+    /**
+     * @param versions versions read by {@link #getPaintingVersions}, {@code null} without them: the museum and artist
+     *                 are attached at those versions or later, so the body carries the tag that was compared or a
+     *                 newer one
+     */
+    public @Nonnull PaintingJson getPainting(UUID id, boolean withContent, @Nullable PaintingJson versions) {
         PaintingRequest request = PaintingRequest.newBuilder()
-                .setId(copyFromUtf8(id.toString()))
+                .setUuid(Uuids.toGrpc(id))
+                .setWithContent(withContent)
                 .build();
         try {
             PaintingResponse response = rococoPaintingServiceStub.getPainting(request);
-            PaintingJson painting = PaintingJson.fromGrpcMessage(response);
-            enrichPaintingData(painting);
+            PaintingJson painting = fromGrpcMessage(response);
+            enrichPaintingData(painting, versions);
             return painting;
         } catch (StatusRuntimeException e) {
             if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
@@ -62,10 +87,89 @@ public class GrpcPaintingClient {
         }
     }
 
-    public @Nonnull Page<PaintingJson> getAllPainting(@Nullable String title, Pageable pageable) {
+    /**
+     * What the tag of a painting is made of, each read without any other column of its service: the painting without
+     * its image, then the versions of its museum and artist side by side. Unlike the body, this never comes from the
+     * near caches, so a renamed museum or artist changes the tag right away.
+     *
+     * @return the painting with its museum and artist as ids and versions only
+     */
+    public @Nonnull PaintingJson getPaintingVersions(UUID id) {
+        return GrpcCall.await(getPaintingVersionsAsync(id));
+    }
+
+    @Nonnull
+    CompletableFuture<PaintingJson> getPaintingVersionsAsync(UUID id) {
+        PaintingRequest request = PaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .build();
+        return GrpcCall.unary(request, rococoPaintingServiceAsyncStub::getPainting, "Запрашиваемая картина с id " + id + " не найдена")
+                .thenApply(PaintingJson::fromGrpcMessage)
+                .thenCompose(painting -> {
+                    UUID museumId = painting.getMuseum().id();
+                    UUID artistId = painting.getArtist().id();
+                    return grpcMuseumClient.getMuseumVersionAsync(museumId)
+                            .thenCombine(grpcArtistClient.getArtistVersionAsync(artistId), (museumVersion, artistVersion) -> {
+                                painting.setMuseum(new MuseumJson(museumId, null, null, null, null, museumVersion));
+                                painting.setArtist(new ArtistJson(artistId, null, null, null, artistVersion));
+                                return painting;
+                            });
+                });
+    }
+
+    /**
+     * Opens a server stream of image chunks. The first chunk is awaited here so that a missing painting becomes a 404
+     * before the response is committed; the remaining chunks are relayed one by one while the body is written.
+     * The stream is cancelled once the body is written or fails, and on any failure before it is returned; a body that
+     * never runs, as when the client is gone before the async dispatch, is left to the
+     * {@code StreamPaintingContent} deadline.
+     */
+    public @Nonnull ImageStream streamPaintingContent(UUID id, @Nullable ImageVariant variant) {
+        PaintingRequest request = contentRequest(id, variant);
+        Context.CancellableContext context = Context.current().withCancellation();
+        try {
+            Iterator<PaintingContentChunk> chunks = context.call(() -> rococoPaintingServiceStub.streamPaintingContent(request));
+            PaintingContentChunk first = chunks.next();
+            return new ImageStream(contentType(id, first.getContentType()), out -> {
+                try {
+                    first.getData().writeTo(out);
+                    while (chunks.hasNext()) {
+                        chunks.next().getData().writeTo(out);
+                        out.flush();
+                    }
+                } finally {
+                    context.cancel(null);
+                }
+            });
+        } catch (StatusRuntimeException e) {
+            context.cancel(e);
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Изображение картины с id " + id + " не найдено", e);
+            } else {
+                log.error("### Error while calling gRPC server", e);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+            }
+        } catch (Exception e) {
+            context.cancel(e);
+            log.error("### Error while calling gRPC server", e);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        }
+    }
+
+    private static @Nonnull MediaType contentType(UUID id, String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            log.warn("### Painting {} is stored with invalid content type '{}'", id, contentType);
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    public @Nonnull Page<PaintingJson> getAllPainting(@Nullable String title, Pageable pageable, boolean withContent) {
         AllPaintingRequest.Builder builder = AllPaintingRequest.newBuilder()
                 .setPage(pageable.getPageNumber())
-                .setSize(pageable.getPageSize());
+                .setSize(pageable.getPageSize())
+                .setWithContent(withContent);
         if (title != null) {
             builder.setTitle(title);
         }
@@ -75,7 +179,7 @@ public class GrpcPaintingClient {
             AllPaintingResponse response = rococoPaintingServiceStub.getAllPainting(request);
             List<PaintingJson> paintingJsonList = response.getPaintingList()
                     .stream()
-                    .map(PaintingJson::fromGrpcMessage)
+                    .map(response -> fromGrpcMessage(response, LISTING_VARIANT))
                     .toList();
             enrichPaintingData(paintingJsonList);
             return new PageImpl<>(paintingJsonList, pageable, response.getTotalCount());
@@ -85,17 +189,58 @@ public class GrpcPaintingClient {
         }
     }
 
-    public @Nonnull Page<PaintingJson> getAllPaintingByArtist(UUID id, Pageable pageable) {
+    /**
+     * Keyset listing, see {@link CursorPage}. An empty {@code pageToken} starts from the first painting.
+     */
+    public @Nonnull CursorPage<PaintingJson> getAllPainting(@Nullable String title,
+                                                            String pageToken,
+                                                            int size,
+                                                            boolean withTotalCount,
+                                                            boolean withContent) {
+        AllPaintingRequest.Builder builder = AllPaintingRequest.newBuilder()
+                .setPageToken(pageToken)
+                .setSize(size)
+                .setWithTotalCount(withTotalCount)
+                .setWithContent(withContent);
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        AllPaintingRequest request = builder.build();
+
+        try {
+            AllPaintingResponse response = rococoPaintingServiceStub.getAllPainting(request);
+            List<PaintingJson> paintingJsonList = response.getPaintingList()
+                    .stream()
+                    .map(response -> fromGrpcMessage(response, LISTING_VARIANT))
+                    .toList();
+            enrichPaintingData(paintingJsonList);
+            return new CursorPage<>(
+                    paintingJsonList,
+                    response.getNextPageToken().isEmpty() ? null : response.getNextPageToken(),
+                    withTotalCount ? response.getTotalCount() : null,
+                    withTotalCount ? response.getTotalCountEstimated() : null
+            );
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            }
+            log.error("### Error while calling gRPC server ", e);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+        }
+    }
+
+    public @Nonnull Page<PaintingJson> getAllPaintingByArtist(UUID id, Pageable pageable, boolean withContent) {
         AllPaintingByArtistIdRequest request = AllPaintingByArtistIdRequest.newBuilder()
-                .setArtistId(copyFromUtf8(id.toString()))
+                .setArtistUuid(Uuids.toGrpc(id))
                 .setPage(pageable.getPageNumber())
                 .setSize(pageable.getPageSize())
+                .setWithContent(withContent)
                 .build();
         try {
             AllPaintingResponse response = rococoPaintingServiceStub.getAllPaintingByArtistId(request);
             List<PaintingJson> paintingJsonList = response.getPaintingList()
                     .stream()
-                    .map(PaintingJson::fromGrpcMessage)
+                    .map(response -> fromGrpcMessage(response, LISTING_VARIANT))
                     .toList();
             enrichPaintingData(paintingJsonList);
             return new PageImpl<>(paintingJsonList, pageable, response.getTotalCount());
@@ -108,55 +253,143 @@ public class GrpcPaintingClient {
     public @Nonnull PaintingJson addPainting(PaintingJson painting) {
         AddPaintingRequest request = PaintingJson.toGrpcMessage(painting);
         PaintingResponse response = rococoPaintingServiceStub.addPainting(request);
-        PaintingJson addedPainting = PaintingJson.fromGrpcMessage(response);
-        enrichPaintingData(addedPainting);
+        PaintingJson addedPainting = fromGrpcMessage(response);
+        enrichPaintingData(addedPainting, null);
         return addedPainting;
     }
 
-    public @Nonnull PaintingJson updatePainting(PaintingJson painting) {
-        AddPaintingRequest paintingData = PaintingJson.toGrpcMessage(painting);
-        UpdatePaintingRequest request = UpdatePaintingRequest.newBuilder()
-                .setId(ByteString.copyFromUtf8(painting.getId().toString()))
-                .setPaintingData(paintingData)
-                .build();
-        PaintingResponse response = rococoPaintingServiceStub.updatePainting(request);
-        PaintingJson addedPainting = PaintingJson.fromGrpcMessage(response);
-        enrichPaintingData(addedPainting);
+    /**
+     * Writes only the fields {@code painting} carries, see {@link PaintingJson#toPatchMessage}.
+     */
+    public @Nonnull PaintingJson patchPainting(PaintingJson painting, @Nullable Long expectedVersion) {
+        PaintingResponse response;
+        try {
+            response = rococoPaintingServiceStub.patchPainting(PaintingJson.toPatchMessage(painting, expectedVersion));
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            }
+            if (e.getStatus().getCode() == Status.Code.ABORTED) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Картина с id " + painting.getId() + " уже изменена другим запросом", e);
+            }
+            throw e;
+        }
+        PaintingJson addedPainting = fromGrpcMessage(response);
+        enrichPaintingData(addedPainting, null);
         return addedPainting;
     }
 
-    private void enrichPaintingData(PaintingJson painting) {
-        MuseumJson museum = grpcMuseumClient.getMuseum(painting.getMuseum().id());
-        ArtistJson artist = grpcArtistClient.getArtist(painting.getArtist().id());
-        painting.setMuseum(museum);
-        painting.setArtist(artist);
+    /**
+     * Adds a painting, or updates it when {@code painting} has an id, streaming the image to the painting service
+     * chunk by chunk. Without an image an existing painting keeps its current one.
+     */
+    public @Nonnull PaintingJson uploadPainting(PaintingJson painting, @Nullable MultipartFile content, @Nullable Long expectedVersion) {
+        AddPaintingRequest.Builder data = PaintingJson.toGrpcMessage(painting).toBuilder();
+        Image metadata = GrpcUpload.metadata(content);
+        if (metadata != null) {
+            data.setContent(metadata);
+        }
+        UpdatePaintingRequest.Builder paintingData = UpdatePaintingRequest.newBuilder()
+                .setPaintingData(data);
+        if (painting.getId() != null) {
+            paintingData.setUuid(Uuids.toGrpc(painting.getId()));
+        }
+        if (expectedVersion != null) {
+            paintingData.setExpectedVersion(expectedVersion);
+        }
+        GrpcUpload<UploadPaintingRequest, PaintingResponse> upload = new GrpcUpload<>();
+        rococoPaintingServiceAsyncStub.uploadPainting(upload);
+        try {
+            upload.send(UploadPaintingRequest.newBuilder().setPainting(paintingData).build());
+            upload.sendImage(content, chunk -> UploadPaintingRequest.newBuilder().setContentChunk(chunk).build());
+            PaintingJson uploadedPainting = fromGrpcMessage(upload.finish());
+            enrichPaintingData(uploadedPainting, null);
+            return uploadedPainting;
+        } catch (IOException e) {
+            upload.abort(e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не удалось прочитать загружаемое изображение", e);
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запрашиваемая картина с id " + painting.getId() + " не найдена", e);
+            } else if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+            } else if (e.getStatus().getCode() == Status.Code.ABORTED) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Картина с id " + painting.getId() + " уже изменена другим запросом", e);
+            } else {
+                log.error("### Error while calling gRPC server", e);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+            }
+        }
+    }
+
+    @Nonnull
+    PaintingJson fromGrpcMessage(PaintingResponse response) {
+        return fromGrpcMessage(response, null);
+    }
+
+    /**
+     * @param variant image variant to link when the response comes without the image; {@code null} for the original
+     */
+    @Nonnull
+    PaintingJson fromGrpcMessage(PaintingResponse response, @Nullable ImageVariant variant) {
+        PaintingJson painting = PaintingJson.fromGrpcMessage(response);
+        if (painting.getContent() == null) {
+            String content = rococoApiUri + "/api/painting/" + painting.getId() + "/content";
+            painting.setContent(variant == null ? content : content + "?variant=" + variant.name());
+        }
+        return painting;
+    }
+
+    static @Nonnull PaintingRequest contentRequest(UUID id, @Nullable ImageVariant variant) {
+        PaintingRequest.Builder request = PaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id));
+        if (variant != null) {
+            request.setVariant(variant.name());
+        }
+        return request.build();
+    }
+
+    /**
+     * Museum (with its country) and artist are requested at the same time, so the latency is that of the slower one.
+     * Both come through read masks, without the photos a painting never shows.
+     */
+    private void enrichPaintingData(PaintingJson painting, @Nullable PaintingJson versions) {
+        CompletableFuture<MuseumJson> museum = grpcMuseumClient.getMuseumSummaryAsync(
+                painting.getMuseum().id(), minMuseumVersion(painting, versions));
+        CompletableFuture<ArtistJson> artist = grpcArtistClient.getArtistSummaryAsync(
+                painting.getArtist().id(), minArtistVersion(painting, versions));
+        painting.setMuseum(GrpcCall.await(museum));
+        painting.setArtist(GrpcCall.await(artist));
+    }
+
+    /**
+     * @return the museum version {@code versions} was read at, 0 without it or once the painting moved to another one
+     */
+    static long minMuseumVersion(PaintingJson painting, @Nullable PaintingJson versions) {
+        return versions != null && versions.getMuseum().id().equals(painting.getMuseum().id())
+                ? versions.getMuseum().version()
+                : 0;
+    }
+
+    static long minArtistVersion(PaintingJson painting, @Nullable PaintingJson versions) {
+        return versions != null && versions.getArtist().id().equals(painting.getArtist().id())
+                ? versions.getArtist().version()
+                : 0;
     }
 
     private void enrichPaintingData(List<PaintingJson> paintingJsonList) {
-        Set<UUID> museumIds = paintingJsonList.stream()
-                .map(painting -> painting.getMuseum().id())
-                .collect(toSet());
-        Set<UUID> artistIds = paintingJsonList.stream()
-                .map(painting -> painting.getArtist().id())
-                .collect(toSet());
-
-
-        List<MuseumJson> museums = grpcMuseumClient.getMuseumByIds(museumIds);
-        List<ArtistJson> artists = grpcArtistClient.getArtistByIds(artistIds);
-
-        paintingJsonList.forEach(museum -> {
-            UUID museumId = museum.getId();
-            Optional<MuseumJson> matchingMuseum = museums.stream()
-                    .filter(museumJson -> museumJson.id().equals(museumId))
-                    .findFirst();
-            matchingMuseum.ifPresent(museum::setMuseum);
-        });
-        paintingJsonList.forEach(artist -> {
-            UUID artistId = artist.getId();
-            Optional<ArtistJson> matchingArtist = artists.stream()
-                    .filter(artistJson -> artistJson.id().equals(artistId))
-                    .findFirst();
-            matchingArtist.ifPresent(artist::setArtist);
-        });
-    }
-}
\ No newline at end of file
+        if (paintingJsonList.isEmpty()) {
+            return;
+        }
+        Set<UUID> museumIds = BatchJoin.keys(paintingJsonList, painting -> painting.getMuseum().id());
+        Set<UUID> artistIds = BatchJoin.keys(paintingJsonList, painting -> painting.getArtist().id());
+
+        CompletableFuture<List<MuseumJson>> museumsFuture = grpcMuseumClient.getMuseumByIdsAsync(museumIds);
+        CompletableFuture<List<ArtistJson>> artistsFuture = grpcArtistClient.getArtistByIdsAsync(artistIds);
+
+        BatchJoin.join(paintingJsonList, painting -> painting.getMuseum().id(),
+                GrpcCall.await(museumsFuture), MuseumJson::id, PaintingJson::setMuseum);
+        BatchJoin.join(paintingJsonList, painting -> painting.getArtist().id(),
+                GrpcCall.await(artistsFuture), ArtistJson::id, PaintingJson::setArtist);
+    }
+}
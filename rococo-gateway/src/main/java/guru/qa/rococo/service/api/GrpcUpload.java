@@ -0,0 +1,182 @@
+package guru.qa.rococo.service.api;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Image;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Client side of a client-streaming upload RPC. Messages are only sent while the transport is ready,
+ * so a slow service throttles the caller instead of piling chunks up in memory.
+ */
+class GrpcUpload<ReqT, RespT> implements ClientResponseObserver<ReqT, RespT> {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final CompletableFuture<RespT> response = new CompletableFuture<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private ClientCallStreamObserver<ReqT> requestStream;
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+        this.requestStream = requestStream;
+        requestStream.setOnReadyHandler(this::signalReady);
+    }
+
+    @Override
+    public void onNext(RespT value) {
+        response.complete(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        response.completeExceptionally(t);
+        signalReady();
+    }
+
+    @Override
+    public void onCompleted() {
+        signalReady();
+    }
+
+    void send(@Nonnull ReqT message) {
+        lock.lock();
+        try {
+            while (!requestStream.isReady() && !response.isDone()) {
+                ready.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requestStream.cancel("Upload interrupted", e);
+            throw Status.CANCELLED.withCause(e).asRuntimeException();
+        } finally {
+            lock.unlock();
+        }
+        if (response.isCompletedExceptionally()) {
+            // rethrows the status the service has already failed the call with
+            await();
+        }
+        requestStream.onNext(message);
+    }
+
+    /**
+     * @return image without data, describing the chunks {@link #sendImage} sends; {@code null} if there is no image
+     */
+    static @Nullable Image metadata(@Nullable MultipartFile image) {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        Image.Builder metadata = Image.newBuilder();
+        if (image.getContentType() != null) {
+            metadata.setMimeType(image.getContentType());
+        }
+        return metadata.build();
+    }
+
+    /**
+     * Sends the raw image bytes as they are read from the multipart part.
+     */
+    void sendImage(@Nullable MultipartFile image, @Nonnull Function<ByteString, ReqT> toMessage) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return;
+        }
+        try (InputStream in = image.getInputStream();
+             OutputStream out = chunks(toMessage)) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * @return stream that cuts everything written to it into {@link #CHUNK_SIZE} messages
+     */
+    @Nonnull
+    OutputStream chunks(@Nonnull Function<ByteString, ReqT> toMessage) {
+        return new OutputStream() {
+            private final byte[] buffer = new byte[CHUNK_SIZE];
+            private int count;
+
+            @Override
+            public void write(int b) {
+                if (count == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(@Nonnull byte[] b, int off, int len) {
+                while (len > 0) {
+                    if (count == buffer.length) {
+                        flushBuffer();
+                    }
+                    int n = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+
+            @Override
+            public void close() {
+                flushBuffer();
+            }
+
+            private void flushBuffer() {
+                if (count == 0) {
+                    return;
+                }
+                send(toMessage.apply(ByteString.copyFrom(buffer, 0, count)));
+                count = 0;
+            }
+        };
+    }
+
+    @Nonnull
+    RespT finish() {
+        requestStream.onCompleted();
+        return await();
+    }
+
+    void abort(@Nonnull Throwable cause) {
+        requestStream.cancel("Upload aborted by gateway", cause);
+    }
+
+    private RespT await() {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof StatusRuntimeException sre
+                    ? sre
+                    : Status.fromThrowable(e.getCause()).asRuntimeException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requestStream.cancel("Upload interrupted", e);
+            throw Status.CANCELLED.withCause(e).asRuntimeException();
+        }
+    }
+
+    private void signalReady() {
+        lock.lock();
+        try {
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import guru.qa.grpc.rococo.grpc.RococoUserdataServiceGrpc;
 import guru.qa.grpc.rococo.grpc.UpdateUserRequest;
 import guru.qa.grpc.rococo.grpc.UserRequest;
 import guru.qa.grpc.rococo.grpc.UserResponse;
+import guru.qa.rococo.grpc.Uuids;
 import guru.qa.rococo.model.UserJson;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -43,7 +44,7 @@ public class GrpcUserdataClient {
 
     public @Nonnull UserJson updateUser(UserJson user) {
         UpdateUserRequest request = UpdateUserRequest.newBuilder()
-                .setId(ByteString.copyFromUtf8(user.id().toString()))
+                .setUuid(Uuids.toGrpc(user.id()))
                 .setUsername(user.username())
                 .setFirstname(user.firstname())
                 .setLastname(user.lastname())
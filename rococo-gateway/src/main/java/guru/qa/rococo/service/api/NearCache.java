@@ -0,0 +1,41 @@
+package guru.qa.rococo.service.api;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import jakarta.annotation.Nonnull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * In-process cache in front of a gRPC lookup. Values are cached as futures, so concurrent requests for the same id
+ * share one call, and failed calls are dropped instead of cached. Entries expire after a fixed TTL, which bounds
+ * staleness for writes made through other gateway instances; writes through this one invalidate right away.
+ */
+final class NearCache<K, V> {
+
+    private final AsyncCache<K, V> cache;
+
+    NearCache(@Nonnull AsyncCache<K, V> cache) {
+        this.cache = cache;
+    }
+
+    @Nonnull
+    CompletableFuture<V> get(@Nonnull K key, @Nonnull Function<K, CompletableFuture<V>> loader) {
+        return cache.get(key, (k, executor) -> loader.apply(k));
+    }
+
+    /**
+     * Requests only the missing keys, in one batch; keys the loader does not return are absent from the result.
+     */
+    @Nonnull
+    CompletableFuture<Map<K, V>> getAll(@Nonnull Set<K> keys,
+                                        @Nonnull Function<Set<K>, CompletableFuture<Map<K, V>>> loader) {
+        return cache.getAll(keys, (missing, executor) -> loader.apply(Set.copyOf(missing)));
+    }
+
+    void invalidate(@Nonnull K key) {
+        cache.synchronous().invalidate(key);
+    }
+}
@@ -0,0 +1,58 @@
+package guru.qa.rococo.service.api;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.function.ToIntFunction;
+
+/**
+ * Creates the {@link NearCache}s of the gRPC clients, bounded by {@code rococo-api.near-cache.*}.
+ * Each cache is bounded by the estimated bytes of its entries rather than their number, as an entry with a photo
+ * data URL can outweigh thousands without one.
+ * Hit, miss and eviction counts are published as {@code cache.*} meters tagged with the cache name.
+ */
+@Component
+class NearCacheFactory {
+
+    /**
+     * Rough cost of an entry besides its payload: key, ids, version and the cache's own bookkeeping.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Duration ttl;
+    private final long maxWeight;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    NearCacheFactory(@Value("${rococo-api.near-cache.ttl}") Duration ttl,
+                     @Value("${rococo-api.near-cache.max-weight}") DataSize maxWeight,
+                     MeterRegistry meterRegistry) {
+        this.ttl = ttl;
+        this.maxWeight = maxWeight.toBytes();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param payloadSize characters of the value's text, photo data URL included; the data URL is base64, so a
+     *                    character is about a byte
+     */
+    @Nonnull
+    <K, V> NearCache<K, V> create(@Nonnull String name, @Nonnull ToIntFunction<V> payloadSize) {
+        AsyncCache<K, V> cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxWeight)
+                .<K, V>weigher((key, value) -> ENTRY_OVERHEAD + payloadSize.applyAsInt(value))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        return new NearCache<>(cache);
+    }
+}
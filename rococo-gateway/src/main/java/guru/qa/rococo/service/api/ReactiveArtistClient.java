@@ -0,0 +1,147 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.Uuids;
+import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.DataUrl;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * {@link GrpcArtistClient} for the reactive gateway. Reads by id go through the same near cache.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveArtistClient {
+
+    @GrpcClient("grpcArtistClient")
+    private RococoArtistServiceGrpc.RococoArtistServiceStub rococoArtistServiceAsyncStub;
+
+    private final GrpcArtistClient grpcArtistClient;
+
+    @Autowired
+    public ReactiveArtistClient(GrpcArtistClient grpcArtistClient) {
+        this.grpcArtistClient = grpcArtistClient;
+    }
+
+    public @Nonnull Mono<ArtistJson> getArtist(UUID id) {
+        return ReactorCall.fromFuture(() -> grpcArtistClient.getArtistAsync(id));
+    }
+
+    /**
+     * See {@link GrpcArtistClient#getArtist(UUID, long)}.
+     */
+    public @Nonnull Mono<ArtistJson> getArtist(UUID id, long minVersion) {
+        return ReactorCall.fromFuture(() -> grpcArtistClient.getArtistAsync(id, minVersion));
+    }
+
+    public @Nonnull Mono<Long> getArtistVersion(UUID id) {
+        return ReactorCall.fromFuture(() -> grpcArtistClient.getArtistVersionAsync(id));
+    }
+
+    public @Nonnull Mono<DataUrl> getArtistPhoto(UUID id) {
+        ArtistRequest request = ArtistRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .build();
+        return ReactorCall.unary(request, rococoArtistServiceAsyncStub::getArtist, "Запрашиваемый художник с id " + id + " не найден")
+                .map(ArtistResponse::getPhoto)
+                .filter(photo -> !photo.getData().isEmpty())
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Фото художника с id " + id + " не найдено")))
+                .map(DataUrl::fromImage);
+    }
+
+    public @Nonnull Mono<Page<ArtistJson>> getAllArtist(@Nullable String name, Pageable pageable) {
+        AllArtistRequest.Builder builder = AllArtistRequest.newBuilder()
+                .setPage(pageable.getPageNumber())
+                .setSize(pageable.getPageSize());
+        if (name != null) {
+            builder.setName(name);
+        }
+        return ReactorCall.unary(builder.build(), rococoArtistServiceAsyncStub::getAllArtist, null)
+                .map(response -> new PageImpl<>(
+                        response.getArtistsList().stream().map(ArtistJson::fromGrpcMessage).toList(),
+                        pageable,
+                        response.getTotalCount()
+                ));
+    }
+
+    /**
+     * Keyset listing, see {@link CursorPage}. An empty {@code pageToken} starts from the first artist.
+     */
+    public @Nonnull Mono<CursorPage<ArtistJson>> getAllArtist(@Nullable String name,
+                                                              String pageToken,
+                                                              int size,
+                                                              boolean withTotalCount) {
+        AllArtistRequest.Builder builder = AllArtistRequest.newBuilder()
+                .setPageToken(pageToken)
+                .setSize(size)
+                .setWithTotalCount(withTotalCount);
+        if (name != null) {
+            builder.setName(name);
+        }
+        return ReactorCall.unary(builder.build(), rococoArtistServiceAsyncStub::getAllArtist, null)
+                .map(response -> new CursorPage<>(
+                        response.getArtistsList().stream().map(ArtistJson::fromGrpcMessage).toList(),
+                        response.getNextPageToken().isEmpty() ? null : response.getNextPageToken(),
+                        withTotalCount ? response.getTotalCount() : null,
+                        withTotalCount ? response.getTotalCountEstimated() : null
+                ));
+    }
+
+    public @Nonnull Mono<ArtistJson> addArtist(ArtistJson artist) {
+        return ReactorCall.unary(ArtistJson.toGrpcMessage(artist), rococoArtistServiceAsyncStub::addArtist, null)
+                .map(ArtistJson::fromGrpcMessage);
+    }
+
+    public @Nonnull Mono<ArtistJson> patchArtist(ArtistJson artist, @Nullable Long expectedVersion) {
+        return ReactorCall.unary(ArtistJson.toPatchMessage(artist, expectedVersion), rococoArtistServiceAsyncStub::patchArtist, "Запрашиваемый художник с id " + artist.id() + " не найден")
+                .map(ArtistJson::fromGrpcMessage)
+                .doFinally(signal -> grpcArtistClient.evict(artist.id()));
+    }
+
+    /**
+     * Adds an artist, or updates it when {@code artist} has an id, streaming the photo to the artist service as the
+     * part arrives. Without a photo an existing artist keeps its current one.
+     */
+    public @Nonnull Mono<ArtistJson> uploadArtist(ArtistJson artist, @Nullable FilePart photo, @Nullable Long expectedVersion) {
+        AddArtistRequest.Builder data = ArtistJson.toGrpcMessage(artist).toBuilder();
+        Image metadata = ReactorUpload.metadata(photo);
+        if (metadata != null) {
+            data.setPhoto(metadata);
+        }
+        UpdateArtistRequest.Builder artistData = UpdateArtistRequest.newBuilder()
+                .setArtistData(data);
+        if (artist.id() != null) {
+            artistData.setUuid(Uuids.toGrpc(artist.id()));
+        }
+        if (expectedVersion != null) {
+            artistData.setExpectedVersion(expectedVersion);
+        }
+        Flux<UploadArtistRequest> requests = Flux.concat(
+                Mono.just(UploadArtistRequest.newBuilder().setArtist(artistData).build()),
+                ReactorUpload.chunks(photo, chunk -> UploadArtistRequest.newBuilder().setPhotoChunk(chunk).build())
+        );
+        return ReactorUpload.send(rococoArtistServiceAsyncStub::uploadArtist, requests, "Запрашиваемый художник с id " + artist.id() + " не найден")
+                .map(ArtistJson::fromGrpcMessage)
+                .doFinally(signal -> {
+                    if (artist.id() != null) {
+                        grpcArtistClient.evict(artist.id());
+                    }
+                });
+    }
+}
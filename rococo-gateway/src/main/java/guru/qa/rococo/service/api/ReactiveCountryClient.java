@@ -0,0 +1,33 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.rococo.model.CountryJson;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link GrpcCountryClient} for the reactive gateway, answered from the same dictionary.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCountryClient {
+
+    private final GrpcCountryClient grpcCountryClient;
+
+    @Autowired
+    public ReactiveCountryClient(GrpcCountryClient grpcCountryClient) {
+        this.grpcCountryClient = grpcCountryClient;
+    }
+
+    public @Nonnull Mono<Page<CountryJson>> getAllCountry(Pageable pageable) {
+        return ReactorCall.fromFuture(() -> grpcCountryClient.getAllCountryAsync(pageable));
+    }
+
+    public @Nonnull Mono<String> getDictionaryVersion() {
+        return ReactorCall.fromFuture(grpcCountryClient::getDictionaryVersionAsync);
+    }
+}
@@ -0,0 +1,158 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.Uuids;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.DataUrl;
+import guru.qa.rococo.model.MuseumJson;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link GrpcMuseumClient} for the reactive gateway. Reads by id go through the same near cache, and countries are
+ * attached from the same dictionary as soon as the museums arrive.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMuseumClient {
+
+    @GrpcClient("grpcMuseumClient")
+    private RococoMuseumServiceGrpc.RococoMuseumServiceStub rococoMuseumServiceAsyncStub;
+
+    private final GrpcMuseumClient grpcMuseumClient;
+
+    @Autowired
+    public ReactiveMuseumClient(GrpcMuseumClient grpcMuseumClient) {
+        this.grpcMuseumClient = grpcMuseumClient;
+    }
+
+    public @Nonnull Mono<MuseumJson> getMuseum(UUID id) {
+        return ReactorCall.fromFuture(() -> grpcMuseumClient.getMuseumAsync(id));
+    }
+
+    /**
+     * See {@link GrpcMuseumClient#getMuseum(UUID, long)}.
+     */
+    public @Nonnull Mono<MuseumJson> getMuseum(UUID id, long minVersion) {
+        return ReactorCall.fromFuture(() -> grpcMuseumClient.getMuseumAsync(id, minVersion));
+    }
+
+    public @Nonnull Mono<Long> getMuseumVersion(UUID id) {
+        return ReactorCall.fromFuture(() -> grpcMuseumClient.getMuseumVersionAsync(id));
+    }
+
+    public @Nonnull Mono<DataUrl> getMuseumPhoto(UUID id) {
+        MuseumRequest request = MuseumRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .build();
+        return ReactorCall.unary(request, rococoMuseumServiceAsyncStub::getMuseum, "Запрашиваемый музей с id " + id + " не найден")
+                .map(MuseumResponse::getPhoto)
+                .filter(photo -> !photo.getData().isEmpty())
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Фото музея с id " + id + " не найдено")))
+                .map(DataUrl::fromImage);
+    }
+
+    public @Nonnull Mono<Page<MuseumJson>> getAllMuseum(@Nullable String title, Pageable pageable) {
+        AllMuseumRequest.Builder builder = AllMuseumRequest.newBuilder()
+                .setPage(pageable.getPageNumber())
+                .setSize(pageable.getPageSize());
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        return ReactorCall.unary(builder.build(), rococoMuseumServiceAsyncStub::getAllMuseum, null)
+                .flatMap(response -> withCountries(response.getMuseumList())
+                        .map(museums -> new PageImpl<>(museums, pageable, response.getTotalCount())));
+    }
+
+    /**
+     * Keyset listing, see {@link CursorPage}. An empty {@code pageToken} starts from the first museum.
+     */
+    public @Nonnull Mono<CursorPage<MuseumJson>> getAllMuseum(@Nullable String title,
+                                                              String pageToken,
+                                                              int size,
+                                                              boolean withTotalCount) {
+        AllMuseumRequest.Builder builder = AllMuseumRequest.newBuilder()
+                .setPageToken(pageToken)
+                .setSize(size)
+                .setWithTotalCount(withTotalCount);
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        return ReactorCall.unary(builder.build(), rococoMuseumServiceAsyncStub::getAllMuseum, null)
+                .flatMap(response -> withCountries(response.getMuseumList())
+                        .map(museums -> new CursorPage<>(
+                                museums,
+                                response.getNextPageToken().isEmpty() ? null : response.getNextPageToken(),
+                                withTotalCount ? response.getTotalCount() : null,
+                                withTotalCount ? response.getTotalCountEstimated() : null
+                        )));
+    }
+
+    public @Nonnull Mono<MuseumJson> addMuseum(MuseumJson museum) {
+        return ReactorCall.unary(MuseumJson.toGrpcMessage(museum), rococoMuseumServiceAsyncStub::addMuseum, null)
+                .flatMap(this::withCountry);
+    }
+
+    public @Nonnull Mono<MuseumJson> patchMuseum(MuseumJson museum, @Nullable Long expectedVersion) {
+        return ReactorCall.unary(MuseumJson.toPatchMessage(museum, expectedVersion), rococoMuseumServiceAsyncStub::patchMuseum, "Запрашиваемый музей с id " + museum.id() + " не найден")
+                .flatMap(this::withCountry)
+                .doFinally(signal -> grpcMuseumClient.evict(museum.id()));
+    }
+
+    /**
+     * Adds a museum, or updates it when {@code museum} has an id, streaming the photo to the museum service as the
+     * part arrives. Without a photo an existing museum keeps its current one.
+     */
+    public @Nonnull Mono<MuseumJson> uploadMuseum(MuseumJson museum, @Nullable FilePart photo, @Nullable Long expectedVersion) {
+        AddMuseumRequest.Builder data = MuseumJson.toGrpcMessage(museum).toBuilder();
+        Image metadata = ReactorUpload.metadata(photo);
+        if (metadata != null) {
+            data.setPhoto(metadata);
+        }
+        UpdateMuseumRequest.Builder museumData = UpdateMuseumRequest.newBuilder()
+                .setMuseumData(data);
+        if (museum.id() != null) {
+            museumData.setUuid(Uuids.toGrpc(museum.id()));
+        }
+        if (expectedVersion != null) {
+            museumData.setExpectedVersion(expectedVersion);
+        }
+        Flux<UploadMuseumRequest> requests = Flux.concat(
+                Mono.just(UploadMuseumRequest.newBuilder().setMuseum(museumData).build()),
+                ReactorUpload.chunks(photo, chunk -> UploadMuseumRequest.newBuilder().setPhotoChunk(chunk).build())
+        );
+        return ReactorUpload.send(rococoMuseumServiceAsyncStub::uploadMuseum, requests, "Запрашиваемый музей с id " + museum.id() + " не найден")
+                .flatMap(this::withCountry)
+                .doFinally(signal -> {
+                    if (museum.id() != null) {
+                        grpcMuseumClient.evict(museum.id());
+                    }
+                });
+    }
+
+    private Mono<MuseumJson> withCountry(MuseumResponse response) {
+        return withCountries(List.of(response)).map(List::getFirst);
+    }
+
+    private Mono<List<MuseumJson>> withCountries(List<MuseumResponse> responses) {
+        List<MuseumJson> museums = responses.stream()
+                .map(MuseumJson::fromGrpcMessage)
+                .toList();
+        return ReactorCall.fromFuture(() -> grpcMuseumClient.enrichMuseumWithCountryAsync(museums));
+    }
+}
@@ -0,0 +1,198 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.Uuids;
+import guru.qa.rococo.model.ArtistJson;
+import guru.qa.rococo.model.CursorPage;
+import guru.qa.rococo.model.MuseumJson;
+import guru.qa.rococo.model.PaintingJson;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link GrpcPaintingClient} for the reactive gateway. Museums and artists are attached through the same near caches
+ * and read masks, requested side by side once the paintings arrive, without a thread waiting for either.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePaintingClient {
+
+    @GrpcClient("grpcPaintingClient")
+    private RococoPaintingServiceGrpc.RococoPaintingServiceStub rococoPaintingServiceAsyncStub;
+
+    private final GrpcPaintingClient grpcPaintingClient;
+    private final GrpcMuseumClient grpcMuseumClient;
+    private final GrpcArtistClient grpcArtistClient;
+
+    @Autowired
+    public ReactivePaintingClient(GrpcPaintingClient grpcPaintingClient,
+                                  GrpcMuseumClient grpcMuseumClient,
+                                  GrpcArtistClient grpcArtistClient) {
+        this.grpcPaintingClient = grpcPaintingClient;
+        this.grpcMuseumClient = grpcMuseumClient;
+        this.grpcArtistClient = grpcArtistClient;
+    }
+
+    /**
+     * @param versions see {@link GrpcPaintingClient#getPainting(UUID, boolean, PaintingJson)}
+     */
+    public @Nonnull Mono<PaintingJson> getPainting(UUID id, boolean withContent, @Nullable PaintingJson versions) {
+        PaintingRequest request = PaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(id))
+                .setWithContent(withContent)
+                .build();
+        return ReactorCall.unary(request, rococoPaintingServiceAsyncStub::getPainting, "Запрашиваемая картина с id " + id + " не найдена")
+                .flatMap(response -> enrichPaintingData(response, versions));
+    }
+
+    /**
+     * See {@link GrpcPaintingClient#getPaintingVersions}.
+     */
+    public @Nonnull Mono<PaintingJson> getPaintingVersions(UUID id) {
+        return ReactorCall.fromFuture(() -> grpcPaintingClient.getPaintingVersionsAsync(id));
+    }
+
+    /**
+     * Image chunks as the painting service streams them, requested only as fast as they are written out.
+     */
+    public @Nonnull Flux<PaintingContentChunk> streamPaintingContent(UUID id, @Nullable ImageVariant variant) {
+        PaintingRequest request = GrpcPaintingClient.contentRequest(id, variant);
+        return ReactorCall.serverStream(request, rococoPaintingServiceAsyncStub::streamPaintingContent, "Изображение картины с id " + id + " не найдено");
+    }
+
+    public @Nonnull Mono<Page<PaintingJson>> getAllPainting(@Nullable String title, Pageable pageable, boolean withContent) {
+        AllPaintingRequest.Builder builder = AllPaintingRequest.newBuilder()
+                .setPage(pageable.getPageNumber())
+                .setSize(pageable.getPageSize())
+                .setWithContent(withContent);
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        return ReactorCall.unary(builder.build(), rococoPaintingServiceAsyncStub::getAllPainting, null)
+                .flatMap(response -> enrichPaintingData(response.getPaintingList())
+                        .map(paintings -> new PageImpl<>(paintings, pageable, response.getTotalCount())));
+    }
+
+    /**
+     * Keyset listing, see {@link CursorPage}. An empty {@code pageToken} starts from the first painting.
+     */
+    public @Nonnull Mono<CursorPage<PaintingJson>> getAllPainting(@Nullable String title,
+                                                                  String pageToken,
+                                                                  int size,
+                                                                  boolean withTotalCount,
+                                                                  boolean withContent) {
+        AllPaintingRequest.Builder builder = AllPaintingRequest.newBuilder()
+                .setPageToken(pageToken)
+                .setSize(size)
+                .setWithTotalCount(withTotalCount)
+                .setWithContent(withContent);
+        if (title != null) {
+            builder.setTitle(title);
+        }
+        return ReactorCall.unary(builder.build(), rococoPaintingServiceAsyncStub::getAllPainting, null)
+                .flatMap(response -> enrichPaintingData(response.getPaintingList())
+                        .map(paintings -> new CursorPage<>(
+                                paintings,
+                                response.getNextPageToken().isEmpty() ? null : response.getNextPageToken(),
+                                withTotalCount ? response.getTotalCount() : null,
+                                withTotalCount ? response.getTotalCountEstimated() : null
+                        )));
+    }
+
+    public @Nonnull Mono<Page<PaintingJson>> getAllPaintingByArtist(UUID id, Pageable pageable, boolean withContent) {
+        AllPaintingByArtistIdRequest request = AllPaintingByArtistIdRequest.newBuilder()
+                .setArtistUuid(Uuids.toGrpc(id))
+                .setPage(pageable.getPageNumber())
+                .setSize(pageable.getPageSize())
+                .setWithContent(withContent)
+                .build();
+        return ReactorCall.unary(request, rococoPaintingServiceAsyncStub::getAllPaintingByArtistId, null)
+                .flatMap(response -> enrichPaintingData(response.getPaintingList())
+                        .map(paintings -> new PageImpl<>(paintings, pageable, response.getTotalCount())));
+    }
+
+    public @Nonnull Mono<PaintingJson> addPainting(PaintingJson painting) {
+        return ReactorCall.unary(PaintingJson.toGrpcMessage(painting), rococoPaintingServiceAsyncStub::addPainting, null)
+                .flatMap(response -> enrichPaintingData(response, null));
+    }
+
+    public @Nonnull Mono<PaintingJson> patchPainting(PaintingJson painting, @Nullable Long expectedVersion) {
+        return ReactorCall.unary(PaintingJson.toPatchMessage(painting, expectedVersion), rococoPaintingServiceAsyncStub::patchPainting, "Запрашиваемая картина с id " + painting.getId() + " не найдена")
+                .flatMap(response -> enrichPaintingData(response, null));
+    }
+
+    /**
+     * Adds a painting, or updates it when {@code painting} has an id, streaming the image to the painting service as
+     * the part arrives. Without an image an existing painting keeps its current one.
+     */
+    public @Nonnull Mono<PaintingJson> uploadPainting(PaintingJson painting, @Nullable FilePart content, @Nullable Long expectedVersion) {
+        AddPaintingRequest.Builder data = PaintingJson.toGrpcMessage(painting).toBuilder();
+        Image metadata = ReactorUpload.metadata(content);
+        if (metadata != null) {
+            data.setContent(metadata);
+        }
+        UpdatePaintingRequest.Builder paintingData = UpdatePaintingRequest.newBuilder()
+                .setPaintingData(data);
+        if (painting.getId() != null) {
+            paintingData.setUuid(Uuids.toGrpc(painting.getId()));
+        }
+        if (expectedVersion != null) {
+            paintingData.setExpectedVersion(expectedVersion);
+        }
+        Flux<UploadPaintingRequest> requests = Flux.concat(
+                Mono.just(UploadPaintingRequest.newBuilder().setPainting(paintingData).build()),
+                ReactorUpload.chunks(content, chunk -> UploadPaintingRequest.newBuilder().setContentChunk(chunk).build())
+        );
+        return ReactorUpload.send(rococoPaintingServiceAsyncStub::uploadPainting, requests, "Запрашиваемая картина с id " + painting.getId() + " не найдена")
+                .flatMap(response -> enrichPaintingData(response, null));
+    }
+
+    private Mono<PaintingJson> enrichPaintingData(PaintingResponse response, @Nullable PaintingJson versions) {
+        PaintingJson painting = grpcPaintingClient.fromGrpcMessage(response);
+        Mono<MuseumJson> museum = ReactorCall.fromFuture(() -> grpcMuseumClient.getMuseumSummaryAsync(
+                painting.getMuseum().id(), GrpcPaintingClient.minMuseumVersion(painting, versions)));
+        Mono<ArtistJson> artist = ReactorCall.fromFuture(() -> grpcArtistClient.getArtistSummaryAsync(
+                painting.getArtist().id(), GrpcPaintingClient.minArtistVersion(painting, versions)));
+        return Mono.zip(museum, artist, (foundMuseum, foundArtist) -> {
+            painting.setMuseum(foundMuseum);
+            painting.setArtist(foundArtist);
+            return painting;
+        });
+    }
+
+    private Mono<List<PaintingJson>> enrichPaintingData(List<PaintingResponse> responses) {
+        List<PaintingJson> paintings = responses.stream()
+                .map(response -> grpcPaintingClient.fromGrpcMessage(response, GrpcPaintingClient.LISTING_VARIANT))
+                .toList();
+        if (paintings.isEmpty()) {
+            return Mono.just(paintings);
+        }
+        Set<UUID> museumIds = BatchJoin.keys(paintings, painting -> painting.getMuseum().id());
+        Set<UUID> artistIds = BatchJoin.keys(paintings, painting -> painting.getArtist().id());
+
+        Mono<List<MuseumJson>> museums = ReactorCall.fromFuture(() -> grpcMuseumClient.getMuseumByIdsAsync(museumIds));
+        Mono<List<ArtistJson>> artists = ReactorCall.fromFuture(() -> grpcArtistClient.getArtistByIdsAsync(artistIds));
+        return Mono.zip(museums, artists, (foundMuseums, foundArtists) -> {
+            BatchJoin.join(paintings, painting -> painting.getMuseum().id(),
+                    foundMuseums, MuseumJson::id, PaintingJson::setMuseum);
+            BatchJoin.join(paintings, painting -> painting.getArtist().id(),
+                    foundArtists, ArtistJson::id, PaintingJson::setArtist);
+            return paintings;
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package guru.qa.rococo.service.api;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.RococoUserdataServiceGrpc;
+import guru.qa.grpc.rococo.grpc.UpdateUserRequest;
+import guru.qa.grpc.rococo.grpc.UserRequest;
+import guru.qa.rococo.grpc.Uuids;
+import guru.qa.rococo.model.UserJson;
+import jakarta.annotation.Nonnull;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link GrpcUserdataClient} for the reactive gateway.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserdataClient {
+
+    @GrpcClient("grpcUserdataClient")
+    private RococoUserdataServiceGrpc.RococoUserdataServiceStub rococoUserdataServiceAsyncStub;
+
+    public @Nonnull Mono<UserJson> getUser(String username) {
+        UserRequest request = UserRequest.newBuilder()
+                .setUsername(username)
+                .build();
+        return ReactorCall.unary(request, rococoUserdataServiceAsyncStub::getUser, "Запрашиваемый пользователь с username " + username + " не найден")
+                .map(UserJson::fromGrpcMessage);
+    }
+
+    public @Nonnull Mono<UserJson> updateUser(UserJson user) {
+        UpdateUserRequest request = UpdateUserRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(user.id()))
+                .setUsername(user.username())
+                .setFirstname(user.firstname())
+                .setLastname(user.lastname())
+                .setAvatar(ByteString.copyFrom(user.avatar(), StandardCharsets.UTF_8))
+                .build();
+        return ReactorCall.unary(request, rococoUserdataServiceAsyncStub::updateUser, null)
+                .map(UserJson::fromGrpcMessage);
+    }
+}
@@ -0,0 +1,124 @@
+package guru.qa.rococo.service.api;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Calls on async stubs as {@link Mono}s and {@link Flux}es for the reactive gateway. Nothing is sent before
+ * subscription, cancelling the subscription cancels the call, and a server stream is only pulled as fast as it is
+ * consumed. Failures are translated the way {@link GrpcCall} translates them.
+ */
+@Slf4j
+final class ReactorCall {
+
+    private ReactorCall() {
+    }
+
+    /**
+     * @param notFoundMessage message of the 404 to answer with on {@code NOT_FOUND}; {@code null} turns it into a 503
+     */
+    static @Nonnull <ReqT, RespT> Mono<RespT> unary(@Nonnull ReqT request,
+                                                   @Nonnull BiConsumer<ReqT, StreamObserver<RespT>> method,
+                                                   @Nullable String notFoundMessage) {
+        return Mono.create(sink -> method.accept(request, new ClientResponseObserver<ReqT, RespT>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+                sink.onCancel(() -> requestStream.cancel("Cancelled by gateway", null));
+            }
+
+            @Override
+            public void onNext(RespT value) {
+                sink.success(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                sink.error(translate(t, notFoundMessage));
+            }
+
+            @Override
+            public void onCompleted() {
+                sink.success();
+            }
+        }));
+    }
+
+    /**
+     * Requests messages from the service as the subscriber asks for them, one ahead.
+     */
+    static @Nonnull <ReqT, RespT> Flux<RespT> serverStream(@Nonnull ReqT request,
+                                                          @Nonnull BiConsumer<ReqT, StreamObserver<RespT>> method,
+                                                          @Nullable String notFoundMessage) {
+        return Flux.create(sink -> {
+            AtomicReference<ClientCallStreamObserver<ReqT>> call = new AtomicReference<>();
+            method.accept(request, new ClientResponseObserver<ReqT, RespT>() {
+                @Override
+                public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+                    requestStream.disableAutoRequestWithInitial(1);
+                    call.set(requestStream);
+                }
+
+                @Override
+                public void onNext(RespT value) {
+                    sink.next(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    sink.error(translate(t, notFoundMessage));
+                }
+
+                @Override
+                public void onCompleted() {
+                    sink.complete();
+                }
+            });
+            // the call is started now, so demand can be passed on
+            sink.onRequest(n -> call.get().request((int) Math.min(n, Integer.MAX_VALUE)));
+            sink.onCancel(() -> call.get().cancel("Cancelled by gateway", null));
+        }, FluxSink.OverflowStrategy.BUFFER);
+    }
+
+    /**
+     * Adapts the futures of the near caches and the country dictionary. They may be shared with other requests, so
+     * cancelling the subscription leaves them running.
+     */
+    static @Nonnull <T> Mono<T> fromFuture(@Nonnull Supplier<CompletableFuture<T>> future) {
+        return Mono.fromFuture(future, true);
+    }
+
+    static @Nonnull Throwable translate(@Nonnull Throwable t, @Nullable String notFoundMessage) {
+        if (t instanceof ResponseStatusException) {
+            return t;
+        }
+        StatusRuntimeException e = t instanceof StatusRuntimeException sre
+                ? sre
+                : Status.fromThrowable(t).asRuntimeException();
+        if (notFoundMessage != null && e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, notFoundMessage, e);
+        } else if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getStatus().getDescription(), e);
+        } else if (e.getStatus().getCode() == Status.Code.ABORTED) {
+            // a conditional update that another update got to first
+            return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getStatus().getDescription(), e);
+        }
+        log.error("### Error while calling gRPC server", e);
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The gRPC operation was cancelled", e);
+    }
+}
@@ -0,0 +1,151 @@
+package guru.qa.rococo.service.api;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Image;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Reactive counterpart of {@link GrpcUpload}. The messages are pulled from the multipart part one at a time, and
+ * only while the transport is ready, so a slow service throttles the client's upload instead of buffering it.
+ */
+final class ReactorUpload {
+
+    private ReactorUpload() {
+    }
+
+    /**
+     * @return image without data, describing the chunks {@link #chunks} sends; {@code null} if there is no image
+     */
+    static @Nullable Image metadata(@Nullable FilePart image) {
+        if (isEmpty(image)) {
+            return null;
+        }
+        Image.Builder metadata = Image.newBuilder();
+        MediaType contentType = image.headers().getContentType();
+        if (contentType != null) {
+            metadata.setMimeType(contentType.toString());
+        }
+        return metadata.build();
+    }
+
+    /**
+     * @return the raw image bytes, one message per buffer as the part is read
+     */
+    static @Nonnull <ReqT> Flux<ReqT> chunks(@Nullable FilePart image, @Nonnull Function<ByteString, ReqT> toMessage) {
+        if (isEmpty(image)) {
+            return Flux.empty();
+        }
+        return image.content().map(buffer -> {
+            try {
+                return toMessage.apply(ByteString.copyFrom(buffer.toByteBuffer()));
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        });
+    }
+
+    /**
+     * Starts the call on subscription and sends {@code requests}, half-closing after the last of them.
+     */
+    static @Nonnull <ReqT, RespT> Mono<RespT> send(@Nonnull Function<StreamObserver<RespT>, StreamObserver<ReqT>> method,
+                                                  @Nonnull Flux<ReqT> requests,
+                                                  @Nullable String notFoundMessage) {
+        return Mono.create(sink -> {
+            Sender<ReqT, RespT> sender = new Sender<>(sink);
+            ClientResponseObserver<ReqT, RespT> responseObserver = new ClientResponseObserver<>() {
+                @Override
+                public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+                    sender.requestStream = requestStream;
+                    requestStream.setOnReadyHandler(sender::pull);
+                }
+
+                @Override
+                public void onNext(RespT value) {
+                    sink.success(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    sender.dispose();
+                    sink.error(ReactorCall.translate(t, notFoundMessage));
+                }
+
+                @Override
+                public void onCompleted() {
+                    sink.success();
+                }
+            };
+            method.apply(responseObserver);
+            sink.onCancel(() -> {
+                sender.dispose();
+                sender.requestStream.cancel("Upload cancelled by gateway", null);
+            });
+            requests.subscribe(sender);
+        });
+    }
+
+    private static boolean isEmpty(@Nullable FilePart image) {
+        return image == null || image.filename().isEmpty();
+    }
+
+    /**
+     * Has at most one message requested from the part at a time, and requests the next one only when the transport
+     * can take it.
+     */
+    private static final class Sender<ReqT, RespT> extends BaseSubscriber<ReqT> {
+
+        private final MonoSink<RespT> sink;
+        private final AtomicBoolean awaiting = new AtomicBoolean();
+        private volatile ClientCallStreamObserver<ReqT> requestStream;
+
+        private Sender(MonoSink<RespT> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        protected void hookOnSubscribe(@Nonnull Subscription subscription) {
+            pull();
+        }
+
+        @Override
+        protected void hookOnNext(@Nonnull ReqT value) {
+            requestStream.onNext(value);
+            awaiting.set(false);
+            pull();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            requestStream.onCompleted();
+        }
+
+        @Override
+        protected void hookOnError(@Nonnull Throwable throwable) {
+            requestStream.cancel("Upload aborted by gateway", throwable);
+            sink.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не удалось прочитать загружаемое изображение", throwable));
+        }
+
+        void pull() {
+            if (upstream() != null && requestStream.isReady() && awaiting.compareAndSet(false, true)) {
+                request(1);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package guru.qa.rococo.service.cors;
 import jakarta.annotation.Nonnull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -20,16 +21,22 @@ public class CorsCustomizer {
 
     public void corsCustomizer(@Nonnull HttpSecurity http) throws Exception {
         http.cors(c -> {
-            CorsConfigurationSource source = s -> {
-                CorsConfiguration cc = new CorsConfiguration();
-                cc.setAllowCredentials(true);
-                cc.setAllowedOrigins(List.of(rococoFrontUri));
-                cc.setAllowedHeaders(List.of("*"));
-                cc.setAllowedMethods(List.of("*"));
-                return cc;
-            };
+            CorsConfigurationSource source = s -> corsConfiguration();
 
             c.configurationSource(source);
         });
     }
-}
\ No newline at end of file
+
+    public void corsCustomizer(@Nonnull ServerHttpSecurity http) {
+        http.cors(c -> c.configurationSource(exchange -> corsConfiguration()));
+    }
+
+    private @Nonnull CorsConfiguration corsConfiguration() {
+        CorsConfiguration cc = new CorsConfiguration();
+        cc.setAllowCredentials(true);
+        cc.setAllowedOrigins(List.of(rococoFrontUri));
+        cc.setAllowedHeaders(List.of("*"));
+        cc.setAllowedMethods(List.of("*"));
+        return cc;
+    }
+}
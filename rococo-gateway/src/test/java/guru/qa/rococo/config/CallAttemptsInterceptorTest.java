@@ -0,0 +1,117 @@
+package guru.qa.rococo.config;
+
+import guru.qa.grpc.rococo.grpc.ArtistRequest;
+import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.RococoArtistServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CallAttemptsInterceptorTest {
+
+    private static final String GET_ARTIST = "guru.qa.grpc.rococo.RococoArtistService/GetArtist";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger unavailableAnswers = new AtomicInteger();
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void shouldCountSingleAttemptAsFirst() throws IOException {
+        RococoArtistServiceGrpc.RococoArtistServiceBlockingStub stub = start(Map.of());
+
+        stub.getArtist(ArtistRequest.getDefaultInstance());
+
+        assertEquals(1.0, attempts("first"));
+        assertNull(counter("retry"));
+    }
+
+    @Test
+    void shouldCountRetriesOfServiceConfig() throws IOException {
+        unavailableAnswers.set(2);
+        RococoArtistServiceGrpc.RococoArtistServiceBlockingStub stub = start(Map.of(
+                "rococo-api.grpc-calls.retry.methods", GET_ARTIST,
+                "rococo-api.grpc-calls.retry.max-attempts", "3"
+        ));
+
+        stub.getArtist(ArtistRequest.getDefaultInstance());
+
+        assertEquals(1.0, attempts("first"));
+        assertEquals(2.0, attempts("retry"));
+    }
+
+    @Test
+    void shouldCountFailedCallWithoutRetryOnce() throws IOException {
+        unavailableAnswers.set(1);
+        RococoArtistServiceGrpc.RococoArtistServiceBlockingStub stub = start(Map.of());
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> stub.getArtist(ArtistRequest.getDefaultInstance()));
+
+        assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+        assertEquals(1.0, attempts("first"));
+        assertNull(counter("retry"));
+    }
+
+    private RococoArtistServiceGrpc.RococoArtistServiceBlockingStub start(Map<String, String> properties) throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new RococoArtistServiceGrpc.RococoArtistServiceImplBase() {
+                    @Override
+                    public void getArtist(ArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
+                        if (unavailableAnswers.getAndDecrement() > 0) {
+                            responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                            return;
+                        }
+                        responseObserver.onNext(ArtistResponse.getDefaultInstance());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        Binder binder = new Binder(new MapConfigurationPropertySource(properties));
+        channel = InProcessChannelBuilder.forName(name)
+                .directExecutor()
+                .defaultServiceConfig(GrpcServiceConfig.create(binder))
+                .enableRetry()
+                .intercept(new CallAttemptsInterceptor(meterRegistry))
+                .build();
+        return RococoArtistServiceGrpc.newBlockingStub(channel);
+    }
+
+    private double attempts(String attempt) {
+        return counter(attempt).count();
+    }
+
+    private Counter counter(String attempt) {
+        return meterRegistry.find(CallAttemptsInterceptor.ATTEMPTS_METER)
+                .tag("method", GET_ARTIST)
+                .tag("attempt", attempt)
+                .counter();
+    }
+}
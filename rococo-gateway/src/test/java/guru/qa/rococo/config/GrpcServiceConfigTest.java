@@ -0,0 +1,103 @@
+package guru.qa.rococo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GrpcServiceConfigTest {
+
+    private static final String PREFIX = "rococo-api.grpc-calls.";
+    private static final String ARTIST_SERVICE = "guru.qa.grpc.rococo.RococoArtistService";
+    private static final String PAINTING_SERVICE = "guru.qa.grpc.rococo.RococoPaintingService";
+
+    @Test
+    void shouldGiveUnaryMethodsTheDefaultDeadline() {
+        Map<String, Object> serviceConfig = create(Map.of(PREFIX + "deadline", "3s"));
+
+        assertEquals("3.000000000s", defaultConfig(serviceConfig).get("timeout"));
+    }
+
+    @Test
+    void shouldLeaveStreamingMethodsWithoutDeadline() {
+        Map<String, Object> serviceConfig = create(Map.of(PREFIX + "deadline", "3s"));
+
+        assertFalse(methodConfig(serviceConfig, PAINTING_SERVICE, "StreamPaintingContent").containsKey("timeout"));
+        assertFalse(methodConfig(serviceConfig, PAINTING_SERVICE, "UploadPainting").containsKey("timeout"));
+        assertFalse(methodConfig(serviceConfig, ARTIST_SERVICE, "ExportArtists").containsKey("timeout"));
+    }
+
+    @Test
+    void shouldApplyDeadlineOfFullyQualifiedMethod() {
+        Map<String, Object> serviceConfig = create(Map.of(
+                PREFIX + "deadlines[" + PAINTING_SERVICE + "/StreamPaintingContent]", "10m",
+                PREFIX + "deadlines[" + ARTIST_SERVICE + "/GetArtistByIds]", "2s"
+        ));
+
+        assertEquals("600.000000000s", methodConfig(serviceConfig, PAINTING_SERVICE, "StreamPaintingContent").get("timeout"));
+        assertEquals("2.000000000s", methodConfig(serviceConfig, ARTIST_SERVICE, "GetArtistByIds").get("timeout"));
+    }
+
+    @Test
+    void shouldHedgeOnlyTheGivenMethod() {
+        Map<String, Object> serviceConfig = create(Map.of(
+                PREFIX + "hedging.methods", ARTIST_SERVICE + "/GetArtistByIds"
+        ));
+
+        Map<String, Object> hedged = methodConfig(serviceConfig, ARTIST_SERVICE, "GetArtistByIds");
+        assertTrue(hedged.containsKey("hedgingPolicy"));
+        assertEquals("5.000000000s", hedged.get("timeout"));
+    }
+
+    @Test
+    void shouldRejectBareMethodName() {
+        Binder binder = binder(Map.of(PREFIX + "retry.methods", "GetArtist"));
+
+        assertThrows(IllegalStateException.class, () -> GrpcServiceConfig.create(binder));
+    }
+
+    @Test
+    void shouldRejectMethodBothRetriedAndHedged() {
+        Binder binder = binder(Map.of(
+                PREFIX + "retry.methods", ARTIST_SERVICE + "/GetArtist",
+                PREFIX + "hedging.methods", ARTIST_SERVICE + "/GetArtist"
+        ));
+
+        assertThrows(IllegalStateException.class, () -> GrpcServiceConfig.create(binder));
+    }
+
+    private static Map<String, Object> create(Map<String, String> properties) {
+        return GrpcServiceConfig.create(binder(properties));
+    }
+
+    private static Binder binder(Map<String, String> properties) {
+        return new Binder(new MapConfigurationPropertySource(properties));
+    }
+
+    private static Map<String, Object> defaultConfig(Map<String, Object> serviceConfig) {
+        return methodConfigs(serviceConfig).stream()
+                .filter(config -> config.get("name").equals(List.of(Map.of())))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Map<String, Object> methodConfig(Map<String, Object> serviceConfig, String service, String method) {
+        Map<String, String> name = Map.of("service", service, "method", method);
+        return methodConfigs(serviceConfig).stream()
+                .filter(config -> config.get("name").equals(List.of(name)))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> methodConfigs(Map<String, Object> serviceConfig) {
+        return (List<Map<String, Object>>) serviceConfig.get("methodConfig");
+    }
+}
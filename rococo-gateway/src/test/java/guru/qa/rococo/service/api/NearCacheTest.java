@@ -0,0 +1,195 @@
+package guru.qa.rococo.service.api;
+
+import guru.qa.grpc.rococo.grpc.ArtistRequest;
+import guru.qa.grpc.rococo.grpc.ArtistResponse;
+import guru.qa.grpc.rococo.grpc.PatchArtistRequest;
+import guru.qa.grpc.rococo.grpc.RococoArtistServiceGrpc;
+import guru.qa.grpc.rococo.grpc.UploadArtistRequest;
+import guru.qa.rococo.grpc.Uuids;
+import guru.qa.rococo.model.ArtistJson;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearCacheTest {
+
+    private static final UUID ARTIST_ID = UUID.randomUUID();
+
+    private final AtomicReference<String> name = new AtomicReference<>("Van Gogh");
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicInteger fullReads = new AtomicInteger();
+    private final AtomicInteger summaryReads = new AtomicInteger();
+    private Server server;
+    private ManagedChannel channel;
+    private GrpcArtistClient grpcArtistClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(new ArtistService())
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName)
+                .directExecutor()
+                .build();
+        grpcArtistClient = new GrpcArtistClient(factory(DataSize.ofMegabytes(1)));
+        ReflectionTestUtils.setField(grpcArtistClient, "rococoArtistServiceStub", RococoArtistServiceGrpc.newBlockingStub(channel));
+        ReflectionTestUtils.setField(grpcArtistClient, "rococoArtistServiceAsyncStub", RococoArtistServiceGrpc.newStub(channel));
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void shouldCacheFullArtistsAndSummariesApart() {
+        grpcArtistClient.getArtistAsync(ARTIST_ID).join();
+        grpcArtistClient.getArtistAsync(ARTIST_ID).join();
+        grpcArtistClient.getArtistSummaryAsync(ARTIST_ID).join();
+        grpcArtistClient.getArtistSummaryAsync(ARTIST_ID).join();
+
+        assertEquals(1, fullReads.get());
+        assertEquals(1, summaryReads.get());
+    }
+
+    @Test
+    void shouldEvictFullArtistAndSummaryOnPatch() {
+        grpcArtistClient.getArtistAsync(ARTIST_ID).join();
+        grpcArtistClient.getArtistSummaryAsync(ARTIST_ID).join();
+
+        grpcArtistClient.patchArtist(new ArtistJson(ARTIST_ID, "Vincent van Gogh", null, null, 0), null);
+
+        assertCachedAfterUpdate("Vincent van Gogh");
+    }
+
+    @Test
+    void shouldEvictFullArtistAndSummaryOnUpload() {
+        grpcArtistClient.getArtistAsync(ARTIST_ID).join();
+        grpcArtistClient.getArtistSummaryAsync(ARTIST_ID).join();
+
+        grpcArtistClient.uploadArtist(new ArtistJson(ARTIST_ID, "Vincent van Gogh", "Dutch painter", null, 0), null, null);
+
+        assertCachedAfterUpdate("Vincent van Gogh");
+    }
+
+    @Test
+    void shouldReloadSummaryOlderThanRequestedVersion() {
+        grpcArtistClient.getArtistSummaryAsync(ARTIST_ID).join();
+        // written through another gateway instance, so nothing was evicted here
+        name.set("Vincent van Gogh");
+        version.incrementAndGet();
+
+        ArtistJson summary = grpcArtistClient.getArtistSummaryAsync(ARTIST_ID, 2).join();
+
+        assertEquals("Vincent van Gogh", summary.name());
+        assertEquals(2, summary.version());
+        assertEquals(2, summaryReads.get());
+    }
+
+    @Test
+    void shouldEvictEntryHeavierThanMaxWeight() throws InterruptedException {
+        NearCache<Integer, String> cache = factory(DataSize.ofBytes(1024)).create("test", String::length);
+        AtomicInteger loads = new AtomicInteger();
+        String heavy = "x".repeat(2048);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        // eviction runs on the cache's maintenance pass, which is asynchronous
+        while (loads.get() < 2 && System.nanoTime() < deadline) {
+            cache.get(1, key -> {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture(heavy);
+            }).join();
+            Thread.sleep(10);
+        }
+
+        assertTrue(loads.get() >= 2);
+    }
+
+    private void assertCachedAfterUpdate(String expectedName) {
+        ArtistJson artist = grpcArtistClient.getArtistAsync(ARTIST_ID).join();
+        ArtistJson summary = grpcArtistClient.getArtistSummaryAsync(ARTIST_ID).join();
+
+        assertEquals(expectedName, artist.name());
+        assertEquals(expectedName, summary.name());
+        assertEquals(2, artist.version());
+        assertEquals(2, summary.version());
+        assertEquals(2, fullReads.get());
+        assertEquals(2, summaryReads.get());
+    }
+
+    private static NearCacheFactory factory(DataSize maxWeight) {
+        return new NearCacheFactory(Duration.ofMinutes(1), maxWeight, new SimpleMeterRegistry());
+    }
+
+    private ArtistResponse artist() {
+        return ArtistResponse.newBuilder()
+                .setUuid(Uuids.toGrpc(ARTIST_ID))
+                .setName(name.get())
+                .setVersion(version.get())
+                .build();
+    }
+
+    private class ArtistService extends RococoArtistServiceGrpc.RococoArtistServiceImplBase {
+
+        @Override
+        public void getArtist(ArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
+            (request.hasReadMask() ? summaryReads : fullReads).incrementAndGet();
+            responseObserver.onNext(artist());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void patchArtist(PatchArtistRequest request, StreamObserver<ArtistResponse> responseObserver) {
+            name.set(request.getArtistData().getName());
+            version.incrementAndGet();
+            responseObserver.onNext(artist());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public StreamObserver<UploadArtistRequest> uploadArtist(StreamObserver<ArtistResponse> responseObserver) {
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(UploadArtistRequest value) {
+                    if (value.hasArtist()) {
+                        name.set(value.getArtist().getArtistData().getName());
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    version.incrementAndGet();
+                    responseObserver.onNext(artist());
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+}
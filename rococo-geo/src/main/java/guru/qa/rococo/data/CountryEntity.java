@@ -1,7 +1,7 @@
 package guru.qa.rococo.data;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.CountryResponse;
+import guru.qa.rococo.grpc.Uuids;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -26,7 +26,7 @@ public class CountryEntity {
 
     public static CountryResponse toGrpcMessage(CountryEntity entity) {
         return CountryResponse.newBuilder()
-                .setId(ByteString.copyFromUtf8(entity.getId().toString()))
+                .setId(Uuids.toLegacy(entity.getId()))
                 .setName(entity.getName())
                 .build();
     }
@@ -0,0 +1,124 @@
+package guru.qa.rococo.service;
+
+import guru.qa.grpc.rococo.grpc.CountryResponse;
+import guru.qa.rococo.data.CountryEntity;
+import guru.qa.rococo.data.repository.CountryRepository;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Every country ordered by name, loaded once at startup. The {@code country} table is only seeded by migrations and never written
+ * by the service, so all RPCs are answered from this immutable index; a restart picks up a new migration.
+ * Responses are prebuilt in both id forms, the caller of the current call gets the one it negotiated.
+ */
+@Component
+public class CountryIndex {
+
+    private final Encoded legacy;
+    private final Encoded compact;
+    private final String version;
+
+    @Autowired
+    public CountryIndex(CountryRepository countryRepository) {
+        List<CountryEntity> entities = countryRepository.findAll(Sort.by("name"));
+        this.legacy = Encoded.of(entities, CountryEntity::toGrpcMessage);
+        this.compact = Encoded.of(entities, entity -> CountryEntity.toGrpcMessage(entity).toBuilder()
+                .clearId()
+                .setUuid(Uuids.toGrpc(entity.getId()))
+                .build());
+        this.version = version(legacy.countries());
+    }
+
+    public @Nonnull Optional<CountryResponse> findById(@Nonnull UUID id) {
+        return Optional.ofNullable(encoded().byId().get(id));
+    }
+
+    public @Nonnull Optional<CountryResponse> findByName(@Nonnull String name) {
+        return Optional.ofNullable(encoded().byName().get(name));
+    }
+
+    /**
+     * @return countries in the order of {@code ids}; unknown ids are skipped
+     */
+    public @Nonnull List<CountryResponse> findAllById(@Nonnull Collection<UUID> ids) {
+        Map<UUID, CountryResponse> byId = encoded().byId();
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public @Nonnull List<CountryResponse> page(int page, int size) {
+        List<CountryResponse> countries = encoded().countries();
+        int from = (int) Math.min((long) page * size, countries.size());
+        int to = (int) Math.min((long) from + size, countries.size());
+        return countries.subList(from, to);
+    }
+
+    public @Nonnull List<CountryResponse> findAll() {
+        return encoded().countries();
+    }
+
+    public int size() {
+        return legacy.countries().size();
+    }
+
+    /**
+     * @return stamp of the current content, changes whenever a country is added, renamed or removed
+     */
+    public @Nonnull String version() {
+        return version;
+    }
+
+    private Encoded encoded() {
+        return IdEncoding.compact() ? compact : legacy;
+    }
+
+    private static @Nonnull String version(@Nonnull List<CountryResponse> countries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (CountryResponse country : countries) {
+                digest.update(country.getId().toByteArray());
+                digest.update((byte) ':');
+                digest.update(country.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Encoded(List<CountryResponse> countries,
+                           Map<UUID, CountryResponse> byId,
+                           Map<String, CountryResponse> byName) {
+
+        static Encoded of(List<CountryEntity> entities, Function<CountryEntity, CountryResponse> toGrpcMessage) {
+            List<CountryResponse> countries = entities.stream()
+                    .map(toGrpcMessage)
+                    .toList();
+            return new Encoded(
+                    countries,
+                    entities.stream().collect(Collectors.toUnmodifiableMap(CountryEntity::getId, toGrpcMessage)),
+                    countries.stream().collect(Collectors.toUnmodifiableMap(CountryResponse::getName, Function.identity()))
+            );
+        }
+    }
+}
@@ -1,37 +1,31 @@
 package guru.qa.rococo.service;
 
 import guru.qa.grpc.rococo.grpc.*;
-import guru.qa.rococo.data.CountryEntity;
-import guru.qa.rococo.data.repository.CountryRepository;
+import guru.qa.rococo.grpc.Uuids;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import static io.grpc.Status.NOT_FOUND;
-import static java.util.UUID.fromString;
 
 @GrpcService
 public class GrpcGeoService extends RococoGeoServiceGrpc.RococoGeoServiceImplBase {
-    private final CountryRepository countryRepository;
+    private final CountryIndex countryIndex;
 
-    public GrpcGeoService(CountryRepository countryRepository) {
-        this.countryRepository = countryRepository;
+    public GrpcGeoService(CountryIndex countryIndex) {
+        this.countryIndex = countryIndex;
     }
 
     @Override
     public void getCountry(CountryId request, StreamObserver<CountryResponse> responseObserver) {
-        UUID countryId = fromString(request.getId().toStringUtf8());
+        UUID countryId = Uuids.read(request.getUuid(), request.getId());
 
-        countryRepository.findById(countryId)
+        countryIndex.findById(countryId)
                 .ifPresentOrElse(
-                        countryEntity -> {
-                            CountryResponse response = CountryEntity.toGrpcMessage(countryEntity);
+                        response -> {
                             responseObserver.onNext(response);
                             responseObserver.onCompleted();
                         },
@@ -46,10 +40,9 @@ public class GrpcGeoService extends RococoGeoServiceGrpc.RococoGeoServiceImplBas
     public void getCountryByName(CountryName request, StreamObserver<CountryResponse> responseObserver) {
         String countryName = request.getName();
 
-        countryRepository.findByName(countryName)
+        countryIndex.findByName(countryName)
                 .ifPresentOrElse(
-                        countryEntity -> {
-                            CountryResponse response = CountryEntity.toGrpcMessage(countryEntity);
+                        response -> {
                             responseObserver.onNext(response);
                             responseObserver.onCompleted();
                         },
@@ -62,37 +55,38 @@ public class GrpcGeoService extends RococoGeoServiceGrpc.RococoGeoServiceImplBas
 
     @Override
     public void getAllCountry(AllCountryRequest request, StreamObserver<AllCountryResponse> responseObserver) {
-        int page = request.getPage();
-        int size = request.getSize();
-        PageRequest pageable = PageRequest.of(page, size);
-
-        Page<CountryEntity> countryPage = countryRepository.findAll(pageable);
-        AllCountryResponse.Builder responseBuilder = AllCountryResponse.newBuilder();
-        countryPage.forEach(countryEntity -> {
-            CountryResponse response = CountryEntity.toGrpcMessage(countryEntity);
-            responseBuilder.addCountry(response);
-        });
-        responseBuilder.setTotalCount((int) countryPage.getTotalElements());
+        AllCountryResponse response = AllCountryResponse.newBuilder()
+                .addAllCountry(countryIndex.page(request.getPage(), request.getSize()))
+                .setTotalCount(countryIndex.size())
+                .build();
 
-        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
     @Override
     public void getCountriesByIds(CountryIdsRequest request, StreamObserver<AllCountryByIdsResponse> responseObserver) {
-        Set<UUID> countryIds = request.getIdList().stream()
-                .map(byteString -> fromString(byteString.toStringUtf8()))
-                .collect(Collectors.toSet());
+        Set<UUID> countryIds = new LinkedHashSet<>(Uuids.readAll(request.getUuidList(), request.getIdList()));
 
-        List<CountryEntity> countries = countryRepository.findAllByIdIn(countryIds);
+        AllCountryByIdsResponse response = AllCountryByIdsResponse.newBuilder()
+                .addAllCountry(countryIndex.findAllById(countryIds))
+                .build();
 
-        AllCountryByIdsResponse.Builder responseBuilder = AllCountryByIdsResponse.newBuilder();
-        countries.forEach(countryEntity -> {
-            CountryResponse response = CountryEntity.toGrpcMessage(countryEntity);
-            responseBuilder.addCountry(response);
-        });
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getCountryDictionary(CountryDictionaryRequest request, StreamObserver<CountryDictionaryResponse> responseObserver) {
+        CountryDictionaryResponse.Builder responseBuilder = CountryDictionaryResponse.newBuilder()
+                .setVersion(countryIndex.version());
+        if (countryIndex.version().equals(request.getKnownVersion())) {
+            responseBuilder.setUnchanged(true);
+        } else {
+            responseBuilder.addAllCountry(countryIndex.findAll());
+        }
 
         responseObserver.onNext(responseBuilder.build());
         responseObserver.onCompleted();
     }
-}
\ No newline at end of file
+}
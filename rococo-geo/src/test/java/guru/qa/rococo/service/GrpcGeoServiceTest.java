@@ -7,8 +7,8 @@ import guru.qa.rococo.data.repository.CountryRepository;
 import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
 
 import java.util.*;
 
@@ -18,22 +18,28 @@ import static org.mockito.Mockito.*;
 class GrpcGeoServiceTest {
 
     private CountryRepository countryRepository;
-    private GrpcGeoService grpcGeoService;
 
     @BeforeEach
     void setUp() {
         countryRepository = mock(CountryRepository.class);
-        grpcGeoService = new GrpcGeoService(countryRepository);
     }
 
-    @Test
-    void shouldReturnCountryById() {
-        UUID id = UUID.randomUUID();
+    private GrpcGeoService serviceWith(CountryEntity... countries) {
+        when(countryRepository.findAll(any(Sort.class))).thenReturn(List.of(countries));
+        return new GrpcGeoService(new CountryIndex(countryRepository));
+    }
+
+    private static CountryEntity country(UUID id, String name) {
         CountryEntity entity = new CountryEntity();
         entity.setId(id);
-        entity.setName("France");
+        entity.setName(name);
+        return entity;
+    }
 
-        when(countryRepository.findById(id)).thenReturn(Optional.of(entity));
+    @Test
+    void shouldReturnCountryById() {
+        UUID id = UUID.randomUUID();
+        GrpcGeoService grpcGeoService = serviceWith(country(id, "France"));
 
         StreamObserver<CountryResponse> observer = mock(StreamObserver.class);
         grpcGeoService.getCountry(
@@ -41,19 +47,17 @@ class GrpcGeoServiceTest {
                 observer
         );
 
-        verify(observer).onNext(any(CountryResponse.class));
+        verify(observer).onNext(argThat(response -> response.getName().equals("France")));
         verify(observer).onCompleted();
     }
 
     @Test
     void shouldReturnNotFoundCountryById() {
-        UUID id = UUID.randomUUID();
-
-        when(countryRepository.findById(id)).thenReturn(Optional.empty());
+        GrpcGeoService grpcGeoService = serviceWith(country(UUID.randomUUID(), "France"));
 
         StreamObserver<CountryResponse> observer = mock(StreamObserver.class);
         grpcGeoService.getCountry(
-                CountryId.newBuilder().setId(ByteString.copyFromUtf8(id.toString())).build(),
+                CountryId.newBuilder().setId(ByteString.copyFromUtf8(UUID.randomUUID().toString())).build(),
                 observer
         );
 
@@ -62,11 +66,7 @@ class GrpcGeoServiceTest {
 
     @Test
     void shouldReturnCountryByName() {
-        CountryEntity entity = new CountryEntity();
-        entity.setId(UUID.randomUUID());
-        entity.setName("Germany");
-
-        when(countryRepository.findByName("Germany")).thenReturn(Optional.of(entity));
+        GrpcGeoService grpcGeoService = serviceWith(country(UUID.randomUUID(), "Germany"));
 
         StreamObserver<CountryResponse> observer = mock(StreamObserver.class);
         grpcGeoService.getCountryByName(
@@ -80,7 +80,7 @@ class GrpcGeoServiceTest {
 
     @Test
     void shouldReturnNotFoundCountryByName() {
-        when(countryRepository.findByName("Atlantis")).thenReturn(Optional.empty());
+        GrpcGeoService grpcGeoService = serviceWith(country(UUID.randomUUID(), "Germany"));
 
         StreamObserver<CountryResponse> observer = mock(StreamObserver.class);
         grpcGeoService.getCountryByName(
@@ -93,16 +93,10 @@ class GrpcGeoServiceTest {
 
     @Test
     void shouldReturnAllCountries() {
-        CountryEntity e1 = new CountryEntity();
-        e1.setId(UUID.randomUUID());
-        e1.setName("Italy");
-
-        CountryEntity e2 = new CountryEntity();
-        e2.setId(UUID.randomUUID());
-        e2.setName("Spain");
-
-        when(countryRepository.findAll(PageRequest.of(0, 10)))
-                .thenReturn(new PageImpl<>(List.of(e1, e2)));
+        GrpcGeoService grpcGeoService = serviceWith(
+                country(UUID.randomUUID(), "Italy"),
+                country(UUID.randomUUID(), "Spain")
+        );
 
         StreamObserver<AllCountryResponse> observer = mock(StreamObserver.class);
         grpcGeoService.getAllCountry(
@@ -118,24 +112,40 @@ class GrpcGeoServiceTest {
     }
 
     @Test
-    void shouldReturnCountriesByIds() {
-        UUID id1 = UUID.randomUUID();
-        UUID id2 = UUID.randomUUID();
+    void shouldReturnPageBeyondLastCountryEmpty() {
+        GrpcGeoService grpcGeoService = serviceWith(
+                country(UUID.randomUUID(), "Italy"),
+                country(UUID.randomUUID(), "Spain"),
+                country(UUID.randomUUID(), "Portugal")
+        );
 
-        CountryEntity e1 = new CountryEntity();
-        e1.setId(id1);
-        e1.setName("Japan");
+        StreamObserver<AllCountryResponse> observer = mock(StreamObserver.class);
+        grpcGeoService.getAllCountry(
+                AllCountryRequest.newBuilder().setPage(1).setSize(2).build(),
+                observer
+        );
 
-        CountryEntity e2 = new CountryEntity();
-        e2.setId(id2);
-        e2.setName("Brazil");
+        verify(observer).onNext(argThat(response ->
+                response.getCountryCount() == 1 &&
+                        response.getTotalCount() == 3
+        ));
+        verify(observer).onCompleted();
+    }
 
-        when(countryRepository.findAllByIdIn(Set.of(id1, id2)))
-                .thenReturn(List.of(e1, e2));
+    @Test
+    void shouldReturnCountriesByIds() {
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        GrpcGeoService grpcGeoService = serviceWith(
+                country(id1, "Japan"),
+                country(id2, "Brazil"),
+                country(UUID.randomUUID(), "Chile")
+        );
 
         CountryIdsRequest request = CountryIdsRequest.newBuilder()
                 .addId(ByteString.copyFromUtf8(id1.toString()))
                 .addId(ByteString.copyFromUtf8(id2.toString()))
+                .addId(ByteString.copyFromUtf8(UUID.randomUUID().toString()))
                 .build();
 
         StreamObserver<AllCountryByIdsResponse> observer = mock(StreamObserver.class);
@@ -144,4 +154,60 @@ class GrpcGeoServiceTest {
         verify(observer).onNext(argThat(response -> response.getCountryCount() == 2));
         verify(observer).onCompleted();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldNotQueryRepositoryAfterStartup() {
+        UUID id = UUID.randomUUID();
+        GrpcGeoService grpcGeoService = serviceWith(country(id, "Norway"));
+
+        grpcGeoService.getCountry(
+                CountryId.newBuilder().setId(ByteString.copyFromUtf8(id.toString())).build(),
+                mock(StreamObserver.class)
+        );
+        grpcGeoService.getAllCountry(AllCountryRequest.newBuilder().setPage(0).setSize(10).build(), mock(StreamObserver.class));
+
+        verify(countryRepository, times(1)).findAll(any(Sort.class));
+        verifyNoMoreInteractions(countryRepository);
+    }
+
+    @Test
+    void shouldReturnDictionaryForUnknownVersion() {
+        GrpcGeoService grpcGeoService = serviceWith(
+                country(UUID.randomUUID(), "Japan"),
+                country(UUID.randomUUID(), "Brazil")
+        );
+
+        StreamObserver<CountryDictionaryResponse> observer = mock(StreamObserver.class);
+        grpcGeoService.getCountryDictionary(CountryDictionaryRequest.getDefaultInstance(), observer);
+
+        verify(observer).onNext(argThat(response ->
+                !response.getUnchanged() &&
+                        response.getCountryCount() == 2 &&
+                        !response.getVersion().isEmpty()
+        ));
+        verify(observer).onCompleted();
+    }
+
+    @Test
+    void shouldReturnUnchangedDictionaryForCurrentVersion() {
+        GrpcGeoService grpcGeoService = serviceWith(country(UUID.randomUUID(), "Japan"));
+
+        StreamObserver<CountryDictionaryResponse> first = mock(StreamObserver.class);
+        grpcGeoService.getCountryDictionary(CountryDictionaryRequest.getDefaultInstance(), first);
+        ArgumentCaptor<CountryDictionaryResponse> dictionary = ArgumentCaptor.forClass(CountryDictionaryResponse.class);
+        verify(first).onNext(dictionary.capture());
+
+        StreamObserver<CountryDictionaryResponse> second = mock(StreamObserver.class);
+        grpcGeoService.getCountryDictionary(
+                CountryDictionaryRequest.newBuilder().setKnownVersion(dictionary.getValue().getVersion()).build(),
+                second
+        );
+
+        verify(second).onNext(argThat(response ->
+                response.getUnchanged() &&
+                        response.getCountryCount() == 0 &&
+                        response.getVersion().equals(dictionary.getValue().getVersion())
+        ));
+        verify(second).onCompleted();
+    }
+}
@@ -0,0 +1,138 @@
+package guru.qa.rococo.grpc;
+
+import guru.qa.grpc.rococo.grpc.ImportResponse;
+import guru.qa.grpc.rococo.grpc.ImportResult;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Server side of a client-streaming bulk import. Items are collected into batches of {@code batchSize} and each
+ * batch is written with one {@link #insertAll} call, so an import costs a round trip per batch instead of a
+ * transaction per item. A batch that fails as a whole is written again item by item, so a bad item only fails
+ * itself. Every item gets an {@link ImportResult} in the response.
+ * <p>
+ * Batches are written from {@link #onNext}, which holds back the next message until the batch is stored: the client
+ * can't run ahead of the database and at most one batch is held in memory. When the client cancels, the items of
+ * batches already written stay imported.
+ *
+ * @param <R> the request message of one item
+ * @param <T> the row an item is stored as
+ */
+public abstract class BulkImport<R, T> implements StreamObserver<R> {
+
+    private final int batchSize;
+    private final StreamObserver<ImportResponse> responseObserver;
+    private final List<ImportResult> results = new ArrayList<>();
+    private final List<T> batch = new ArrayList<>();
+    private final List<Integer> batchIndexes = new ArrayList<>();
+    private int index;
+    private int imported;
+
+    protected BulkImport(int batchSize, StreamObserver<ImportResponse> responseObserver) {
+        this.batchSize = Math.max(1, batchSize);
+        this.responseObserver = responseObserver;
+    }
+
+    /**
+     * Any {@link RuntimeException} rejects the item alone, with the message of its root cause as its error: an
+     * {@link IllegalArgumentException} for invalid items, or e.g. a data access failure while storing its image.
+     */
+    protected abstract T read(R request);
+
+    protected abstract UUID id(T row);
+
+    protected abstract void insertAll(List<T> rows);
+
+    /**
+     * Called after every batch with the ids it stored, e.g. to invalidate caches.
+     */
+    protected void imported(List<UUID> ids) {
+    }
+
+    @Override
+    public void onNext(R request) {
+        int itemIndex = index++;
+        T row;
+        try {
+            row = read(request);
+        } catch (RuntimeException e) {
+            results.add(failure(itemIndex, e));
+            return;
+        }
+        batch.add(row);
+        batchIndexes.add(itemIndex);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        batch.clear();
+        batchIndexes.clear();
+    }
+
+    @Override
+    public void onCompleted() {
+        flush();
+        // rejected items are answered right away, stored ones only once their batch is written
+        results.sort(Comparator.comparingInt(ImportResult::getIndex));
+        responseObserver.onNext(ImportResponse.newBuilder()
+                .addAllResults(results)
+                .setImported(imported)
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<UUID> stored = new ArrayList<>(batch.size());
+        try {
+            insertAll(List.copyOf(batch));
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(success(batchIndexes.get(i), id(batch.get(i))));
+            }
+        } catch (RuntimeException batchFailure) {
+            for (int i = 0; i < batch.size(); i++) {
+                T row = batch.get(i);
+                try {
+                    insertAll(List.of(row));
+                    stored.add(success(batchIndexes.get(i), id(row)));
+                } catch (RuntimeException e) {
+                    results.add(failure(batchIndexes.get(i), e));
+                }
+            }
+        }
+        batch.clear();
+        batchIndexes.clear();
+        if (!stored.isEmpty()) {
+            imported(stored);
+        }
+    }
+
+    private UUID success(int itemIndex, UUID id) {
+        results.add(ImportResult.newBuilder()
+                .setIndex(itemIndex)
+                .setUuid(Uuids.toGrpc(id))
+                .build());
+        imported++;
+        return id;
+    }
+
+    private static ImportResult failure(int itemIndex, Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return ImportResult.newBuilder()
+                .setIndex(itemIndex)
+                .setError(String.valueOf(cause.getMessage()))
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package guru.qa.rococo.grpc;
+
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Moves image bytes between entities, JDBC and messages without copying them. Both directions hand the array over:
+ * neither side may change it afterwards, which holds for arrays read from JDBC, entity columns that are only ever
+ * replaced and bytes parsed from a message.
+ */
+public final class ByteStrings {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private ByteStrings() {
+    }
+
+    public static ByteString wrap(byte[] bytes) {
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    public static ByteString wrap(byte[] bytes, int offset, int length) {
+        return UnsafeByteOperations.unsafeWrap(bytes, offset, length);
+    }
+
+    /**
+     * @return the array behind {@code bytes} when it is backed by exactly one whole array, as bytes parsed from a
+     * message are, otherwise a copy
+     */
+    public static byte[] unwrap(ByteString bytes) {
+        if (bytes.isEmpty()) {
+            return EMPTY;
+        }
+        Unwrapper unwrapper = new Unwrapper(bytes.size());
+        try {
+            UnsafeByteOperations.unsafeWriteTo(bytes, unwrapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return unwrapper.result();
+    }
+
+    private static final class Unwrapper extends ByteOutput {
+
+        private final int size;
+        private byte[] whole;
+        private byte[] copy;
+        private int position;
+
+        private Unwrapper(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void write(byte value) {
+            copy()[position++] = value;
+        }
+
+        @Override
+        public void write(byte[] value, int offset, int length) {
+            System.arraycopy(value, offset, copy(), position, length);
+            position += length;
+        }
+
+        @Override
+        public void writeLazy(byte[] value, int offset, int length) {
+            if (position == 0 && offset == 0 && length == size && value.length == size) {
+                whole = value;
+            } else {
+                write(value, offset, length);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer value) {
+            int length = value.remaining();
+            value.get(copy(), position, length);
+            position += length;
+        }
+
+        @Override
+        public void writeLazy(ByteBuffer value) {
+            write(value);
+        }
+
+        private byte[] copy() {
+            if (copy == null) {
+                copy = new byte[size];
+            }
+            return copy;
+        }
+
+        private byte[] result() {
+            return whole != null ? whole : copy;
+        }
+    }
+}
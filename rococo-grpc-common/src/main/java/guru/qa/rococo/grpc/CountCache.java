@@ -0,0 +1,84 @@
+package guru.qa.rococo.grpc;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.Nonnull;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Totals of listings, so a page no longer pays for its own {@code count(*)}. Exact counts are cached per normalized
+ * filter until the next write through this service, or for {@code ttl} to catch writes through other instances. Once
+ * the table outgrows {@code estimateThreshold} rows the unfiltered total is taken from table statistics and flagged as
+ * estimated.
+ * <p>
+ * Each service creates its own cache from its repository's counts.
+ */
+public final class CountCache {
+
+    private final long estimateThreshold;
+    private final LongSupplier tableRows;
+    private final LongSupplier countAll;
+    private final ToLongFunction<String> countMatching;
+    private final Cache<String, Total> totals;
+
+    /**
+     * @param tableRows     row count from table statistics, cheap but approximate
+     * @param countAll      exact count of all rows
+     * @param countMatching exact count of the rows matching a full-text query
+     */
+    public CountCache(@Nonnull Duration ttl,
+                      long maxSize,
+                      long estimateThreshold,
+                      @Nonnull LongSupplier tableRows,
+                      @Nonnull LongSupplier countAll,
+                      @Nonnull ToLongFunction<String> countMatching) {
+        this.estimateThreshold = estimateThreshold;
+        this.tableRows = tableRows;
+        this.countAll = countAll;
+        this.countMatching = countMatching;
+        this.totals = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * @param query full-text query built by {@link FullTextQuery}, empty for all rows
+     */
+    public @Nonnull Total count(@Nonnull String query) {
+        return totals.get(query.toLowerCase(Locale.ROOT), key -> key.isEmpty()
+                ? countAll()
+                : new Total(countMatching.applyAsLong(query), false));
+    }
+
+    /**
+     * Total of any other filter, cached and invalidated with the rest.
+     *
+     * @param key identifies the filter; full-text keys start with '+', so a key like {@code "artist:<id>"} cannot
+     *            collide with them
+     */
+    public @Nonnull Total count(@Nonnull String key, @Nonnull LongSupplier counter) {
+        return totals.get(key, ignored -> new Total(counter.getAsLong(), false));
+    }
+
+    /**
+     * Drops every cached total, called after each add and update.
+     */
+    public void invalidate() {
+        totals.invalidateAll();
+    }
+
+    private Total countAll() {
+        long rows = tableRows.getAsLong();
+        return rows >= estimateThreshold
+                ? new Total(rows, true)
+                : new Total(countAll.getAsLong(), false);
+    }
+
+    public record Total(long value, boolean estimated) {
+    }
+}
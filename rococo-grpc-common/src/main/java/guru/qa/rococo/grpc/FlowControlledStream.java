@@ -0,0 +1,94 @@
+package guru.qa.rococo.grpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Server side of a server-streaming call fed by a blocking producer, such as a streamed JDBC result set. Each message
+ * is only sent once the transport is ready for it, so a slow client slows the producer down instead of having the
+ * whole stream queue up in memory, and a cancelled call stops the producer with {@code CANCELLED}.
+ * <p>
+ * The call's {@code onReady} and {@code onCancel} callbacks are queued behind the service method, so the producer
+ * runs on a thread of its own and the service method returns right away; the callbacks wake the producer up.
+ */
+public final class FlowControlledStream<T> {
+
+    private static final ThreadFactory PRODUCERS = Thread.ofVirtual().name("grpc-stream-", 0).factory();
+
+    private final ServerCallStreamObserver<T> call;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+
+    private FlowControlledStream(ServerCallStreamObserver<T> call) {
+        this.call = call;
+        call.setOnReadyHandler(this::signalReady);
+        call.setOnCancelHandler(this::signalReady);
+    }
+
+    /**
+     * Runs {@code producer} with a consumer that sends to {@code responseObserver}, then completes the call. A call
+     * the client cancelled is left as it is, any other failure of the producer fails the call.
+     * <p>
+     * Must be called from the service method. A {@code responseObserver} that is not a server call, as in tests, gets
+     * the producer run in place, without flow control.
+     */
+    public static <T> void send(StreamObserver<T> responseObserver, Consumer<Consumer<T>> producer) {
+        if (!(responseObserver instanceof ServerCallStreamObserver<T> call)) {
+            produce(responseObserver, producer, responseObserver::onNext);
+            return;
+        }
+        FlowControlledStream<T> stream = new FlowControlledStream<>(call);
+        PRODUCERS.newThread(() -> produce(call, producer, stream::sendWhenReady)).start();
+    }
+
+    private static <T> void produce(StreamObserver<T> responseObserver,
+                                    Consumer<Consumer<T>> producer,
+                                    Consumer<T> sender) {
+        try {
+            producer.accept(sender);
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.CANCELLED) {
+                responseObserver.onError(e);
+            }
+            return;
+        } catch (RuntimeException e) {
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            return;
+        }
+        responseObserver.onCompleted();
+    }
+
+    private void sendWhenReady(T message) {
+        lock.lock();
+        try {
+            while (!call.isReady()) {
+                if (call.isCancelled()) {
+                    throw Status.CANCELLED.withDescription("Client cancelled the stream").asRuntimeException();
+                }
+                ready.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED.withCause(e).asRuntimeException();
+        } finally {
+            lock.unlock();
+        }
+        call.onNext(message);
+    }
+
+    private void signalReady() {
+        lock.lock();
+        try {
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
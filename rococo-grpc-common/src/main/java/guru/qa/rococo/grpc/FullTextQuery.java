@@ -0,0 +1,28 @@
+package guru.qa.rococo.grpc;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Turns search input into a MySQL boolean mode {@code MATCH ... AGAINST} query: every word becomes a required
+ * prefix term, so {@code "mona li"} finds "Mona Lisa". Operator characters never reach MySQL.
+ */
+public final class FullTextQuery {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private FullTextQuery() {
+    }
+
+    /**
+     * @return the query, empty when the input has no words to search by
+     */
+    public static @Nonnull String prefix(@Nonnull String input) {
+        return WORD_SEPARATOR.splitAsStream(input)
+                .filter(word -> !word.isEmpty())
+                .map(word -> "+" + word + "*")
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,51 @@
+package guru.qa.rococo.grpc;
+
+import io.grpc.ServerInterceptor;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Server setup shared by every gRPC service: the {@link IdEncoding} interceptor and, with virtual threads enabled, a
+ * virtual thread per call plus the {@link PinningMonitor}. Registered in {@code AutoConfiguration.imports} rather than
+ * found by component scan, so it only applies to applications that run a gRPC server and not to the gateway.
+ */
+@AutoConfiguration
+@ConditionalOnClass(name = "net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer")
+public class GrpcServerAutoConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GrpcServerAutoConfiguration.class);
+
+    @GrpcGlobalServerInterceptor
+    public ServerInterceptor idEncodingInterceptor() {
+        return IdEncoding.serverInterceptor();
+    }
+
+    /**
+     * Runs every call on its own virtual thread instead of gRPC's default cached pool, so calls blocked on JDBC
+     * wait for a connection rather than hold a platform thread. Follows {@code spring.threads.virtual.enabled}.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public GrpcServerConfigurer virtualThreadServerConfigurer() {
+        return serverBuilder -> serverBuilder.executor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-vt-", 0).factory())
+        );
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public PinningMonitor pinningMonitor(@Value("${rococo-grpc.pinning-threshold:20ms}") Duration threshold) {
+        return PinningMonitor.start(threshold, LOG::warn);
+    }
+}
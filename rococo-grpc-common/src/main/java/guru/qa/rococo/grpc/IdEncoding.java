@@ -0,0 +1,68 @@
+package guru.qa.rococo.grpc;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Uuid;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.stub.MetadataUtils;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Negotiates the id form of responses. Clients that read {@link Uuid} advertise it with the
+ * {@code rococo-id-encoding: uuid} header, services answer them with the compact form and everyone else
+ * with the legacy UTF-8 one. Requests need no negotiation, services read both forms.
+ */
+public final class IdEncoding {
+
+    public static final Metadata.Key<String> HEADER = Metadata.Key.of("rococo-id-encoding", Metadata.ASCII_STRING_MARSHALLER);
+    public static final String COMPACT = "uuid";
+
+    private static final Context.Key<Boolean> COMPACT_RESPONSES = Context.keyWithDefault("rococo-compact-ids", false);
+
+    private IdEncoding() {
+    }
+
+    /**
+     * @return whether the caller of the current server call reads the compact form
+     */
+    public static boolean compact() {
+        return COMPACT_RESPONSES.get();
+    }
+
+    /**
+     * Writes {@code id} into the response field the caller of the current server call reads.
+     */
+    public static void write(UUID id, Consumer<Uuid> compact, Consumer<ByteString> legacy) {
+        if (compact()) {
+            compact.accept(Uuids.toGrpc(id));
+        } else {
+            legacy.accept(Uuids.toLegacy(id));
+        }
+    }
+
+    public static ServerInterceptor serverInterceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                         Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                return COMPACT.equals(headers.get(HEADER))
+                        ? Contexts.interceptCall(Context.current().withValue(COMPACT_RESPONSES, true), call, headers, next)
+                        : next.startCall(call, headers);
+            }
+        };
+    }
+
+    public static ClientInterceptor clientInterceptor() {
+        Metadata headers = new Metadata();
+        headers.put(HEADER, COMPACT);
+        return MetadataUtils.newAttachHeadersInterceptor(headers);
+    }
+}
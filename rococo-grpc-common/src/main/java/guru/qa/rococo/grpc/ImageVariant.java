@@ -0,0 +1,19 @@
+package guru.qa.rococo.grpc;
+
+/**
+ * Fixed size variants generated for every stored image. The size is the longest side in pixels.
+ */
+public enum ImageVariant {
+    SMALL(256),
+    MEDIUM(720);
+
+    private final int size;
+
+    ImageVariant(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,42 @@
+package guru.qa.rococo.grpc;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Continuation token of keyset listings. It carries the id of the last row handed out, so the next page is read
+ * from the primary key right after it, however deep the caller has scrolled. Callers treat it as opaque.
+ */
+public final class PageToken {
+
+    private PageToken() {
+    }
+
+    public static @Nonnull String encode(@Nonnull UUID lastId) {
+        byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(lastId.getMostSignificantBits())
+                .putLong(lastId.getLeastSignificantBits())
+                .array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @return id to continue after, {@code null} for the empty token of the first page
+     * @throws IllegalArgumentException if the token was not issued by {@link #encode(UUID)}
+     */
+    public static @Nullable UUID decode(@Nonnull String token) {
+        if (token.isEmpty()) {
+            return null;
+        }
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Malformed page token: " + token);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
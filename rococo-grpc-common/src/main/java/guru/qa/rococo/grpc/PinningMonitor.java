@@ -0,0 +1,74 @@
+package guru.qa.rococo.grpc;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier, which on JDK 21 is any blocking call made inside
+ * a {@code synchronized} block, the JDBC driver's and the connection pool's included. Each pinning stack is reported
+ * once, with the frames down to the blocking call; {@link #pinnedCount()} counts every occurrence.
+ * <p>
+ * Built on the {@code jdk.VirtualThreadPinned} JFR event, so it costs nothing while no thread pins for longer than
+ * the threshold.
+ */
+public final class PinningMonitor implements AutoCloseable {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int FRAMES = 12;
+
+    private final RecordingStream stream;
+    private final Consumer<String> report;
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+    private final LongAdder pinned = new LongAdder();
+
+    private PinningMonitor(Duration threshold, Consumer<String> report) {
+        this.report = report;
+        this.stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+    }
+
+    /**
+     * @param threshold shortest pinned block worth reporting
+     * @param report    receives one message per distinct pinning stack
+     */
+    public static PinningMonitor start(Duration threshold, Consumer<String> report) {
+        PinningMonitor monitor = new PinningMonitor(threshold, report);
+        monitor.stream.startAsync();
+        return monitor;
+    }
+
+    public long pinnedCount() {
+        return pinned.sum();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        if (event.getStackTrace() == null) {
+            return;
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        String stack = frames.stream()
+                .limit(FRAMES)
+                .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + "(line " + frame.getLineNumber() + ")")
+                .collect(Collectors.joining("\n"));
+        if (reported.add(stack)) {
+            report.accept("Virtual thread pinned for " + event.getDuration().toMillis() + " ms\n" + stack);
+        }
+    }
+}
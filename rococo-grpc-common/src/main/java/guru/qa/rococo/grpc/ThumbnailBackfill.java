@@ -0,0 +1,70 @@
+package guru.qa.rococo.grpc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Generates the {@link ImageVariant}s of images stored without them: rows written before variants existed, and rows
+ * whose task a full {@link ThumbnailGenerator} queue dropped before a restart. Makes one pass over the images after
+ * startup, a page of keys at a time in key order, on a thread of its own. Each image is resized on that thread
+ * rather than queued, so the pass neither overflows the queue nor delays the variants of new uploads.
+ */
+@Slf4j
+public final class ThumbnailBackfill implements AutoCloseable {
+
+    private final Thread thread;
+
+    private ThumbnailBackfill(Thread thread) {
+        this.thread = thread;
+    }
+
+    /**
+     * @param images   what the images are, for the log
+     * @param first    key before every stored key
+     * @param missing  the next page of keys after the given one, in key order, whose image has no variants;
+     *                 empty once there are none left
+     * @param generate generates the variants of one image on the calling thread
+     */
+    public static <K> ThumbnailBackfill start(String images,
+                                              K first,
+                                              Function<K, List<K>> missing,
+                                              Consumer<K> generate) {
+        Thread thread = Thread.ofPlatform()
+                .name("thumbnail-backfill")
+                .daemon()
+                .start(() -> backfill(images, first, missing, generate));
+        return new ThumbnailBackfill(thread);
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private static <K> void backfill(String images, K first, Function<K, List<K>> missing, Consumer<K> generate) {
+        K after = first;
+        int generated = 0;
+        try {
+            List<K> page;
+            while (!(page = missing.apply(after)).isEmpty()) {
+                for (K key : page) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    generate.accept(key);
+                    after = key;
+                    generated++;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("### Thumbnail backfill of {} stopped after {} images", images, generated, e);
+            return;
+        }
+        if (generated > 0) {
+            log.info("### Generated missing thumbnails of {} {}", generated, images);
+        }
+    }
+}
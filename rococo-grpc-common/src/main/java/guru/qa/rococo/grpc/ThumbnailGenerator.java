@@ -0,0 +1,133 @@
+package guru.qa.rococo.grpc;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Image;
+import jakarta.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resizes images into {@link ImageVariant}s on a bounded background pool, so writes never wait for resizing.
+ * When the queue is full the task is dropped; listings ask for it again and {@link ThumbnailBackfill} catches up on
+ * the images still without variants.
+ * <p>
+ * Each service creates its own generator, sized by its {@code thumbnails.pool-size} and {@code queue-capacity}.
+ */
+@Slf4j
+public final class ThumbnailGenerator implements AutoCloseable {
+
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ThumbnailGenerator(int poolSize, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    /**
+     * Queues {@code task} unless a task for the same {@code image} is already queued or running, as listings keep
+     * asking for the variants they miss.
+     */
+    public void submit(@Nonnull String image, @Nonnull Runnable task) {
+        if (!pending.add(image)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(image, task);
+                } finally {
+                    pending.remove(image);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(image);
+            log.warn("### Thumbnail queue is full, skipping {}", image);
+        }
+    }
+
+    /**
+     * Runs {@code task} on the calling thread, for backfills that pace themselves rather than fill the queue.
+     */
+    public void run(@Nonnull String image, @Nonnull Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("### Unable to generate thumbnails for {}", image, e);
+        }
+    }
+
+    /**
+     * @return every variant, the original itself for those it already fits; the original for all of them if the image
+     * cannot be decoded (WebP, SVG, CMYK JPEG), so it is stored once and not queued again on every listing
+     */
+    public @Nonnull Map<ImageVariant, Image> resize(@Nonnull Image image) {
+        Map<ImageVariant, Image> variants = new EnumMap<>(ImageVariant.class);
+        try {
+            BufferedImage source = ImageIO.read(image.getData().newInput());
+            if (source == null) {
+                log.warn("### Unable to decode {} image, storing the original as its variants", image.getMimeType());
+                return original(image);
+            }
+            boolean alpha = source.getColorModel().hasAlpha();
+            String format = alpha ? "png" : "jpg";
+            String mimeType = alpha ? "image/png" : "image/jpeg";
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (Math.max(source.getWidth(), source.getHeight()) <= variant.size()) {
+                    variants.put(variant, image);
+                    continue;
+                }
+                ByteString.Output out = ByteString.newOutput();
+                Thumbnails.of(source)
+                        .size(variant.size(), variant.size())
+                        .outputFormat(format)
+                        .toOutputStream(out);
+                variants.put(variant, Image.newBuilder()
+                        .setMimeType(mimeType)
+                        .setData(out.toByteString())
+                        .build());
+            }
+        } catch (IOException e) {
+            log.warn("### Unable to resize image, storing the original as its variants", e);
+            return original(image);
+        }
+        return variants;
+    }
+
+    private static @Nonnull Map<ImageVariant, Image> original(@Nonnull Image image) {
+        Map<ImageVariant, Image> variants = new EnumMap<>(ImageVariant.class);
+        for (ImageVariant variant : ImageVariant.values()) {
+            variants.put(variant, image);
+        }
+        return variants;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
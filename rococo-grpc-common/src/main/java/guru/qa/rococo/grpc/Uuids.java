@@ -0,0 +1,106 @@
+package guru.qa.rococo.grpc;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Uuid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Conversions between {@link UUID} and both wire forms of an id, see {@code rococo-uuid.proto}.
+ * Decoding never goes through a {@link String}: the compact form maps straight onto the two halves
+ * and the legacy form is parsed byte by byte.
+ */
+public final class Uuids {
+
+    private static final int LEGACY_LENGTH = 36;
+
+    private Uuids() {
+    }
+
+    public static Uuid toGrpc(UUID id) {
+        return Uuid.newBuilder()
+                .setMostSignificantBits(id.getMostSignificantBits())
+                .setLeastSignificantBits(id.getLeastSignificantBits())
+                .build();
+    }
+
+    /**
+     * A version 7 UUID: the millisecond timestamp first, then random bits. Ids generated one after another sort
+     * together, so rows inserted in a batch land next to each other in the primary key instead of all over it.
+     */
+    public static UUID timeOrdered() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = System.currentTimeMillis() << 16 | 0x7000L | random.nextLong() & 0x0FFFL;
+        long lsb = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    public static UUID fromGrpc(Uuid id) {
+        return new UUID(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public static ByteString toLegacy(UUID id) {
+        return ByteString.copyFromUtf8(id.toString());
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code id} is not a UTF-8 encoded UUID, as {@link UUID#fromString} does
+     */
+    public static UUID fromLegacy(ByteString id) {
+        if (id.size() != LEGACY_LENGTH) {
+            // non-canonical forms UUID.fromString still accepts, never produced by this codebase
+            return UUID.fromString(id.toStringUtf8());
+        }
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < LEGACY_LENGTH; i++) {
+            byte b = id.byteAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') {
+                    throw invalid(id);
+                }
+                continue;
+            }
+            int digit = Character.digit(b, 16);
+            if (digit < 0) {
+                throw invalid(id);
+            }
+            if (i < 18) {
+                msb = msb << 4 | digit;
+            } else {
+                lsb = lsb << 4 | digit;
+            }
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Reads an id from a message carrying it in either form; the legacy one wins when both are set.
+     */
+    public static UUID read(Uuid compact, ByteString legacy) {
+        return legacy.isEmpty()
+                ? fromGrpc(compact)
+                : fromLegacy(legacy);
+    }
+
+    /**
+     * Reads a repeated id from a message carrying it in either form, or a mix of both.
+     */
+    public static List<UUID> readAll(List<Uuid> compact, List<ByteString> legacy) {
+        List<UUID> ids = new ArrayList<>(compact.size() + legacy.size());
+        for (Uuid id : compact) {
+            ids.add(fromGrpc(id));
+        }
+        for (ByteString id : legacy) {
+            ids.add(fromLegacy(id));
+        }
+        return ids;
+    }
+
+    private static IllegalArgumentException invalid(ByteString id) {
+        return new IllegalArgumentException("Invalid UUID string: " + id.toStringUtf8());
+    }
+}
@@ -0,0 +1,34 @@
+package guru.qa.rococo.config;
+
+import guru.qa.rococo.data.repository.MuseumRepository;
+import guru.qa.rococo.grpc.CountCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class CountCacheConfig {
+
+    @Bean
+    public CountCache museumCountCache(MuseumRepository museumRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       @Value("${rococo-museum.count-cache.ttl}") Duration ttl,
+                                       @Value("${rococo-museum.count-cache.max-size}") long maxSize,
+                                       @Value("${rococo-museum.count-cache.estimate-threshold}") long estimateThreshold) {
+        return new CountCache(ttl, maxSize, estimateThreshold,
+                () -> tableRows(jdbcTemplate),
+                museumRepository::count,
+                museumRepository::countByTitleMatching);
+    }
+
+    private static long tableRows(JdbcTemplate jdbcTemplate) {
+        Long rows = jdbcTemplate.queryForObject(
+                "select table_rows from information_schema.tables where table_schema = database() and table_name = 'museum'",
+                Long.class
+        );
+        return rows == null ? 0 : rows;
+    }
+}
@@ -1,7 +1,9 @@
 package guru.qa.rococo.data;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.Uuids;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -10,14 +12,14 @@ import org.hibernate.proxy.HibernateProxy;
 import java.util.Objects;
 import java.util.UUID;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Getter
 @Setter
 @Entity
 @Table(name = "museum")
 public class MuseumEntity {
 
+  private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
   @Id
   @GeneratedValue(strategy = GenerationType.AUTO)
   @Column(name = "id", nullable = false, length = 36)
@@ -35,39 +37,57 @@ public class MuseumEntity {
   @Column(name = "photo", columnDefinition = "bytea", nullable = false)
   private byte[] photo;
 
+  @Column(name = "photo_mime_type", nullable = false, length = 127)
+  private String photoMimeType = DEFAULT_MIME_TYPE;
+
   @Column(name = "geo_id", nullable = false)
   private UUID geoId;
 
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version;
+
   public static MuseumEntity fromAddMuseumGrpcMessage(AddMuseumRequest request) {
     MuseumEntity entity = new MuseumEntity();
     entity.setTitle(request.getTitle());
     entity.setDescription(request.getDescription());
     entity.setCity(request.getGeo().getCity());
-    entity.setPhoto(request.getPhoto().toByteArray());
-    entity.setGeoId(UUID.fromString(request.getGeo().getCountry().getId().toStringUtf8()));
+    entity.setPhoto(ByteStrings.unwrap(request.getPhoto().getData()));
+    entity.setPhotoMimeType(request.getPhoto().getMimeType().isEmpty()
+            ? DEFAULT_MIME_TYPE
+            : request.getPhoto().getMimeType());
+    CountryId countryId = request.getGeo().getCountry();
+    entity.setGeoId(Uuids.read(countryId.getUuid(), countryId.getId()));
     return entity;
   }
 
   public static MuseumEntity fromUpdateMuseumGrpcMessage(UpdateMuseumRequest request) {
     MuseumEntity entity = fromAddMuseumGrpcMessage(request.getMuseumData());
-    entity.setId(UUID.fromString(request.getId().toStringUtf8()));
+    entity.setId(Uuids.read(request.getUuid(), request.getId()));
     return entity;
   }
 
   public static MuseumResponse toGrpcMessage(MuseumEntity entity) {
-    CountryId countryId = CountryId.newBuilder()
-            .setId(copyFromUtf8(entity.getGeoId().toString()))
-            .build();
+    CountryId.Builder countryId = CountryId.newBuilder();
+    IdEncoding.write(entity.getGeoId(), countryId::setUuid, countryId::setId);
     Geo geo = Geo.newBuilder()
             .setCity(entity.getCity())
             .setCountry(countryId)
             .build();
-    return MuseumResponse.newBuilder()
-            .setId(copyFromUtf8(entity.getId().toString()))
+    MuseumResponse.Builder builder = MuseumResponse.newBuilder()
             .setTitle(entity.getTitle())
             .setDescription(entity.getDescription())
             .setGeo(geo)
-            .setPhoto(ByteString.copyFrom(entity.getPhoto()))
+            .setPhoto(toImage(entity))
+            .setVersion(entity.getVersion());
+    IdEncoding.write(entity.getId(), builder::setUuid, builder::setId);
+    return builder.build();
+  }
+
+  public static Image toImage(MuseumEntity entity) {
+    return Image.newBuilder()
+            .setMimeType(entity.getPhotoMimeType())
+            .setData(ByteStrings.wrap(entity.getPhoto()))
             .build();
   }
 
@@ -0,0 +1,78 @@
+package guru.qa.rococo.data;
+
+import com.google.protobuf.FieldMask;
+import guru.qa.grpc.rococo.grpc.MuseumResponse;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@link MuseumResponse} fields a read mask can select, with the columns behind each of them, and equally the
+ * {@code AddMuseumRequest} fields an update mask can name. The id and version are not among them: they are always
+ * returned, and never patched.
+ */
+public enum MuseumField {
+
+  TITLE("title", "title"),
+  DESCRIPTION("description", "description"),
+  GEO("geo", "city, BIN_TO_UUID(geo_id) as geo_id"),
+  PHOTO("photo", "photo, photo_mime_type");
+
+  private final String path;
+  private final String columns;
+
+  MuseumField(String path, String columns) {
+    this.path = path;
+    this.columns = columns;
+  }
+
+  public String columns() {
+    return columns;
+  }
+
+  /**
+   * @return the fields {@code mask} selects, every field for an empty mask
+   * @throws IllegalArgumentException if a path is not a field of {@link MuseumResponse}
+   */
+  public static Set<MuseumField> fromMask(FieldMask mask) {
+    if (mask.getPathsCount() == 0) {
+      return EnumSet.allOf(MuseumField.class);
+    }
+    Set<MuseumField> fields = EnumSet.noneOf(MuseumField.class);
+    for (String path : mask.getPathsList()) {
+      if (path.equals("id") || path.equals("uuid") || path.equals("version")) {
+        continue;
+      }
+      fields.add(fromPath(path));
+    }
+    return fields;
+  }
+
+  /**
+   * Clears what {@code fields} leaves out of a response built from a whole row.
+   */
+  public static MuseumResponse.Builder retain(MuseumResponse.Builder builder, Set<MuseumField> fields) {
+    if (!fields.contains(TITLE)) {
+      builder.clearTitle();
+    }
+    if (!fields.contains(DESCRIPTION)) {
+      builder.clearDescription();
+    }
+    if (!fields.contains(GEO)) {
+      builder.clearGeo();
+    }
+    if (!fields.contains(PHOTO)) {
+      builder.clearPhoto();
+    }
+    return builder;
+  }
+
+  private static MuseumField fromPath(String path) {
+    for (MuseumField field : values()) {
+      if (field.path.equals(path)) {
+        return field;
+      }
+    }
+    throw new IllegalArgumentException("Unknown field in mask: " + path);
+  }
+}
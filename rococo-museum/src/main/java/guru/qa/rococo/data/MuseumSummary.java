@@ -0,0 +1,44 @@
+package guru.qa.rococo.data;
+
+import guru.qa.grpc.rococo.grpc.CountryId;
+import guru.qa.grpc.rococo.grpc.Geo;
+import guru.qa.grpc.rococo.grpc.MuseumResponse;
+import guru.qa.rococo.grpc.IdEncoding;
+
+import java.util.UUID;
+
+/**
+ * Scalar columns of a museum: listings read these instead of whole {@link MuseumEntity} rows,
+ * so the photo longblob is never loaded for a page.
+ */
+public interface MuseumSummary {
+
+  UUID getId();
+
+  String getTitle();
+
+  String getDescription();
+
+  String getCity();
+
+  UUID getGeoId();
+
+  long getVersion();
+
+  /**
+   * @return the museum without a photo
+   */
+  static MuseumResponse.Builder toGrpcMessage(MuseumSummary summary) {
+    CountryId.Builder countryId = CountryId.newBuilder();
+    IdEncoding.write(summary.getGeoId(), countryId::setUuid, countryId::setId);
+    MuseumResponse.Builder builder = MuseumResponse.newBuilder()
+            .setTitle(summary.getTitle())
+            .setDescription(summary.getDescription())
+            .setGeo(Geo.newBuilder()
+                    .setCity(summary.getCity())
+                    .setCountry(countryId))
+            .setVersion(summary.getVersion());
+    IdEncoding.write(summary.getId(), builder::setUuid, builder::setId);
+    return builder;
+  }
+}
@@ -0,0 +1,189 @@
+package guru.qa.rococo.data.repository;
+
+import guru.qa.grpc.rococo.grpc.AddMuseumRequest;
+import guru.qa.grpc.rococo.grpc.CountryId;
+import guru.qa.grpc.rococo.grpc.Geo;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.grpc.rococo.grpc.ImportMuseumRequest;
+import guru.qa.grpc.rococo.grpc.MuseumResponse;
+import guru.qa.rococo.data.MuseumEntity;
+import guru.qa.rococo.data.MuseumField;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes of museums by id that touch the columns of the requested {@link MuseumField}s only, so a caller
+ * that leaves the photo out of its mask never has the longblob read, sent or rewritten.
+ */
+@Repository
+public class MuseumFieldRepository {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  public MuseumFieldRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public @Nonnull Optional<MuseumResponse> findById(@Nonnull UUID id, @Nonnull Set<MuseumField> fields) {
+    return findAllByIdIn(List.of(id), fields).stream().findFirst();
+  }
+
+  public @Nonnull List<MuseumResponse> findAllByIdIn(@Nonnull Collection<UUID> ids, @Nonnull Set<MuseumField> fields) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    String sql = "select " + selectList(fields) + " from museum where id in ("
+            + String.join(", ", Collections.nCopies(ids.size(), "UUID_TO_BIN(?)")) + ")";
+    return jdbcTemplate.query(
+            sql,
+            (rs, rowNum) -> toGrpcMessage(rs, fields),
+            ids.stream().map(UUID::toString).toArray()
+    );
+  }
+
+  /**
+   * Writes the columns of {@code fields}, taking their values from {@code values}, and bumps the version.
+   *
+   * @param expectedVersion the version the museum must still be at, {@code null} to patch whatever it is
+   * @return 0 when the museum is missing or at another version, 1 otherwise
+   */
+  public int patch(@Nonnull UUID id,
+                   @Nonnull MuseumEntity values,
+                   @Nonnull Set<MuseumField> fields,
+                   @Nullable Long expectedVersion) {
+    StringBuilder sql = new StringBuilder("update museum set ");
+    List<Object> args = new ArrayList<>();
+    if (fields.contains(MuseumField.TITLE)) {
+      sql.append("title = ?, ");
+      args.add(values.getTitle());
+    }
+    if (fields.contains(MuseumField.DESCRIPTION)) {
+      sql.append("description = ?, ");
+      args.add(values.getDescription());
+    }
+    if (fields.contains(MuseumField.GEO)) {
+      sql.append("city = ?, geo_id = UUID_TO_BIN(?), ");
+      args.add(values.getCity());
+      args.add(values.getGeoId().toString());
+    }
+    if (fields.contains(MuseumField.PHOTO)) {
+      sql.append("photo = ?, photo_mime_type = ?, ");
+      args.add(values.getPhoto());
+      args.add(values.getPhotoMimeType());
+    }
+    sql.append("version = version + 1 where id = UUID_TO_BIN(?)");
+    args.add(id.toString());
+    if (expectedVersion != null) {
+      sql.append(" and version = ?");
+      args.add(expectedVersion);
+    }
+    return jdbcTemplate.update(sql.toString(), args.toArray());
+  }
+
+  /**
+   * Inserts new museums under the ids they carry with one batched statement, all of them or none.
+   */
+  @Transactional
+  public void insertAll(@Nonnull List<MuseumEntity> museums) {
+    jdbcTemplate.batchUpdate(
+        "insert into museum (id, title, description, city, geo_id, photo, photo_mime_type, version) "
+            + "values (UUID_TO_BIN(?), ?, ?, ?, UUID_TO_BIN(?), ?, ?, 0)",
+        museums,
+        museums.size(),
+        (ps, museum) -> {
+          ps.setString(1, museum.getId().toString());
+          ps.setString(2, museum.getTitle());
+          ps.setString(3, museum.getDescription());
+          ps.setString(4, museum.getCity());
+          ps.setString(5, museum.getGeoId().toString());
+          ps.setBytes(6, museum.getPhoto());
+          ps.setString(7, museum.getPhotoMimeType());
+        }
+    );
+  }
+
+  /**
+   * Hands every museum to {@code consumer} as the request that imports it again. The table is read as one streamed
+   * result, so only the current row is in memory however many museums there are.
+   */
+  public void exportAll(@Nonnull Consumer<ImportMuseumRequest> consumer) {
+    jdbcTemplate.query(
+        streamed("select BIN_TO_UUID(id) as id, title, description, city, BIN_TO_UUID(geo_id) as geo_id, photo, photo_mime_type "
+            + "from museum order by id"),
+        (RowCallbackHandler) rs -> consumer.accept(ImportMuseumRequest.newBuilder()
+            .setUuid(Uuids.toGrpc(UUID.fromString(rs.getString("id"))))
+            .setMuseumData(AddMuseumRequest.newBuilder()
+                .setTitle(rs.getString("title"))
+                .setDescription(rs.getString("description"))
+                .setGeo(Geo.newBuilder()
+                    .setCity(rs.getString("city"))
+                    .setCountry(CountryId.newBuilder().setUuid(Uuids.toGrpc(UUID.fromString(rs.getString("geo_id"))))))
+                .setPhoto(Image.newBuilder()
+                    .setMimeType(rs.getString("photo_mime_type"))
+                    .setData(ByteStrings.wrap(rs.getBytes("photo")))))
+            .build())
+    );
+  }
+
+  private static PreparedStatementCreator streamed(String sql) {
+    return connection -> {
+      PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      // the one fetch size Connector/J streams rows with; any other has it read the whole result first
+      ps.setFetchSize(Integer.MIN_VALUE);
+      return ps;
+    };
+  }
+
+  private static String selectList(Set<MuseumField> fields) {
+    StringBuilder select = new StringBuilder("BIN_TO_UUID(id) as id, version");
+    fields.forEach(field -> select.append(", ").append(field.columns()));
+    return select.toString();
+  }
+
+  private static MuseumResponse toGrpcMessage(ResultSet rs, Set<MuseumField> fields) throws SQLException {
+    MuseumResponse.Builder builder = MuseumResponse.newBuilder();
+    IdEncoding.write(UUID.fromString(rs.getString("id")), builder::setUuid, builder::setId);
+    builder.setVersion(rs.getLong("version"));
+    if (fields.contains(MuseumField.TITLE)) {
+      builder.setTitle(rs.getString("title"));
+    }
+    if (fields.contains(MuseumField.DESCRIPTION)) {
+      builder.setDescription(rs.getString("description"));
+    }
+    if (fields.contains(MuseumField.GEO)) {
+      CountryId.Builder countryId = CountryId.newBuilder();
+      IdEncoding.write(UUID.fromString(rs.getString("geo_id")), countryId::setUuid, countryId::setId);
+      builder.setGeo(Geo.newBuilder()
+              .setCity(rs.getString("city"))
+              .setCountry(countryId));
+    }
+    if (fields.contains(MuseumField.PHOTO)) {
+      builder.setPhoto(Image.newBuilder()
+              .setMimeType(rs.getString("photo_mime_type"))
+              .setData(ByteStrings.wrap(rs.getBytes("photo"))));
+    }
+    return builder.build();
+  }
+}
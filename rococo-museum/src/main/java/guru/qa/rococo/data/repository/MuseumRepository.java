@@ -1,22 +1,115 @@
 package guru.qa.rococo.data.repository;
 
 import guru.qa.rococo.data.MuseumEntity;
+import guru.qa.rococo.data.MuseumSummary;
+import guru.qa.rococo.grpc.FullTextQuery;
 import jakarta.annotation.Nonnull;
-import org.springframework.data.domain.Page;
+import jakarta.annotation.Nullable;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface MuseumRepository extends JpaRepository<MuseumEntity, UUID> {
 
+  /**
+   * Listings select {@link MuseumSummary} columns only, never the photo.
+   */
+  String SELECT_SUMMARY = "select BIN_TO_UUID(id) as id, title, description, city, BIN_TO_UUID(geo_id) as geoId, version from museum";
+
+  /**
+   * All rows page by page, without the count query of a {@code Page}: totals come from the {@code CountCache}.
+   */
+  @Nonnull
+  Slice<MuseumSummary> findAllBy(@Nonnull Pageable pageable);
+
+  /**
+   * Best matches first, without a total, see {@link #findAllBy}.
+   *
+   * @param query boolean mode query built by {@link FullTextQuery}
+   */
   @Nonnull
-  Page<MuseumEntity> findAllByTitleContainsIgnoreCase(
-          @Nonnull String title,
+  @Query(value = SELECT_SUMMARY + " where match(title) against (:query in boolean mode) "
+          + "order by match(title) against (:query in boolean mode) desc, title",
+          nativeQuery = true)
+  Slice<MuseumSummary> searchByTitle(
+          @Nonnull @Param("query") String query,
           @Nonnull Pageable pageable
   );
 
-  List<MuseumEntity> findAllByIdIn(@Nonnull Set<UUID> ids);
-}
\ No newline at end of file
+  /**
+   * First {@code limit} rows in id order, starting right after {@code after} ({@code null} for the first page).
+   */
+  @Nonnull
+  @Query(value = SELECT_SUMMARY + " where (:after is null or id > UUID_TO_BIN(:after)) order by id limit :limit",
+          nativeQuery = true)
+  List<MuseumSummary> findPageAfter(
+          @Nullable @Param("after") String after,
+          @Param("limit") int limit
+  );
+
+  /**
+   * Keyset counterpart of {@link #searchByTitle}, ordered by id instead of relevance.
+   */
+  @Nonnull
+  @Query(value = SELECT_SUMMARY + " where match(title) against (:query in boolean mode) "
+          + "and (:after is null or id > UUID_TO_BIN(:after)) order by id limit :limit",
+          nativeQuery = true)
+  List<MuseumSummary> searchByTitleAfter(
+          @Nonnull @Param("query") String query,
+          @Nullable @Param("after") String after,
+          @Param("limit") int limit
+  );
+
+  @Query(value = "select count(*) from museum where match(title) against (:query in boolean mode)", nativeQuery = true)
+  long countByTitleMatching(@Nonnull @Param("query") String query);
+
+  @Query("select m.version from MuseumEntity m where m.id = :id")
+  Optional<Long> findVersionById(@Nonnull @Param("id") UUID id);
+
+  /**
+   * Rewrites everything but the photo and bumps the version in a single statement, without the row being read first.
+   *
+   * @param expectedVersion the version the museum must still be at, {@code null} to update whatever it is
+   * @return 0 when the museum is missing or at another version, 1 otherwise
+   */
+  @Modifying
+  @Transactional
+  @Query("update MuseumEntity m set m.title = :title, m.description = :description, m.city = :city, m.geoId = :geoId, "
+          + "m.version = m.version + 1 "
+          + "where m.id = :id and (:expectedVersion is null or m.version = :expectedVersion)")
+  int updateDetails(
+          @Nonnull @Param("id") UUID id,
+          @Nonnull @Param("title") String title,
+          @Nonnull @Param("description") String description,
+          @Nonnull @Param("city") String city,
+          @Nonnull @Param("geoId") UUID geoId,
+          @Nullable @Param("expectedVersion") Long expectedVersion
+  );
+
+  /**
+   * {@link #updateDetails} with a new photo.
+   */
+  @Modifying
+  @Transactional
+  @Query("update MuseumEntity m set m.title = :title, m.description = :description, m.city = :city, m.geoId = :geoId, "
+          + "m.photo = :photo, m.photoMimeType = :photoMimeType, m.version = m.version + 1 "
+          + "where m.id = :id and (:expectedVersion is null or m.version = :expectedVersion)")
+  int updateWithPhoto(
+          @Nonnull @Param("id") UUID id,
+          @Nonnull @Param("title") String title,
+          @Nonnull @Param("description") String description,
+          @Nonnull @Param("city") String city,
+          @Nonnull @Param("geoId") UUID geoId,
+          @Nonnull @Param("photo") byte[] photo,
+          @Nonnull @Param("photoMimeType") String photoMimeType,
+          @Nullable @Param("expectedVersion") Long expectedVersion
+  );
+}
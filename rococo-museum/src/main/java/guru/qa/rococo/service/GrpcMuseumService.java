@@ -1,38 +1,81 @@
 package guru.qa.rococo.service;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.data.MuseumEntity;
+import guru.qa.rococo.data.MuseumField;
+import guru.qa.rococo.data.MuseumSummary;
+import guru.qa.rococo.data.repository.MuseumFieldRepository;
 import guru.qa.rococo.data.repository.MuseumRepository;
+import guru.qa.rococo.grpc.BulkImport;
+import guru.qa.rococo.grpc.CountCache;
+import guru.qa.rococo.grpc.FlowControlledStream;
+import guru.qa.rococo.grpc.FullTextQuery;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.PageToken;
+import guru.qa.rococo.grpc.Uuids;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
 
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
+import static io.grpc.Status.ABORTED;
+import static io.grpc.Status.INVALID_ARGUMENT;
 import static io.grpc.Status.NOT_FOUND;
-import static java.util.UUID.fromString;
+import static io.grpc.Status.RESOURCE_EXHAUSTED;
 
 @GrpcService
 public class GrpcMuseumService extends RococoMuseumServiceGrpc.RococoMuseumServiceImplBase {
 
     private final MuseumRepository museumRepository;
+    private final MuseumFieldRepository museumFieldRepository;
+    private final MuseumThumbnailStore museumThumbnailStore;
+    private final CountCache museumCountCache;
+    private final TransactionOperations transactionOperations;
+    private final long maxPhotoSize;
+    private final int importBatchSize;
 
-    public GrpcMuseumService(MuseumRepository museumRepository) {
+    public GrpcMuseumService(MuseumRepository museumRepository,
+                             MuseumFieldRepository museumFieldRepository,
+                             MuseumThumbnailStore museumThumbnailStore,
+                             CountCache museumCountCache,
+                             TransactionOperations transactionOperations,
+                             @Value("${rococo-museum.upload.max-photo-size}") DataSize maxPhotoSize,
+                             @Value("${rococo-museum.import.batch-size}") int importBatchSize) {
         this.museumRepository = museumRepository;
+        this.museumFieldRepository = museumFieldRepository;
+        this.museumThumbnailStore = museumThumbnailStore;
+        this.museumCountCache = museumCountCache;
+        this.transactionOperations = transactionOperations;
+        this.maxPhotoSize = maxPhotoSize.toBytes();
+        this.importBatchSize = importBatchSize;
     }
 
     @Override
     public void getMuseum(MuseumRequest request, StreamObserver<MuseumResponse> responseObserver) {
-        UUID museumId = fromString(request.getId().toStringUtf8());
+        UUID museumId = Uuids.read(request.getUuid(), request.getId());
+        Set<MuseumField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
 
-        museumRepository.findById(museumId)
+        museumFieldRepository.findById(museumId, fields)
                 .ifPresentOrElse(
-                        museumEntity -> {
-                            MuseumResponse response = MuseumEntity.toGrpcMessage(museumEntity);
+                        response -> {
                             responseObserver.onNext(response);
                             responseObserver.onCompleted();
                         },
@@ -45,64 +88,345 @@ public class GrpcMuseumService extends RococoMuseumServiceGrpc.RococoMuseumServi
 
     @Override
     public void getAllMuseum(AllMuseumRequest request, StreamObserver<AllMuseumResponse> responseObserver) {
-        String title = request.getTitle();
+        if (request.hasPageToken()) {
+            getMuseumsAfter(request, responseObserver);
+            return;
+        }
+        Set<MuseumField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+        String query = FullTextQuery.prefix(request.getTitle());
         int page = request.getPage();
         int size = request.getSize();
         PageRequest pageable = PageRequest.of(page, size);
 
-        Page<MuseumEntity> museumPage = museumRepository.findAllByTitleContainsIgnoreCase(title, pageable);
+        Slice<MuseumSummary> museumSlice = query.isEmpty()
+                ? museumRepository.findAllBy(pageable)
+                : museumRepository.searchByTitle(query, pageable);
+        AllMuseumResponse.Builder responseBuilder = getAllMuseumResponseFromSummaries(museumSlice.getContent(), request.getView(), fields);
+        withTotalCount(responseBuilder, museumCountCache.count(query));
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Keyset listing ordered by id: a page costs the same however deep it is, and the total is only counted on request.
+     */
+    private void getMuseumsAfter(AllMuseumRequest request, StreamObserver<AllMuseumResponse> responseObserver) {
+        UUID after;
+        try {
+            after = PageToken.decode(request.getPageToken());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Malformed page token").asRuntimeException());
+            return;
+        }
+        int size = request.getSize();
+        if (size <= 0) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Page size must be positive").asRuntimeException());
+            return;
+        }
+        Set<MuseumField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+        String query = FullTextQuery.prefix(request.getTitle());
+        String afterId = after == null ? null : after.toString();
+
+        // one row past the page tells whether there is a next one
+        List<MuseumSummary> found = query.isEmpty()
+                ? museumRepository.findPageAfter(afterId, size + 1)
+                : museumRepository.searchByTitleAfter(query, afterId, size + 1);
+        List<MuseumSummary> museums = found.size() > size ? found.subList(0, size) : found;
+
+        AllMuseumResponse.Builder responseBuilder = getAllMuseumResponseFromSummaries(museums, request.getView(), fields);
+        if (found.size() > size) {
+            responseBuilder.setNextPageToken(PageToken.encode(museums.get(size - 1).getId()));
+        }
+        if (request.getWithTotalCount()) {
+            withTotalCount(responseBuilder, museumCountCache.count(query));
+        }
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
+    private AllMuseumResponse.Builder getAllMuseumResponseFromSummaries(List<MuseumSummary> museums,
+                                                                        ListView view,
+                                                                        Set<MuseumField> fields) {
+        Map<UUID, Image> photos = view == ListView.LIST_VIEW_SUMMARY || !fields.contains(MuseumField.PHOTO)
+                ? Map.of()
+                : listPhotos(museums.stream().map(MuseumSummary::getId).toList());
 
         AllMuseumResponse.Builder responseBuilder = AllMuseumResponse.newBuilder();
-        museumPage.forEach(museumEntity -> {
-            MuseumResponse response = MuseumEntity.toGrpcMessage(museumEntity);
+        museums.forEach(museum -> {
+            MuseumResponse.Builder response = MuseumField.retain(MuseumSummary.toGrpcMessage(museum), fields);
+            Image photo = photos.get(museum.getId());
+            if (photo != null) {
+                response.setPhoto(photo);
+            }
             responseBuilder.addMuseum(response);
         });
-        responseBuilder.setTotalCount((int) museumPage.getTotalElements());
+        return responseBuilder;
+    }
 
-        responseObserver.onNext(responseBuilder.build());
-        responseObserver.onCompleted();
+    /**
+     * Small variants only: a museum whose variant is missing, still being generated or dropped by a full queue, is
+     * listed without a photo rather than with the whole original, and its variants are queued again.
+     */
+    private Map<UUID, Image> listPhotos(List<UUID> museumIds) {
+        Map<UUID, Image> photos = museumThumbnailStore.load(museumIds, ImageVariant.SMALL);
+        museumIds.stream()
+                .filter(id -> !photos.containsKey(id))
+                .forEach(museumThumbnailStore::generate);
+        return photos;
+    }
+
+    private static void withTotalCount(AllMuseumResponse.Builder responseBuilder, CountCache.Total total) {
+        responseBuilder
+                .setTotalCount((int) total.value())
+                .setTotalCountEstimated(total.estimated());
     }
 
     @Override
     public void addMuseum(AddMuseumRequest addMuseumRequest, StreamObserver<MuseumResponse> responseObserver) {
         MuseumEntity entity = museumRepository.save(MuseumEntity.fromAddMuseumGrpcMessage(addMuseumRequest));
+        museumCountCache.invalidate();
+        museumThumbnailStore.refresh(entity.getId());
         responseObserver.onNext(MuseumEntity.toGrpcMessage(entity));
         responseObserver.onCompleted();
     }
 
     @Override
     public void updateMuseum(UpdateMuseumRequest request, StreamObserver<MuseumResponse> responseObserver) {
-        UUID museumId = fromString(request.getId().toStringUtf8());
+        UUID museumId = Uuids.read(request.getUuid(), request.getId());
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        MuseumEntity museumEntity = MuseumEntity.fromUpdateMuseumGrpcMessage(request);
+        boolean photoChanged = !request.getMuseumData().getPhoto().getData().isEmpty();
 
-        museumRepository.findById(museumId)
-                .ifPresentOrElse(
-                        museumEntity -> {
-                            museumEntity = MuseumEntity.fromUpdateMuseumGrpcMessage(request);
-                            museumRepository.save(museumEntity);
-                            responseObserver.onNext(MuseumEntity.toGrpcMessage(museumEntity));
-                            responseObserver.onCompleted();
-                        }, () -> responseObserver.onError(
-                                NOT_FOUND.withDescription("Museum not found by id: " + museumId)
-                                        .asRuntimeException()
-                        )
-                );
+        // the new version is read back in the transaction of the update, so it is the one the update wrote, and so is
+        // the photo when the update kept it
+        Set<MuseumField> storedFields = photoChanged ? EnumSet.noneOf(MuseumField.class) : EnumSet.of(MuseumField.PHOTO);
+        Optional<MuseumResponse> stored = transactionOperations.execute(status -> {
+            int updated = photoChanged
+                    ? museumRepository.updateWithPhoto(museumId, museumEntity.getTitle(), museumEntity.getDescription(),
+                    museumEntity.getCity(), museumEntity.getGeoId(), museumEntity.getPhoto(), museumEntity.getPhotoMimeType(),
+                    expectedVersion)
+                    : museumRepository.updateDetails(museumId, museumEntity.getTitle(), museumEntity.getDescription(),
+                    museumEntity.getCity(), museumEntity.getGeoId(), expectedVersion);
+            return updated == 0 ? Optional.empty() : museumFieldRepository.findById(museumId, storedFields);
+        });
+        if (stored.isEmpty()) {
+            responseObserver.onError(updateFailure(museumId, expectedVersion));
+            return;
+        }
+        museumCountCache.invalidate();
+        if (photoChanged) {
+            museumThumbnailStore.refresh(museumId);
+        }
+
+        MuseumResponse.Builder response = MuseumEntity.toGrpcMessage(museumEntity).toBuilder()
+                .setVersion(stored.get().getVersion());
+        if (!photoChanged) {
+            response.setPhoto(stored.get().getPhoto());
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Tells a missing museum from one another update got to first, once a conditional update matched no row.
+     */
+    private StatusRuntimeException updateFailure(UUID museumId, Long expectedVersion) {
+        return museumRepository.findVersionById(museumId)
+                .map(version -> ABORTED.withDescription(
+                        "Museum " + museumId + " is at version " + version + ", not " + expectedVersion))
+                .orElseGet(() -> NOT_FOUND.withDescription("Museum not found by id: " + museumId))
+                .asRuntimeException();
     }
 
+    /**
+     * The first message carries the museum data (an empty id means a new museum), the rest carry the photo.
+     * Chunks are only linked together, the photo is copied once when the entity is built. A photo larger than
+     * {@code rococo-museum.upload.max-photo-size} fails the call with {@code RESOURCE_EXHAUSTED} as soon as it gets there.
+     */
     @Override
-    public void getMuseumByIds(MuseumIdsRequest request, StreamObserver<AllMuseumByIdsResponse> responseObserver) {
-        Set<UUID> museumIds = request.getIdList().stream()
-                .map(byteString -> fromString(byteString.toStringUtf8()))
-                .collect(Collectors.toSet());
+    public StreamObserver<UploadMuseumRequest> uploadMuseum(StreamObserver<MuseumResponse> responseObserver) {
+        return new StreamObserver<>() {
+            private UpdateMuseumRequest museum;
+            private ByteString photo = ByteString.EMPTY;
+            private boolean failed;
 
-        List<MuseumEntity> museums = museumRepository.findAllByIdIn(museumIds);
+            @Override
+            public void onNext(UploadMuseumRequest request) {
+                if (failed) {
+                    return;
+                }
+                switch (request.getPayloadCase()) {
+                    case MUSEUM -> museum = request.getMuseum();
+                    case PHOTO_CHUNK -> {
+                        if (photo.size() + (long) request.getPhotoChunk().size() > maxPhotoSize) {
+                            failed = true;
+                            photo = ByteString.EMPTY;
+                            responseObserver.onError(RESOURCE_EXHAUSTED
+                                    .withDescription("Museum photo exceeds " + maxPhotoSize + " bytes")
+                                    .asRuntimeException());
+                            return;
+                        }
+                        photo = photo.concat(request.getPhotoChunk());
+                    }
+                    default -> {
+                    }
+                }
+            }
 
-        AllMuseumByIdsResponse.Builder responseBuilder = AllMuseumByIdsResponse.newBuilder();
-        museums.forEach(museumEntity -> {
-            MuseumResponse response = MuseumEntity.toGrpcMessage(museumEntity);
-            responseBuilder.addMuseum(response);
-        });
+            @Override
+            public void onError(Throwable t) {
+                photo = ByteString.EMPTY;
+            }
 
-        responseObserver.onNext(responseBuilder.build());
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                if (museum == null) {
+                    responseObserver.onError(INVALID_ARGUMENT
+                            .withDescription("Museum data is missing in upload")
+                            .asRuntimeException());
+                    return;
+                }
+                AddMuseumRequest museumData = museum.getMuseumData().toBuilder()
+                        .setPhoto(museum.getMuseumData().getPhoto().toBuilder().setData(photo))
+                        .build();
+                if (!museum.hasUuid() && museum.getId().isEmpty()) {
+                    addMuseum(museumData, responseObserver);
+                } else {
+                    updateMuseum(museum.toBuilder().setMuseumData(museumData).build(), responseObserver);
+                }
+            }
+        };
+    }
+
+    @Override
+    public StreamObserver<ImportMuseumRequest> importMuseums(StreamObserver<ImportResponse> responseObserver) {
+        return new BulkImport<>(importBatchSize, responseObserver) {
+            @Override
+            protected MuseumEntity read(ImportMuseumRequest request) {
+                AddMuseumRequest museumData = request.getMuseumData();
+                if (museumData.getTitle().isBlank()) {
+                    throw new IllegalArgumentException("Museum title cannot be empty");
+                }
+                if (!museumData.getGeo().hasCountry()) {
+                    throw new IllegalArgumentException("Museum country cannot be empty");
+                }
+                MuseumEntity museum = MuseumEntity.fromAddMuseumGrpcMessage(museumData);
+                museum.setId(request.hasUuid() ? Uuids.fromGrpc(request.getUuid()) : Uuids.timeOrdered());
+                return museum;
+            }
+
+            @Override
+            protected UUID id(MuseumEntity museum) {
+                return museum.getId();
+            }
+
+            @Override
+            protected void insertAll(List<MuseumEntity> museums) {
+                museumFieldRepository.insertAll(museums);
+            }
+
+            @Override
+            protected void imported(List<UUID> ids) {
+                museumCountCache.invalidate();
+                ids.forEach(museumThumbnailStore::generate);
+            }
+        };
+    }
+
+    @Override
+    public void exportMuseums(Empty request, StreamObserver<ImportMuseumRequest> responseObserver) {
+        FlowControlledStream.send(responseObserver, museumFieldRepository::exportAll);
+    }
+
+    @Override
+    public void patchMuseum(PatchMuseumRequest request, StreamObserver<MuseumResponse> responseObserver) {
+        UUID museumId = Uuids.fromGrpc(request.getUuid());
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        if (request.getUpdateMask().getPathsCount() == 0) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Update mask cannot be empty").asRuntimeException());
+            return;
+        }
+        Set<MuseumField> fields = readFields(request.getUpdateMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+        if (fields.contains(MuseumField.PHOTO) && request.getMuseumData().getPhoto().getData().isEmpty()) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Museum photo is missing in patch").asRuntimeException());
+            return;
+        }
+
+        MuseumEntity values = MuseumEntity.fromAddMuseumGrpcMessage(request.getMuseumData());
+        // the fields the patch left alone are read back with the new version, in the transaction of the patch
+        Set<MuseumField> kept = EnumSet.allOf(MuseumField.class);
+        kept.removeAll(fields);
+        Optional<MuseumResponse> stored = transactionOperations.execute(status ->
+                museumFieldRepository.patch(museumId, values, fields, expectedVersion) == 0
+                        ? Optional.empty()
+                        : museumFieldRepository.findById(museumId, kept));
+        if (stored.isEmpty()) {
+            responseObserver.onError(updateFailure(museumId, expectedVersion));
+            return;
+        }
+        if (fields.contains(MuseumField.TITLE)) {
+            museumCountCache.invalidate();
+        }
+        if (fields.contains(MuseumField.PHOTO)) {
+            museumThumbnailStore.refresh(museumId);
+        }
+
+        MuseumResponse.Builder response = stored.get().toBuilder();
+        if (fields.contains(MuseumField.TITLE)) {
+            response.setTitle(values.getTitle());
+        }
+        if (fields.contains(MuseumField.DESCRIPTION)) {
+            response.setDescription(values.getDescription());
+        }
+        if (fields.contains(MuseumField.GEO)) {
+            response.setGeo(request.getMuseumData().getGeo());
+        }
+        if (fields.contains(MuseumField.PHOTO)) {
+            response.setPhoto(MuseumEntity.toImage(values));
+        }
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getMuseumByIds(MuseumIdsRequest request, StreamObserver<AllMuseumByIdsResponse> responseObserver) {
+        Set<UUID> museumIds = new HashSet<>(Uuids.readAll(request.getUuidList(), request.getIdList()));
+        Set<MuseumField> fields = readFields(request.getReadMask(), responseObserver);
+        if (fields == null) {
+            return;
+        }
+
+        AllMuseumByIdsResponse response = AllMuseumByIdsResponse.newBuilder()
+                .addAllMuseum(museumFieldRepository.findAllByIdIn(museumIds, fields))
+                .build();
+
+        responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    /**
+     * @return the fields {@code mask} selects, or {@code null} once the call has been failed for an unknown path
+     */
+    private static Set<MuseumField> readFields(FieldMask mask, StreamObserver<?> responseObserver) {
+        try {
+            return MuseumField.fromMask(mask);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return null;
+        }
+    }
 }
\ No newline at end of file
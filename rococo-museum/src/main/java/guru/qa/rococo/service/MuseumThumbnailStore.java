@@ -0,0 +1,119 @@
+package guru.qa.rococo.service;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.rococo.data.MuseumEntity;
+import guru.qa.rococo.data.repository.MuseumRepository;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.ThumbnailBackfill;
+import guru.qa.rococo.grpc.ThumbnailGenerator;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.support.SqlBinaryValue;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * {@link ImageVariant}s of museum photos, stored next to the original in {@code museum_photo_variant}.
+ */
+@Component
+public class MuseumThumbnailStore {
+
+    private final MuseumRepository museumRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThumbnailGenerator thumbnailGenerator;
+
+    @Autowired
+    public MuseumThumbnailStore(MuseumRepository museumRepository,
+                                JdbcTemplate jdbcTemplate,
+                                ThumbnailGenerator thumbnailGenerator) {
+        this.museumRepository = museumRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.thumbnailGenerator = thumbnailGenerator;
+    }
+
+    /**
+     * Drops the variants of the previous photo right away and regenerates them in the background
+     * from whatever photo the museum has by the time the task runs.
+     */
+    public void refresh(@Nonnull UUID museumId) {
+        jdbcTemplate.update("delete from museum_photo_variant where museum_id = UUID_TO_BIN(?)", museumId.toString());
+        generate(museumId);
+    }
+
+    /**
+     * Generates the variants of a new museum, which has none to drop yet.
+     */
+    public void generate(@Nonnull UUID museumId) {
+        thumbnailGenerator.submit("museum photo " + museumId, () -> store(museumId));
+    }
+
+    /**
+     * Generates the variants on the calling thread, see {@link ThumbnailBackfill}.
+     */
+    public void generateNow(@Nonnull UUID museumId) {
+        thumbnailGenerator.run("museum photo " + museumId, () -> store(museumId));
+    }
+
+    /**
+     * @return at most {@code limit} ids after {@code after}, in id order, of museums with a photo but no variants
+     */
+    public @Nonnull List<UUID> withoutVariants(@Nonnull UUID after, int limit) {
+        return jdbcTemplate.query(
+                "select BIN_TO_UUID(id) as id from museum a where id > UUID_TO_BIN(?) and length(photo) > 0 "
+                        + "and not exists (select 1 from museum_photo_variant v where v.museum_id = a.id) order by id limit ?",
+                (rs, rowNum) -> UUID.fromString(rs.getString("id")),
+                after.toString(), limit
+        );
+    }
+
+    /**
+     * @return generated variants by museum id; museums without the variant are absent from the map
+     */
+    public @Nonnull Map<UUID, Image> load(@Nonnull Collection<UUID> museumIds, @Nonnull ImageVariant variant) {
+        if (museumIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, Image> result = new HashMap<>();
+        jdbcTemplate.query(
+                "select BIN_TO_UUID(museum_id) as museum_id, photo, photo_mime_type from museum_photo_variant where variant = ? and museum_id in ("
+                        + String.join(", ", Collections.nCopies(museumIds.size(), "UUID_TO_BIN(?)")) + ")",
+                rs -> {
+                    result.put(UUID.fromString(rs.getString("museum_id")), Image.newBuilder()
+                            .setMimeType(rs.getString("photo_mime_type"))
+                            .setData(ByteStrings.wrap(rs.getBytes("photo")))
+                            .build());
+                },
+                Stream.concat(Stream.of(variant.name()), museumIds.stream().map(UUID::toString)).toArray()
+        );
+        return result;
+    }
+
+    private void store(@Nonnull UUID museumId) {
+        museumRepository.findById(museumId).ifPresent(museum ->
+                thumbnailGenerator.resize(MuseumEntity.toImage(museum)).forEach((variant, thumbnail) ->
+                        jdbcTemplate.update(
+                                "insert into museum_photo_variant (museum_id, variant, photo, photo_mime_type) values (UUID_TO_BIN(?), ?, ?, ?) "
+                                        + "on duplicate key update photo = values(photo), photo_mime_type = values(photo_mime_type)",
+                                museumId.toString(), variant.name(), streamed(thumbnail.getData()), thumbnail.getMimeType()
+                        )
+                )
+        );
+    }
+
+    /**
+     * Binds the thumbnail as a stream over its bytes rather than a copy of them.
+     */
+    private static SqlBinaryValue streamed(ByteString data) {
+        return new SqlBinaryValue(data.newInput(), data.size());
+    }
+}
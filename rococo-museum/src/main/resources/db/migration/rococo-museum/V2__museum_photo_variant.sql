@@ -0,0 +1,7 @@
+create table if not exists museum_photo_variant
+(
+    museum_id              binary(16)    not null,
+    variant                varchar(16)   not null,
+    photo                  longblob      not null,
+    primary key (museum_id, variant)
+);
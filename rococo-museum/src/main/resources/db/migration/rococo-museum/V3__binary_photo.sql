@@ -0,0 +1,16 @@
+-- photos were stored as data:<mime>;base64,<payload> text, keep the raw bytes and the mime type instead
+alter table museum add column photo_mime_type varchar(127) not null default 'application/octet-stream';
+
+update museum
+set photo_mime_type = coalesce(nullif(substring_index(substring(photo, 6), ';', 1), ''), 'application/octet-stream'),
+    photo           = from_base64(substring_index(photo, ',', -1))
+where photo like 'data:%;base64,%'
+  and from_base64(substring_index(photo, ',', -1)) is not null;
+
+alter table museum_photo_variant add column photo_mime_type varchar(127) not null default 'application/octet-stream';
+
+update museum_photo_variant
+set photo_mime_type = coalesce(nullif(substring_index(substring(photo, 6), ';', 1), ''), 'application/octet-stream'),
+    photo           = from_base64(substring_index(photo, ',', -1))
+where photo like 'data:%;base64,%'
+  and from_base64(substring_index(photo, ',', -1)) is not null;
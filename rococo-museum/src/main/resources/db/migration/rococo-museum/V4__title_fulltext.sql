@@ -0,0 +1,4 @@
+-- backs title search; stopwords stay indexed so every word of "Museum of Modern Art" can be searched by
+set session innodb_ft_enable_stopword = 0;
+
+alter table museum add fulltext index museum_title_ft (title);
@@ -1,9 +1,17 @@
 package guru.qa.rococo.service;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.data.MuseumEntity;
+import guru.qa.rococo.data.MuseumField;
+import guru.qa.rococo.data.MuseumSummary;
+import guru.qa.rococo.data.repository.MuseumFieldRepository;
 import guru.qa.rococo.data.repository.MuseumRepository;
+import guru.qa.rococo.grpc.CountCache;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.PageToken;
+import guru.qa.rococo.grpc.Uuids;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
@@ -16,6 +24,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
 
 import java.util.*;
 
@@ -29,15 +39,24 @@ class GrpcMuseumServiceTest {
     @Mock
     private MuseumRepository museumRepository;
     @Mock
+    private MuseumFieldRepository museumFieldRepository;
+    @Mock
+    private MuseumThumbnailStore museumThumbnailStore;
+    @Mock
+    private CountCache museumCountCache;
+    @Mock
     private StreamObserver<AllMuseumResponse> observer;
     @Mock
     private StreamObserver<MuseumResponse> museumObserver;
+    @Mock
+    private StreamObserver<ImportResponse> importObserver;
 
     private GrpcMuseumService grpcMuseumService;
 
     @BeforeEach
     void setUp() {
-        grpcMuseumService = new GrpcMuseumService(museumRepository);
+        grpcMuseumService = new GrpcMuseumService(museumRepository, museumFieldRepository, museumThumbnailStore, museumCountCache,
+                TransactionOperations.withoutTransaction(), DataSize.ofMegabytes(20), 2);
     }
 
     @Nested
@@ -46,33 +65,62 @@ class GrpcMuseumServiceTest {
         @Test
         void shouldReturnMuseumIfExists() {
             UUID museumId = randomUUID();
-            MuseumEntity entity = new MuseumEntity();
-            entity.setId(museumId);
-
-            when(museumRepository.findById(museumId)).thenReturn(Optional.of(entity));
-
             MuseumResponse response = MuseumResponse.newBuilder()
                     .setId(ByteString.copyFromUtf8(museumId.toString()))
                     .setTitle("Mock title")
                     .setDescription("Mock description")
                     .build();
 
-            try (MockedStatic<MuseumEntity> mocked = mockStatic(MuseumEntity.class)) {
-                mocked.when(() -> MuseumEntity.toGrpcMessage(entity)).thenReturn(response);
+            when(museumFieldRepository.findById(museumId, EnumSet.allOf(MuseumField.class))).thenReturn(Optional.of(response));
 
-                StreamObserver<MuseumResponse> observer = mock(StreamObserver.class);
-                grpcMuseumService.getMuseum(MuseumRequest.newBuilder().setId(ByteString.copyFromUtf8(museumId.toString())).build(), observer);
+            StreamObserver<MuseumResponse> observer = mock(StreamObserver.class);
+            grpcMuseumService.getMuseum(MuseumRequest.newBuilder().setId(ByteString.copyFromUtf8(museumId.toString())).build(), observer);
 
-                verify(observer).onNext(response);
-                verify(observer).onCompleted();
-                verify(observer, never()).onError(any());
-            }
+            verify(observer).onNext(response);
+            verify(observer).onCompleted();
+            verify(observer, never()).onError(any());
+        }
+
+        @Test
+        void shouldSelectOnlyMaskedFields() {
+            UUID museumId = randomUUID();
+            MuseumResponse response = MuseumResponse.newBuilder()
+                    .setUuid(Uuids.toGrpc(museumId))
+                    .setTitle("Louvre")
+                    .build();
+
+            when(museumFieldRepository.findById(museumId, EnumSet.of(MuseumField.TITLE, MuseumField.GEO)))
+                    .thenReturn(Optional.of(response));
+
+            StreamObserver<MuseumResponse> observer = mock(StreamObserver.class);
+            grpcMuseumService.getMuseum(MuseumRequest.newBuilder()
+                    .setUuid(Uuids.toGrpc(museumId))
+                    .setReadMask(FieldMask.newBuilder().addPaths("title").addPaths("geo"))
+                    .build(), observer);
+
+            verify(observer).onNext(response);
+            verify(observer).onCompleted();
+        }
+
+        @Test
+        void shouldRejectUnknownReadMaskPath() {
+            StreamObserver<MuseumResponse> observer = mock(StreamObserver.class);
+            grpcMuseumService.getMuseum(MuseumRequest.newBuilder()
+                    .setUuid(Uuids.toGrpc(randomUUID()))
+                    .setReadMask(FieldMask.newBuilder().addPaths("geo.country.name"))
+                    .build(), observer);
+
+            verify(observer).onError(argThat(error ->
+                    error instanceof StatusRuntimeException ex &&
+                            ex.getStatus().getCode() == Status.INVALID_ARGUMENT.getCode()
+            ));
+            verifyNoInteractions(museumFieldRepository);
         }
 
         @Test
         void shouldReturnErrorIfMuseumNotFound() {
             UUID museumId = randomUUID();
-            when(museumRepository.findById(museumId)).thenReturn(Optional.empty());
+            when(museumFieldRepository.findById(museumId, EnumSet.allOf(MuseumField.class))).thenReturn(Optional.empty());
 
             StreamObserver<MuseumResponse> observer = mock(StreamObserver.class);
 
@@ -101,39 +149,107 @@ class GrpcMuseumServiceTest {
 
         AllMuseumRequest request = AllMuseumRequest.newBuilder().setTitle(title).setPage(page).setSize(size).build();
 
-        UUID id1 = randomUUID(), id2 = randomUUID();
-        MuseumEntity e1 = new MuseumEntity();
-        e1.setId(id1);
-        e1.setTitle("Art 1");
-        MuseumEntity e2 = new MuseumEntity();
-        e2.setId(id2);
-        e2.setTitle("Art 2");
+        Page<MuseumSummary> pageResult = new PageImpl<>(List.of(summary(randomUUID(), "Art 1"), summary(randomUUID(), "Art 2")));
+        when(museumRepository.searchByTitle(eq("+art*"), any(PageRequest.class))).thenReturn(pageResult);
+        when(museumCountCache.count("+art*")).thenReturn(new CountCache.Total(2, false));
 
-        Page<MuseumEntity> pageResult = new PageImpl<>(List.of(e1, e2));
-        when(museumRepository.findAllByTitleContainsIgnoreCase(eq(title), any(PageRequest.class))).thenReturn(pageResult);
+        StreamObserver<AllMuseumResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllMuseumResponse> captor = ArgumentCaptor.forClass(AllMuseumResponse.class);
 
-        MuseumResponse r1 = MuseumResponse.newBuilder().setId(ByteString.copyFromUtf8(id1.toString())).setTitle("Art 1").build();
-        MuseumResponse r2 = MuseumResponse.newBuilder().setId(ByteString.copyFromUtf8(id2.toString())).setTitle("Art 2").build();
+        grpcMuseumService.getAllMuseum(request, observer);
 
-        try (MockedStatic<MuseumEntity> mocked = mockStatic(MuseumEntity.class)) {
-            mocked.when(() -> MuseumEntity.toGrpcMessage(e1)).thenReturn(r1);
-            mocked.when(() -> MuseumEntity.toGrpcMessage(e2)).thenReturn(r2);
+        verify(observer).onNext(captor.capture());
+        verify(observer).onCompleted();
+        verify(observer, never()).onError(any());
 
-            StreamObserver<AllMuseumResponse> observer = mock(StreamObserver.class);
-            ArgumentCaptor<AllMuseumResponse> captor = ArgumentCaptor.forClass(AllMuseumResponse.class);
+        AllMuseumResponse result = captor.getValue();
+        assertEquals(2, result.getMuseumCount());
+        assertEquals(2, result.getTotalCount());
+        assertEquals("Art 1", result.getMuseum(0).getTitle());
+        assertEquals("Art 2", result.getMuseum(1).getTitle());
+    }
 
-            grpcMuseumService.getAllMuseum(request, observer);
+    @Test
+    void shouldCountKeysetListingOnlyOnRequest() {
+        UUID after = randomUUID();
 
-            verify(observer).onNext(captor.capture());
-            verify(observer).onCompleted();
-            verify(observer, never()).onError(any());
+        when(museumRepository.searchByTitleAfter("+art*", after.toString(), 11)).thenReturn(List.of(summary(randomUUID(), "Art")));
+        when(museumCountCache.count("+art*")).thenReturn(new CountCache.Total(42, false));
 
-            AllMuseumResponse result = captor.getValue();
-            assertEquals(2, result.getMuseumCount());
-            assertEquals(2, result.getTotalCount());
-            assertEquals("Art 1", result.getMuseum(0).getTitle());
-            assertEquals("Art 2", result.getMuseum(1).getTitle());
-        }
+        AllMuseumRequest request = AllMuseumRequest.newBuilder()
+                .setTitle("art")
+                .setSize(10)
+                .setPageToken(PageToken.encode(after))
+                .setWithTotalCount(true)
+                .build();
+
+        StreamObserver<AllMuseumResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllMuseumResponse> captor = ArgumentCaptor.forClass(AllMuseumResponse.class);
+
+        grpcMuseumService.getAllMuseum(request, observer);
+
+        verify(observer).onNext(captor.capture());
+        assertEquals(1, captor.getValue().getMuseumCount());
+        assertEquals(42, captor.getValue().getTotalCount());
+        assertEquals("", captor.getValue().getNextPageToken());
+    }
+
+    @Test
+    void shouldReturnSmallPhotoVariantInMuseumList() {
+        UUID id = randomUUID();
+
+        when(museumRepository.findAllBy(any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(List.of(summary(id, "Louvre"))));
+        when(museumCountCache.count("")).thenReturn(new CountCache.Total(1, false));
+        when(museumThumbnailStore.load(List.of(id), ImageVariant.SMALL)).thenReturn(Map.of(id, Image.newBuilder()
+                .setMimeType("image/jpeg")
+                .setData(ByteString.copyFromUtf8("small"))
+                .build()));
+
+        ArgumentCaptor<AllMuseumResponse> captor = ArgumentCaptor.forClass(AllMuseumResponse.class);
+        grpcMuseumService.getAllMuseum(AllMuseumRequest.newBuilder().setSize(10).build(), observer);
+
+        verify(observer).onNext(captor.capture());
+        assertEquals("small", captor.getValue().getMuseum(0).getPhoto().getData().toStringUtf8());
+        assertEquals("image/jpeg", captor.getValue().getMuseum(0).getPhoto().getMimeType());
+        verify(museumRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void shouldListNoPhotoAndQueueVariantsWhileVariantIsMissing() {
+        UUID id = randomUUID();
+
+        when(museumRepository.findAllBy(any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(List.of(summary(id, "Louvre"))));
+        when(museumCountCache.count("")).thenReturn(new CountCache.Total(1, false));
+        when(museumThumbnailStore.load(List.of(id), ImageVariant.SMALL)).thenReturn(Map.of());
+
+        ArgumentCaptor<AllMuseumResponse> captor = ArgumentCaptor.forClass(AllMuseumResponse.class);
+        grpcMuseumService.getAllMuseum(AllMuseumRequest.newBuilder().setSize(10).build(), observer);
+
+        verify(observer).onNext(captor.capture());
+        assertFalse(captor.getValue().getMuseum(0).hasPhoto());
+        verify(museumThumbnailStore).generate(id);
+        verify(museumRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void shouldReadNoPhotoForSummaryView() {
+        when(museumRepository.findAllBy(any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(List.of(summary(randomUUID(), "Louvre"))));
+        when(museumCountCache.count("")).thenReturn(new CountCache.Total(1, false));
+
+        ArgumentCaptor<AllMuseumResponse> captor = ArgumentCaptor.forClass(AllMuseumResponse.class);
+        grpcMuseumService.getAllMuseum(AllMuseumRequest.newBuilder()
+                .setSize(10)
+                .setView(ListView.LIST_VIEW_SUMMARY)
+                .build(), observer);
+
+        verify(observer).onNext(captor.capture());
+        assertEquals("Louvre", captor.getValue().getMuseum(0).getTitle());
+        assertFalse(captor.getValue().getMuseum(0).hasPhoto());
+        verifyNoInteractions(museumThumbnailStore);
+        verify(museumRepository, never()).findAllById(any());
     }
 
     @Nested
@@ -142,38 +258,56 @@ class GrpcMuseumServiceTest {
         @Test
         void shouldUpdateMuseumIfExists() {
             UUID museumId = randomUUID();
+            UUID countryId = randomUUID();
 
             UpdateMuseumRequest request = UpdateMuseumRequest.newBuilder()
                     .setId(ByteString.copyFromUtf8(museumId.toString()))
-                    .setMuseumData(AddMuseumRequest.newBuilder().setTitle("Updated Museum").setDescription("Updated description").build())
+                    .setMuseumData(AddMuseumRequest.newBuilder()
+                            .setTitle("Updated Museum")
+                            .setDescription("Updated description")
+                            .setGeo(Geo.newBuilder()
+                                    .setCity("Paris")
+                                    .setCountry(CountryId.newBuilder().setUuid(Uuids.toGrpc(countryId)))))
                     .build();
 
-            MuseumEntity existing = new MuseumEntity();
-            existing.setId(museumId);
-            MuseumEntity updated = new MuseumEntity();
-            updated.setId(museumId);
-            updated.setTitle("Updated Museum");
+            when(museumRepository.updateDetails(museumId, "Updated Museum", "Updated description", "Paris", countryId, null))
+                    .thenReturn(1);
+            when(museumFieldRepository.findById(museumId, EnumSet.of(MuseumField.PHOTO)))
+                    .thenReturn(Optional.of(MuseumResponse.newBuilder().setUuid(Uuids.toGrpc(museumId)).setVersion(2).build()));
 
-            when(museumRepository.findById(museumId)).thenReturn(Optional.of(existing));
-            when(museumRepository.save(any())).thenReturn(updated);
+            grpcMuseumService.updateMuseum(request, museumObserver);
 
-            MuseumResponse expected = MuseumResponse.newBuilder()
-                    .setId(ByteString.copyFromUtf8(museumId.toString()))
-                    .setTitle("Updated Museum").build();
+            ArgumentCaptor<MuseumResponse> captor = ArgumentCaptor.forClass(MuseumResponse.class);
+            verify(museumObserver).onNext(captor.capture());
+            verify(museumObserver).onCompleted();
+            verify(museumObserver, never()).onError(any());
+            verify(museumRepository, never()).findById(any());
+            verify(museumRepository, never()).save(any());
 
-            try (MockedStatic<MuseumEntity> mocked = mockStatic(MuseumEntity.class)) {
-                mocked.when(() -> MuseumEntity.fromUpdateMuseumGrpcMessage(request)).thenReturn(updated);
-                mocked.when(() -> MuseumEntity.toGrpcMessage(updated)).thenReturn(expected);
+            assertEquals("Updated Museum", captor.getValue().getTitle());
+            assertEquals(2, captor.getValue().getVersion());
+        }
 
-                grpcMuseumService.updateMuseum(request, museumObserver);
+        @Test
+        void shouldAbortUpdateOnVersionMismatch() {
+            UUID museumId = randomUUID();
 
-                ArgumentCaptor<MuseumResponse> captor = ArgumentCaptor.forClass(MuseumResponse.class);
-                verify(museumObserver).onNext(captor.capture());
-                verify(museumObserver).onCompleted();
-                verify(museumObserver, never()).onError(any());
+            UpdateMuseumRequest request = UpdateMuseumRequest.newBuilder()
+                    .setId(ByteString.copyFromUtf8(museumId.toString()))
+                    .setMuseumData(AddMuseumRequest.newBuilder().setTitle("Stale Museum").build())
+                    .setExpectedVersion(1)
+                    .build();
 
-                assertEquals("Updated Museum", captor.getValue().getTitle());
-            }
+            when(museumRepository.findVersionById(museumId)).thenReturn(Optional.of(2L));
+
+            grpcMuseumService.updateMuseum(request, museumObserver);
+
+            verify(museumObserver).onError(argThat(error ->
+                    error instanceof StatusRuntimeException ex &&
+                            ex.getStatus().getCode() == Status.ABORTED.getCode()
+            ));
+            verify(museumCountCache, never()).invalidate();
+            verify(museumObserver, never()).onNext(any());
         }
 
         @Test
@@ -185,7 +319,7 @@ class GrpcMuseumServiceTest {
                     .setMuseumData(AddMuseumRequest.newBuilder().setTitle("Non-existent Museum").build())
                     .build();
 
-            when(museumRepository.findById(museumId)).thenReturn(Optional.empty());
+            when(museumRepository.findVersionById(museumId)).thenReturn(Optional.empty());
 
             grpcMuseumService.updateMuseum(request, museumObserver);
 
@@ -200,6 +334,203 @@ class GrpcMuseumServiceTest {
         }
     }
 
+    @Nested
+    class PatchMuseumTests {
+
+        @Test
+        void shouldWriteOnlyMaskedFields() {
+            UUID museumId = randomUUID();
+            Image photo = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("photo")).build();
+
+            PatchMuseumRequest request = PatchMuseumRequest.newBuilder()
+                    .setUuid(Uuids.toGrpc(museumId))
+                    .setMuseumData(AddMuseumRequest.newBuilder().setDescription("Patched description"))
+                    .setUpdateMask(FieldMask.newBuilder().addPaths("description"))
+                    .setExpectedVersion(4)
+                    .build();
+
+            when(museumFieldRepository.patch(eq(museumId), any(), eq(EnumSet.of(MuseumField.DESCRIPTION)), eq(4L)))
+                    .thenReturn(1);
+            when(museumFieldRepository.findById(museumId, EnumSet.of(MuseumField.TITLE, MuseumField.GEO, MuseumField.PHOTO)))
+                    .thenReturn(Optional.of(MuseumResponse.newBuilder()
+                            .setUuid(Uuids.toGrpc(museumId))
+                            .setTitle("Louvre")
+                            .setPhoto(photo)
+                            .setVersion(5)
+                            .build()));
+
+            grpcMuseumService.patchMuseum(request, museumObserver);
+
+            ArgumentCaptor<MuseumResponse> captor = ArgumentCaptor.forClass(MuseumResponse.class);
+            verify(museumObserver).onNext(captor.capture());
+            assertEquals("Louvre", captor.getValue().getTitle());
+            assertEquals("Patched description", captor.getValue().getDescription());
+            assertEquals(photo, captor.getValue().getPhoto());
+            assertEquals(5, captor.getValue().getVersion());
+            verify(museumThumbnailStore, never()).refresh(any());
+            verify(museumCountCache, never()).invalidate();
+        }
+
+        @Test
+        void shouldRejectUnknownUpdateMaskPath() {
+            PatchMuseumRequest request = PatchMuseumRequest.newBuilder()
+                    .setUuid(Uuids.toGrpc(randomUUID()))
+                    .setUpdateMask(FieldMask.newBuilder().addPaths("opening_hours"))
+                    .build();
+
+            grpcMuseumService.patchMuseum(request, museumObserver);
+
+            verify(museumObserver).onError(argThat(error ->
+                    error instanceof StatusRuntimeException ex &&
+                            ex.getStatus().getCode() == Status.INVALID_ARGUMENT.getCode()
+            ));
+            verifyNoInteractions(museumFieldRepository);
+        }
+    }
+
+    @Nested
+    class UploadMuseumTests {
+
+        @Test
+        void shouldJoinPhotoChunksIntoNewMuseum() {
+            UUID countryId = randomUUID();
+            AddMuseumRequest museumData = AddMuseumRequest.newBuilder()
+                    .setTitle("Louvre")
+                    .setDescription("Museum in Paris")
+                    .setGeo(Geo.newBuilder()
+                            .setCity("Paris")
+                            .setCountry(CountryId.newBuilder().setId(ByteString.copyFromUtf8(countryId.toString()))))
+                    .setPhoto(Image.newBuilder().setMimeType("image/png"))
+                    .build();
+
+            ArgumentCaptor<MuseumEntity> captor = ArgumentCaptor.forClass(MuseumEntity.class);
+            when(museumRepository.save(captor.capture())).thenAnswer(invocation -> {
+                MuseumEntity entity = invocation.getArgument(0);
+                entity.setId(randomUUID());
+                return entity;
+            });
+
+            StreamObserver<UploadMuseumRequest> requestObserver = grpcMuseumService.uploadMuseum(museumObserver);
+            requestObserver.onNext(UploadMuseumRequest.newBuilder()
+                    .setMuseum(UpdateMuseumRequest.newBuilder().setMuseumData(museumData))
+                    .build());
+            requestObserver.onNext(UploadMuseumRequest.newBuilder().setPhotoChunk(ByteString.copyFromUtf8("pho")).build());
+            requestObserver.onNext(UploadMuseumRequest.newBuilder().setPhotoChunk(ByteString.copyFromUtf8("to")).build());
+            requestObserver.onCompleted();
+
+            assertArrayEquals("photo".getBytes(), captor.getValue().getPhoto());
+            assertEquals("image/png", captor.getValue().getPhotoMimeType());
+            assertEquals("Louvre", captor.getValue().getTitle());
+            verify(museumCountCache).invalidate();
+            verify(museumObserver).onNext(any());
+            verify(museumObserver).onCompleted();
+        }
+
+        @Test
+        void shouldKeepPhotoIfUploadHasNoChunks() {
+            UUID museumId = randomUUID();
+            UUID countryId = randomUUID();
+
+            when(museumRepository.updateDetails(museumId, "Renamed", "", "", countryId, null)).thenReturn(1);
+            Image photo = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFrom(new byte[]{1, 2, 3})).build();
+            when(museumFieldRepository.findById(museumId, EnumSet.of(MuseumField.PHOTO)))
+                    .thenReturn(Optional.of(MuseumResponse.newBuilder().setPhoto(photo).setVersion(1).build()));
+
+            StreamObserver<UploadMuseumRequest> requestObserver = grpcMuseumService.uploadMuseum(museumObserver);
+            requestObserver.onNext(UploadMuseumRequest.newBuilder()
+                    .setMuseum(UpdateMuseumRequest.newBuilder()
+                            .setId(ByteString.copyFromUtf8(museumId.toString()))
+                            .setMuseumData(AddMuseumRequest.newBuilder()
+                                    .setTitle("Renamed")
+                                    .setGeo(Geo.newBuilder()
+                                            .setCountry(CountryId.newBuilder().setId(ByteString.copyFromUtf8(countryId.toString()))))))
+                    .build());
+            requestObserver.onCompleted();
+
+            verify(museumObserver).onNext(argThat(response ->
+                    response.getPhoto().equals(photo) && response.getTitle().equals("Renamed")));
+            verify(museumObserver).onCompleted();
+            verify(museumRepository, never()).updateWithPhoto(any(), any(), any(), any(), any(), any(), any(), any());
+            verify(museumThumbnailStore, never()).refresh(any());
+        }
+
+        @Test
+        void shouldRejectUploadedPhotoOverMaxSize() {
+            GrpcMuseumService service = new GrpcMuseumService(museumRepository, museumFieldRepository, museumThumbnailStore,
+                    museumCountCache, TransactionOperations.withoutTransaction(), DataSize.ofBytes(4), 2);
+
+            StreamObserver<UploadMuseumRequest> requestObserver = service.uploadMuseum(museumObserver);
+            requestObserver.onNext(UploadMuseumRequest.newBuilder()
+                    .setMuseum(UpdateMuseumRequest.newBuilder()
+                            .setMuseumData(AddMuseumRequest.newBuilder().setTitle("Louvre")))
+                    .build());
+            requestObserver.onNext(UploadMuseumRequest.newBuilder().setPhotoChunk(ByteString.copyFromUtf8("photo")).build());
+            requestObserver.onCompleted();
+
+            verify(museumObserver).onError(argThat(error ->
+                    error instanceof StatusRuntimeException ex &&
+                            ex.getStatus().getCode() == Status.RESOURCE_EXHAUSTED.getCode()
+            ));
+            verify(museumObserver, never()).onCompleted();
+            verify(museumRepository, never()).save(any());
+        }
+
+        @Test
+        void shouldRejectUploadWithoutMuseumData() {
+            StreamObserver<UploadMuseumRequest> requestObserver = grpcMuseumService.uploadMuseum(museumObserver);
+            requestObserver.onNext(UploadMuseumRequest.newBuilder().setPhotoChunk(ByteString.copyFromUtf8("photo")).build());
+            requestObserver.onCompleted();
+
+            verify(museumObserver).onError(argThat(error ->
+                    error instanceof StatusRuntimeException ex &&
+                            ex.getStatus().getCode() == Status.INVALID_ARGUMENT.getCode()
+            ));
+            verify(museumRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    class ImportMuseumTests {
+
+        @Test
+        void shouldBatchMuseumsAndRejectOnesWithoutCountry() {
+            UUID countryId = randomUUID();
+            Geo geo = Geo.newBuilder()
+                    .setCity("Paris")
+                    .setCountry(CountryId.newBuilder().setUuid(Uuids.toGrpc(countryId)))
+                    .build();
+
+            StreamObserver<ImportMuseumRequest> requestObserver = grpcMuseumService.importMuseums(importObserver);
+            requestObserver.onNext(importRequest("Louvre", geo));
+            requestObserver.onNext(importRequest("Orsay", Geo.newBuilder().setCity("Paris").build()));
+            requestObserver.onNext(importRequest("Orangerie", geo));
+            requestObserver.onCompleted();
+
+            ArgumentCaptor<List<MuseumEntity>> batch = ArgumentCaptor.forClass(List.class);
+            verify(museumFieldRepository).insertAll(batch.capture());
+            assertEquals(List.of("Louvre", "Orangerie"), batch.getValue().stream().map(MuseumEntity::getTitle).toList());
+            assertTrue(batch.getValue().stream().allMatch(museum -> countryId.equals(museum.getGeoId())));
+
+            ArgumentCaptor<ImportResponse> response = ArgumentCaptor.forClass(ImportResponse.class);
+            verify(importObserver).onNext(response.capture());
+            verify(importObserver).onCompleted();
+            assertEquals(2, response.getValue().getImported());
+            assertEquals("Museum country cannot be empty", response.getValue().getResults(1).getError());
+            assertEquals(batch.getValue().get(1).getId(), Uuids.fromGrpc(response.getValue().getResults(2).getUuid()));
+            verify(museumCountCache).invalidate();
+        }
+
+        private static ImportMuseumRequest importRequest(String title, Geo geo) {
+            return ImportMuseumRequest.newBuilder()
+                    .setMuseumData(AddMuseumRequest.newBuilder()
+                            .setTitle(title)
+                            .setDescription("Museum in Paris")
+                            .setGeo(geo)
+                            .setPhoto(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("photo"))))
+                    .build();
+        }
+    }
+
     @Test
     void shouldReturnMuseumsByIds() {
         UUID id1 = randomUUID(), id2 = randomUUID();
@@ -209,34 +540,57 @@ class GrpcMuseumServiceTest {
                 .addId(ByteString.copyFromUtf8(id2.toString()))
                 .build();
 
-        MuseumEntity e1 = new MuseumEntity();
-        e1.setId(id1);
-        e1.setTitle("Museum One");
-        MuseumEntity e2 = new MuseumEntity();
-        e2.setId(id2);
-        e2.setTitle("Museum Two");
-
-        when(museumRepository.findAllByIdIn(Set.of(id1, id2))).thenReturn(List.of(e1, e2));
-
         MuseumResponse r1 = MuseumResponse.newBuilder().setId(ByteString.copyFromUtf8(id1.toString())).setTitle("Museum One").build();
         MuseumResponse r2 = MuseumResponse.newBuilder().setId(ByteString.copyFromUtf8(id2.toString())).setTitle("Museum Two").build();
 
-        try (MockedStatic<MuseumEntity> mocked = mockStatic(MuseumEntity.class)) {
-            mocked.when(() -> MuseumEntity.toGrpcMessage(e1)).thenReturn(r1);
-            mocked.when(() -> MuseumEntity.toGrpcMessage(e2)).thenReturn(r2);
+        when(museumFieldRepository.findAllByIdIn(Set.of(id1, id2), EnumSet.allOf(MuseumField.class))).thenReturn(List.of(r1, r2));
 
-            StreamObserver<AllMuseumByIdsResponse> observer = mock(StreamObserver.class);
-            ArgumentCaptor<AllMuseumByIdsResponse> captor = ArgumentCaptor.forClass(AllMuseumByIdsResponse.class);
+        StreamObserver<AllMuseumByIdsResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllMuseumByIdsResponse> captor = ArgumentCaptor.forClass(AllMuseumByIdsResponse.class);
 
-            grpcMuseumService.getMuseumByIds(request, observer);
+        grpcMuseumService.getMuseumByIds(request, observer);
 
-            verify(observer).onNext(captor.capture());
-            verify(observer).onCompleted();
-            verify(observer, never()).onError(any());
+        verify(observer).onNext(captor.capture());
+        verify(observer).onCompleted();
+        verify(observer, never()).onError(any());
 
-            List<String> titles = captor.getValue().getMuseumList().stream().map(MuseumResponse::getTitle).toList();
-            assertEquals(2, titles.size());
-            assertTrue(titles.containsAll(List.of("Museum One", "Museum Two")));
-        }
+        List<String> titles = captor.getValue().getMuseumList().stream().map(MuseumResponse::getTitle).toList();
+        assertEquals(2, titles.size());
+        assertTrue(titles.containsAll(List.of("Museum One", "Museum Two")));
+    }
+
+    private static MuseumSummary summary(UUID id, String title) {
+        UUID geoId = randomUUID();
+        return new MuseumSummary() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public String getDescription() {
+                return "";
+            }
+
+            @Override
+            public String getCity() {
+                return "";
+            }
+
+            @Override
+            public UUID getGeoId() {
+                return geoId;
+            }
+
+            @Override
+            public long getVersion() {
+                return 0;
+            }
+        };
     }
-}
\ No newline at end of file
+}
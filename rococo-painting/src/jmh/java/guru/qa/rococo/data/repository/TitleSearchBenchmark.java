@@ -0,0 +1,144 @@
+package guru.qa.rococo.data.repository;
+
+import guru.qa.rococo.grpc.FullTextQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title search over {@code rows} paintings, fetching the first page and the total count the way the service does.
+ * {@code like} is the former {@code lower(title) like '%term%'} scan, {@code fullText} the {@code MATCH ... AGAINST}
+ * query of {@link PaintingRepository#searchByTitle} over a FULLTEXT index.
+ * <p>
+ * Needs the MySQL from docker-compose, the table is seeded into a scratch database for every trial
+ * (a million rows take a few minutes). Run with {@code ./gradlew :rococo-painting:jmh},
+ * point it elsewhere with {@code -Drococo.bench.jdbc-url}, {@code -Drococo.bench.username} and {@code -Drococo.bench.password}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TitleSearchBenchmark {
+
+    private static final String JDBC_URL = System.getProperty(
+            "rococo.bench.jdbc-url",
+            "jdbc:mysql://localhost:3306/rococo-painting-bench?serverTimezone=UTC&createDatabaseIfNotExist=true&rewriteBatchedStatements=true"
+    );
+    private static final String[] WORDS = {
+            "Mona", "Lisa", "Sunset", "Sunrise", "Sunflowers", "Night", "Watch", "Starry", "Girl", "Pearl",
+            "Earring", "Portrait", "Lady", "Ermine", "Garden", "Water", "Lilies", "Harbour", "Storm", "Sea",
+            "Winter", "Hunters", "Snow", "Morning", "Forest", "Bears", "Pine", "Birch", "Grove", "River",
+            "Bridge", "Boat", "Still", "Life", "Apples", "Violin", "Dance", "Ball", "Old", "Mill"
+    };
+    private static final int PAGE_SIZE = 10;
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"sun", "mona li"})
+    private String term;
+
+    private Connection connection;
+    private String pattern;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                JDBC_URL,
+                System.getProperty("rococo.bench.username", "root"),
+                System.getProperty("rococo.bench.password", "secret")
+        );
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists painting_search");
+            statement.execute("create table painting_search (id bigint not null auto_increment, title varchar(50) not null, primary key (id))");
+        }
+
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("insert into painting_search (title) values (?)")) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setString(1, title(random));
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        connection.setAutoCommit(true);
+
+        // the same index V5__title_fulltext.sql adds, built after the load as a bulk import would
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set session innodb_ft_enable_stopword = 0");
+            statement.execute("alter table painting_search add fulltext index painting_search_title_ft (title)");
+            statement.execute("analyze table painting_search");
+        }
+
+        pattern = "%" + term.toLowerCase() + "%";
+        query = FullTextQuery.prefix(term);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists painting_search");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long like() throws SQLException {
+        return select("select id, title from painting_search where lower(title) like ? limit " + PAGE_SIZE, pattern)
+                + select("select count(*) from painting_search where lower(title) like ?", pattern);
+    }
+
+    @Benchmark
+    public long fullText() throws SQLException {
+        return select("select id, title from painting_search where match(title) against (? in boolean mode) "
+                        + "order by match(title) against (? in boolean mode) desc, title limit " + PAGE_SIZE, query, query)
+                + select("select count(*) from painting_search where match(title) against (? in boolean mode)", query);
+    }
+
+    private long select(String sql, String... parameters) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            long read = 0;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    read += rs.getLong(1);
+                }
+            }
+            return read;
+        }
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package guru.qa.rococo.config;
+
+import guru.qa.rococo.grpc.ThumbnailBackfill;
+import guru.qa.rococo.grpc.ThumbnailGenerator;
+import guru.qa.rococo.service.PaintingImageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ThumbnailConfig {
+
+    @Bean(destroyMethod = "close")
+    public ThumbnailGenerator thumbnailGenerator(@Value("${rococo-painting.thumbnails.pool-size}") int poolSize,
+                                                 @Value("${rococo-painting.thumbnails.queue-capacity}") int queueCapacity) {
+        return new ThumbnailGenerator(poolSize, queueCapacity);
+    }
+
+    /**
+     * Catches up on the images stored without variants, see {@link ThumbnailBackfill}.
+     */
+    @Bean(destroyMethod = "close")
+    public ThumbnailBackfill thumbnailBackfill(PaintingImageStore paintingImageStore,
+                                               @Value("${rococo-painting.thumbnails.backfill-batch-size}") int batchSize) {
+        return ThumbnailBackfill.start("painting images", "",
+                after -> paintingImageStore.withoutVariants(after, batchSize),
+                paintingImageStore::generateVariantsNow);
+    }
+}
@@ -1,7 +1,8 @@
 package guru.qa.rococo.data;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.*;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.Uuids;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -10,8 +11,6 @@ import org.hibernate.proxy.HibernateProxy;
 import java.util.Objects;
 import java.util.UUID;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Getter
 @Setter
 @Entity
@@ -29,8 +28,8 @@ public class PaintingEntity {
     @Column(nullable = false)
     private String description;
 
-    @Column(columnDefinition = "bytea", nullable = false)
-    private byte[] content;
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
 
     @Column(name = "museum_id", nullable = false, length = 36)
     private UUID museumId;
@@ -38,31 +37,39 @@ public class PaintingEntity {
     @Column(name = "artist_id", nullable = false, length = 36)
     private UUID artistId;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     public static PaintingEntity fromAddPaintingGrpcMessage(AddPaintingRequest request) {
         PaintingEntity entity = new PaintingEntity();
         entity.setTitle(request.getTitle());
         entity.setDescription(request.getDescription());
-        entity.setContent(request.getContent().toByteArray());
-        entity.setArtistId(UUID.fromString(request.getArtistId().getId().toStringUtf8()));
-        entity.setMuseumId(UUID.fromString(request.getMuseumId().getId().toStringUtf8()));
+        entity.setArtistId(Uuids.read(request.getArtistId().getUuid(), request.getArtistId().getId()));
+        entity.setMuseumId(Uuids.read(request.getMuseumId().getUuid(), request.getMuseumId().getId()));
         return entity;
     }
 
     public static PaintingEntity fromUpdatePaintingGrpcMessage(UpdatePaintingRequest request) {
         PaintingEntity entity = fromAddPaintingGrpcMessage(request.getPaintingData());
-        entity.setId(UUID.fromString(request.getId().toStringUtf8()));
+        entity.setId(Uuids.read(request.getUuid(), request.getId()));
         return entity;
     }
 
     public static PaintingResponse toGrpcMessage(PaintingEntity entity) {
-        return PaintingResponse.newBuilder()
-                .setId(copyFromUtf8(entity.getId().toString()))
+        ArtistId.Builder artistId = ArtistId.newBuilder();
+        IdEncoding.write(entity.getArtistId(), artistId::setUuid, artistId::setId);
+        MuseumId.Builder museumId = MuseumId.newBuilder();
+        IdEncoding.write(entity.getMuseumId(), museumId::setUuid, museumId::setId);
+        PaintingResponse.Builder builder = PaintingResponse.newBuilder()
                 .setTitle(entity.getTitle())
                 .setDescription(entity.getDescription())
-                .setContent(ByteString.copyFrom(entity.getContent()))
-                .setArtistId(ArtistId.newBuilder().setId(copyFromUtf8(entity.getArtistId().toString())).build())
-                .setMuseumId(MuseumId.newBuilder().setId(copyFromUtf8(entity.getMuseumId().toString())).build())
-                .build();
+                .setContentHash(entity.getContentHash())
+                .setArtistId(artistId)
+                .setMuseumId(museumId)
+                .setVersion(entity.getVersion());
+        IdEncoding.write(entity.getId(), builder::setUuid, builder::setId);
+        return builder.build();
     }
 
     @Override
@@ -0,0 +1,56 @@
+package guru.qa.rococo.data;
+
+import com.google.protobuf.FieldMask;
+import guru.qa.grpc.rococo.grpc.AddPaintingRequest;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@link AddPaintingRequest} fields an update mask can name, with the columns behind each of them. The image itself
+ * lives in the image store, so {@link #CONTENT} only ever writes its hash.
+ */
+public enum PaintingField {
+
+    TITLE("title", "title"),
+    DESCRIPTION("description", "description"),
+    MUSEUM("museum_id", "museum_id"),
+    ARTIST("artist_id", "artist_id"),
+    CONTENT("content", "content_hash");
+
+    private final String path;
+    private final String column;
+
+    PaintingField(String path, String column) {
+        this.path = path;
+        this.column = column;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    /**
+     * @return the fields {@code mask} names
+     * @throws IllegalArgumentException if the mask is empty or a path is not a field of {@link AddPaintingRequest}
+     */
+    public static Set<PaintingField> fromMask(FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            throw new IllegalArgumentException("Update mask cannot be empty");
+        }
+        Set<PaintingField> fields = EnumSet.noneOf(PaintingField.class);
+        for (String path : mask.getPathsList()) {
+            fields.add(fromPath(path));
+        }
+        return fields;
+    }
+
+    private static PaintingField fromPath(String path) {
+        for (PaintingField field : values()) {
+            if (field.path.equals(path)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field in mask: " + path);
+    }
+}
@@ -0,0 +1,50 @@
+package guru.qa.rococo.data;
+
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.rococo.grpc.ByteStrings;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Objects;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "painting_image")
+public class PaintingImageEntity {
+
+    @Id
+    @Column(name = "hash", nullable = false, length = 64)
+    private String hash;
+
+    @Column(columnDefinition = "bytea", nullable = false)
+    private byte[] content;
+
+    @Column(name = "mime_type", nullable = false, length = 127)
+    private String mimeType;
+
+    public static Image toImage(PaintingImageEntity entity) {
+        return Image.newBuilder()
+                .setMimeType(entity.getMimeType())
+                .setData(ByteStrings.wrap(entity.getContent()))
+                .build();
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        PaintingImageEntity that = (PaintingImageEntity) o;
+        return getHash() != null && Objects.equals(getHash(), that.getHash());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
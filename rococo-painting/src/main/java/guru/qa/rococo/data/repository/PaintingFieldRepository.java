@@ -0,0 +1,135 @@
+package guru.qa.rococo.data.repository;
+
+import guru.qa.grpc.rococo.grpc.AddPaintingRequest;
+import guru.qa.grpc.rococo.grpc.ArtistId;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.grpc.rococo.grpc.ImportPaintingRequest;
+import guru.qa.grpc.rococo.grpc.MuseumId;
+import guru.qa.rococo.data.PaintingEntity;
+import guru.qa.rococo.data.PaintingField;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.Uuids;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Writes of paintings by id that touch the columns of the requested {@link PaintingField}s only, batched inserts of
+ * new ones and the streamed export of all of them.
+ */
+@Repository
+public class PaintingFieldRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public PaintingFieldRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Writes the columns of {@code fields}, taking their values from {@code values}, and bumps the version.
+     *
+     * @param expectedVersion the version the painting must still be at, {@code null} to patch whatever it is
+     * @return 0 when the painting is missing or at another version, 1 otherwise
+     */
+    public int patch(@Nonnull UUID id,
+                     @Nonnull PaintingEntity values,
+                     @Nonnull Set<PaintingField> fields,
+                     @Nullable Long expectedVersion) {
+        StringBuilder sql = new StringBuilder("update painting set ");
+        List<Object> args = new ArrayList<>();
+        for (PaintingField field : fields) {
+            switch (field) {
+                case MUSEUM, ARTIST -> sql.append(field.column()).append(" = UUID_TO_BIN(?), ");
+                default -> sql.append(field.column()).append(" = ?, ");
+            }
+            args.add(value(values, field));
+        }
+        sql.append("version = version + 1 where id = UUID_TO_BIN(?)");
+        args.add(id.toString());
+        if (expectedVersion != null) {
+            sql.append(" and version = ?");
+            args.add(expectedVersion);
+        }
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private static Object value(PaintingEntity values, PaintingField field) {
+        return switch (field) {
+            case TITLE -> values.getTitle();
+            case DESCRIPTION -> values.getDescription();
+            case MUSEUM -> values.getMuseumId().toString();
+            case ARTIST -> values.getArtistId().toString();
+            case CONTENT -> values.getContentHash();
+        };
+    }
+
+    /**
+     * Inserts new paintings under the ids they carry with one batched statement, all of them or none. Their images
+     * must already be in the image store.
+     */
+    @Transactional
+    public void insertAll(@Nonnull List<PaintingEntity> paintings) {
+        jdbcTemplate.batchUpdate(
+                "insert into painting (id, title, description, content_hash, museum_id, artist_id, version) "
+                        + "values (UUID_TO_BIN(?), ?, ?, ?, UUID_TO_BIN(?), UUID_TO_BIN(?), 0)",
+                paintings,
+                paintings.size(),
+                (ps, painting) -> {
+                    ps.setString(1, painting.getId().toString());
+                    ps.setString(2, painting.getTitle());
+                    ps.setString(3, painting.getDescription());
+                    ps.setString(4, painting.getContentHash());
+                    ps.setString(5, painting.getMuseumId().toString());
+                    ps.setString(6, painting.getArtistId().toString());
+                }
+        );
+    }
+
+    /**
+     * Hands every painting to {@code consumer} as the request that imports it again, its image joined in from the
+     * image store. The join is read as one streamed result, so only the current row is in memory however many
+     * paintings there are.
+     */
+    public void exportAll(@Nonnull Consumer<ImportPaintingRequest> consumer) {
+        jdbcTemplate.query(
+                streamed("select BIN_TO_UUID(p.id) as id, p.title, p.description, "
+                        + "BIN_TO_UUID(p.museum_id) as museum_id, BIN_TO_UUID(p.artist_id) as artist_id, i.content, i.mime_type "
+                        + "from painting p join painting_image i on i.hash = p.content_hash order by p.id"),
+                (RowCallbackHandler) rs -> consumer.accept(ImportPaintingRequest.newBuilder()
+                        .setUuid(Uuids.toGrpc(UUID.fromString(rs.getString("id"))))
+                        .setPaintingData(AddPaintingRequest.newBuilder()
+                                .setTitle(rs.getString("title"))
+                                .setDescription(rs.getString("description"))
+                                .setMuseumId(MuseumId.newBuilder().setUuid(Uuids.toGrpc(UUID.fromString(rs.getString("museum_id")))))
+                                .setArtistId(ArtistId.newBuilder().setUuid(Uuids.toGrpc(UUID.fromString(rs.getString("artist_id")))))
+                                .setContent(Image.newBuilder()
+                                        .setMimeType(rs.getString("mime_type"))
+                                        .setData(ByteStrings.wrap(rs.getBytes("content")))))
+                        .build())
+        );
+    }
+
+    private static PreparedStatementCreator streamed(String sql) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // the one fetch size Connector/J streams rows with; any other has it read the whole result first
+            ps.setFetchSize(Integer.MIN_VALUE);
+            return ps;
+        };
+    }
+}
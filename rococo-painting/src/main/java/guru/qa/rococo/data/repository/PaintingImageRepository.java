@@ -0,0 +1,7 @@
+package guru.qa.rococo.data.repository;
+
+import guru.qa.rococo.data.PaintingImageEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PaintingImageRepository extends JpaRepository<PaintingImageEntity, String> {
+}
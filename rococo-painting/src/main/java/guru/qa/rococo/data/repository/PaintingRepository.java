@@ -1,23 +1,100 @@
 package guru.qa.rococo.data.repository;
 
 import guru.qa.rococo.data.PaintingEntity;
+import guru.qa.rococo.grpc.FullTextQuery;
 import jakarta.annotation.Nonnull;
-import org.springframework.data.domain.Page;
+import jakarta.annotation.Nullable;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface PaintingRepository extends JpaRepository<PaintingEntity, UUID> {
 
+    /**
+     * All rows page by page, without the count query of a {@code Page}: totals come from the {@code CountCache}.
+     */
     @Nonnull
-    Page<PaintingEntity> findAllByTitleContainsIgnoreCase(
-            @Nonnull String title,
+    Slice<PaintingEntity> findAllBy(@Nonnull Pageable pageable);
+
+    /**
+     * Best matches first, without a total, see {@link #findAllBy}.
+     *
+     * @param query boolean mode query built by {@link FullTextQuery}
+     */
+    @Nonnull
+    @Query(value = "select * from painting where match(title) against (:query in boolean mode) "
+            + "order by match(title) against (:query in boolean mode) desc, title",
+            nativeQuery = true)
+    Slice<PaintingEntity> searchByTitle(
+            @Nonnull @Param("query") String query,
             @Nonnull Pageable pageable
     );
 
-    Page<PaintingEntity> findAllByArtistId(
+    /**
+     * First {@code limit} rows in id order, starting right after {@code after} ({@code null} for the first page).
+     */
+    @Nonnull
+    @Query(value = "select * from painting where (:after is null or id > UUID_TO_BIN(:after)) order by id limit :limit",
+            nativeQuery = true)
+    List<PaintingEntity> findPageAfter(
+            @Nullable @Param("after") String after,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Keyset counterpart of {@link #searchByTitle}, ordered by id instead of relevance.
+     */
+    @Nonnull
+    @Query(value = "select * from painting where match(title) against (:query in boolean mode) "
+            + "and (:after is null or id > UUID_TO_BIN(:after)) order by id limit :limit",
+            nativeQuery = true)
+    List<PaintingEntity> searchByTitleAfter(
+            @Nonnull @Param("query") String query,
+            @Nullable @Param("after") String after,
+            @Param("limit") int limit
+    );
+
+    @Query(value = "select count(*) from painting where match(title) against (:query in boolean mode)", nativeQuery = true)
+    long countByTitleMatching(@Nonnull @Param("query") String query);
+
+    Slice<PaintingEntity> findAllByArtistId(
             @Nonnull UUID artistId,
             @Nonnull Pageable pageable
     );
-}
\ No newline at end of file
+
+    long countByArtistId(@Nonnull UUID artistId);
+
+    @Query("select p.version from PaintingEntity p where p.id = :id")
+    Optional<Long> findVersionById(@Nonnull @Param("id") UUID id);
+
+    /**
+     * Rewrites the painting and bumps its version in a single statement, without the row being read first.
+     *
+     * @param contentHash the new image, {@code null} to keep the current one
+     * @param expectedVersion the version the painting must still be at, {@code null} to update whatever it is
+     * @return 0 when the painting is missing or at another version, 1 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update PaintingEntity p set p.title = :title, p.description = :description, "
+            + "p.museumId = :museumId, p.artistId = :artistId, p.contentHash = coalesce(:contentHash, p.contentHash), "
+            + "p.version = p.version + 1 "
+            + "where p.id = :id and (:expectedVersion is null or p.version = :expectedVersion)")
+    int update(
+            @Nonnull @Param("id") UUID id,
+            @Nonnull @Param("title") String title,
+            @Nonnull @Param("description") String description,
+            @Nonnull @Param("museumId") UUID museumId,
+            @Nonnull @Param("artistId") UUID artistId,
+            @Nullable @Param("contentHash") String contentHash,
+            @Nullable @Param("expectedVersion") Long expectedVersion
+    );
+}
@@ -1,35 +1,75 @@
 package guru.qa.rococo.service;
 
+import com.google.protobuf.Empty;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.data.PaintingEntity;
+import guru.qa.rococo.data.PaintingField;
+import guru.qa.rococo.data.repository.PaintingFieldRepository;
 import guru.qa.rococo.data.repository.PaintingRepository;
+import guru.qa.rococo.grpc.BulkImport;
+import guru.qa.rococo.grpc.CountCache;
+import guru.qa.rococo.grpc.FlowControlledStream;
+import guru.qa.rococo.grpc.FullTextQuery;
+import guru.qa.rococo.grpc.IdEncoding;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.PageToken;
+import guru.qa.rococo.grpc.Uuids;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import static io.grpc.Status.ABORTED;
+import static io.grpc.Status.INTERNAL;
+import static io.grpc.Status.INVALID_ARGUMENT;
 import static io.grpc.Status.NOT_FOUND;
-import static java.util.UUID.fromString;
 
 @GrpcService
 public class GrpcPaintingService extends RococoPaintingServiceGrpc.RococoPaintingServiceImplBase {
 
     private final PaintingRepository paintingRepository;
+    private final PaintingFieldRepository paintingFieldRepository;
+    private final PaintingImageStore paintingImageStore;
+    private final CountCache paintingCountCache;
+    private final TransactionOperations transactionOperations;
+    private final int importBatchSize;
 
-    public GrpcPaintingService(PaintingRepository paintingRepository) {
+    public GrpcPaintingService(PaintingRepository paintingRepository,
+                               PaintingFieldRepository paintingFieldRepository,
+                               PaintingImageStore paintingImageStore,
+                               CountCache paintingCountCache,
+                               TransactionOperations transactionOperations,
+                               @Value("${rococo-painting.import.batch-size}") int importBatchSize) {
         this.paintingRepository = paintingRepository;
+        this.paintingFieldRepository = paintingFieldRepository;
+        this.paintingImageStore = paintingImageStore;
+        this.paintingCountCache = paintingCountCache;
+        this.transactionOperations = transactionOperations;
+        this.importBatchSize = importBatchSize;
     }
 
     @Override
     public void getPainting(PaintingRequest request, StreamObserver<PaintingResponse> responseObserver) {
-        UUID paintingId = fromString(request.getId().toStringUtf8());
+        UUID paintingId = Uuids.read(request.getUuid(), request.getId());
 
         paintingRepository.findById(paintingId)
                 .ifPresentOrElse(
                         paintingEntity -> {
                             PaintingResponse response = PaintingEntity.toGrpcMessage(paintingEntity);
+                            if (request.getWithContent()) {
+                                response = withContent(response, paintingImageStore.load(paintingEntity.getContentHash()).orElse(null));
+                            }
                             responseObserver.onNext(response);
                             responseObserver.onCompleted();
                         },
@@ -40,65 +80,396 @@ public class GrpcPaintingService extends RococoPaintingServiceGrpc.RococoPaintin
                 );
     }
 
+    @Override
+    public void getPaintingContent(PaintingRequest request, StreamObserver<PaintingContentResponse> responseObserver) {
+        UUID paintingId = Uuids.read(request.getUuid(), request.getId());
+
+        paintingRepository.findById(paintingId)
+                .flatMap(paintingEntity -> paintingImageStore.load(paintingEntity.getContentHash())
+                        .map(content -> {
+                            PaintingContentResponse.Builder builder = PaintingContentResponse.newBuilder()
+                                    .setContentHash(paintingEntity.getContentHash())
+                                    .setContent(content);
+                            IdEncoding.write(paintingId, builder::setUuid, builder::setId);
+                            return builder.build();
+                        }))
+                .ifPresentOrElse(
+                        response -> {
+                            responseObserver.onNext(response);
+                            responseObserver.onCompleted();
+                        },
+                        () -> responseObserver.onError(
+                                NOT_FOUND.withDescription("Painting content not found by id: " + paintingId)
+                                        .asRuntimeException()
+                        )
+                );
+    }
+
+    /**
+     * Chunks are read from the store only as fast as the client takes them.
+     */
+    @Override
+    public void streamPaintingContent(PaintingRequest request, StreamObserver<PaintingContentChunk> responseObserver) {
+        UUID paintingId = Uuids.read(request.getUuid(), request.getId());
+        ImageVariant variant;
+        try {
+            variant = request.getVariant().isEmpty() ? null : ImageVariant.valueOf(request.getVariant());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Unknown image variant: " + request.getVariant())
+                    .asRuntimeException());
+            return;
+        }
+
+        FlowControlledStream.send(responseObserver, send -> {
+            boolean streamed = paintingRepository.findById(paintingId)
+                    .map(paintingEntity -> paintingImageStore.stream(paintingEntity.getContentHash(), variant, send))
+                    .orElse(false);
+            if (!streamed) {
+                throw NOT_FOUND.withDescription("Painting content not found by id: " + paintingId)
+                        .asRuntimeException();
+            }
+        });
+    }
+
     @Override
     public void getAllPainting(AllPaintingRequest request, StreamObserver<AllPaintingResponse> responseObserver) {
-        String title = request.getTitle();
+        if (request.hasPageToken()) {
+            getPaintingsAfter(request, responseObserver);
+            return;
+        }
+        String query = FullTextQuery.prefix(request.getTitle());
         int page = request.getPage();
         int size = request.getSize();
         PageRequest pageable = PageRequest.of(page, size);
 
-        Page<PaintingEntity> paintingPage = paintingRepository.findAllByTitleContainsIgnoreCase(title, pageable);
-        AllPaintingResponse response = getAllPaintingResponseFromEntities(paintingPage);
+        Slice<PaintingEntity> paintingSlice = query.isEmpty()
+                ? paintingRepository.findAllBy(pageable)
+                : paintingRepository.searchByTitle(query, pageable);
+        AllPaintingResponse response = withTotalCount(
+                getAllPaintingResponseFromEntities(paintingSlice.getContent(), request.getWithContent()),
+                paintingCountCache.count(query)
+        ).build();
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
+    /**
+     * Keyset listing ordered by id: a page costs the same however deep it is, and the total is only counted on request.
+     */
+    private void getPaintingsAfter(AllPaintingRequest request, StreamObserver<AllPaintingResponse> responseObserver) {
+        UUID after;
+        try {
+            after = PageToken.decode(request.getPageToken());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Malformed page token").asRuntimeException());
+            return;
+        }
+        int size = request.getSize();
+        if (size <= 0) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Page size must be positive").asRuntimeException());
+            return;
+        }
+        String query = FullTextQuery.prefix(request.getTitle());
+        String afterId = after == null ? null : after.toString();
+
+        // one row past the page tells whether there is a next one
+        List<PaintingEntity> found = query.isEmpty()
+                ? paintingRepository.findPageAfter(afterId, size + 1)
+                : paintingRepository.searchByTitleAfter(query, afterId, size + 1);
+        List<PaintingEntity> paintings = found.size() > size ? found.subList(0, size) : found;
+
+        AllPaintingResponse.Builder responseBuilder = getAllPaintingResponseFromEntities(paintings, request.getWithContent());
+        if (found.size() > size) {
+            responseBuilder.setNextPageToken(PageToken.encode(paintings.get(size - 1).getId()));
+        }
+        if (request.getWithTotalCount()) {
+            withTotalCount(responseBuilder, paintingCountCache.count(query));
+        }
+
+        responseObserver.onNext(responseBuilder.build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void addPainting(AddPaintingRequest addPaintingRequest, StreamObserver<PaintingResponse> responseObserver) {
-        PaintingEntity entity = paintingRepository.save(PaintingEntity.fromAddPaintingGrpcMessage(addPaintingRequest));
+        savePainting(addPaintingRequest, () -> paintingImageStore.save(addPaintingRequest.getContent()), responseObserver);
+    }
+
+    @Override
+    public void updatePainting(UpdatePaintingRequest request, StreamObserver<PaintingResponse> responseObserver) {
+        Image content = request.getPaintingData().getContent();
+        replacePainting(
+                request,
+                content.getData().isEmpty() ? null : () -> paintingImageStore.save(content),
+                responseObserver
+        );
+    }
+
+    /**
+     * The first message carries the painting data (an empty id means a new painting),
+     * the rest carry the raw image bytes, which are spooled straight into the image store.
+     */
+    @Override
+    public StreamObserver<UploadPaintingRequest> uploadPainting(StreamObserver<PaintingResponse> responseObserver) {
+        PaintingImageStore.Upload upload = paintingImageStore.newUpload();
+        return new StreamObserver<>() {
+            private UpdatePaintingRequest painting;
+            private boolean failed;
+
+            /**
+             * A chunk that can't be spooled fails the call here, as gRPC would not call {@link #onError} for it.
+             */
+            @Override
+            public void onNext(UploadPaintingRequest request) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    switch (request.getPayloadCase()) {
+                        case PAINTING -> painting = request.getPainting();
+                        case CONTENT_CHUNK -> upload.write(request.getContentChunk());
+                        default -> {
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failed = true;
+                    upload.close();
+                    responseObserver.onError(INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                upload.close();
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                try (upload) {
+                    if (painting == null) {
+                        responseObserver.onError(
+                                INVALID_ARGUMENT.withDescription("Painting data is missing in upload").asRuntimeException()
+                        );
+                    } else if (painting.hasUuid() || !painting.getId().isEmpty()) {
+                        replacePainting(
+                                painting,
+                                upload.isEmpty() ? null : () -> upload.commit(mimeType()),
+                                responseObserver
+                        );
+                    } else if (upload.isEmpty()) {
+                        responseObserver.onError(
+                                INVALID_ARGUMENT.withDescription("Painting content is missing in upload").asRuntimeException()
+                        );
+                    } else {
+                        savePainting(painting.getPaintingData(), () -> upload.commit(mimeType()), responseObserver);
+                    }
+                }
+            }
+
+            private String mimeType() {
+                return painting.getPaintingData().getContent().getMimeType();
+            }
+        };
+    }
+
+    /**
+     * The image is stored in the same transaction as the painting, so an insert that fails rolls the image back instead
+     * of leaving it unreferenced in the store.
+     *
+     * @param contentHash stores the image and gives its hash
+     */
+    private void savePainting(AddPaintingRequest request,
+                              Supplier<String> contentHash,
+                              StreamObserver<PaintingResponse> responseObserver) {
+        PaintingEntity paintingEntity = PaintingEntity.fromAddPaintingGrpcMessage(request);
+        PaintingEntity entity = transactionOperations.execute(status -> {
+            paintingEntity.setContentHash(contentHash.get());
+            return paintingRepository.save(paintingEntity);
+        });
+        paintingCountCache.invalidate();
         responseObserver.onNext(PaintingEntity.toGrpcMessage(entity));
         responseObserver.onCompleted();
     }
 
+    /**
+     * The new image is stored in the same transaction as the conditional update, so an update that finds the painting
+     * missing or at another version rolls the image back instead of leaving it unreferenced in the store.
+     *
+     * @param contentHash stores the new image and gives its hash, {@code null} to keep the current one
+     */
+    private void replacePainting(UpdatePaintingRequest request,
+                                 Supplier<String> contentHash,
+                                 StreamObserver<PaintingResponse> responseObserver) {
+        UUID paintingId = Uuids.read(request.getUuid(), request.getId());
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        PaintingEntity paintingEntity = PaintingEntity.fromUpdatePaintingGrpcMessage(request);
+
+        Optional<PaintingEntity> stored = transactionOperations.execute(status -> {
+            int updated = paintingRepository.update(paintingId, paintingEntity.getTitle(), paintingEntity.getDescription(),
+                    paintingEntity.getMuseumId(), paintingEntity.getArtistId(),
+                    contentHash == null ? null : contentHash.get(), expectedVersion);
+            if (updated == 0) {
+                status.setRollbackOnly();
+                return Optional.empty();
+            }
+            // the row holds the image hash only, so reading it back for the new version and hash is cheap
+            return paintingRepository.findById(paintingId);
+        });
+        if (stored.isEmpty()) {
+            responseObserver.onError(updateFailure(paintingId, expectedVersion));
+            return;
+        }
+        paintingCountCache.invalidate();
+        responseObserver.onNext(PaintingEntity.toGrpcMessage(stored.get()));
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Images go to the content-addressed store as their item arrives, where a repeated image is stored once; only the
+     * painting rows are batched.
+     */
     @Override
-    public void updatePainting(UpdatePaintingRequest request, StreamObserver<PaintingResponse> responseObserver) {
-        UUID paintingId = fromString(request.getId().toStringUtf8());
+    public StreamObserver<ImportPaintingRequest> importPaintings(StreamObserver<ImportResponse> responseObserver) {
+        return new BulkImport<>(importBatchSize, responseObserver) {
+            @Override
+            protected PaintingEntity read(ImportPaintingRequest request) {
+                AddPaintingRequest paintingData = request.getPaintingData();
+                if (paintingData.getTitle().isBlank()) {
+                    throw new IllegalArgumentException("Painting title cannot be empty");
+                }
+                if (!paintingData.hasMuseumId() || !paintingData.hasArtistId()) {
+                    throw new IllegalArgumentException("Painting museum and artist cannot be empty");
+                }
+                if (paintingData.getContent().getData().isEmpty()) {
+                    throw new IllegalArgumentException("Painting content cannot be empty");
+                }
+                PaintingEntity painting = PaintingEntity.fromAddPaintingGrpcMessage(paintingData);
+                painting.setId(request.hasUuid() ? Uuids.fromGrpc(request.getUuid()) : Uuids.timeOrdered());
+                painting.setContentHash(paintingImageStore.save(paintingData.getContent()));
+                return painting;
+            }
 
-        paintingRepository.findById(paintingId)
-                .ifPresentOrElse(
-                        paintingEntity -> {
-                            paintingEntity = PaintingEntity.fromUpdatePaintingGrpcMessage(request);
-                            paintingRepository.save(paintingEntity);
-                            responseObserver.onNext(PaintingEntity.toGrpcMessage(paintingEntity));
-                            responseObserver.onCompleted();
-                        }, () -> responseObserver.onError(
-                                NOT_FOUND.withDescription("Painting not found by id: " + paintingId)
-                                        .asRuntimeException()
-                        )
-                );
+            @Override
+            protected UUID id(PaintingEntity painting) {
+                return painting.getId();
+            }
+
+            @Override
+            protected void insertAll(List<PaintingEntity> paintings) {
+                paintingFieldRepository.insertAll(paintings);
+            }
+
+            @Override
+            protected void imported(List<UUID> ids) {
+                paintingCountCache.invalidate();
+            }
+        };
+    }
+
+    @Override
+    public void exportPaintings(Empty request, StreamObserver<ImportPaintingRequest> responseObserver) {
+        FlowControlledStream.send(responseObserver, paintingFieldRepository::exportAll);
+    }
+
+    @Override
+    public void patchPainting(PatchPaintingRequest request, StreamObserver<PaintingResponse> responseObserver) {
+        UUID paintingId = Uuids.fromGrpc(request.getUuid());
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        Set<PaintingField> fields;
+        try {
+            fields = PaintingField.fromMask(request.getUpdateMask());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        Image content = request.getPaintingData().getContent();
+        if (fields.contains(PaintingField.CONTENT) && content.getData().isEmpty()) {
+            responseObserver.onError(INVALID_ARGUMENT.withDescription("Painting content is missing in patch").asRuntimeException());
+            return;
+        }
+
+        PaintingEntity values = PaintingEntity.fromAddPaintingGrpcMessage(request.getPaintingData());
+        // as in replacePainting, a new image only stays stored if the patch it is part of applies
+        Optional<PaintingEntity> stored = transactionOperations.execute(status -> {
+            if (fields.contains(PaintingField.CONTENT)) {
+                values.setContentHash(paintingImageStore.save(content));
+            }
+            if (paintingFieldRepository.patch(paintingId, values, fields, expectedVersion) == 0) {
+                status.setRollbackOnly();
+                return Optional.empty();
+            }
+            return paintingRepository.findById(paintingId);
+        });
+        if (stored.isEmpty()) {
+            responseObserver.onError(updateFailure(paintingId, expectedVersion));
+            return;
+        }
+        if (fields.contains(PaintingField.TITLE) || fields.contains(PaintingField.ARTIST)) {
+            paintingCountCache.invalidate();
+        }
+        responseObserver.onNext(PaintingEntity.toGrpcMessage(stored.get()));
+        responseObserver.onCompleted();
     }
 
     @Override
     public void getAllPaintingByArtistId(AllPaintingByArtistIdRequest request, StreamObserver<AllPaintingResponse> responseObserver) {
-        UUID artistId = UUID.fromString(request.getArtistId().toStringUtf8());
+        UUID artistId = Uuids.read(request.getArtistUuid(), request.getArtistId());
         int page = request.getPage();
         int size = request.getSize();
         PageRequest pageable = PageRequest.of(page, size);
 
-        Page<PaintingEntity> paintingPage = paintingRepository.findAllByArtistId(artistId, pageable);
-        AllPaintingResponse response = getAllPaintingResponseFromEntities(paintingPage);
+        Slice<PaintingEntity> paintingSlice = paintingRepository.findAllByArtistId(artistId, pageable);
+        AllPaintingResponse response = withTotalCount(
+                getAllPaintingResponseFromEntities(paintingSlice.getContent(), request.getWithContent()),
+                paintingCountCache.count("artist:" + artistId,
+                        () -> paintingRepository.countByArtistId(artistId))
+        ).build();
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
-    private AllPaintingResponse getAllPaintingResponseFromEntities(Page<PaintingEntity> paintingPage) {
+    private AllPaintingResponse.Builder getAllPaintingResponseFromEntities(List<PaintingEntity> paintings, boolean withContent) {
+        Map<String, Image> contents = withContent
+                ? paintingImageStore.loadAll(paintings.stream()
+                .map(PaintingEntity::getContentHash)
+                .collect(Collectors.toSet()), ImageVariant.SMALL)
+                : Map.of();
+
         AllPaintingResponse.Builder responseBuilder = AllPaintingResponse.newBuilder();
-        paintingPage.forEach(paintingEntity -> {
+        paintings.forEach(paintingEntity -> {
             PaintingResponse response = PaintingEntity.toGrpcMessage(paintingEntity);
+            if (withContent) {
+                response = withContent(response, contents.get(paintingEntity.getContentHash()));
+            }
             responseBuilder.addPainting(response);
         });
-        return responseBuilder.setTotalCount((int) paintingPage.getTotalElements()).build();
+        return responseBuilder;
     }
-}
\ No newline at end of file
+
+    private static AllPaintingResponse.Builder withTotalCount(AllPaintingResponse.Builder responseBuilder,
+                                                              CountCache.Total total) {
+        return responseBuilder
+                .setTotalCount((int) total.value())
+                .setTotalCountEstimated(total.estimated());
+    }
+
+    private static PaintingResponse withContent(PaintingResponse response, Image content) {
+        return content == null
+                ? response
+                : response.toBuilder().setContent(content).build();
+    }
+
+    private StatusRuntimeException updateFailure(UUID paintingId, Long expectedVersion) {
+        return paintingRepository.findVersionById(paintingId)
+                .map(version -> ABORTED.withDescription(
+                        "Painting " + paintingId + " is at version " + version + ", not " + expectedVersion))
+                .orElseGet(() -> NOT_FOUND.withDescription("Painting not found by id: " + paintingId))
+                .asRuntimeException();
+    }
+
+}
@@ -0,0 +1,327 @@
+package guru.qa.rococo.service;
+
+import com.google.protobuf.ByteString;
+import guru.qa.grpc.rococo.grpc.Image;
+import guru.qa.grpc.rococo.grpc.PaintingContentChunk;
+import guru.qa.rococo.data.PaintingImageEntity;
+import guru.qa.rococo.data.repository.PaintingImageRepository;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.ThumbnailBackfill;
+import guru.qa.rococo.grpc.ThumbnailGenerator;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.support.SqlBinaryValue;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage for painting images. Images are keyed by the SHA-256 of their bytes,
+ * so identical uploads are stored once and the {@code painting} table only keeps the hash.
+ * Every new image also gets its {@link ImageVariant}s, generated in the background and stored under the same hash.
+ */
+@Component
+public class PaintingImageStore {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final int MIN_CHUNK_SIZE = 1024;
+    private static final String ORIGINAL_SOURCE = "from painting_image where hash = ?";
+    private static final String VARIANT_SOURCE = "from painting_image_variant where hash = ? and variant = ?";
+
+    private final PaintingImageRepository paintingImageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThumbnailGenerator thumbnailGenerator;
+    private final int chunkSize;
+
+    @Autowired
+    public PaintingImageStore(PaintingImageRepository paintingImageRepository,
+                              JdbcTemplate jdbcTemplate,
+                              ThumbnailGenerator thumbnailGenerator,
+                              @Value("${rococo-painting.content-chunk-size}") int chunkSize) {
+        this.paintingImageRepository = paintingImageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.thumbnailGenerator = thumbnailGenerator;
+        this.chunkSize = Math.max(chunkSize, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Hashes the image and streams it into the blob column straight from the message, without a copy of its bytes.
+     */
+    public @Nonnull String save(@Nonnull Image content) {
+        ByteString data = content.getData();
+        MessageDigest digest = newDigest();
+        data.asReadOnlyByteBufferList().forEach(digest::update);
+        String hash = HexFormat.of().formatHex(digest.digest());
+        if (insertIfAbsent(hash, data.newInput(), data.size(), content.getMimeType()) > 0) {
+            generateVariants(hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Starts a chunked upload. Chunks are spooled to a temporary file while the hash is computed,
+     * then streamed into the blob column on {@link Upload#commit(String)}, so the image is never held in memory.
+     */
+    public @Nonnull Upload newUpload() {
+        try {
+            return new Upload(Files.createTempFile("painting-", ".upload"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start painting image upload", e);
+        }
+    }
+
+    public @Nonnull Optional<Image> load(@Nonnull String hash) {
+        return paintingImageRepository.findById(hash)
+                .map(PaintingImageEntity::toImage);
+    }
+
+    public @Nonnull Map<String, Image> loadAll(@Nonnull Set<String> hashes) {
+        return paintingImageRepository.findAllById(hashes)
+                .stream()
+                .collect(Collectors.toMap(PaintingImageEntity::getHash, PaintingImageEntity::toImage));
+    }
+
+    /**
+     * Reads the variant only: where it is missing, still being generated or dropped by a full queue, the hash is left
+     * out rather than read with the whole original, and its variants are queued again.
+     *
+     * @return the requested variant by hash, for the hashes that have it
+     */
+    public @Nonnull Map<String, Image> loadAll(@Nonnull Set<String> hashes, @Nonnull ImageVariant variant) {
+        if (hashes.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Image> result = new HashMap<>();
+        jdbcTemplate.query(
+                "select hash, content, mime_type from painting_image_variant where variant = ? and hash in ("
+                        + String.join(", ", Collections.nCopies(hashes.size(), "?")) + ")",
+                rs -> {
+                    result.put(rs.getString("hash"), Image.newBuilder()
+                            .setMimeType(rs.getString("mime_type"))
+                            .setData(ByteStrings.wrap(rs.getBytes("content")))
+                            .build());
+                },
+                Stream.concat(Stream.of(variant.name()), hashes.stream()).toArray()
+        );
+        hashes.stream()
+                .filter(hash -> !result.containsKey(hash))
+                .forEach(this::submitVariants);
+        return result;
+    }
+
+    /**
+     * Reads the image with one streamed query and hands it to {@code consumer} in chunks of at most
+     * {@code rococo-painting.content-chunk-size} bytes, read off the blob column as a stream. The blob is read once
+     * whatever its size; Connector/J still holds the one row it streams, so a stream keeps at most one image in memory,
+     * and its connection until the last chunk is handed over. The first chunk always carries the content type.
+     *
+     * @param variant the variant to stream instead of the original, which is streamed while the variant is not
+     *                generated (yet); {@code null} for the original
+     * @return {@code false} if there is no image with the given hash
+     */
+    public boolean stream(@Nonnull String hash, @Nullable ImageVariant variant, @Nonnull Consumer<PaintingContentChunk> consumer) {
+        return variant != null && stream(consumer, VARIANT_SOURCE, hash, variant.name())
+                || stream(consumer, ORIGINAL_SOURCE, hash);
+    }
+
+    private boolean stream(@Nonnull Consumer<PaintingContentChunk> consumer, @Nonnull String source, @Nonnull Object... key) {
+        AtomicBoolean found = new AtomicBoolean();
+        jdbcTemplate.query(
+                streamed("select mime_type, content " + source, key),
+                (RowCallbackHandler) rs -> {
+                    found.set(true);
+                    try (InputStream content = rs.getBinaryStream("content")) {
+                        byte[] data = content == null ? new byte[0] : content.readNBytes(chunkSize);
+                        consumer.accept(PaintingContentChunk.newBuilder()
+                                .setContentType(rs.getString("mime_type"))
+                                .setData(ByteStrings.wrap(data))
+                                .build());
+                        while (data.length == chunkSize && (data = content.readNBytes(chunkSize)).length > 0) {
+                            consumer.accept(PaintingContentChunk.newBuilder()
+                                    .setData(ByteStrings.wrap(data))
+                                    .build());
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to stream painting image " + key[0], e);
+                    }
+                }
+        );
+        return found.get();
+    }
+
+    private static @Nonnull PreparedStatementCreator streamed(@Nonnull String sql, @Nonnull Object... args) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // the one fetch size Connector/J streams rows with; any other has it read the whole result first
+            ps.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        };
+    }
+
+    /**
+     * Inside a transaction, waits for it to commit: the generator reads the image on a connection of its own, and an
+     * image that is rolled back needs no variants.
+     */
+    private void generateVariants(@Nonnull String hash) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submitVariants(hash);
+                }
+            });
+        } else {
+            submitVariants(hash);
+        }
+    }
+
+    private void submitVariants(@Nonnull String hash) {
+        thumbnailGenerator.submit("painting image " + hash, () -> storeVariants(hash));
+    }
+
+    /**
+     * Generates the variants on the calling thread, see {@link ThumbnailBackfill}.
+     */
+    public void generateVariantsNow(@Nonnull String hash) {
+        thumbnailGenerator.run("painting image " + hash, () -> storeVariants(hash));
+    }
+
+    /**
+     * @return at most {@code limit} hashes after {@code after}, in hash order, of non-empty images without variants
+     */
+    public @Nonnull List<String> withoutVariants(@Nonnull String after, int limit) {
+        return jdbcTemplate.queryForList(
+                "select hash from painting_image i where hash > ? and length(content) > 0 "
+                        + "and not exists (select 1 from painting_image_variant v where v.hash = i.hash) order by hash limit ?",
+                String.class,
+                after, limit
+        );
+    }
+
+    private void storeVariants(@Nonnull String hash) {
+        load(hash).ifPresent(content -> thumbnailGenerator.resize(content).forEach((variant, thumbnail) ->
+                jdbcTemplate.update(
+                        "insert into painting_image_variant (hash, variant, content, mime_type) values (?, ?, ?, ?) "
+                                + "on duplicate key update content = values(content), mime_type = values(mime_type)",
+                        hash, variant.name(), new SqlBinaryValue(thumbnail.getData().newInput(), thumbnail.getData().size()),
+                        thumbnail.getMimeType()
+                )
+        ));
+    }
+
+    private int insertIfAbsent(@Nonnull String hash, @Nonnull InputStream content, long size, @Nonnull String mimeType) {
+        return jdbcTemplate.update(
+                "insert ignore into painting_image (hash, content, mime_type) values (?, ?, ?)",
+                ps -> {
+                    ps.setString(1, hash);
+                    ps.setBinaryStream(2, content, size);
+                    ps.setString(3, mimeType(mimeType));
+                }
+        );
+    }
+
+    private static @Nonnull String mimeType(@Nonnull String mimeType) {
+        return mimeType.isBlank() ? DEFAULT_CONTENT_TYPE : mimeType;
+    }
+
+    private static @Nonnull MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not supported by this JVM", e);
+        }
+    }
+
+    public final class Upload implements AutoCloseable {
+
+        private final Path file;
+        private final DigestOutputStream out;
+        private long size;
+        private boolean closed;
+
+        private Upload(@Nonnull Path file) throws IOException {
+            this.file = file;
+            this.out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(file), chunkSize), newDigest());
+        }
+
+        public void write(@Nonnull ByteString chunk) {
+            try {
+                chunk.writeTo(out);
+                size += chunk.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to spool painting image chunk", e);
+            }
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return hash of the uploaded image
+         */
+        public @Nonnull String commit(@Nonnull String mimeType) {
+            try {
+                out.close();
+                String hash = HexFormat.of().formatHex(out.getMessageDigest().digest());
+                int inserted;
+                try (InputStream content = Files.newInputStream(file)) {
+                    inserted = insertIfAbsent(hash, content, size, mimeType);
+                }
+                if (inserted > 0) {
+                    generateVariants(hash);
+                }
+                return hash;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to store painting image", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
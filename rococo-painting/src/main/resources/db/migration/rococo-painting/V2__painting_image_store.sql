@@ -0,0 +1,16 @@
+create table if not exists painting_image
+(
+    hash        varchar(64)   not null,
+    content     longblob      not null,
+    primary key (hash)
+);
+
+alter table painting add column content_hash varchar(64) null;
+
+insert ignore into painting_image (hash, content)
+select sha2(content, 256), content from painting;
+
+update painting set content_hash = sha2(content, 256);
+
+alter table painting modify content_hash varchar(64) not null;
+alter table painting drop column content;
@@ -0,0 +1,7 @@
+create table if not exists painting_image_variant
+(
+    hash        varchar(64)   not null,
+    variant     varchar(16)   not null,
+    content     longblob      not null,
+    primary key (hash, variant)
+);
@@ -0,0 +1,40 @@
+-- images were stored as data:<mime>;base64,<payload> text, keep the raw bytes and the mime type instead
+alter table painting_image add column mime_type varchar(127) not null default 'application/octet-stream';
+
+update painting_image
+set mime_type = coalesce(nullif(substring_index(substring(content, 6), ';', 1), ''), 'application/octet-stream'),
+    content   = from_base64(substring_index(content, ',', -1))
+where content like 'data:%;base64,%'
+  and from_base64(substring_index(content, ',', -1)) is not null;
+
+alter table painting_image_variant add column mime_type varchar(127) not null default 'application/octet-stream';
+
+update painting_image_variant
+set mime_type = coalesce(nullif(substring_index(substring(content, 6), ';', 1), ''), 'application/octet-stream'),
+    content   = from_base64(substring_index(content, ',', -1))
+where content like 'data:%;base64,%'
+  and from_base64(substring_index(content, ',', -1)) is not null;
+
+-- the store is keyed by the hash of the stored bytes, re-key it by the hash of the decoded ones
+alter table painting_image add column raw_hash varchar(64) null;
+update painting_image set raw_hash = sha2(content, 256);
+
+update painting p join painting_image i on p.content_hash = i.hash
+set p.content_hash = i.raw_hash;
+
+-- data URLs that differ only in their header decode to the same image, keep one copy
+delete v
+from painting_image_variant v
+         join painting_image i on v.hash = i.hash
+         join painting_image keep on keep.raw_hash = i.raw_hash and keep.hash < i.hash;
+
+delete i
+from painting_image i
+         join painting_image keep on keep.raw_hash = i.raw_hash and keep.hash < i.hash;
+
+update painting_image_variant v join painting_image i on v.hash = i.hash
+set v.hash = i.raw_hash;
+
+update painting_image set hash = raw_hash;
+
+alter table painting_image drop column raw_hash;
@@ -0,0 +1,4 @@
+-- backs title search; stopwords stay indexed so every word of "The Night Watch" can be searched by
+set session innodb_ft_enable_stopword = 0;
+
+alter table painting add fulltext index painting_title_ft (title);
@@ -1,23 +1,42 @@
 package guru.qa.rococo.service;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.FieldMask;
 import guru.qa.grpc.rococo.grpc.*;
 import guru.qa.rococo.data.PaintingEntity;
+import guru.qa.rococo.data.PaintingField;
+import guru.qa.rococo.data.repository.PaintingFieldRepository;
 import guru.qa.rococo.data.repository.PaintingRepository;
+import guru.qa.rococo.grpc.CountCache;
+import guru.qa.rococo.grpc.ImageVariant;
+import guru.qa.rococo.grpc.PageToken;
+import guru.qa.rococo.grpc.Uuids;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.MockedStatic;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static java.util.UUID.randomUUID;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,12 +45,23 @@ import static org.mockito.Mockito.*;
 class GrpcPaintingServiceGetPaintingTest {
 
     private PaintingRepository paintingRepository;
+    private PaintingFieldRepository paintingFieldRepository;
+    private PaintingImageStore paintingImageStore;
+    private CountCache paintingCountCache;
+    private SimpleTransactionStatus transaction;
     private GrpcPaintingService grpcPaintingService;
 
     @BeforeEach
     void setUp() {
         paintingRepository = mock(PaintingRepository.class);
-        grpcPaintingService = new GrpcPaintingService(paintingRepository);
+        paintingFieldRepository = mock(PaintingFieldRepository.class);
+        paintingImageStore = mock(PaintingImageStore.class);
+        paintingCountCache = mock(CountCache.class);
+        when(paintingCountCache.count(anyString())).thenReturn(new CountCache.Total(0, false));
+        when(paintingCountCache.count(startsWith("artist:"), any())).thenReturn(new CountCache.Total(0, false));
+        transaction = new SimpleTransactionStatus();
+        grpcPaintingService = new GrpcPaintingService(paintingRepository, paintingFieldRepository, paintingImageStore,
+                paintingCountCache, inTransaction(transaction), 2);
     }
 
     @Test
@@ -65,6 +95,211 @@ class GrpcPaintingServiceGetPaintingTest {
         }
     }
 
+    @Test
+    void shouldFindPaintingByCompactIdAndAnswerWithLegacyIdByDefault() {
+        UUID paintingId = randomUUID();
+        UUID artistId = randomUUID();
+        UUID museumId = randomUUID();
+
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(paintingId);
+        entity.setTitle("Mona Lisa");
+        entity.setDescription("");
+        entity.setContentHash("abc");
+        entity.setArtistId(artistId);
+        entity.setMuseumId(museumId);
+
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(entity));
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<PaintingResponse> captor = ArgumentCaptor.forClass(PaintingResponse.class);
+
+        grpcPaintingService.getPainting(
+                PaintingRequest.newBuilder().setUuid(Uuids.toGrpc(paintingId)).build(),
+                observer
+        );
+
+        verify(observer).onNext(captor.capture());
+        PaintingResponse response = captor.getValue();
+        assertEquals(paintingId.toString(), response.getId().toStringUtf8());
+        assertFalse(response.hasUuid());
+        assertEquals(artistId, Uuids.read(response.getArtistId().getUuid(), response.getArtistId().getId()));
+        assertEquals(museumId, Uuids.read(response.getMuseumId().getUuid(), response.getMuseumId().getId()));
+    }
+
+    @Test
+    void shouldReturnPaintingWithContentOnlyIfRequested() {
+        UUID paintingId = randomUUID();
+
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(paintingId);
+        entity.setTitle("Mona Lisa");
+        entity.setDescription("Portrait");
+        entity.setContentHash("abc");
+        entity.setArtistId(randomUUID());
+        entity.setMuseumId(randomUUID());
+
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(entity));
+        Image image = Image.newBuilder()
+                .setMimeType("image/png")
+                .setData(ByteString.copyFrom(new byte[]{1, 2, 3}))
+                .build();
+        when(paintingImageStore.load("abc")).thenReturn(Optional.of(image));
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<PaintingResponse> captor = ArgumentCaptor.forClass(PaintingResponse.class);
+
+        grpcPaintingService.getPainting(
+                PaintingRequest.newBuilder().setId(ByteString.copyFromUtf8(paintingId.toString())).build(),
+                observer
+        );
+        grpcPaintingService.getPainting(
+                PaintingRequest.newBuilder()
+                        .setId(ByteString.copyFromUtf8(paintingId.toString()))
+                        .setWithContent(true)
+                        .build(),
+                observer
+        );
+
+        verify(observer, times(2)).onNext(captor.capture());
+        verify(paintingImageStore, times(1)).load("abc");
+
+        PaintingResponse withoutContent = captor.getAllValues().get(0);
+        assertEquals("abc", withoutContent.getContentHash());
+        assertFalse(withoutContent.hasContent());
+
+        PaintingResponse withContent = captor.getAllValues().get(1);
+        assertEquals("abc", withContent.getContentHash());
+        assertEquals(image, withContent.getContent());
+    }
+
+    @Test
+    void shouldReturnNotFoundIfPaintingContentMissing() {
+        UUID paintingId = randomUUID();
+
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.empty());
+
+        StreamObserver<PaintingContentResponse> observer = mock(StreamObserver.class);
+
+        grpcPaintingService.getPaintingContent(
+                PaintingRequest.newBuilder().setId(ByteString.copyFromUtf8(paintingId.toString())).build(),
+                observer
+        );
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.NOT_FOUND.getCode()
+        ));
+        verify(observer, never()).onNext(any());
+    }
+
+    @Test
+    void shouldStreamPaintingContentFromStore() {
+        UUID paintingId = randomUUID();
+
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(paintingId);
+        entity.setContentHash("abc");
+
+        PaintingContentChunk first = PaintingContentChunk.newBuilder()
+                .setContentType("image/png")
+                .setData(ByteString.copyFrom(new byte[]{1, 2}))
+                .build();
+        PaintingContentChunk second = PaintingContentChunk.newBuilder()
+                .setData(ByteString.copyFrom(new byte[]{3}))
+                .build();
+
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(entity));
+        when(paintingImageStore.stream(eq("abc"), isNull(), any())).thenAnswer(invocation -> {
+            Consumer<PaintingContentChunk> consumer = invocation.getArgument(2);
+            consumer.accept(first);
+            consumer.accept(second);
+            return true;
+        });
+
+        StreamObserver<PaintingContentChunk> observer = mock(StreamObserver.class);
+
+        grpcPaintingService.streamPaintingContent(
+                PaintingRequest.newBuilder().setId(ByteString.copyFromUtf8(paintingId.toString())).build(),
+                observer
+        );
+
+        InOrder inOrder = inOrder(observer);
+        inOrder.verify(observer).onNext(first);
+        inOrder.verify(observer).onNext(second);
+        inOrder.verify(observer).onCompleted();
+        verify(observer, never()).onError(any());
+    }
+
+    @Test
+    void shouldStreamRequestedImageVariant() {
+        UUID paintingId = randomUUID();
+
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(paintingId);
+        entity.setContentHash("abc");
+
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(entity));
+        when(paintingImageStore.stream(eq("abc"), eq(ImageVariant.SMALL), any())).thenReturn(true);
+
+        StreamObserver<PaintingContentChunk> observer = mock(StreamObserver.class);
+
+        grpcPaintingService.streamPaintingContent(
+                PaintingRequest.newBuilder()
+                        .setUuid(Uuids.toGrpc(paintingId))
+                        .setVariant(ImageVariant.SMALL.name())
+                        .build(),
+                observer
+        );
+
+        verify(observer).onCompleted();
+        verify(observer, never()).onError(any());
+    }
+
+    @Test
+    void shouldRejectUnknownImageVariant() {
+        StreamObserver<PaintingContentChunk> observer = mock(StreamObserver.class);
+
+        grpcPaintingService.streamPaintingContent(
+                PaintingRequest.newBuilder()
+                        .setUuid(Uuids.toGrpc(randomUUID()))
+                        .setVariant("HUGE")
+                        .build(),
+                observer
+        );
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.INVALID_ARGUMENT
+        ));
+        verifyNoInteractions(paintingImageStore);
+    }
+
+    @Test
+    void shouldReturnNotFoundIfStreamedImageMissing() {
+        UUID paintingId = randomUUID();
+
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(paintingId);
+        entity.setContentHash("abc");
+
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(entity));
+        when(paintingImageStore.stream(eq("abc"), isNull(), any())).thenReturn(false);
+
+        StreamObserver<PaintingContentChunk> observer = mock(StreamObserver.class);
+
+        grpcPaintingService.streamPaintingContent(
+                PaintingRequest.newBuilder().setId(ByteString.copyFromUtf8(paintingId.toString())).build(),
+                observer
+        );
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.NOT_FOUND.getCode()
+        ));
+        verify(observer, never()).onCompleted();
+    }
+
     @Test
     void shouldReturnNotFoundIfPaintingMissing() {
         UUID paintingId = randomUUID();
@@ -117,8 +352,9 @@ class GrpcPaintingServiceGetPaintingTest {
         List<PaintingEntity> entities = List.of(e1, e2);
         Page<PaintingEntity> paintingPage = new PageImpl<>(entities);
 
-        when(paintingRepository.findAllByTitleContainsIgnoreCase(eq(title), any(PageRequest.class)))
+        when(paintingRepository.searchByTitle(eq("+sun*"), any(PageRequest.class)))
                 .thenReturn(paintingPage);
+        when(paintingCountCache.count("+sun*")).thenReturn(new CountCache.Total(2, false));
 
         PaintingResponse grpcResp1 = PaintingResponse.newBuilder()
                 .setId(ByteString.copyFromUtf8(id1.toString()))
@@ -151,6 +387,41 @@ class GrpcPaintingServiceGetPaintingTest {
         assertEquals("Sunrise", result.getPainting(1).getTitle());
     }
 
+    @Test
+    void shouldReturnSmallVariantsInPagedListWithContent() {
+        AllPaintingRequest request = AllPaintingRequest.newBuilder()
+                .setTitle("")
+                .setSize(10)
+                .setWithContent(true)
+                .build();
+
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(randomUUID());
+        entity.setContentHash("abc");
+
+        when(paintingRepository.findAllBy(any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(List.of(entity)));
+        when(paintingImageStore.loadAll(Set.of("abc"), ImageVariant.SMALL))
+                .thenReturn(Map.of("abc", Image.newBuilder()
+                        .setMimeType("image/jpeg")
+                        .setData(ByteString.copyFromUtf8("small"))
+                        .build()));
+
+        StreamObserver<AllPaintingResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllPaintingResponse> captor = ArgumentCaptor.forClass(AllPaintingResponse.class);
+
+        try (MockedStatic<PaintingEntity> mockStatic = mockStatic(PaintingEntity.class)) {
+            mockStatic.when(() -> PaintingEntity.toGrpcMessage(entity)).thenReturn(PaintingResponse.getDefaultInstance());
+
+            grpcPaintingService.getAllPainting(request, observer);
+
+            verify(observer).onNext(captor.capture());
+        }
+
+        assertEquals("small", captor.getValue().getPainting(0).getContent().getData().toStringUtf8());
+        verify(paintingImageStore, never()).loadAll(anySet());
+    }
+
     @Test
     void shouldAddPaintingSuccessfully() {
         UUID museumId = UUID.randomUUID();
@@ -160,7 +431,7 @@ class GrpcPaintingServiceGetPaintingTest {
         AddPaintingRequest request = AddPaintingRequest.newBuilder()
                 .setTitle("The Starry Night")
                 .setDescription("Famous painting by Van Gogh")
-                .setContent(ByteString.copyFromUtf8("binary-content"))
+                .setContent(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("binary-content")))
                 .setMuseumId(MuseumId.newBuilder().setId(ByteString.copyFromUtf8(museumId.toString())))
                 .setArtistId(ArtistId.newBuilder().setId(ByteString.copyFromUtf8(artistId.toString())))
                 .build();
@@ -185,9 +456,15 @@ class GrpcPaintingServiceGetPaintingTest {
             mockStatic.when(() -> PaintingEntity.toGrpcMessage(savedEntity)).thenReturn(grpcResponse);
 
             when(paintingRepository.save(entityToSave)).thenReturn(savedEntity);
+            when(paintingImageStore.save(request.getContent())).thenReturn("hash");
 
             grpcPaintingService.addPainting(request, observer);
 
+            assertEquals("hash", entityToSave.getContentHash());
+            InOrder inOrder = inOrder(paintingRepository, paintingCountCache);
+            inOrder.verify(paintingRepository).save(entityToSave);
+            inOrder.verify(paintingCountCache).invalidate();
+
             verify(observer).onNext(captor.capture());
             verify(observer).onCompleted();
             verify(observer, never()).onError(any());
@@ -198,6 +475,37 @@ class GrpcPaintingServiceGetPaintingTest {
         }
     }
 
+    @Test
+    void shouldStoreImageInTheTransactionOfTheFailedInsert() {
+        TransactionOperations transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(transaction));
+        GrpcPaintingService service = new GrpcPaintingService(paintingRepository, paintingFieldRepository, paintingImageStore,
+                paintingCountCache, transactionOperations, 2);
+
+        AddPaintingRequest request = AddPaintingRequest.newBuilder()
+                .setTitle("The Starry Night")
+                .setContent(Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("binary-content")))
+                .build();
+        PaintingEntity entityToSave = new PaintingEntity();
+        when(paintingImageStore.save(request.getContent())).thenReturn("hash");
+        when(paintingRepository.save(entityToSave)).thenThrow(new DataAccessResourceFailureException("insert failed"));
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+
+        try (MockedStatic<PaintingEntity> mockStatic = mockStatic(PaintingEntity.class)) {
+            mockStatic.when(() -> PaintingEntity.fromAddPaintingGrpcMessage(request)).thenReturn(entityToSave);
+
+            assertThrows(DataAccessResourceFailureException.class, () -> service.addPainting(request, observer));
+        }
+
+        InOrder inOrder = inOrder(transactionOperations, paintingImageStore, paintingRepository);
+        inOrder.verify(transactionOperations).execute(any());
+        inOrder.verify(paintingImageStore).save(request.getContent());
+        inOrder.verify(paintingRepository).save(entityToSave);
+        verify(observer, never()).onNext(any());
+        verify(paintingCountCache, never()).invalidate();
+    }
+
     @Test
     void shouldUpdatePaintingIfExists() {
         UUID paintingId = UUID.randomUUID();
@@ -210,24 +518,28 @@ class GrpcPaintingServiceGetPaintingTest {
                         .build())
                 .build();
 
-        PaintingEntity existing = new PaintingEntity();
-        existing.setId(paintingId);
-
         PaintingEntity updated = new PaintingEntity();
         updated.setId(paintingId);
         updated.setTitle("New Title");
+        updated.setDescription("Updated Description");
+
+        PaintingEntity stored = new PaintingEntity();
+        stored.setId(paintingId);
+        stored.setTitle("New Title");
+        stored.setVersion(1);
 
-        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(existing));
-        when(paintingRepository.save(any())).thenReturn(updated);
+        when(paintingRepository.update(paintingId, "New Title", "Updated Description", null, null, null, null)).thenReturn(1);
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(stored));
 
         PaintingResponse expected = PaintingResponse.newBuilder()
                 .setId(ByteString.copyFromUtf8(paintingId.toString()))
                 .setTitle("New Title")
+                .setVersion(1)
                 .build();
 
         try (MockedStatic<PaintingEntity> mocked = mockStatic(PaintingEntity.class)) {
             mocked.when(() -> PaintingEntity.fromUpdatePaintingGrpcMessage(request)).thenReturn(updated);
-            mocked.when(() -> PaintingEntity.toGrpcMessage(updated)).thenReturn(expected);
+            mocked.when(() -> PaintingEntity.toGrpcMessage(stored)).thenReturn(expected);
 
             StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
             grpcPaintingService.updatePainting(request, observer);
@@ -236,6 +548,318 @@ class GrpcPaintingServiceGetPaintingTest {
             verify(observer).onCompleted();
             verify(observer, never()).onError(any());
         }
+        verify(paintingRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldKeepImageIfUpdateHasNoContent() {
+        UUID paintingId = UUID.randomUUID();
+
+        UpdatePaintingRequest request = UpdatePaintingRequest.newBuilder()
+                .setId(ByteString.copyFromUtf8(paintingId.toString()))
+                .setPaintingData(AddPaintingRequest.newBuilder().setTitle("New Title").build())
+                .build();
+
+        grpcPaintingService.updatePainting(request, mock(StreamObserver.class));
+
+        // a null hash leaves the content_hash column as it is
+        verify(paintingRepository).update(eq(paintingId), eq("New Title"), any(), any(), any(), isNull(), isNull());
+        verify(paintingImageStore, never()).save(any());
+        verify(paintingRepository, never()).findById(any());
+    }
+
+    @Test
+    void shouldAbortUpdateOnVersionMismatch() {
+        UUID paintingId = UUID.randomUUID();
+
+        UpdatePaintingRequest request = UpdatePaintingRequest.newBuilder()
+                .setId(ByteString.copyFromUtf8(paintingId.toString()))
+                .setPaintingData(AddPaintingRequest.newBuilder().setTitle("Stale Title").build())
+                .setExpectedVersion(2)
+                .build();
+
+        when(paintingRepository.update(eq(paintingId), any(), any(), any(), any(), isNull(), eq(2L))).thenReturn(0);
+        when(paintingRepository.findVersionById(paintingId)).thenReturn(Optional.of(3L));
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        grpcPaintingService.updatePainting(request, observer);
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException &&
+                        ((StatusRuntimeException) error).getStatus().getCode() == Status.ABORTED.getCode()
+        ));
+        verify(paintingCountCache, never()).invalidate();
+    }
+
+    @Test
+    void shouldRollBackNewImageWhenUpdateFailsVersionCheck() {
+        UUID paintingId = UUID.randomUUID();
+        Image content = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("image")).build();
+
+        UpdatePaintingRequest request = UpdatePaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(paintingId))
+                .setPaintingData(AddPaintingRequest.newBuilder().setTitle("Stale Title").setContent(content))
+                .setExpectedVersion(2)
+                .build();
+
+        when(paintingImageStore.save(content)).thenReturn("hash");
+        when(paintingRepository.update(eq(paintingId), any(), any(), any(), any(), eq("hash"), eq(2L))).thenReturn(0);
+        when(paintingRepository.findVersionById(paintingId)).thenReturn(Optional.of(3L));
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        grpcPaintingService.updatePainting(request, observer);
+
+        assertTrue(transaction.isRollbackOnly());
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException &&
+                        ((StatusRuntimeException) error).getStatus().getCode() == Status.ABORTED.getCode()
+        ));
+    }
+
+    @Test
+    void shouldPatchTitleWithoutTouchingContent() {
+        UUID paintingId = UUID.randomUUID();
+        PatchPaintingRequest request = PatchPaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(paintingId))
+                .setPaintingData(AddPaintingRequest.newBuilder().setTitle("New Title"))
+                .setUpdateMask(FieldMask.newBuilder().addPaths("title"))
+                .build();
+
+        PaintingEntity stored = new PaintingEntity();
+        stored.setId(paintingId);
+        stored.setTitle("New Title");
+        stored.setDescription("Unchanged");
+        stored.setContentHash("hash");
+        stored.setArtistId(UUID.randomUUID());
+        stored.setMuseumId(UUID.randomUUID());
+        when(paintingFieldRepository.patch(eq(paintingId), any(), eq(Set.of(PaintingField.TITLE)), isNull()))
+                .thenReturn(1);
+        when(paintingRepository.findById(paintingId)).thenReturn(Optional.of(stored));
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        grpcPaintingService.patchPainting(request, observer);
+
+        ArgumentCaptor<PaintingResponse> captor = ArgumentCaptor.forClass(PaintingResponse.class);
+        verify(observer).onNext(captor.capture());
+        verify(observer).onCompleted();
+        assertEquals("New Title", captor.getValue().getTitle());
+        verify(paintingImageStore, never()).save(any());
+        verify(paintingCountCache).invalidate();
+    }
+
+    @Test
+    void shouldRollBackPatchedImageWhenPatchFailsVersionCheck() {
+        UUID paintingId = UUID.randomUUID();
+        Image content = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("image")).build();
+        PatchPaintingRequest request = PatchPaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(paintingId))
+                .setPaintingData(AddPaintingRequest.newBuilder().setContent(content))
+                .setUpdateMask(FieldMask.newBuilder().addPaths("content"))
+                .setExpectedVersion(1)
+                .build();
+        when(paintingImageStore.save(content)).thenReturn("hash");
+        when(paintingRepository.findVersionById(paintingId)).thenReturn(Optional.of(2L));
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        grpcPaintingService.patchPainting(request, observer);
+
+        InOrder inOrder = inOrder(paintingImageStore, paintingFieldRepository);
+        inOrder.verify(paintingImageStore).save(content);
+        inOrder.verify(paintingFieldRepository).patch(eq(paintingId), argThat(values -> "hash".equals(values.getContentHash())),
+                eq(Set.of(PaintingField.CONTENT)), eq(1L));
+        assertTrue(transaction.isRollbackOnly());
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException &&
+                        ((StatusRuntimeException) error).getStatus().getCode() == Status.ABORTED.getCode()
+        ));
+    }
+
+    @Test
+    void shouldRejectContentPatchWithoutContent() {
+        PatchPaintingRequest request = PatchPaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(UUID.randomUUID()))
+                .setUpdateMask(FieldMask.newBuilder().addPaths("content"))
+                .build();
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        grpcPaintingService.patchPainting(request, observer);
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException &&
+                        ((StatusRuntimeException) error).getStatus().getCode() == Status.INVALID_ARGUMENT.getCode()
+        ));
+        verifyNoInteractions(paintingFieldRepository);
+    }
+
+    @Test
+    void shouldImportPaintingsWithStoredImagesAndRejectOnesWithoutContent() {
+        UUID artistId = UUID.randomUUID();
+        UUID museumId = UUID.randomUUID();
+        Image content = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("image")).build();
+        AddPaintingRequest paintingData = AddPaintingRequest.newBuilder()
+                .setTitle("Water Lilies")
+                .setDescription("Series")
+                .setArtistId(ArtistId.newBuilder().setUuid(Uuids.toGrpc(artistId)))
+                .setMuseumId(MuseumId.newBuilder().setUuid(Uuids.toGrpc(museumId)))
+                .setContent(content)
+                .build();
+        when(paintingImageStore.save(content)).thenReturn("hash");
+
+        StreamObserver<ImportResponse> observer = mock(StreamObserver.class);
+        StreamObserver<ImportPaintingRequest> requestObserver = grpcPaintingService.importPaintings(observer);
+        requestObserver.onNext(ImportPaintingRequest.newBuilder().setPaintingData(paintingData).build());
+        requestObserver.onNext(ImportPaintingRequest.newBuilder()
+                .setPaintingData(paintingData.toBuilder().clearContent())
+                .build());
+        requestObserver.onCompleted();
+
+        ArgumentCaptor<List<PaintingEntity>> batch = ArgumentCaptor.forClass(List.class);
+        verify(paintingFieldRepository).insertAll(batch.capture());
+        PaintingEntity imported = batch.getValue().getFirst();
+        assertEquals("hash", imported.getContentHash());
+        assertEquals(artistId, imported.getArtistId());
+        assertEquals(museumId, imported.getMuseumId());
+
+        ArgumentCaptor<ImportResponse> response = ArgumentCaptor.forClass(ImportResponse.class);
+        verify(observer).onNext(response.capture());
+        assertEquals(1, response.getValue().getImported());
+        assertEquals(imported.getId(), Uuids.fromGrpc(response.getValue().getResults(0).getUuid()));
+        assertEquals("Painting content cannot be empty", response.getValue().getResults(1).getError());
+        verify(paintingCountCache).invalidate();
+    }
+
+    @Test
+    void shouldReportImageStoreFailureAsFailureOfThatPaintingOnly() {
+        Image broken = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("broken")).build();
+        Image content = Image.newBuilder().setMimeType("image/png").setData(ByteString.copyFromUtf8("image")).build();
+        AddPaintingRequest paintingData = AddPaintingRequest.newBuilder()
+                .setTitle("Water Lilies")
+                .setArtistId(ArtistId.newBuilder().setUuid(Uuids.toGrpc(UUID.randomUUID())))
+                .setMuseumId(MuseumId.newBuilder().setUuid(Uuids.toGrpc(UUID.randomUUID())))
+                .setContent(content)
+                .build();
+        when(paintingImageStore.save(broken)).thenThrow(new DataAccessResourceFailureException("Connection reset"));
+        when(paintingImageStore.save(content)).thenReturn("hash");
+
+        StreamObserver<ImportResponse> observer = mock(StreamObserver.class);
+        StreamObserver<ImportPaintingRequest> requestObserver = grpcPaintingService.importPaintings(observer);
+        requestObserver.onNext(ImportPaintingRequest.newBuilder()
+                .setPaintingData(paintingData.toBuilder().setContent(broken))
+                .build());
+        requestObserver.onNext(ImportPaintingRequest.newBuilder().setPaintingData(paintingData).build());
+        requestObserver.onCompleted();
+
+        ArgumentCaptor<ImportResponse> response = ArgumentCaptor.forClass(ImportResponse.class);
+        verify(observer).onNext(response.capture());
+        verify(observer).onCompleted();
+        verify(observer, never()).onError(any());
+        assertEquals(1, response.getValue().getImported());
+        assertEquals("Connection reset", response.getValue().getResults(0).getError());
+        assertTrue(response.getValue().getResults(1).hasUuid());
+    }
+
+    @Test
+    void shouldExportPaintingsAndCompleteStream() {
+        ImportPaintingRequest painting = ImportPaintingRequest.newBuilder()
+                .setUuid(Uuids.toGrpc(randomUUID()))
+                .setPaintingData(AddPaintingRequest.newBuilder().setTitle("Water Lilies"))
+                .build();
+        doAnswer(invocation -> {
+            Consumer<ImportPaintingRequest> consumer = invocation.getArgument(0);
+            consumer.accept(painting);
+            return null;
+        }).when(paintingFieldRepository).exportAll(any());
+
+        StreamObserver<ImportPaintingRequest> observer = mock(StreamObserver.class);
+        grpcPaintingService.exportPaintings(Empty.getDefaultInstance(), observer);
+
+        InOrder inOrder = inOrder(observer);
+        inOrder.verify(observer).onNext(painting);
+        inOrder.verify(observer).onCompleted();
+        verifyNoInteractions(paintingImageStore);
+    }
+
+    @Test
+    void shouldDeleteSpooledUploadWhenChunkCannotBeWritten() {
+        ByteString chunk = ByteString.copyFromUtf8("chunk");
+        PaintingImageStore.Upload upload = mock(PaintingImageStore.Upload.class);
+        when(paintingImageStore.newUpload()).thenReturn(upload);
+        doThrow(new UncheckedIOException("No space left on device", new IOException())).when(upload).write(chunk);
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        StreamObserver<UploadPaintingRequest> requestObserver = grpcPaintingService.uploadPainting(observer);
+        requestObserver.onNext(UploadPaintingRequest.newBuilder().setContentChunk(chunk).build());
+        requestObserver.onNext(UploadPaintingRequest.newBuilder().setContentChunk(chunk).build());
+        requestObserver.onCompleted();
+
+        verify(upload).close();
+        verify(upload).write(chunk);
+        verify(upload, never()).commit(any());
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException ex &&
+                        ex.getStatus().getCode() == Status.Code.INTERNAL
+        ));
+        verify(observer, never()).onCompleted();
+    }
+
+    @Test
+    void shouldStoreUploadedChunksAsNewPainting() {
+        AddPaintingRequest paintingData = AddPaintingRequest.newBuilder()
+                .setTitle("The Starry Night")
+                .setContent(Image.newBuilder().setMimeType("image/png"))
+                .build();
+        ByteString firstChunk = ByteString.copyFromUtf8("first");
+        ByteString secondChunk = ByteString.copyFromUtf8("second");
+
+        PaintingImageStore.Upload upload = mock(PaintingImageStore.Upload.class);
+        when(paintingImageStore.newUpload()).thenReturn(upload);
+        when(upload.commit("image/png")).thenReturn("hash");
+
+        PaintingEntity entityToSave = new PaintingEntity();
+        when(paintingRepository.save(entityToSave)).thenReturn(entityToSave);
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+
+        try (MockedStatic<PaintingEntity> mocked = mockStatic(PaintingEntity.class)) {
+            mocked.when(() -> PaintingEntity.fromAddPaintingGrpcMessage(paintingData)).thenReturn(entityToSave);
+            mocked.when(() -> PaintingEntity.toGrpcMessage(entityToSave)).thenReturn(PaintingResponse.getDefaultInstance());
+
+            StreamObserver<UploadPaintingRequest> requestObserver = grpcPaintingService.uploadPainting(observer);
+            requestObserver.onNext(UploadPaintingRequest.newBuilder()
+                    .setPainting(UpdatePaintingRequest.newBuilder().setPaintingData(paintingData))
+                    .build());
+            requestObserver.onNext(UploadPaintingRequest.newBuilder().setContentChunk(firstChunk).build());
+            requestObserver.onNext(UploadPaintingRequest.newBuilder().setContentChunk(secondChunk).build());
+            requestObserver.onCompleted();
+        }
+
+        InOrder inOrder = inOrder(upload);
+        inOrder.verify(upload).write(firstChunk);
+        inOrder.verify(upload).write(secondChunk);
+        inOrder.verify(upload).commit("image/png");
+        inOrder.verify(upload).close();
+        assertEquals("hash", entityToSave.getContentHash());
+        verify(observer).onNext(PaintingResponse.getDefaultInstance());
+        verify(observer).onCompleted();
+    }
+
+    @Test
+    void shouldRejectUploadWithoutPaintingData() {
+        PaintingImageStore.Upload upload = mock(PaintingImageStore.Upload.class);
+        when(paintingImageStore.newUpload()).thenReturn(upload);
+
+        StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
+        StreamObserver<UploadPaintingRequest> requestObserver = grpcPaintingService.uploadPainting(observer);
+        requestObserver.onNext(UploadPaintingRequest.newBuilder().setContentChunk(ByteString.copyFromUtf8("data")).build());
+        requestObserver.onCompleted();
+
+        verify(observer).onError(argThat(error ->
+                error instanceof StatusRuntimeException &&
+                        ((StatusRuntimeException) error).getStatus().getCode() == Status.INVALID_ARGUMENT.getCode()
+        ));
+        verify(upload, never()).commit(anyString());
+        verify(upload).close();
+        verify(paintingRepository, never()).save(any());
     }
 
     @Test
@@ -247,7 +871,7 @@ class GrpcPaintingServiceGetPaintingTest {
                 .setPaintingData(AddPaintingRequest.newBuilder().setTitle("X").build())
                 .build();
 
-        when(paintingRepository.findById(paintingId)).thenReturn(Optional.empty());
+        when(paintingRepository.findVersionById(paintingId)).thenReturn(Optional.empty());
 
         StreamObserver<PaintingResponse> observer = mock(StreamObserver.class);
         grpcPaintingService.updatePainting(request, observer);
@@ -274,8 +898,8 @@ class GrpcPaintingServiceGetPaintingTest {
         entity.setId(id);
         entity.setTitle("Updated");
 
+        when(paintingRepository.update(eq(id), eq("Updated"), any(), any(), any(), isNull(), isNull())).thenReturn(1);
         when(paintingRepository.findById(id)).thenReturn(Optional.of(entity));
-        when(paintingRepository.save(any())).thenReturn(entity);
 
         PaintingResponse response = PaintingResponse.newBuilder()
                 .setId(ByteString.copyFromUtf8(id.toString()))
@@ -314,6 +938,7 @@ class GrpcPaintingServiceGetPaintingTest {
 
         when(paintingRepository.findAllByArtistId(eq(artistId), any(PageRequest.class)))
                 .thenReturn(page);
+        when(paintingCountCache.count(eq("artist:" + artistId), any())).thenReturn(new CountCache.Total(2, false));
 
         PaintingResponse grpc1 = PaintingResponse.newBuilder()
                 .setId(ByteString.copyFromUtf8(painting1.getId().toString()))
@@ -344,6 +969,7 @@ class GrpcPaintingServiceGetPaintingTest {
 
             AllPaintingResponse result = captor.getValue();
             assertEquals(2, result.getPaintingCount());
+            assertEquals(2, result.getTotalCount());
             assertEquals("Painting A", result.getPainting(0).getTitle());
             assertEquals("Painting B", result.getPainting(1).getTitle());
         }
@@ -387,4 +1013,113 @@ class GrpcPaintingServiceGetPaintingTest {
         verify(observer, never()).onNext(any());
         verify(observer, never()).onCompleted();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldContinueKeysetListingAfterPageToken() {
+        UUID after = randomUUID();
+        PaintingEntity e1 = new PaintingEntity();
+        e1.setId(randomUUID());
+        PaintingEntity e2 = new PaintingEntity();
+        e2.setId(randomUUID());
+        PaintingEntity e3 = new PaintingEntity();
+        e3.setId(randomUUID());
+
+        when(paintingRepository.searchByTitleAfter("+sun*", after.toString(), 3))
+                .thenReturn(List.of(e1, e2, e3));
+
+        AllPaintingRequest request = AllPaintingRequest.newBuilder()
+                .setTitle("sun")
+                .setSize(2)
+                .setPageToken(PageToken.encode(after))
+                .build();
+
+        StreamObserver<AllPaintingResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllPaintingResponse> captor = ArgumentCaptor.forClass(AllPaintingResponse.class);
+
+        try (MockedStatic<PaintingEntity> mockStatic = mockStatic(PaintingEntity.class)) {
+            mockStatic.when(() -> PaintingEntity.toGrpcMessage(any())).thenReturn(PaintingResponse.getDefaultInstance());
+
+            grpcPaintingService.getAllPainting(request, observer);
+
+            verify(observer).onNext(captor.capture());
+            verify(observer).onCompleted();
+        }
+
+        AllPaintingResponse result = captor.getValue();
+        assertEquals(2, result.getPaintingCount());
+        assertEquals(e2.getId(), PageToken.decode(result.getNextPageToken()));
+        assertEquals(0, result.getTotalCount());
+        verify(paintingCountCache, never()).count(any());
+    }
+
+    @Test
+    void shouldEndKeysetListingWithoutTokenAndCountOnRequest() {
+        PaintingEntity entity = new PaintingEntity();
+        entity.setId(randomUUID());
+
+        when(paintingRepository.findPageAfter(null, 11)).thenReturn(List.of(entity));
+        when(paintingCountCache.count("")).thenReturn(new CountCache.Total(1, false));
+
+        AllPaintingRequest request = AllPaintingRequest.newBuilder()
+                .setSize(10)
+                .setPageToken("")
+                .setWithTotalCount(true)
+                .build();
+
+        StreamObserver<AllPaintingResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllPaintingResponse> captor = ArgumentCaptor.forClass(AllPaintingResponse.class);
+
+        try (MockedStatic<PaintingEntity> mockStatic = mockStatic(PaintingEntity.class)) {
+            mockStatic.when(() -> PaintingEntity.toGrpcMessage(entity)).thenReturn(PaintingResponse.getDefaultInstance());
+
+            grpcPaintingService.getAllPainting(request, observer);
+
+            verify(observer).onNext(captor.capture());
+        }
+
+        assertEquals(1, captor.getValue().getPaintingCount());
+        assertTrue(captor.getValue().getNextPageToken().isEmpty());
+        assertEquals(1, captor.getValue().getTotalCount());
+    }
+
+    @Test
+    void shouldPassEstimatedTotalThrough() {
+        when(paintingRepository.findAllBy(any(PageRequest.class))).thenReturn(new PageImpl<>(List.of()));
+        when(paintingCountCache.count("")).thenReturn(new CountCache.Total(1_250_000, true));
+
+        StreamObserver<AllPaintingResponse> observer = mock(StreamObserver.class);
+        ArgumentCaptor<AllPaintingResponse> captor = ArgumentCaptor.forClass(AllPaintingResponse.class);
+
+        grpcPaintingService.getAllPainting(AllPaintingRequest.newBuilder().setSize(10).build(), observer);
+
+        verify(observer).onNext(captor.capture());
+        assertEquals(1_250_000, captor.getValue().getTotalCount());
+        assertTrue(captor.getValue().getTotalCountEstimated());
+        verify(paintingRepository, never()).count();
+    }
+
+    @Test
+    void shouldRejectMalformedPageToken() {
+        AllPaintingRequest request = AllPaintingRequest.newBuilder()
+                .setSize(10)
+                .setPageToken("not a token")
+                .build();
+
+        StreamObserver<AllPaintingResponse> observer = mock(StreamObserver.class);
+        grpcPaintingService.getAllPainting(request, observer);
+
+        ArgumentCaptor<Throwable> captor = ArgumentCaptor.forClass(Throwable.class);
+        verify(observer).onError(captor.capture());
+        assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(captor.getValue()).getCode());
+        verifyNoInteractions(paintingRepository);
+    }
+
+    private static TransactionOperations inTransaction(TransactionStatus status) {
+        return new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(status);
+            }
+        };
+    }
+}
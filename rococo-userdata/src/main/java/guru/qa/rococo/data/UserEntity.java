@@ -1,7 +1,8 @@
 package guru.qa.rococo.data;
 
-import com.google.protobuf.ByteString;
 import guru.qa.grpc.rococo.grpc.UserResponse;
+import guru.qa.rococo.grpc.ByteStrings;
+import guru.qa.rococo.grpc.IdEncoding;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -10,8 +11,6 @@ import org.hibernate.proxy.HibernateProxy;
 import java.util.Objects;
 import java.util.UUID;
 
-import static com.google.protobuf.ByteString.copyFromUtf8;
-
 @Getter
 @Setter
 @Entity
@@ -37,8 +36,8 @@ public class UserEntity {
 
     public static UserResponse toGrpcMessage(UserEntity entity) {
         UserResponse.Builder builder = UserResponse.newBuilder()
-                .setId(copyFromUtf8(entity.getId().toString()))
                 .setUsername(entity.getUsername());
+        IdEncoding.write(entity.getId(), builder::setUuid, builder::setId);
 
         if (entity.getFirstname() != null) {
             builder.setFirstname(entity.getFirstname());
@@ -47,7 +46,7 @@ public class UserEntity {
             builder.setLastname(entity.getLastname());
         }
         if (entity.getAvatar() != null) {
-            builder.setAvatar(ByteString.copyFrom(entity.getAvatar()));
+            builder.setAvatar(ByteStrings.wrap(entity.getAvatar()));
         }
 
         return builder.build();
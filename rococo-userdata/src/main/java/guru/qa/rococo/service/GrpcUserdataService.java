@@ -6,6 +6,7 @@ import guru.qa.grpc.rococo.grpc.UserRequest;
 import guru.qa.grpc.rococo.grpc.UserResponse;
 import guru.qa.rococo.data.UserEntity;
 import guru.qa.rococo.data.repository.UserRepository;
+import guru.qa.rococo.grpc.ByteStrings;
 import guru.qa.rococo.model.UserJson;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -68,7 +69,7 @@ public class GrpcUserdataService extends RococoUserdataServiceGrpc.RococoUserdat
         if (userEntity != null) {
             userEntity.setFirstname(request.getFirstname());
             userEntity.setLastname(request.getLastname());
-            userEntity.setAvatar(request.getAvatar().toByteArray());
+            userEntity.setAvatar(ByteStrings.unwrap(request.getAvatar()));
             userRepository.save(userEntity);
 
             UserResponse userResponse = UserEntity.toGrpcMessage(userEntity);